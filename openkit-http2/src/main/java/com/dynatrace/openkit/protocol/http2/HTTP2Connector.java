@@ -0,0 +1,137 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol.http2;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.Beacon;
+import com.dynatrace.openkit.protocol.HTTPConnector;
+import com.dynatrace.openkit.protocol.MobileProtocolV3Serializer;
+import com.dynatrace.openkit.protocol.Serializer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+
+/**
+ * {@link com.dynatrace.openkit.protocol.Connector} based on {@link HttpClient}, which requires Java 11.
+ *
+ * <p>
+ * Requests are sent using HTTP/2 if the server supports it (falling back to HTTP/1.1 otherwise).
+ * This is a synchronous transport: each request blocks the calling thread until its response arrived.
+ * Requests of several send workers (see
+ * {@link com.dynatrace.openkit.AbstractOpenKitBuilder#withNumberOfSendWorkers(int)}) are in flight at the same time
+ * and share one pooled connection as separate streams, but a single worker never has more than one request
+ * outstanding. Requests, responses, retries and the failover to other endpoints are the same as for
+ * {@link HTTPConnector}.
+ * </p>
+ *
+ * <p>
+ * {@link HttpClient} always verifies host names against the server certificate, therefore the
+ * {@link javax.net.ssl.HostnameVerifier} of the configured trust manager is not used.
+ * </p>
+ */
+public class HTTP2Connector extends HTTPConnector {
+
+    private static final Charset CHARSET = Charset.forName(Beacon.CHARSET);
+
+    // created with the first request, as the SSL context might not be available
+    private volatile HttpClient httpClient = null;
+
+    public HTTP2Connector(Logger logger, HTTPClientConfiguration configuration) {
+        this(logger, configuration, new MobileProtocolV3Serializer());
+    }
+
+    public HTTP2Connector(Logger logger, HTTPClientConfiguration configuration, Serializer serializer) {
+        super(logger, configuration, serializer);
+    }
+
+    // the body is prepared in memory up front, as it is published to the HTTP client as one
+    @Override
+    protected RawResponse executeStreaming(String url, String clientIPAddress, BodyWriter body, String method)
+            throws IOException, GeneralSecurityException, InterruptedException {
+        return execute(url, clientIPAddress, writeBody(body), false, method);
+    }
+
+    // sends the request, retrying on I/O errors like HTTPConnector
+    @Override
+    protected RawResponse execute(String url, String clientIPAddress, byte[] data, boolean isCompressed, String method)
+            throws IOException, GeneralSecurityException, InterruptedException {
+        HttpClient client = getHttpClient();
+        byte[] body = data == null || data.length == 0 ? null : createRequestBody(data, isCompressed);
+        HttpRequest request = buildRequest(url, clientIPAddress, body, method);
+
+        int retry = 1;
+        while (true) {
+            if (body != null) {
+                consumeBandwidth(body.length);
+            }
+            try {
+                // the connector API is synchronous, the calling send worker waits for its response
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(CHARSET));
+                return new RawResponse(response.statusCode(), response.body());
+            } catch (IOException exception) {
+                retry++;
+                if (retry > MAX_SEND_RETRIES) {
+                    throw exception;
+                }
+                sleepBeforeRetry(retry);
+            }
+        }
+    }
+
+    // body is the (gzipped) request body, null if there is none
+    private static HttpRequest buildRequest(String url, String clientIPAddress, byte[] body, String method) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+            .timeout(Duration.ofMillis(READ_TIMEOUT));
+        if (clientIPAddress != null) {
+            builder.header("X-Client-IP", clientIPAddress);
+        }
+
+        if (body == null) {
+            return builder.method(method, HttpRequest.BodyPublishers.noBody()).build();
+        }
+        return builder.header("Content-Encoding", "gzip")
+            .method(method, HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+    }
+
+    private HttpClient getHttpClient() throws GeneralSecurityException {
+        HttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .connectTimeout(Duration.ofMillis(CONNECT_TIMEOUT))
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .sslContext(getSSLContext())
+                        .build();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol.http2;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.MobileProtocolV3Serializer;
+import com.dynatrace.openkit.protocol.Serializer;
+import com.dynatrace.openkit.providers.ConnectorProvider;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Implementation of a ConnectorProvider which creates {@link HTTP2Connector}s, to be passed to
+ * {@link com.dynatrace.openkit.AbstractOpenKitBuilder#withConnector(ConnectorProvider)}.
+ *
+ * <p>
+ * As with {@link com.dynatrace.openkit.providers.DefaultConnectorProvider}, one connector (and thus one
+ * {@link java.net.http.HttpClient}) is created per {@link HTTPClientConfiguration} instance.
+ * </p>
+ */
+public class HTTP2ConnectorProvider implements ConnectorProvider {
+
+    private final Logger logger;
+    private final Serializer serializer;
+
+    // connectors by configuration instance, guarded by this
+    private final Map<HTTPClientConfiguration, HTTP2Connector> connectors = new WeakHashMap<HTTPClientConfiguration, HTTP2Connector>();
+
+    public HTTP2ConnectorProvider(Logger logger) {
+        this(logger, new MobileProtocolV3Serializer());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param logger Logger for logging messages.
+     * @param serializer Wire format used for beacon data.
+     */
+    public HTTP2ConnectorProvider(Logger logger, Serializer serializer) {
+        this.logger = logger;
+        this.serializer = serializer;
+    }
+
+    @Override
+    public synchronized HTTP2Connector createConnector(Object configuration) {
+        HTTPClientConfiguration httpClientConfiguration = (HTTPClientConfiguration)configuration;
+        HTTP2Connector connector = connectors.get(httpClientConfiguration);
+        if (connector == null) {
+            connector = new HTTP2Connector(logger, httpClientConfiguration, serializer);
+            connectors.put(httpClientConfiguration, connector);
+        }
+        return connector;
+    }
+}
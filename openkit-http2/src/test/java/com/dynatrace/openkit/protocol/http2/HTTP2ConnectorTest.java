@@ -0,0 +1,126 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol.http2;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.StatusResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class HTTP2ConnectorTest {
+
+    private static final String STATUS_RESPONSE = "type=m&si=1&bn=dynaTraceMonitor&id=1";
+
+    private HttpServer server;
+    private Logger logger;
+
+    // written by the server's thread
+    private volatile int responseCode = 200;
+    private volatile String lastRequestBody = null;
+    private volatile String lastClientIP = null;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/mbeacon", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream body = exchange.getRequestBody();
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                    body = new GZIPInputStream(body);
+                }
+                lastRequestBody = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                lastClientIP = exchange.getRequestHeaders().getFirst("X-Client-IP");
+
+                byte[] response = STATUS_RESPONSE.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(responseCode, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        logger = mock(Logger.class);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void statusRequestReturnsStatusResponse() {
+        // given
+        HTTP2Connector target = createConnector();
+
+        // when
+        StatusResponse response = target.sendStatusRequest();
+
+        // then
+        assertThat(response, is(notNullValue()));
+        assertThat(response.getResponseCode(), is(200));
+        assertThat(response.getServerID(), is(1));
+    }
+
+    @Test
+    public void beaconDataIsSentGzippedWithClientIP() {
+        // given
+        HTTP2Connector target = createConnector();
+
+        // when
+        StatusResponse response = target.sendBeaconRequest("1.2.3.4", "et=1&na=action".getBytes(StandardCharsets.UTF_8));
+
+        // then
+        assertThat(response, is(notNullValue()));
+        assertThat(lastRequestBody, is("et=1&na=action"));
+        assertThat(lastClientIP, is("1.2.3.4"));
+    }
+
+    @Test
+    public void errorResponseReturnsNull() {
+        // given
+        responseCode = 400;
+        HTTP2Connector target = createConnector();
+
+        // when
+        StatusResponse response = target.sendStatusRequest();
+
+        // then
+        assertThat(response, is(nullValue()));
+    }
+
+    private HTTP2Connector createConnector() {
+        String baseURL = "http://localhost:" + server.getAddress().getPort() + "/mbeacon";
+        return new HTTP2Connector(logger, new HTTPClientConfiguration(baseURL, 1, "appID", null));
+    }
+}
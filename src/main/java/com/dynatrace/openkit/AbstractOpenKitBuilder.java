@@ -20,12 +20,21 @@ import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.api.OpenKit;
 import com.dynatrace.openkit.api.OpenKitConstants;
 import com.dynatrace.openkit.api.SSLTrustManager;
+import com.dynatrace.openkit.api.SessionPersistenceHook;
+import com.dynatrace.openkit.api.SessionSendInfo;
 import com.dynatrace.openkit.core.OpenKitImpl;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.util.DefaultLogger;
 import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
 import com.dynatrace.openkit.providers.ConnectorProvider;
+import com.dynatrace.openkit.providers.DefaultSessionIDProvider;
+import com.dynatrace.openkit.providers.SessionIDProvider;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Abstract base class for concrete builder. Using the builder a OpenKit instance can be created
@@ -46,8 +55,20 @@ public abstract class AbstractOpenKitBuilder {
     private long beaconCacheMaxRecordAge = BeaconCacheConfiguration.DEFAULT_MAX_RECORD_AGE_IN_MILLIS;
     private long beaconCacheLowerMemoryBoundary = BeaconCacheConfiguration.DEFAULT_LOWER_MEMORY_BOUNDARY_IN_BYTES;
     private long beaconCacheUpperMemoryBoundary = BeaconCacheConfiguration.DEFAULT_UPPER_MEMORY_BOUNDARY_IN_BYTES;
+    private int maxStacktraceLength = Configuration.DEFAULT_MAX_STACKTRACE_LENGTH;
+    private int numberOfSendWorkers = BeaconSendingConfiguration.DEFAULT_NUMBER_OF_SEND_WORKERS;
+    private long openSessionSendThreshold = BeaconSendingConfiguration.DEFAULT_OPEN_SESSION_SEND_THRESHOLD_IN_BYTES;
+    private long maxBeaconBandwidth = BeaconSendingConfiguration.DEFAULT_MAX_BEACON_BANDWIDTH_IN_BYTES_PER_SECOND;
+    private long shutdownTimeout = BeaconSendingConfiguration.DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLISECONDS;
+    private SessionPersistenceHook sessionPersistenceHook;
+    private Comparator<SessionSendInfo> sessionSendOrder = BeaconSendingConfiguration.DEFAULT_SESSION_SEND_ORDER;
+    private long sendCycleMaxBytes = BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_BYTES;
+    private long sendCycleMaxTime = BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_TIME_IN_MILLISECONDS;
+    private int maxParallelChunkUploads = BeaconSendingConfiguration.DEFAULT_MAX_PARALLEL_CHUNK_UPLOADS;
+    private List<String> beaconEndpoints;
 
     private ConnectorProvider connectorProvider;
+    private OpenKitRuntime runtime;
 
     /**
      * Creates a new instance of type AbstractOpenKitBuilder
@@ -190,6 +211,181 @@ public abstract class AbstractOpenKitBuilder {
         return this;
     }
 
+    /**
+     * Sets the maximum length of crash stacktraces.
+     *
+     * <p>
+     * Longer stacktraces are truncated after the last complete line fitting into this limit.
+     * </p>
+     *
+     * @param maxStacktraceLength The maximum stacktrace length in characters, or unbounded if negative.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withMaxStacktraceLength(int maxStacktraceLength) {
+        this.maxStacktraceLength = maxStacktraceLength;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads sending sessions in parallel.
+     *
+     * <p>
+     * Data of one session is always sent in order by one thread at a time, but a slow request
+     * for one session does not hold up other sessions. By default sessions are sent one after another.
+     * </p>
+     *
+     * @param numberOfSendWorkers The number of send threads.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withNumberOfSendWorkers(int numberOfSendWorkers) {
+        this.numberOfSendWorkers = numberOfSendWorkers;
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes an open session may collect, before it is sent without waiting for the send interval.
+     *
+     * <p>
+     * This keeps the memory used by long running, busy sessions low. A value close to the
+     * maximum beacon size keeps the number of requests small. By default open sessions are only
+     * sent with the send interval.
+     * </p>
+     *
+     * @param openSessionSendThreshold The threshold in bytes, zero or less disables early sending.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withOpenSessionSendThreshold(long openSessionSendThreshold) {
+        this.openSessionSendThreshold = openSessionSendThreshold;
+        return this;
+    }
+
+    /**
+     * Limits the average outbound bandwidth used for beacon data.
+     *
+     * <p>
+     * This avoids saturating metered or constrained uplinks, e.g. when a backlog is sent after an outage.
+     * While the limit is exceeded, data is kept and sent later on. Bursts of up to one second worth of
+     * bytes are allowed. By default the bandwidth is not limited.
+     * </p>
+     *
+     * @param bytesPerSecond The limit in (compressed) bytes per second, zero or less disables limiting.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withMaxBeaconBandwidth(long bytesPerSecond) {
+        this.maxBeaconBandwidth = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Sets the time for sending all sessions when OpenKit is shut down.
+     *
+     * <p>
+     * On shutdown, sessions are sent in parallel, sessions containing a crash first.
+     * Sessions not sent when the timeout expires are passed to the {@link #withSessionPersistenceHook session persistence hook}.
+     * The default is 10 seconds.
+     * </p>
+     *
+     * @param shutdownTimeoutMillis The timeout in milliseconds.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withShutdownTimeout(long shutdownTimeoutMillis) {
+        this.shutdownTimeout = shutdownTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Sets the hook taking over sessions, which could not be sent on shutdown.
+     *
+     * <p>
+     * By default such sessions are dropped.
+     * </p>
+     *
+     * @param sessionPersistenceHook The hook, or {@code null} to drop unsent sessions.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withSessionPersistenceHook(SessionPersistenceHook sessionPersistenceHook) {
+        this.sessionPersistenceHook = sessionPersistenceHook;
+        return this;
+    }
+
+    /**
+     * Sets the order in which finished sessions are sent.
+     *
+     * <p>
+     * When many sessions are waiting to be sent, e.g. after the server was unreachable, this decides
+     * which data reaches the server first. By default sessions containing a crash are sent first, then sessions
+     * containing an error, then the sessions with the oldest data, which is evicted from the cache next.
+     * Sessions comparing equal are sent in the order they were finished.
+     * </p>
+     *
+     * @param sessionSendOrder Comparator ordering sessions to be sent first lower, {@code null} for the default order.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withSessionSendOrder(Comparator<SessionSendInfo> sessionSendOrder) {
+        this.sessionSendOrder = sessionSendOrder == null
+            ? BeaconSendingConfiguration.DEFAULT_SESSION_SEND_ORDER
+            : sessionSendOrder;
+        return this;
+    }
+
+    /**
+     * Sets how much beacon data is sent in one send cycle.
+     *
+     * <p>
+     * Sessions take turns sending one request each, so that a single large session does not hold back
+     * all others. When either limit is reached, sessions with data left continue with the next cycle,
+     * after the beacon sender checked for more important work, like newly finished sessions.
+     * By default a cycle sends at most 1 MiB or for at most 5 seconds.
+     * </p>
+     *
+     * @param maxBytes The number of (uncompressed) beacon bytes per cycle, zero or less disables this limit.
+     * @param maxTimeMillis The time in milliseconds per cycle, zero or less disables this limit.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withSendCycleBudget(long maxBytes, long maxTimeMillis) {
+        this.sendCycleMaxBytes = maxBytes;
+        this.sendCycleMaxTime = maxTimeMillis;
+        return this;
+    }
+
+    /**
+     * Sets the number of chunks of a single session uploaded at once.
+     *
+     * <p>
+     * Sessions exceeding the maximum beacon size are split into chunks, which are sent one after another
+     * by default. Uploading several chunks at once over separate connections drains large sessions faster,
+     * if latency rather than bandwidth is the limiting factor. If a chunk fails, the chunks sent successfully
+     * are removed and the others are sent again later. The collector must accept the chunks of a session
+     * in any order.
+     * </p>
+     *
+     * @param maxParallelChunkUploads The number of chunks uploaded at once, one or less disables parallel uploads.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withParallelChunkUploads(int maxParallelChunkUploads) {
+        this.maxParallelChunkUploads = maxParallelChunkUploads;
+        return this;
+    }
+
+    /**
+     * Sets the endpoints beacons are sent to.
+     *
+     * <p>
+     * The first endpoint is used as long as it is reachable. If a request to an endpoint fails,
+     * the next one in the list is tried, until one of them received the request.
+     * </p>
+     *
+     * @param beaconEndpoints The base URLs of the endpoints in the order they are tried,
+     *                        {@code null} or an empty list to use the default endpoint.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withBeaconEndpoints(List<String> beaconEndpoints) {
+        this.beaconEndpoints = beaconEndpoints == null || beaconEndpoints.isEmpty()
+            ? null
+            : new ArrayList<String>(beaconEndpoints);
+        return this;
+    }
+
     /**
      * Sets the connectorProvider used for the communication
      * @param connector Connector to use
@@ -200,6 +396,23 @@ public abstract class AbstractOpenKitBuilder {
         return this;
     }
 
+    /**
+     * Sets the runtime shared with other OpenKit instances in this process.
+     *
+     * <p>
+     * The instance then sends its beacons with the threads of the runtime instead of starting its own threads.
+     * The beacon cache settings of this builder are not used, the data of all instances of the runtime
+     * is kept within the memory budget of the runtime.
+     * </p>
+     *
+     * @param runtime The shared runtime, {@code null} for a separate runtime of this instance.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withRuntime(OpenKitRuntime runtime) {
+        this.runtime = runtime;
+        return this;
+    }
+
     /**
      * Builds the configuration for the OpenKit instance
      *
@@ -214,7 +427,9 @@ public abstract class AbstractOpenKitBuilder {
      */
     public OpenKit build() {
         // create and initialize OpenKit instance
-        OpenKitImpl openKit = new OpenKitImpl(getLogger(), buildConfiguration());
+        OpenKitImpl openKit = runtime == null
+            ? new OpenKitImpl(getLogger(), buildConfiguration())
+            : new OpenKitImpl(getLogger(), buildConfiguration(), runtime.getMemoryBudget(), runtime.getBeaconSenderPool());
         openKit.initialize();
 
         return openKit;
@@ -258,6 +473,50 @@ public abstract class AbstractOpenKitBuilder {
         return beaconCacheUpperMemoryBoundary;
     }
 
+    int getMaxStacktraceLength() {
+        return maxStacktraceLength;
+    }
+
+    int getNumberOfSendWorkers() {
+        return numberOfSendWorkers;
+    }
+
+    long getOpenSessionSendThreshold() {
+        return openSessionSendThreshold;
+    }
+
+    long getMaxBeaconBandwidth() {
+        return maxBeaconBandwidth;
+    }
+
+    long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    SessionPersistenceHook getSessionPersistenceHook() {
+        return sessionPersistenceHook;
+    }
+
+    Comparator<SessionSendInfo> getSessionSendOrder() {
+        return sessionSendOrder;
+    }
+
+    long getSendCycleMaxBytes() {
+        return sendCycleMaxBytes;
+    }
+
+    long getSendCycleMaxTime() {
+        return sendCycleMaxTime;
+    }
+
+    int getMaxParallelChunkUploads() {
+        return maxParallelChunkUploads;
+    }
+
+    List<String> getBeaconEndpoints() {
+        return beaconEndpoints;
+    }
+
     Logger getLogger() {
         if (logger != null) {
             return logger;
@@ -269,4 +528,13 @@ public abstract class AbstractOpenKitBuilder {
     ConnectorProvider getConnectorProvider(){
             return connectorProvider;
     }
+
+    OpenKitRuntime getRuntime() {
+        return runtime;
+    }
+
+    SessionIDProvider getSessionIDProvider() {
+        // session numbers are unique across all instances of a runtime, so that their sessions can be told apart
+        return runtime == null ? new DefaultSessionIDProvider() : runtime.getSessionIDProvider();
+    }
 }
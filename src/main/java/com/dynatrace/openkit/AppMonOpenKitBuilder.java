@@ -19,11 +19,11 @@ package com.dynatrace.openkit;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.Device;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.OpenKitType;
 import com.dynatrace.openkit.providers.ConnectorProvider;
 import com.dynatrace.openkit.providers.DefaultConnectorProvider;
-import com.dynatrace.openkit.providers.DefaultSessionIDProvider;
 
 /**
  * Concrete builder that creates an {@code OpenKit} instance for AppMon
@@ -62,11 +62,16 @@ public class AppMonOpenKitBuilder extends AbstractOpenKitBuilder {
             OpenKitType.APPMON,
             applicationName,
             getDeviceID(),
-            new DefaultSessionIDProvider(),
+            getSessionIDProvider(),
             getTrustManager(),
             device,
             getApplicationVersion(),
             beaconCacheConfiguration,
-            getConnectorProvider());
+            connectorProvider,
+            getMaxStacktraceLength(),
+            new BeaconSendingConfiguration(getNumberOfSendWorkers(), getOpenSessionSendThreshold(), getMaxBeaconBandwidth(),
+                getShutdownTimeout(), getSessionPersistenceHook(), getSessionSendOrder(), getSendCycleMaxBytes(),
+                getSendCycleMaxTime(), getMaxParallelChunkUploads()),
+            getBeaconEndpoints());
     }
 }
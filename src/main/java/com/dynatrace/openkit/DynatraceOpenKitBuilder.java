@@ -19,11 +19,11 @@ package com.dynatrace.openkit;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.Device;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.OpenKitType;
 import com.dynatrace.openkit.providers.ConnectorProvider;
 import com.dynatrace.openkit.providers.DefaultConnectorProvider;
-import com.dynatrace.openkit.providers.DefaultSessionIDProvider;
 
 /**
  * Concrete builder that creates an {@code OpenKit} instance for Dynatrace Saas/Managed
@@ -74,11 +74,16 @@ public class DynatraceOpenKitBuilder extends AbstractOpenKitBuilder {
             OpenKitType.DYNATRACE,
             applicationName,
             getDeviceID(),
-            new DefaultSessionIDProvider(),
+            getSessionIDProvider(),
             getTrustManager(),
             device,
             getApplicationVersion(),
             beaconCacheConfiguration,
-            getConnectorProvider());
+            connectorProvider,
+            getMaxStacktraceLength(),
+            new BeaconSendingConfiguration(getNumberOfSendWorkers(), getOpenSessionSendThreshold(), getMaxBeaconBandwidth(),
+                getShutdownTimeout(), getSessionPersistenceHook(), getSessionSendOrder(), getSendCycleMaxBytes(),
+                getSendCycleMaxTime(), getMaxParallelChunkUploads()),
+            getBeaconEndpoints());
     }
 }
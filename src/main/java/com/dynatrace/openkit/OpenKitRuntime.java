@@ -0,0 +1,112 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit;
+
+import com.dynatrace.openkit.core.BeaconSenderPool;
+import com.dynatrace.openkit.core.caching.MemoryBudget;
+import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
+import com.dynatrace.openkit.providers.DefaultSessionIDProvider;
+import com.dynatrace.openkit.providers.SessionIDProvider;
+
+/**
+ * Runtime shared by several {@code OpenKit} instances in one process.
+ *
+ * <p>
+ * By default every {@code OpenKit} instance starts its own beacon sending thread and its own cache eviction thread.
+ * Instances built with {@link AbstractOpenKitBuilder#withRuntime(OpenKitRuntime)} start neither: a fixed number
+ * of threads sends the beacons of all instances, and the data not sent yet of all instances is kept within
+ * one global {@link MemoryBudget}. New data is dropped while the budget is exhausted.
+ * </p>
+ *
+ * <p>
+ * Shut down the instances using this runtime first, then the runtime itself via {@link #shutdown()}.
+ * </p>
+ */
+public class OpenKitRuntime {
+
+    /**
+     * The default number of threads sending beacons of all instances.
+     */
+    public static final int DEFAULT_NUMBER_OF_SENDER_THREADS = 4;
+
+    private final MemoryBudget memoryBudget;
+    private final BeaconSenderPool beaconSenderPool;
+    private final SessionIDProvider sessionIDProvider;
+
+    /**
+     * Create a runtime with the default number of sender threads and the default memory budget.
+     */
+    public OpenKitRuntime() {
+        this(DEFAULT_NUMBER_OF_SENDER_THREADS);
+    }
+
+    /**
+     * Create a runtime with a memory budget of the default upper beacon cache boundary.
+     *
+     * @param numberOfSenderThreads Number of threads sending beacons of all instances.
+     */
+    public OpenKitRuntime(int numberOfSenderThreads) {
+        this(numberOfSenderThreads, BeaconCacheConfiguration.DEFAULT_UPPER_MEMORY_BOUNDARY_IN_BYTES);
+    }
+
+    /**
+     * Create a runtime and start its threads.
+     *
+     * @param numberOfSenderThreads Number of threads sending beacons of all instances.
+     * @param memoryBudgetInBytes Number of bytes the data not sent yet of all instances may take,
+     *                            zero or less for an unlimited budget.
+     */
+    public OpenKitRuntime(int numberOfSenderThreads, long memoryBudgetInBytes) {
+        memoryBudget = new MemoryBudget(memoryBudgetInBytes);
+        beaconSenderPool = new BeaconSenderPool(numberOfSenderThreads);
+        // session numbers are unique across all instances, so that their sessions can be told apart
+        sessionIDProvider = new DefaultSessionIDProvider();
+    }
+
+    /**
+     * Get the number of {@code OpenKit} instances using this runtime, which were not shut down yet.
+     */
+    public int getNumberOfInstances() {
+        return beaconSenderPool.getNumberOfSenders();
+    }
+
+    /**
+     * Shut down this runtime.
+     *
+     * <p>
+     * Instances still using this runtime are shut down as well, their sessions are sent within
+     * their shutdown timeout. Afterwards no more instances can be built with this runtime.
+     * </p>
+     */
+    public void shutdown() {
+        beaconSenderPool.shutdown();
+    }
+
+    // ** internal getter **
+
+    MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    BeaconSenderPool getBeaconSenderPool() {
+        return beaconSenderPool;
+    }
+
+    SessionIDProvider getSessionIDProvider() {
+        return sessionIDProvider;
+    }
+}
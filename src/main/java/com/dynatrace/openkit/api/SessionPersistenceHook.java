@@ -0,0 +1,51 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.api;
+
+import java.util.List;
+
+/**
+ * Interface to take over session data, which could not be sent before OpenKit was shut down.
+ * <p>
+ * <p>
+ * When OpenKit shuts down, all sessions are sent until the shutdown timeout expires.
+ * Data of sessions which were not sent by then, or which failed to be sent, is passed to this hook
+ * instead of being dropped, e.g. to store it and send it with the next application start.
+ * </p>
+ */
+public interface SessionPersistenceHook {
+
+    /**
+     * Take over the data of a session, which was not sent.
+     * <p>
+     * <p>
+     * This method might be called concurrently from several threads and should return quickly,
+     * since shutdown waits for it.
+     * </p>
+     *
+     * <p>
+     * The data consists of one or more documents, each already serialized and gzip compressed.
+     * To send it later on, each document is posted as is, in the given order, as body of a beacon request
+     * with the given client IP address. The documents must not be modified.
+     * </p>
+     *
+     * @param clientIPAddress The client's IP address the documents are sent for.
+     * @param documents The remaining data of the session, as unmodifiable list of compressed documents.
+     * @param containsCrash {@code true} if the session reported a crash, {@code false} otherwise.
+     */
+    void persistSession(String clientIPAddress, List<byte[]> documents, boolean containsCrash);
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.api;
+
+/**
+ * Information about a finished session waiting to be sent, used for deciding which session is sent first.
+ * <p>
+ * <p>
+ * See {@link com.dynatrace.openkit.AbstractOpenKitBuilder#withSessionSendOrder}.
+ * </p>
+ */
+public interface SessionSendInfo {
+
+    /**
+     * Test if a crash was reported in the session.
+     *
+     * @return {@code true} if a crash was reported, {@code false} otherwise.
+     */
+    boolean hasCrash();
+
+    /**
+     * Test if an error was reported in the session.
+     *
+     * @return {@code true} if an error was reported, {@code false} otherwise.
+     */
+    boolean hasError();
+
+    /**
+     * Get the time when the session was started, in milliseconds since epoch.
+     * <p>
+     * <p>
+     * The data of the session is at most as old as this, so the session's data is the next one
+     * to exceed the maximum record age of the beacon cache, if this is the oldest one.
+     * </p>
+     *
+     * @return The session's start time in milliseconds.
+     */
+    long getStartTime();
+
+    /**
+     * Get the (estimated) number of bytes of the session's data, which is not sent yet.
+     *
+     * @return The number of bytes not sent yet.
+     */
+    long getDataSize();
+}
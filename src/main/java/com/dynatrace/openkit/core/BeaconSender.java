@@ -16,8 +16,11 @@
 
 package com.dynatrace.openkit.core;
 
+import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.communication.BeaconSendingContext;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
+import com.dynatrace.openkit.core.util.DefaultLogger;
 import com.dynatrace.openkit.protocol.HTTPConnector;
 import com.dynatrace.openkit.providers.ConnectorProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
@@ -34,12 +37,28 @@ import java.util.concurrent.TimeUnit;
 public class BeaconSender {
 
     private static final String THREAD_NAME = BeaconSender.class.getSimpleName();
-    static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * Time waited in addition to the shutdown timeout, for unsent sessions being passed to the persistence hook.
+     */
+    static final long PERSIST_TIMEOUT = TimeUnit.SECONDS.toMillis(2);
+
+    /**
+     * Time for sending all sessions on shutdown
+     */
+    private final long shutdownTimeout;
 
     /**
      * Thread used to send the beacons in the background
      */
     private Thread beaconSenderThread;
+    /**
+     * Pool of threads sending the beacons instead, or {@code null} if a dedicated thread is used
+     */
+    private final BeaconSenderPool beaconSenderPool;
+    /**
+     * Task executing the states with a thread of the {@link #beaconSenderPool}
+     */
+    private BeaconSenderPool.SenderTask senderTask;
     /**
      * Context in terms of the State Design Pattern
      */
@@ -57,7 +76,27 @@ public class BeaconSender {
      * @param timingProvider Used for some timing related things.
      */
     public BeaconSender(Configuration configuration, ConnectorProvider clientProvider, TimingProvider timingProvider) {
-        context = new BeaconSendingContext(configuration, clientProvider, timingProvider);
+        this(new DefaultLogger(false), configuration, clientProvider, timingProvider, null);
+    }
+
+    /**
+     * Create a new BeaconSender, sending the beacons with a thread of the given pool.
+     *
+     * @param logger         Logger for failures of the send workers.
+     * @param configuration  OpenKit configuration.
+     * @param clientProvider Used for retrieving an {@link HTTPConnector} instance.
+     * @param timingProvider Used for some timing related things.
+     * @param beaconSenderPool Pool of threads shared with other beacon senders, {@code null} for a dedicated thread.
+     */
+    public BeaconSender(Logger logger, Configuration configuration, ConnectorProvider clientProvider,
+                        TimingProvider timingProvider, BeaconSenderPool beaconSenderPool) {
+        this.beaconSenderPool = beaconSenderPool;
+        context = new BeaconSendingContext(logger, configuration, clientProvider, timingProvider);
+
+        BeaconSendingConfiguration beaconSendingConfiguration = configuration.getBeaconSendingConfiguration();
+        shutdownTimeout = beaconSendingConfiguration == null
+            ? BeaconSendingConfiguration.DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLISECONDS
+            : beaconSendingConfiguration.getShutdownTimeout();
     }
 
     /**
@@ -71,6 +110,12 @@ public class BeaconSender {
      */
     public synchronized void initialize() {
 
+        if (beaconSenderPool != null) {
+            // states are executed by the shared threads
+            senderTask = beaconSenderPool.register(context, shutdownTimeout + PERSIST_TIMEOUT);
+            return;
+        }
+
         // create and start the sending thread
         beaconSenderThread = new Thread(new Runnable() {
             @Override
@@ -118,16 +163,27 @@ public class BeaconSender {
     }
 
     /**
-     * Shutdown the BeaconSender and wait until it's shutdown (at most {@link BeaconSender#SHUTDOWN_TIMEOUT} milliseconds.
+     * Shutdown the BeaconSender and wait until it's shutdown.
+     * <p>
+     * <p>
+     * This waits at most the configured shutdown timeout plus {@link BeaconSender#PERSIST_TIMEOUT} milliseconds.
+     * </p>
      */
     public synchronized void shutdown() {
 
+        if (senderTask != null) {
+            senderTask.requestShutdown();
+            senderTask.awaitTermination(shutdownTimeout + PERSIST_TIMEOUT);
+            senderTask = null;
+            return;
+        }
+
         context.requestShutdown();
 
         if (beaconSenderThread != null) {
             beaconSenderThread.interrupt();
             try {
-                beaconSenderThread.join(SHUTDOWN_TIMEOUT);
+                beaconSenderThread.join(shutdownTimeout + PERSIST_TIMEOUT);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
@@ -161,4 +217,22 @@ public class BeaconSender {
     public void finishSession(SessionImpl session) {
         context.finishSession(session);
     }
+
+    /**
+     * Schedule an open Session to be sent with the next run, instead of waiting for the send interval.
+     *
+     * @param session Session to send.
+     */
+    public void scheduleOpenSessionSend(SessionImpl session) {
+        context.scheduleOpenSessionSend(session);
+    }
+
+    /**
+     * Remember an open Session which captured new data, so that it is sent with the next send interval.
+     *
+     * @param session Session with new data.
+     */
+    public void markOpenSessionWithNewData(SessionImpl session) {
+        context.markOpenSessionWithNewData(session);
+    }
 }
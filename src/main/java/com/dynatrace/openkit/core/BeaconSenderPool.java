@@ -0,0 +1,250 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core;
+
+import com.dynatrace.openkit.core.communication.BeaconSendingContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of threads executing the beacon sending states of several OpenKit instances.
+ *
+ * <p>
+ * Instead of a dedicated thread per {@link BeaconSender}, the states of all registered senders are executed
+ * one at a time by a fixed number of threads. States waiting for a long time release their thread
+ * (see {@link BeaconSendingContext#setResumeHandler(Runnable)}) and are scheduled again, once the time elapsed
+ * or there is work to do.
+ * </p>
+ */
+public class BeaconSenderPool {
+
+    private static final String THREAD_NAME_PREFIX = BeaconSender.class.getSimpleName() + "-";
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Set<SenderTask> senderTasks = new LinkedHashSet<SenderTask>();
+    // guarded by senderTasks
+    private boolean isShutdown = false;
+
+    /**
+     * Create a new pool and start its threads.
+     *
+     * @param numberOfThreads Number of threads executing beacon sending states.
+     */
+    public BeaconSenderPool(int numberOfThreads) {
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, numberOfThreads), new SenderThreadFactory());
+    }
+
+    /**
+     * Start executing the states of the given context.
+     *
+     * @param context The context of the beacon sender to execute.
+     * @param shutdownTimeout Time in milliseconds to wait for the states reaching the terminal state on shutdown.
+     *
+     * @return The task executing the states.
+     * @throws IllegalStateException If this pool was shut down already.
+     */
+    SenderTask register(BeaconSendingContext context, long shutdownTimeout) {
+        SenderTask senderTask = new SenderTask(context, shutdownTimeout);
+        synchronized (senderTasks) {
+            if (isShutdown) {
+                throw new IllegalStateException("Beacon sender pool was shut down");
+            }
+            senderTasks.add(senderTask);
+        }
+        senderTask.start();
+        return senderTask;
+    }
+
+    /**
+     * Get the number of beacon senders, which did not reach the terminal state yet.
+     */
+    public int getNumberOfSenders() {
+        synchronized (senderTasks) {
+            return senderTasks.size();
+        }
+    }
+
+    /**
+     * Shut down all registered beacon senders and stop the threads.
+     *
+     * <p>
+     * All senders are shut down at once, waiting at most for the longest shutdown timeout.
+     * </p>
+     */
+    public void shutdown() {
+        List<SenderTask> tasksToShutdown;
+        synchronized (senderTasks) {
+            // senders must still be scheduled while flushing their sessions, but no new ones are accepted
+            isShutdown = true;
+            tasksToShutdown = new ArrayList<SenderTask>(senderTasks);
+        }
+
+        for (SenderTask senderTask : tasksToShutdown) {
+            senderTask.requestShutdown();
+        }
+        long startTime = System.currentTimeMillis();
+        for (SenderTask senderTask : tasksToShutdown) {
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            senderTask.awaitTermination(Math.max(0, senderTask.shutdownTimeout - elapsedTime));
+        }
+
+        executor.shutdownNow();
+    }
+
+    private void unregister(SenderTask senderTask) {
+        synchronized (senderTasks) {
+            senderTasks.remove(senderTask);
+        }
+    }
+
+    /**
+     * Task executing the states of a single beacon sender, one state execution at a time.
+     */
+    final class SenderTask implements Runnable {
+
+        private final BeaconSendingContext context;
+        private final long shutdownTimeout;
+        private final CountDownLatch terminated = new CountDownLatch(1);
+
+        // guarded by this
+        private Future<?> scheduledExecution;
+        private Thread executingThread;
+        private boolean isResumeRequested;
+
+        private SenderTask(BeaconSendingContext context, long shutdownTimeout) {
+            this.context = context;
+            this.shutdownTimeout = shutdownTimeout;
+
+            context.setResumeHandler(new Runnable() {
+                @Override
+                public void run() {
+                    resume();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                scheduledExecution = null;
+                executingThread = Thread.currentThread();
+                isResumeRequested = false;
+            }
+
+            boolean isTerminated = true;
+            try {
+                context.executeCurrentState();
+                isTerminated = context.isInTerminalState();
+            } finally {
+                synchronized (this) {
+                    executingThread = null;
+                    long suspendTime = context.takeSuspendTime();
+                    if (!isTerminated) {
+                        isTerminated = !schedule(isResumeRequested ? 0 : suspendTime);
+                    }
+                }
+                // an interrupt requesting shutdown only concerns this sender, not the next task of the thread
+                Thread.interrupted();
+
+                if (isTerminated) {
+                    unregister(this);
+                    terminated.countDown();
+                }
+            }
+        }
+
+        private void start() {
+            synchronized (this) {
+                if (!schedule(0)) {
+                    unregister(this);
+                    terminated.countDown();
+                }
+            }
+        }
+
+        /**
+         * Execute the current state again right away, unless it's being executed already.
+         */
+        private synchronized void resume() {
+            if (executingThread != null) {
+                // the state is being executed - execute it again right after that
+                isResumeRequested = true;
+            } else if (scheduledExecution != null && scheduledExecution.cancel(false)) {
+                schedule(0);
+            }
+        }
+
+        // must be called holding the lock of this task
+        private boolean schedule(long delayMillis) {
+            try {
+                scheduledExecution = executor.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (RejectedExecutionException e) {
+                // the pool is shut down - the context is abandoned
+                scheduledExecution = null;
+                return false;
+            }
+        }
+
+        /**
+         * Request the shutdown of the beacon sender, interrupting the current state execution.
+         */
+        void requestShutdown() {
+            context.requestShutdown();
+            synchronized (this) {
+                if (executingThread != null) {
+                    executingThread.interrupt();
+                }
+            }
+        }
+
+        /**
+         * Wait until the beacon sender reached the terminal state, or the given timeout elapsed.
+         *
+         * @param timeoutMillis The maximum number of milliseconds to wait.
+         * @return {@code true} if the terminal state was reached, {@code false} otherwise.
+         */
+        boolean awaitTermination(long timeoutMillis) {
+            try {
+                return terminated.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private static final class SenderThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+        }
+    }
+}
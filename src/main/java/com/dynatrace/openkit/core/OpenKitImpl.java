@@ -21,6 +21,7 @@ import com.dynatrace.openkit.api.OpenKit;
 import com.dynatrace.openkit.api.Session;
 import com.dynatrace.openkit.core.caching.BeaconCacheEvictor;
 import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.caching.MemoryBudget;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.protocol.Beacon;
 import com.dynatrace.openkit.protocol.Connector;
@@ -39,8 +40,10 @@ public class OpenKitImpl implements OpenKit {
 
     // Beacon cache
     private final BeaconCacheImpl beaconCache;
-    // Cache eviction thread
+    // Cache eviction thread, or null if the data is kept within a memory budget shared with other instances
     private final BeaconCacheEvictor beaconCacheEvictor;
+    // Budget for the unsent data of all sessions, or null if not shared with other instances
+    private final MemoryBudget memoryBudget;
 
     // BeaconSender reference
     private final BeaconSender beaconSender;
@@ -59,18 +62,55 @@ public class OpenKitImpl implements OpenKit {
 	// *** constructors ***
 
     public OpenKitImpl(Logger logger, Configuration config) {
-        this(logger, config, new DefaultConnectorProvider(logger), new DefaultTimingProvider(), new DefaultThreadIDProvider());
+        this(logger, config, getConnectorProvider(logger, config), new DefaultTimingProvider(), new DefaultThreadIDProvider());
+    }
+
+    /**
+     * Create an instance sharing a memory budget and the beacon sending threads with other instances.
+     *
+     * <p>
+     * The unsent data of all sessions counts against the shared budget, new data is dropped while it is exhausted.
+     * The beacon cache configuration of this instance is not used and no cache eviction thread is started.
+     * </p>
+     *
+     * @param logger Logger to use.
+     * @param config OpenKit configuration.
+     * @param sharedMemoryBudget Memory budget shared by all instances.
+     * @param beaconSenderPool Pool of threads sending the beacons of all instances.
+     */
+    public OpenKitImpl(Logger logger, Configuration config, MemoryBudget sharedMemoryBudget, BeaconSenderPool beaconSenderPool) {
+        this(logger, config, getConnectorProvider(logger, config), new DefaultTimingProvider(), new DefaultThreadIDProvider(),
+            sharedMemoryBudget, beaconSenderPool);
     }
 
     protected OpenKitImpl(Logger logger, Configuration config, ConnectorProvider connectorProvider, TimingProvider timingProvider, ThreadIDProvider threadIDProvider) {
+        this(logger, config, connectorProvider, timingProvider, threadIDProvider, null, null);
+    }
+
+    private OpenKitImpl(Logger logger, Configuration config, ConnectorProvider connectorProvider, TimingProvider timingProvider,
+                        ThreadIDProvider threadIDProvider, MemoryBudget sharedMemoryBudget, BeaconSenderPool beaconSenderPool) {
         configuration = config;
         this.logger = logger;
         this.threadIDProvider = threadIDProvider;
         this.timingProvider = timingProvider;
         this.connectorProvider = connectorProvider;
         beaconCache = new BeaconCacheImpl();
-        beaconSender = new BeaconSender(configuration, connectorProvider, timingProvider);
-        beaconCacheEvictor = new BeaconCacheEvictor(logger, beaconCache, configuration.getBeaconCacheConfiguration(), timingProvider);
+        if (sharedMemoryBudget == null) {
+            beaconCacheEvictor = new BeaconCacheEvictor(logger, beaconCache, configuration.getBeaconCacheConfiguration(), timingProvider);
+        } else {
+            // the sessions keep their data within the shared budget themselves
+            beaconCacheEvictor = null;
+        }
+        memoryBudget = sharedMemoryBudget;
+        beaconSender = new BeaconSender(logger, configuration, connectorProvider, timingProvider, beaconSenderPool);
+    }
+
+    // sessions send via the configuration's connector provider - share it, so that both use the same connectors
+    private static ConnectorProvider getConnectorProvider(Logger logger, Configuration config) {
+        if (config.getConnectorProvider() != null) {
+            return config.getConnectorProvider();
+        }
+        return new DefaultConnectorProvider(logger);
     }
 
     /**
@@ -82,7 +122,9 @@ public class OpenKitImpl implements OpenKit {
      * </p>
      */
     public void initialize() {
-        beaconCacheEvictor.start();
+        if (beaconCacheEvictor != null) {
+            beaconCacheEvictor.start();
+        }
         beaconSender.initialize();
     }
 
@@ -118,16 +160,21 @@ public class OpenKitImpl implements OpenKit {
             return NULL_SESSION;
         }
         // create payload generator for session
-		IPayloadGenerator payloadGenerator = new PayloadGenerator(logger, beaconCache, configuration, clientIPAddress, threadIDProvider, timingProvider);
+		IPayloadGenerator payloadGenerator = new PayloadGenerator(logger, beaconCache, memoryBudget, configuration, clientIPAddress, threadIDProvider, timingProvider);
 
         // create session
-        return new SessionImpl(logger, beaconSender, payloadGenerator);
+        SessionImpl session = new SessionImpl(logger, beaconSender, payloadGenerator);
+        // register the session only once it is fully constructed
+        payloadGenerator.startSession(session);
+        return session;
     }
 
     @Override
     public void shutdown() {
         isShutdown.set(true);
-        beaconCacheEvictor.stop();
+        if (beaconCacheEvictor != null) {
+            beaconCacheEvictor.stop();
+        }
         beaconSender.shutdown();
     }
 }
@@ -20,21 +20,31 @@ import com.dynatrace.openkit.api.Action;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.api.RootAction;
 import com.dynatrace.openkit.api.Session;
+import com.dynatrace.openkit.api.SessionSendInfo;
 import com.dynatrace.openkit.protocol.IPayloadGenerator;
+import com.dynatrace.openkit.protocol.SealedBeacon;
+import com.dynatrace.openkit.protocol.SendBudget;
 import com.dynatrace.openkit.protocol.StatusResponse;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Actual implementation of the {@link Session} interface.
  */
-public class SessionImpl implements Session {
+public class SessionImpl implements Session, SessionSendInfo {
 
     private static final RootAction NULL_ROOT_ACTION = new NullRootAction();
 
     // end time of this Session
     private final AtomicLong endTime = new AtomicLong(-1);
 
+    // whether a crash was reported in this Session, which makes it more important to send
+    private final AtomicBoolean crashReported = new AtomicBoolean(false);
+
+    // whether this Session captured data since it was taken for sending the last time
+    private final AtomicBoolean newDataMarked = new AtomicBoolean(false);
+
     // BeaconSender and Beacon reference
     private final BeaconSender beaconSender;
     private final IPayloadGenerator payloadGenerator;
@@ -50,7 +60,6 @@ public class SessionImpl implements Session {
         this.logger = logger;
         this.beaconSender = beaconSender;
         this.payloadGenerator = payloadGenerator;
-
         beaconSender.startSession(this);
     }
 
@@ -93,6 +102,7 @@ public class SessionImpl implements Session {
         }
         if (!isSessionEnded()) {
             payloadGenerator.reportCrash(errorName, reason, stacktrace);
+            crashReported.set(true);
         }
     }
 
@@ -116,6 +126,28 @@ public class SessionImpl implements Session {
         beaconSender.finishSession(this);
     }
 
+    // *** SessionSendInfo interface methods ***
+
+    @Override
+    public boolean hasCrash() {
+        return crashReported.get();
+    }
+
+    @Override
+    public boolean hasError() {
+        return payloadGenerator.hasError();
+    }
+
+    @Override
+    public long getStartTime() {
+        return payloadGenerator.getSessionStartTime();
+    }
+
+    @Override
+    public long getDataSize() {
+        return payloadGenerator.getDataSize();
+    }
+
     // *** public methods ***
 
     // sends the current Beacon state
@@ -123,6 +155,61 @@ public class SessionImpl implements Session {
         return payloadGenerator.send();
     }
 
+    /**
+     * Send the next request worth of the current Beacon state, taking its size from the given budget.
+     *
+     * @param budget The budget of the current send cycle.
+     * @return The status response, or {@code null} if nothing was sent or an error occurred.
+     */
+    public StatusResponse sendBeacon(SendBudget budget) {
+        return payloadGenerator.send(budget);
+    }
+
+    /**
+     * Schedule this session to be sent right away, instead of waiting for the send interval.
+     *
+     * <p>
+     * This is called, when the session collected a lot of data.
+     * </p>
+     */
+    public void scheduleSend() {
+        beaconSender.scheduleOpenSessionSend(this);
+    }
+
+    /**
+     * Mark this session as having new data, which is sent with the next send interval.
+     *
+     * <p>
+     * This is called whenever data is captured, so only the first call after the session was taken for sending
+     * hands the session over to the {@link BeaconSender}, while all others are a plain read.
+     * </p>
+     */
+    public void markNewData() {
+        if (!newDataMarked.get() && newDataMarked.compareAndSet(false, true)) {
+            beaconSender.markOpenSessionWithNewData(this);
+        }
+    }
+
+    /**
+     * Clear the new data mark, when this session is taken for sending.
+     *
+     * <p>
+     * Data captured afterwards marks the session again.
+     * </p>
+     */
+    public void clearNewDataMark() {
+        newDataMarked.set(false);
+    }
+
+    /**
+     * Remove the data which was not sent so far, e.g. to persist it on shutdown.
+     *
+     * @return The unsent data, or {@code null} if there is none.
+     */
+    public SealedBeacon takeUnsentData() {
+        return payloadGenerator.takeUnsentData();
+    }
+
     // *** getter methods ***
 
     public long getEndTime() {
@@ -137,6 +224,7 @@ public class SessionImpl implements Session {
      * </p>
      */
     public void clearCapturedData() {
+        newDataMarked.set(false);
         payloadGenerator.clearData();
     }
 
@@ -53,6 +53,42 @@ public interface BeaconCache {
      */
     void addActionData(Integer beaconID, long timestamp, String data);
 
+    /**
+     * Add event data for a given {@code beaconID} to this cache, which is only serialized when it is sent.
+     *
+     * <p>
+     * All registered observers are notified, after the event data has been added.
+     * </p>
+     *
+     * @param beaconID The beacon's ID (aka Session ID) for which to add event data.
+     * @param timestamp The data's timestamp.
+     * @param source Source storing the event data.
+     * @param row The event's row in {@code source}.
+     */
+    void addEventData(Integer beaconID, long timestamp, DeferredRecordSource source, int row);
+
+    /**
+     * Add action data for a given {@code beaconID} to this cache, which is only serialized when it is sent.
+     *
+     * @param beaconID The beacon's ID (aka Session ID) for which to add action data.
+     * @param timestamp The data's timestamp.
+     * @param source Source storing the action data.
+     * @param row The action's row in {@code source}.
+     */
+    void addActionData(Integer beaconID, long timestamp, DeferredRecordSource source, int row);
+
+    /**
+     * Add the size of data which is shared by several records, and therefore not part of their sizes.
+     *
+     * <p>
+     * E.g. a stacktrace referenced by several crash records is accounted for once, until the last of them is released.
+     * All registered observers are notified, if the size increased.
+     * </p>
+     *
+     * @param numBytes The number of bytes to add, negative if shared data was freed.
+     */
+    void addSharedDataSize(long numBytes);
+
     /**
      * Delete a cache entry for a given {@code beaconID}.
      *
@@ -77,6 +113,28 @@ public interface BeaconCache {
      */
     String getNextBeaconChunk(Integer beaconID, String chunkPrefix, int maxSize, char delimiter);
 
+    /**
+     * Get the chunk following the chunks retrieved so far, which were not removed or reset yet.
+     *
+     * <p>
+     * This allows preparing the next chunk, while the previous one is still being sent.
+     * Once the previous chunk was sent, {@link #removeOldestChunkedData(Integer)} removes only its data.
+     * </p>
+     *
+     * <p>
+     * Note: This method must not be invoked concurrently with the other chunk related methods for the same beacon.
+     * </p>
+     *
+     * @param beaconID The beacon id for which to get the following chunk.
+     * @param chunkPrefix Prefix to append to the beginning of the chunk.
+     * @param maxSize Maximum chunk size. As soon as chunk's size is greater than or equal to maxSize result is returned.
+     * @param delimiter Delimiter between consecutive chunks.
+     *
+     * @return {@code null} if given {@code beaconID} does not exist, an empty string, if there is no more data to send
+     * or the following chunk to send.
+     */
+    String getFollowingBeaconChunk(Integer beaconID, String chunkPrefix, int maxSize, char delimiter);
+
     /**
      * Remove all data that was previously included in chunks.
      *
@@ -94,6 +152,40 @@ public interface BeaconCache {
      */
     void removeChunkedData(Integer beaconID);
 
+    /**
+     * Remove the data of the oldest chunk, which was retrieved but not yet removed or reset.
+     *
+     * <p>
+     * Data of chunks retrieved via {@link #getFollowingBeaconChunk(Integer, String, int, char)} stays marked,
+     * until it is removed as well or reset with {@link #resetChunkedData(Integer)}.
+     * </p>
+     *
+     * <p>
+     * Note: This method must only be invoked from the beacon sending thread.
+     * </p>
+     *
+     * @param beaconID The beacon id for which to remove the oldest chunked data.
+     */
+    void removeOldestChunkedData(Integer beaconID);
+
+    /**
+     * Remove the data of a chunk, which was retrieved but not yet removed or reset.
+     *
+     * <p>
+     * Chunks are indexed in the order they were retrieved, skipping chunks that were already removed.
+     * This allows removing chunks which were sent successfully, while others failed and are reset
+     * with {@link #resetChunkedData(Integer)}.
+     * </p>
+     *
+     * <p>
+     * Note: This method must only be invoked from the beacon sending thread.
+     * </p>
+     *
+     * @param beaconID The beacon id for which to remove the chunked data.
+     * @param chunkIndex The index of the chunk to remove.
+     */
+    void removeChunkedDataAt(Integer beaconID, int chunkIndex);
+
     /**
      * Reset all data that was previously included in chunks.
      *
@@ -144,6 +236,18 @@ public interface BeaconCache {
      */
     long getNumBytesInCache();
 
+    /**
+     * Get number of bytes currently stored in cache for the given beacon.
+     *
+     * <p>
+     * Data which is currently being sent is not counted.
+     * </p>
+     *
+     * @param beaconID The beacon's identifier.
+     * @return Number of bytes stored for the beacon.
+     */
+    long getNumBytesInCache(Integer beaconID);
+
     /**
      * Tests if an cached entry for {@code beaconID} is empty.
      *
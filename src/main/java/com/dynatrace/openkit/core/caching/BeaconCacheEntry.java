@@ -56,6 +56,10 @@ class BeaconCacheEntry {
      * List storing all action data being sent.
      */
     private LinkedList<BeaconCacheRecord> actionDataBeingSent;
+    /**
+     * Number of records in each chunk, which was retrieved but not yet removed or reset, oldest first.
+     */
+    private final LinkedList<Integer> chunkSizes = new LinkedList<Integer>();
     /**
      * Total number of bytes consumed by this entry.
      */
@@ -144,7 +148,35 @@ class BeaconCacheEntry {
             actionDataBeingSent = null;
             return "";
         }
-        return getNextChunk(chunkPrefix, maxSize, delimiter);
+
+        // start all over again
+        chunkSizes.clear();
+        return getNextChunk(chunkPrefix, maxSize, delimiter, false);
+    }
+
+    /**
+     * Get the data chunk following the chunks retrieved so far, which were not removed or reset yet.
+     *
+     * <p>
+     * Unlike {@link #getChunk(String, int, char)} records already marked for sending are skipped,
+     * so that the next chunk can be prepared while the previous one is still being sent.
+     * </p>
+     *
+     * @param chunkPrefix The prefix to add to each chunk.
+     * @param maxSize     The maximum size in characters for one chunk.
+     * @param delimiter   The delimiter between data chunks.
+     *
+     * @return The string to send or an empty string if there is no more data to send.
+     */
+    String getFollowingChunk(String chunkPrefix, int maxSize, char delimiter) {
+
+        if (!hasDataToSend()) {
+            // nothing to send - reset to null, so next time lists get copied again
+            eventDataBeingSent = null;
+            actionDataBeingSent = null;
+            return "";
+        }
+        return getNextChunk(chunkPrefix, maxSize, delimiter, true);
     }
 
     /**
@@ -164,10 +196,11 @@ class BeaconCacheEntry {
      * @param chunkPrefix The prefix to add to each chunk.
      * @param maxSize     The maximum size in characters for one chunk.
      * @param delimiter   The delimiter between data chunks.
+     * @param skipMarkedRecords {@code true} to skip records already marked for sending, {@code false} otherwise.
      *
      * @return The string to send or an empty string if there is no more data to send.
      */
-    private String getNextChunk(String chunkPrefix, int maxSize, char delimiter) {
+    private String getNextChunk(String chunkPrefix, int maxSize, char delimiter, boolean skipMarkedRecords) {
 
         // create the string builder
         StringBuilder beaconBuilder = new StringBuilder(maxSize);
@@ -177,28 +210,44 @@ class BeaconCacheEntry {
 
         // append data from both lists
         // note the order is currently important -> event data goes first, then action data
-        chunkifyDataList(beaconBuilder, eventDataBeingSent, maxSize, delimiter);
-        chunkifyDataList(beaconBuilder, actionDataBeingSent, maxSize, delimiter);
+        int numRecords = chunkifyDataList(beaconBuilder, eventDataBeingSent, maxSize, delimiter, skipMarkedRecords);
+        numRecords += chunkifyDataList(beaconBuilder, actionDataBeingSent, maxSize, delimiter, skipMarkedRecords);
+
+        if (numRecords == 0 && skipMarkedRecords) {
+            // all data is part of previous chunks already
+            return "";
+        }
+        chunkSizes.add(numRecords);
 
         return beaconBuilder.toString();
     }
 
-    private static void chunkifyDataList(StringBuilder chunkBuilder, LinkedList<BeaconCacheRecord> dataBeingSent, int maxSize, char delimiter) {
+    private static int chunkifyDataList(StringBuilder chunkBuilder, LinkedList<BeaconCacheRecord> dataBeingSent, int maxSize,
+                                        char delimiter, boolean skipMarkedRecords) {
 
+        int numRecords = 0;
         Iterator<BeaconCacheRecord> iterator = dataBeingSent.iterator();
         while (iterator.hasNext() && chunkBuilder.length() <= maxSize) {
 
-            // mark the record for sending
             BeaconCacheRecord record = iterator.next();
+            if (skipMarkedRecords && record.isMarkedForSending()) {
+                // part of a previous chunk
+                continue;
+            }
+
+            // mark the record for sending
             record.markForSending();
+            numRecords++;
 
             // append delimiter & data
             chunkBuilder.append(delimiter).append(record.getData());
         }
+
+        return numRecords;
     }
 
     /**
-     * Remove data that was previously marked for sending when {@link #getNextChunk(String, int, char)} was called.
+     * Remove data that was previously marked for sending when {@link #getChunk(String, int, char)} was called.
      */
     void removeDataMarkedForSending() {
 
@@ -207,17 +256,153 @@ class BeaconCacheEntry {
             return;
         }
 
+        chunkSizes.clear();
+
         Iterator<BeaconCacheRecord> iterator = eventDataBeingSent.iterator();
-        while (iterator.hasNext() && iterator.next().isMarkedForSending()) {
-            iterator.remove();
-        }
+        boolean allEventsRemoved = removeMarkedRecords(iterator);
 
-        if (!iterator.hasNext()) {
+        if (allEventsRemoved) {
             // only check action data, if all event data has been traversed, otherwise it's just waste of cpu time
+            removeMarkedRecords(actionDataBeingSent.iterator());
+        }
+    }
+
+    /**
+     * Remove the data of the oldest chunk, which was retrieved but not yet removed or reset.
+     *
+     * <p>
+     * Data of the following chunks stays marked for sending.
+     * </p>
+     */
+    void removeOldestChunkMarkedForSending() {
+
+        removeChunkMarkedForSending(0);
+    }
+
+    /**
+     * Remove the data of a chunk, which was retrieved but not yet removed or reset.
+     *
+     * <p>
+     * Chunks are indexed in the order they were retrieved, skipping chunks that were already removed.
+     * Data of all other chunks stays marked for sending.
+     * </p>
+     *
+     * @param chunkIndex The index of the chunk to remove.
+     */
+    void removeChunkMarkedForSending(int chunkIndex) {
+
+        if (!hasDataToSend() || chunkIndex < 0 || chunkIndex >= chunkSizes.size()) {
+            // data has not been copied yet - avoid NPE
+            return;
+        }
+
+        int numPrecedingRecords = 0;
+        for (int i = 0; i < chunkIndex; i++) {
+            numPrecedingRecords += chunkSizes.get(i);
+        }
+        int numRecords = chunkSizes.remove(chunkIndex);
+
+        // records are marked in the order of the chunks, event data first
+        Iterator<BeaconCacheRecord> iterator = eventDataBeingSent.iterator();
+        int numRecordsToSkip = skipMarkedRecords(iterator, numPrecedingRecords);
+        if (numRecordsToSkip == 0) {
+            numRecords = removeMarkedRecords(iterator, numRecords);
+        }
+        if (numRecords > 0) {
+            // a chunk only contains action data, if all event data is part of this or a preceding chunk
             iterator = actionDataBeingSent.iterator();
-            while (iterator.hasNext() && iterator.next().isMarkedForSending()) {
-                iterator.remove();
+            if (skipMarkedRecords(iterator, numRecordsToSkip) == 0) {
+                removeMarkedRecords(iterator, numRecords);
+            }
+        }
+    }
+
+    /**
+     * Skip up to the given number of leading records which are marked for sending.
+     *
+     * @param iterator Iterator over the records being sent.
+     * @param numRecords The maximum number of records to skip.
+     *
+     * @return The number of records which were not skipped.
+     */
+    private static int skipMarkedRecords(Iterator<BeaconCacheRecord> iterator, int numRecords) {
+
+        while (numRecords > 0 && iterator.hasNext()) {
+            if (!iterator.next().isMarkedForSending()) {
+                break;
+            }
+            numRecords--;
+        }
+
+        return numRecords;
+    }
+
+    /**
+     * Remove and discard up to the given number of leading records which are marked for sending.
+     *
+     * @param iterator Iterator over the records being sent.
+     * @param numRecords The maximum number of records to remove.
+     *
+     * @return The number of records which were not removed.
+     */
+    private static int removeMarkedRecords(Iterator<BeaconCacheRecord> iterator, int numRecords) {
+
+        while (numRecords > 0 && iterator.hasNext()) {
+            BeaconCacheRecord record = iterator.next();
+            if (!record.isMarkedForSending()) {
+                break;
             }
+            iterator.remove();
+            record.discard();
+            numRecords--;
+        }
+
+        return numRecords;
+    }
+
+    /**
+     * Remove and discard leading records which are marked for sending.
+     *
+     * @param iterator Iterator over the records being sent.
+     *
+     * @return {@code true} if all records were removed, {@code false} otherwise.
+     */
+    private static boolean removeMarkedRecords(Iterator<BeaconCacheRecord> iterator) {
+
+        while (iterator.hasNext()) {
+            BeaconCacheRecord record = iterator.next();
+            if (!record.isMarkedForSending()) {
+                return false;
+            }
+            iterator.remove();
+            record.discard();
+        }
+
+        return true;
+    }
+
+    /**
+     * Discard all records, including those being sent.
+     *
+     * <p>
+     * This method is called when the entry is deleted from the cache.
+     * </p>
+     */
+    void discardAllRecords() {
+
+        discardRecords(eventData);
+        discardRecords(actionData);
+        if (eventDataBeingSent != null) {
+            discardRecords(eventDataBeingSent);
+        }
+        if (actionDataBeingSent != null) {
+            discardRecords(actionDataBeingSent);
+        }
+    }
+
+    private static void discardRecords(List<BeaconCacheRecord> records) {
+        for (BeaconCacheRecord record : records) {
+            record.discard();
         }
     }
 
@@ -231,6 +416,8 @@ class BeaconCacheEntry {
             return;
         }
 
+        chunkSizes.clear();
+
         // reset the "sending marks" and in the same traversal count the bytes which are added back
         long numBytes = 0;
         for (BeaconCacheRecord record : eventDataBeingSent) {
@@ -308,6 +495,7 @@ class BeaconCacheEntry {
             BeaconCacheRecord record = iterator.next();
             if (record.getTimestamp() < minTimestamp) {
                 iterator.remove();
+                record.discard();
                 numRecordsRemoved++;
             }
         }
@@ -341,18 +529,18 @@ class BeaconCacheEntry {
 
             if (currentEvent == null) {
                 // actions is not null -> remove action
-                currentAction = removeAndAdvanceIterator(actionsIterator);
+                currentAction = removeAndAdvanceIterator(actionsIterator, currentAction);
             } else if (currentAction == null) {
                 // events is not null -> remove event
-                currentEvent = removeAndAdvanceIterator(eventsIterator);
+                currentEvent = removeAndAdvanceIterator(eventsIterator, currentEvent);
             } else {
                 // both are not null -> compare by timestamp and take the older one
                 if (currentAction.getTimestamp() < currentEvent.getTimestamp()) {
                     // first action is older than first event
-                    currentAction = removeAndAdvanceIterator(actionsIterator);
+                    currentAction = removeAndAdvanceIterator(actionsIterator, currentAction);
                 } else {
                     // first event is older than first action
-                    currentEvent = removeAndAdvanceIterator(eventsIterator);
+                    currentEvent = removeAndAdvanceIterator(eventsIterator, currentEvent);
                 }
             }
 
@@ -362,8 +550,10 @@ class BeaconCacheEntry {
         return numRecordsRemoved;
     }
 
-    private static <E> E removeAndAdvanceIterator(Iterator<E> iterator) {
+    private static BeaconCacheRecord removeAndAdvanceIterator(Iterator<BeaconCacheRecord> iterator,
+                                                              BeaconCacheRecord current) {
         iterator.remove();
+        current.discard();
         return iterator.hasNext() ? iterator.next() : null;
     }
 
@@ -53,11 +53,20 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
     @Override
     public void addEventData(Integer beaconID, long timestamp, String data) {
 
+        addEventData(beaconID, new BeaconCacheRecord(timestamp, data));
+    }
+
+    @Override
+    public void addEventData(Integer beaconID, long timestamp, DeferredRecordSource source, int row) {
+
+        addEventData(beaconID, new BeaconCacheRecord(timestamp, source, row));
+    }
+
+    private void addEventData(Integer beaconID, BeaconCacheRecord record) {
+
         // get a reference to the cache entry
         BeaconCacheEntry entry = getCachedEntryOrInsert(beaconID);
 
-        BeaconCacheRecord record = new BeaconCacheRecord(timestamp, data);
-
         try {
             // lock and add the data
             entry.lock();
@@ -76,10 +85,18 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
     @Override
     public void addActionData(Integer beaconID, long timestamp, String data) {
 
-        BeaconCacheEntry entry = getCachedEntryOrInsert(beaconID);
+        addActionData(beaconID, new BeaconCacheRecord(timestamp, data));
+    }
 
-        // add event data for that beacon
-        BeaconCacheRecord record = new BeaconCacheRecord(timestamp, data);
+    @Override
+    public void addActionData(Integer beaconID, long timestamp, DeferredRecordSource source, int row) {
+
+        addActionData(beaconID, new BeaconCacheRecord(timestamp, source, row));
+    }
+
+    private void addActionData(Integer beaconID, BeaconCacheRecord record) {
+
+        BeaconCacheEntry entry = getCachedEntryOrInsert(beaconID);
 
         try {
             // lock and add the data
@@ -96,6 +113,17 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         onDataAdded();
     }
 
+    @Override
+    public void addSharedDataSize(long numBytes) {
+
+        cacheSizeInBytes.addAndGet(numBytes);
+
+        if (numBytes > 0) {
+            // notify observers
+            onDataAdded();
+        }
+    }
+
     @Override
     public void deleteCacheEntry(Integer beaconID) {
 
@@ -109,7 +137,13 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         }
 
         if (entry != null) {
-            cacheSizeInBytes.addAndGet(-1L * entry.getTotalNumberOfBytes());
+            try {
+                entry.lock();
+                cacheSizeInBytes.addAndGet(-1L * entry.getTotalNumberOfBytes());
+                entry.discardAllRecords();
+            } finally {
+                entry.unlock();
+            }
         }
     }
 
@@ -123,6 +157,29 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
             return null;
         }
 
+        prepareDataForSending(entry);
+
+        // data for chunking is available
+        return entry.getChunk(chunkPrefix, maxSize, delimiter);
+    }
+
+    @Override
+    public String getFollowingBeaconChunk(Integer beaconID, String chunkPrefix, int maxSize, char delimiter) {
+
+        BeaconCacheEntry entry = getCachedEntry(beaconID);
+        if (entry == null) {
+            // a cache entry for the given beaconID does not exist
+            return null;
+        }
+
+        prepareDataForSending(entry);
+
+        // data for chunking is available
+        return entry.getFollowingChunk(chunkPrefix, maxSize, delimiter);
+    }
+
+    private void prepareDataForSending(BeaconCacheEntry entry) {
+
         if (entry.needsDataCopyBeforeChunking()) {
             // both entries are null, prepare data for sending
             long numBytes;
@@ -137,9 +194,6 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
             // assumption: sending will work fine, and everything we copied will be removed quite soon
             cacheSizeInBytes.addAndGet(-1L * numBytes);
         }
-
-        // data for chunking is available
-        return entry.getChunk(chunkPrefix, maxSize, delimiter);
     }
 
     @Override
@@ -154,6 +208,30 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         entry.removeDataMarkedForSending();
     }
 
+    @Override
+    public void removeOldestChunkedData(Integer beaconID) {
+
+        BeaconCacheEntry entry = getCachedEntry(beaconID);
+        if (entry == null) {
+            // a cache entry for the given beaconID does not exist
+            return;
+        }
+
+        entry.removeOldestChunkMarkedForSending();
+    }
+
+    @Override
+    public void removeChunkedDataAt(Integer beaconID, int chunkIndex) {
+
+        BeaconCacheEntry entry = getCachedEntry(beaconID);
+        if (entry == null) {
+            // a cache entry for the given beaconID does not exist
+            return;
+        }
+
+        entry.removeChunkMarkedForSending(chunkIndex);
+    }
+
 
     @Override
     public void resetChunkedData(Integer beaconID) {
@@ -392,6 +470,23 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         return cacheSizeInBytes.get();
     }
 
+    @Override
+    public long getNumBytesInCache(Integer beaconID) {
+
+        BeaconCacheEntry entry = getCachedEntry(beaconID);
+        if (entry == null) {
+            // already removed
+            return 0;
+        }
+
+        try {
+            entry.lock();
+            return entry.getTotalNumberOfBytes();
+        } finally {
+            entry.unlock();
+        }
+    }
+
     /**
      * Call this method when something was added (size of cache increased).
      */
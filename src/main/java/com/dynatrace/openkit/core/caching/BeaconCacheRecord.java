@@ -25,7 +25,7 @@ import java.util.Arrays;
  * A record is described by
  * <ol>
  * <li>The timestamp when it was created/ended</li>
- * <li>Serialized data</li>
+ * <li>Serialized data, or a row of a {@link DeferredRecordSource} which is serialized on demand</li>
  * </ol>
  * </p>
  */
@@ -35,7 +35,11 @@ class BeaconCacheRecord {
 
     private final long timestamp;
     private final String data;
+    private final DeferredRecordSource source;
+    private final int row;
+    private final long dataSizeInBytes;
     private boolean markedForSending = false;
+    private boolean discarded = false;
 
     /**
      * Create a new {@link BeaconCacheRecord}
@@ -46,6 +50,24 @@ class BeaconCacheRecord {
     BeaconCacheRecord(long timestamp, String data) {
         this.timestamp = timestamp;
         this.data = data;
+        this.source = null;
+        this.row = -1;
+        this.dataSizeInBytes = data == null ? 0 : data.length() * CHAR_SIZE_BYTES;
+    }
+
+    /**
+     * Create a new {@link BeaconCacheRecord}, whose data is serialized on demand.
+     *
+     * @param timestamp Timestamp for this record.
+     * @param source    Source holding the record's data.
+     * @param row       The record's row in {@code source}.
+     */
+    BeaconCacheRecord(long timestamp, DeferredRecordSource source, int row) {
+        this.timestamp = timestamp;
+        this.data = null;
+        this.source = source;
+        this.row = row;
+        this.dataSizeInBytes = source.getDataSizeInBytes(row);
     }
 
     /**
@@ -57,9 +79,13 @@ class BeaconCacheRecord {
 
     /**
      * Get data.
+     *
+     * <p>
+     * For deferred records the data is serialized with each call.
+     * </p>
      */
     String getData() {
-        return data;
+        return source == null ? data : source.serialize(row);
     }
 
     /**
@@ -69,16 +95,28 @@ class BeaconCacheRecord {
      * Note that this is just a very rough estimation required for cache eviction.
      *
      * It's sufficient to approximate the bytes required by the string and omit any other information like
-     * the timestamp, any references and so on.
+     * the timestamp, any references and so on. Deferred records use their source's estimation.
      * </p>
      *
      * @return Data size in bytes.
      */
     long getDataSizeInBytes() {
-        if (getData() == null) {
-            return 0;
+        return dataSizeInBytes;
+    }
+
+    /**
+     * Discard this record, which must be called as soon as the record is removed from the cache.
+     *
+     * <p>
+     * Deferred records release their row, so that the source can reuse it.
+     * Discarding a record more than once has no effect.
+     * </p>
+     */
+    void discard() {
+        if (source != null && !discarded) {
+            discarded = true;
+            source.release(row);
         }
-        return getData().length() * CHAR_SIZE_BYTES;
     }
 
     /**
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.caching;
+
+/**
+ * Source of beacon cache records which are stored in some compact form and only serialized on demand.
+ *
+ * <p>
+ * Records are addressed by a row number, which is only meaningful to the source that handed it out.
+ * The {@link BeaconCache} serializes a row when it is put into a chunk for sending, and releases it,
+ * as soon as the record is no longer needed, i.e. after it was sent, evicted or the cache entry was deleted.
+ * Rows which were evicted are therefore never serialized at all.
+ * </p>
+ *
+ * <p>
+ * Implementations must be thread safe, since rows are added by the reporting threads while
+ * they are serialized/released by OpenKit's internal threads.
+ * </p>
+ */
+public interface DeferredRecordSource {
+
+    /**
+     * Serialize the given row into the beacon protocol's wire format.
+     *
+     * @param row The row to serialize.
+     * @return The serialized data.
+     */
+    String serialize(int row);
+
+    /**
+     * Get data size estimation of the given row.
+     *
+     * <p>
+     * Like {@link BeaconCacheRecord#getDataSizeInBytes()} this is just a rough estimation, required for cache eviction.
+     * The value must not change as long as the row is not released.
+     * </p>
+     *
+     * @param row The row for which to get the size.
+     * @return Data size in bytes.
+     */
+    long getDataSizeInBytes(int row);
+
+    /**
+     * Release the given row, so that its storage can be reused.
+     *
+     * <p>
+     * After this call, the cache never accesses the row again.
+     * </p>
+     *
+     * @param row The row to release.
+     */
+    void release(int row);
+}
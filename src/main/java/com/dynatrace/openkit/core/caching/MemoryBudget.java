@@ -0,0 +1,93 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory budget shared by the data of several sessions, which was not sent yet.
+ *
+ * <p>
+ * Unlike the {@link BeaconCache}, which is kept within its boundaries by evicting records afterwards,
+ * a budget is checked before new data is kept. Data not fitting into the budget any more is discarded right away,
+ * so the bytes used never exceed the budget's size.
+ * </p>
+ *
+ * <p>
+ * This class is thread safe, since data is added by the reporting threads while it is sent
+ * by OpenKit's internal threads.
+ * </p>
+ */
+public class MemoryBudget {
+
+    private final long sizeInBytes;
+    private final AtomicLong usedBytes = new AtomicLong(0L);
+
+    /**
+     * Create a budget.
+     *
+     * @param sizeInBytes Number of bytes available, zero or less for an unlimited budget.
+     */
+    public MemoryBudget(long sizeInBytes) {
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    /**
+     * Reserve the given number of bytes, if they fit into the budget.
+     *
+     * @param numBytes The number of bytes to reserve.
+     * @return {@code true} if the bytes were reserved, {@code false} if the budget is exhausted.
+     */
+    public boolean tryReserve(long numBytes) {
+        while (true) {
+            long used = usedBytes.get();
+            if (sizeInBytes > 0 && used + numBytes > sizeInBytes) {
+                return false;
+            }
+            if (usedBytes.compareAndSet(used, used + numBytes)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release bytes reserved before, e.g. after the data was sent.
+     *
+     * @param numBytes The number of bytes to release.
+     */
+    public void release(long numBytes) {
+        usedBytes.addAndGet(-numBytes);
+    }
+
+    /**
+     * Get the number of bytes currently reserved.
+     *
+     * @return Number of reserved bytes.
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * Get the number of bytes available in total.
+     *
+     * @return Number of bytes, zero or less if the budget is unlimited.
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+}
@@ -59,6 +59,10 @@ class BeaconSendingCaptureOffState extends AbstractBeaconSendingState {
 
         long delta = STATUS_CHECK_INTERVAL - (currentTime - context.getLastStatusCheckTime());
         if (delta > 0 && !context.isShutdownRequested()) {
+            if (context.suspend(delta)) {
+                // the shared thread is released - this state is executed again once the delta elapsed
+                return;
+            }
             context.sleep(delta);
         }
         StatusResponse statusResponse = BeaconSendingRequestUtil.sendStatusRequest(context, STATUS_REQUEST_RETRIES, INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
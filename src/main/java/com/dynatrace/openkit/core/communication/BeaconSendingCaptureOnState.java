@@ -17,8 +17,13 @@
 package com.dynatrace.openkit.core.communication;
 
 import com.dynatrace.openkit.core.SessionImpl;
+import com.dynatrace.openkit.protocol.SendBudget;
 import com.dynatrace.openkit.protocol.StatusResponse;
 
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
 /**
  * The sending state, when init is completed and capturing is turned on.
  *
@@ -52,15 +57,42 @@ class BeaconSendingCaptureOnState extends AbstractBeaconSendingState {
             return;
         }
 
-        context.sleep();
+        // wait for finished sessions or the next scheduled send, instead of polling
+        long maxWaitTime = getMaxWaitTime(context);
+        if (context.suspendUntilWork(maxWaitTime)) {
+            // the shared thread is released - this state is executed again when there's work
+            return;
+        }
+        context.waitForWork(maxWaitTime);
 
         statusResponse = null;
 
+        if (context.isCircuitOpen()) {
+            // server failed repeatedly - keep all sessions until requests are allowed again
+            return;
+        }
+        if (context.getThrottleDelay() > 0) {
+            // bandwidth for beacon data is exhausted - keep all data until the limit allows sending again
+            return;
+        }
+
+        // all sessions sent by this thread share the budget of this cycle
+        SendBudget budget = context.createSendBudget();
+
         // send all finished sessions (this method may set this.statusResponse)
-        sendFinishedSessions(context);
+        sendFinishedSessions(context, budget);
+
+        // send open sessions which collected a lot of data (this method may set this.statusResponse)
+        sendScheduledOpenSessions(context, budget);
 
         // check if we need to send open sessions & do it if necessary (this method may set this.statusResponse)
-        sendOpenSessions(context);
+        sendOpenSessions(context, budget);
+
+        BeaconSendingWorkerPool sendWorkerPool = context.getSendWorkerPool();
+        if (sendWorkerPool != null) {
+            // responses are received by the send workers - possibly from the previous run
+            statusResponse = sendWorkerPool.takeLastStatusResponse();
+        }
 
         // handle the last statusResponse received (or null if none was received) from the server
         handleStatusResponse(context, statusResponse);
@@ -71,53 +103,248 @@ class BeaconSendingCaptureOnState extends AbstractBeaconSendingState {
         return new BeaconSendingFlushSessionsState();
     }
 
+    /**
+     * Get the time in milliseconds until something has to be done, even if no work is signalled.
+     *
+     * <p>
+     * This is the next send of open sessions, the next time sync, or a short retry delay as long as
+     * finished sessions are still waiting, e.g. because sending them failed before. While the bandwidth
+     * is exhausted, nothing is sent before the limit allows it again.
+     * </p>
+     *
+     * @param context Context.
+     */
+    private static long getMaxWaitTime(BeaconSendingContext context) {
+
+        long currentTimestamp = context.getCurrentTimestamp();
+        long maxWaitTime = context.getLastOpenSessionBeaconSendTime() + context.getSendInterval() - currentTimestamp;
+        if (context.isTimeSyncSupported()) {
+            long nextTimeSync = context.getLastTimeSyncTime() + BeaconSendingTimeSyncState.TIME_SYNC_INTERVAL_IN_MILLIS;
+            maxWaitTime = Math.min(maxWaitTime, nextTimeSync - currentTimestamp);
+        }
+        if (context.getNumberOfFinishedSessions() > 0) {
+            maxWaitTime = Math.min(maxWaitTime, BeaconSendingContext.DEFAULT_SLEEP_TIME_MILLISECONDS);
+        }
+
+        return Math.max(maxWaitTime, context.getThrottleDelay());
+    }
+
     /**
      * Send all sessions which have been finished previously.
      *
+     * <p>
+     * The sessions take turns, until all are sent or the budget is exhausted.
+     * Sessions with data left are pushed back and sent on with the next run.
+     * </p>
+     *
      * @param context Context.
+     * @param budget Budget of this send cycle.
      */
-    private void sendFinishedSessions(BeaconSendingContext context) {
+    private void sendFinishedSessions(BeaconSendingContext context, SendBudget budget) {
+
+        BeaconSendingWorkerPool sendWorkerPool = context.getSendWorkerPool();
+        if (sendWorkerPool != null) {
+            dispatchFinishedSessions(context, sendWorkerPool);
+            return;
+        }
 
-        // check if there's finished Sessions to be sent -> immediately send beacon(s) of finished Sessions
+        List<SessionImpl> finishedSessions = new LinkedList<SessionImpl>();
         SessionImpl finishedSession = context.getNextFinishedSession();
         while (finishedSession != null) {
-            statusResponse = finishedSession.sendBeacon();
-            if (statusResponse == null) {
-                // something went wrong,
-                if (!finishedSession.isEmpty()) {
-                    // well there is more data to send, and we could not do it (now)
-                    // just push it back
-                    context.pushBackFinishedSession(finishedSession);
-                    break; //  sending did not work, break out for now and retry it later
-                }
+            finishedSessions.add(finishedSession);
+            finishedSession = context.getNextFinishedSession();
+        }
+
+        boolean sendingWorked = sendRoundRobin(finishedSessions, budget, true);
+
+        // well there is more data to send, and we could not do it (now) - just push it back
+        for (SessionImpl session : finishedSessions) {
+            context.pushBackFinishedSession(session);
+        }
+        if (sendingWorked && !finishedSessions.isEmpty()) {
+            // budget is exhausted - go on with the next run right away, instead of waiting to retry
+            context.signalWork();
+        }
+    }
+
+    /**
+     * Hand over all finished sessions to the send workers.
+     *
+     * @param context Context.
+     * @param sendWorkerPool The workers sending the sessions.
+     */
+    private static void dispatchFinishedSessions(BeaconSendingContext context, BeaconSendingWorkerPool sendWorkerPool) {
+
+        // sessions pushed back by the workers in the meantime are retried with the next run
+        int numberOfSessions = context.getNumberOfFinishedSessions();
+        for (int i = 0; i < numberOfSessions; i++) {
+            SessionImpl finishedSession = context.getNextFinishedSession();
+            if (finishedSession == null) {
+                break;
             }
+            sendWorkerPool.sendFinishedSession(context, finishedSession);
+        }
+    }
 
-            // session was sent - so remove it from beacon cache
-            finishedSession.clearCapturedData();
-            finishedSession = context.getNextFinishedSession();
+    /**
+     * Send open sessions which were scheduled for sending before the send interval expired.
+     *
+     * @param context Context.
+     * @param budget Budget of this send cycle.
+     */
+    private void sendScheduledOpenSessions(BeaconSendingContext context, SendBudget budget) {
+
+        BeaconSendingWorkerPool sendWorkerPool = context.getSendWorkerPool();
+        List<SessionImpl> openSessions = new LinkedList<SessionImpl>();
+        SessionImpl session = context.getNextScheduledOpenSession();
+        while (session != null) {
+            if (sendWorkerPool != null) {
+                // if the session is being sent already, that send takes the collected data along
+                sendWorkerPool.sendOpenSession(session);
+            } else {
+                openSessions.add(session);
+            }
+            session = context.getNextScheduledOpenSession();
         }
+
+        sendOpenSessions(context, openSessions, budget);
     }
 
     /**
      * Check if the send interval (configured by server) has expired and start to send open sessions if it has expired.
      *
+     * <p>
+     * Only open sessions which captured new data since they were sent the last time are sent,
+     * so idle sessions don't cost anything.
+     * </p>
+     *
      * @param context
+     * @param budget Budget of this send cycle.
      */
-    private void sendOpenSessions(BeaconSendingContext context) {
+    private void sendOpenSessions(BeaconSendingContext context, SendBudget budget) {
 
         long currentTimestamp = context.getCurrentTimestamp();
         if (currentTimestamp <= context.getLastOpenSessionBeaconSendTime() + context.getSendInterval()) {
             return; // send interval to send open sessions has not expired yet
         }
 
-        SessionImpl[] openSessions = context.getAllOpenSessions();
-        for (SessionImpl session : openSessions) {
-            statusResponse = session.sendBeacon();
+        // sessions marked again in the meantime are sent with the next send interval
+        BeaconSendingWorkerPool sendWorkerPool = context.getSendWorkerPool();
+        List<SessionImpl> openSessions = new LinkedList<SessionImpl>();
+        int numberOfSessions = context.getNumberOfOpenSessionsWithNewData();
+        for (int i = 0; i < numberOfSessions; i++) {
+            SessionImpl session = context.getNextOpenSessionWithNewData();
+            if (session == null) {
+                break;
+            }
+            if (session.getEndTime() != -1L) {
+                continue; // finished in the meantime - sent as finished session anyway
+            }
+            if (sendWorkerPool == null) {
+                openSessions.add(session);
+            } else if (!sendWorkerPool.sendOpenSession(session)) {
+                // previous send of this session is still running - send the new data with the next send interval
+                session.markNewData();
+            }
         }
 
+        sendOpenSessions(context, openSessions, budget);
+
         context.setLastOpenSessionBeaconSendTime(currentTimestamp);
     }
 
+    /**
+     * Send the given open sessions taking turns, until all are sent or the budget is exhausted.
+     *
+     * <p>
+     * Sessions with data left are sent on with the next run if the budget is exhausted,
+     * or with the next send interval if sending failed.
+     * </p>
+     *
+     * @param context Context.
+     * @param openSessions The open sessions to send.
+     * @param budget Budget of this send cycle.
+     */
+    private void sendOpenSessions(BeaconSendingContext context, List<SessionImpl> openSessions, SendBudget budget) {
+
+        if (sendRoundRobin(openSessions, budget, false)) {
+            for (SessionImpl session : openSessions) {
+                context.pushBackOpenSession(session);
+            }
+            if (!openSessions.isEmpty()) {
+                // budget is exhausted - go on with the next run right away
+                context.signalWork();
+            }
+        } else {
+            // the data was kept - retry with the next send interval
+            for (SessionImpl session : openSessions) {
+                session.markNewData();
+            }
+        }
+    }
+
+    /**
+     * Let the given sessions take turns sending one request each, until all are sent or the budget is exhausted.
+     *
+     * <p>
+     * Sessions without data left are removed from the list, and their captured data is cleared if requested,
+     * so that the list contains the sessions with data left afterwards. Sending stops, as soon as a session
+     * fails to send its data.
+     * </p>
+     *
+     * @param sessions The sessions to send, which is updated to the sessions with data left.
+     * @param budget Budget of this send cycle.
+     * @param clearSentSessions {@code true} to clear the captured data of sessions sent completely.
+     *
+     * @return {@code false} if a session failed to send its data, {@code true} otherwise.
+     */
+    private boolean sendRoundRobin(List<SessionImpl> sessions, SendBudget budget, boolean clearSentSessions) {
+
+        while (!sessions.isEmpty()) {
+            Iterator<SessionImpl> iterator = sessions.iterator();
+            while (iterator.hasNext()) {
+                if (budget.isExhausted()) {
+                    return true;
+                }
+
+                SessionImpl session = iterator.next();
+                StatusResponse response = session.sendBeacon(budget);
+                if (response != null) {
+                    statusResponse = response;
+                }
+                if (session.isEmpty()) {
+                    iterator.remove();
+                    if (clearSentSessions) {
+                        // session was sent - so remove it from beacon cache
+                        session.clearCapturedData();
+                    }
+                } else if (response == null) {
+                    // something went wrong - sending did not work, break out for now and retry it later
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Send an open session, which is marked again if data is left, e.g. because the bandwidth got exhausted.
+     *
+     * @param session The open session to send.
+     *
+     * @return The status response, or {@code null} if an error occurred.
+     */
+    static StatusResponse sendOpenSession(SessionImpl session) {
+
+        StatusResponse response = session.sendBeacon();
+        if (response == null && !session.isEmpty()) {
+            // the data was kept - retry with the next send interval
+            session.markNewData();
+        }
+        return response;
+    }
+
     private static void handleStatusResponse(BeaconSendingContext context, StatusResponse statusResponse) {
 
         if (statusResponse == null) {
@@ -16,14 +16,20 @@
 
 package com.dynatrace.openkit.core.communication;
 
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.api.SessionPersistenceHook;
 import com.dynatrace.openkit.core.SessionImpl;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
+import com.dynatrace.openkit.core.util.DefaultLogger;
 import com.dynatrace.openkit.protocol.Connector;
 import com.dynatrace.openkit.protocol.HTTPConnector;
+import com.dynatrace.openkit.protocol.SendBudget;
 import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.providers.ConnectorProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
 
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -39,6 +45,7 @@ public class BeaconSendingContext {
      */
     static final long DEFAULT_SLEEP_TIME_MILLISECONDS = TimeUnit.SECONDS.toMillis(1);
 
+    private final Logger logger;
     private final Configuration configuration;
     private final ConnectorProvider connectorProvider;
     private final TimingProvider timingProvider;
@@ -49,9 +56,58 @@ public class BeaconSendingContext {
     private final LinkedBlockingQueue<SessionImpl> openSessions = new LinkedBlockingQueue<SessionImpl>();
 
     /**
-     * container storing all finished sessions
+     * container storing all finished sessions, ordered by the configured session send order
      */
-    private final LinkedBlockingQueue<SessionImpl> finishedSessions = new LinkedBlockingQueue<SessionImpl>();
+    private final FinishedSessionQueue finishedSessions;
+    /**
+     * container storing open sessions, which shall be sent without waiting for the send interval
+     */
+    private final LinkedBlockingQueue<SessionImpl> scheduledOpenSessions = new LinkedBlockingQueue<SessionImpl>();
+    /**
+     * container storing open sessions, which captured new data since they were sent the last time
+     */
+    private final LinkedBlockingQueue<SessionImpl> openSessionsWithNewData = new LinkedBlockingQueue<SessionImpl>();
+    /**
+     * pool of threads sending sessions, or {@code null} if sessions are sent by the beacon sender thread itself
+     */
+    private final BeaconSendingWorkerPool sendWorkerPool;
+    /**
+     * time in milliseconds for sending all sessions on shutdown
+     */
+    private final long shutdownTimeout;
+    /**
+     * hook taking over sessions not sent on shutdown, or {@code null} if they are dropped
+     */
+    private final SessionPersistenceHook sessionPersistenceHook;
+    /**
+     * number of beacon bytes and time in milliseconds for sending in one send cycle
+     */
+    private final long sendCycleMaxBytes;
+    private final long sendCycleMaxTime;
+    /**
+     * timestamp until which sessions are sent on shutdown, set when shutdown is requested
+     */
+    private volatile long shutdownDeadline = Long.MAX_VALUE;
+    /**
+     * monitor signalled when there is work for the beacon sender thread
+     */
+    private final Object workSignal = new Object();
+    /**
+     * boolean indicating whether work was signalled since the last wait - guarded by {@link #workSignal}
+     */
+    private boolean workPending = false;
+    /**
+     * handler executing the current state again, if states are executed by a shared thread pool, otherwise {@code null}
+     */
+    private volatile Runnable resumeHandler = null;
+    /**
+     * milliseconds after which the current state is executed again, if it released the thread - guarded by {@link #workSignal}
+     */
+    private long suspendTime = 0;
+    /**
+     * boolean indicating whether signalled work resumes the suspended state early - guarded by {@link #workSignal}
+     */
+    private boolean isSuspendedUntilWork = false;
     /**
      * boolean indicating whether shutdown was requested or not
      */
@@ -99,11 +155,48 @@ public class BeaconSendingContext {
     public BeaconSendingContext(Configuration configuration,
                                 ConnectorProvider connectorProvider,
                                 TimingProvider timingProvider) {
+        this(new DefaultLogger(false), configuration, connectorProvider, timingProvider);
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * The state is initialized to {@link BeaconSendingInitState},
+     * </p>
+     *
+     * @param logger Logger for failures of the send workers.
+     */
+    public BeaconSendingContext(Logger logger,
+                                Configuration configuration,
+                                ConnectorProvider connectorProvider,
+                                TimingProvider timingProvider) {
 
+        this.logger = logger;
         this.configuration = configuration;
         this.connectorProvider = connectorProvider;
         this.timingProvider = timingProvider;
 
+        BeaconSendingConfiguration beaconSendingConfiguration = configuration.getBeaconSendingConfiguration();
+        if (beaconSendingConfiguration != null && beaconSendingConfiguration.getNumberOfSendWorkers() > 1) {
+            sendWorkerPool = new BeaconSendingWorkerPool(beaconSendingConfiguration.getNumberOfSendWorkers(), logger, this);
+        } else {
+            sendWorkerPool = null;
+        }
+        if (beaconSendingConfiguration != null) {
+            shutdownTimeout = beaconSendingConfiguration.getShutdownTimeout();
+            sessionPersistenceHook = beaconSendingConfiguration.getSessionPersistenceHook();
+            finishedSessions = new FinishedSessionQueue(beaconSendingConfiguration.getSessionSendOrder());
+            sendCycleMaxBytes = beaconSendingConfiguration.getSendCycleMaxBytes();
+            sendCycleMaxTime = beaconSendingConfiguration.getSendCycleMaxTime();
+        } else {
+            shutdownTimeout = BeaconSendingConfiguration.DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLISECONDS;
+            sessionPersistenceHook = null;
+            finishedSessions = new FinishedSessionQueue(BeaconSendingConfiguration.DEFAULT_SESSION_SEND_ORDER);
+            sendCycleMaxBytes = BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_BYTES;
+            sendCycleMaxTime = BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_TIME_IN_MILLISECONDS;
+        }
+
         currentState = new BeaconSendingInitState();
     }
 
@@ -120,13 +213,31 @@ public class BeaconSendingContext {
             nextState = null;
         }
 
+        if (sendWorkerPool != null && currentState.isTerminalState()) {
+            // flushing sessions shuts down the workers, but not every path to the terminal state flushes
+            sendWorkerPool.shutdown(0);
+        }
     }
 
     /**
      * Requests a shutdown.
+     *
+     * <p>
+     * The first request also starts the shutdown timeout (see {@link #getShutdownDeadline()}).
+     * </p>
      */
     public void requestShutdown() {
+        if (!shutdown.get()) {
+            shutdownDeadline = getCurrentTimestamp() + shutdownTimeout;
+        }
         shutdown.set(true);
+        signalWork();
+
+        Runnable handler = resumeHandler;
+        if (handler != null) {
+            // a suspended state must not delay the shutdown
+            handler.run();
+        }
     }
 
     /**
@@ -291,6 +402,82 @@ public class BeaconSendingContext {
         return connectorProvider.createConnector(configuration.getHttpClientConfig());
     }
 
+    /**
+     * Test if requests to the server are currently suspended, because it failed repeatedly.
+     *
+     * @return {@code true} if no requests are sent for now, {@code false} otherwise.
+     */
+    boolean isCircuitOpen() {
+        Connector connector = getConnector();
+        return connector != null && connector.isCircuitOpen();
+    }
+
+    /**
+     * Get the time until beacon data may be sent again, because the configured bandwidth is exhausted.
+     *
+     * @return Time in milliseconds, zero if beacon data may be sent right now.
+     */
+    long getThrottleDelay() {
+        Connector connector = getConnector();
+        return connector == null ? 0 : connector.getThrottleDelay();
+    }
+
+    /**
+     * Opens connections to the server ahead of the first requests, one for each send worker.
+     *
+     * <p>
+     * This is best effort, connections which can't be opened are opened again by the requests.
+     * </p>
+     */
+    void warmUpConnections() {
+        Connector connector = getConnector();
+        if (connector == null) {
+            return;
+        }
+
+        BeaconSendingConfiguration beaconSendingConfiguration = configuration.getBeaconSendingConfiguration();
+        int numberOfConnections = beaconSendingConfiguration == null
+            ? 1
+            : Math.max(1, beaconSendingConfiguration.getNumberOfSendWorkers());
+        connector.warmUp(numberOfConnections);
+    }
+
+    /**
+     * Gets the logger.
+     *
+     * @return The logger for failures of the send workers.
+     */
+    Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Gets the pool of send workers.
+     *
+     * @return The pool, or {@code null} if sessions are sent by the beacon sender thread itself.
+     */
+    BeaconSendingWorkerPool getSendWorkerPool() {
+        return sendWorkerPool;
+    }
+
+    /**
+     * Gets the timestamp until which sessions are sent on shutdown.
+     *
+     * @return The deadline, or {@link Long#MAX_VALUE} if shutdown was not requested yet.
+     */
+    long getShutdownDeadline() {
+        return shutdownDeadline;
+    }
+
+    /**
+     * Gets the hook taking over sessions, which were not sent on shutdown.
+     *
+     * @return The hook, or {@code null} if unsent sessions are dropped.
+     */
+    SessionPersistenceHook getSessionPersistenceHook() {
+        return sessionPersistenceHook;
+    }
+
     /**
      * Gets the current timestamp.
      *
@@ -319,6 +506,128 @@ public class BeaconSendingContext {
         timingProvider.sleep(millis);
     }
 
+    /**
+     * Wait until work is signalled via {@link #signalWork()} or the given amount of milliseconds elapsed.
+     *
+     * <p>
+     * Work signalled before this call makes it return immediately. In any case the signal is consumed.
+     * </p>
+     *
+     * @param maxWaitMillis The maximum number of milliseconds to wait, nothing is waited if not positive.
+     * @throws InterruptedException When waiting thread got interrupted.
+     */
+    void waitForWork(long maxWaitMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        synchronized (workSignal) {
+            long remainingMillis = maxWaitMillis;
+            while (!workPending && !isShutdownRequested() && remainingMillis > 0) {
+                workSignal.wait(remainingMillis);
+                remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            }
+            workPending = false;
+        }
+    }
+
+    /**
+     * Wake up the beacon sender thread waiting in {@link #waitForWork(long)}, e.g. because a session was finished.
+     */
+    public void signalWork() {
+        boolean isResumed;
+        synchronized (workSignal) {
+            workPending = true;
+            workSignal.notifyAll();
+            isResumed = isSuspendedUntilWork;
+            isSuspendedUntilWork = false;
+        }
+
+        Runnable handler = resumeHandler;
+        if (isResumed && handler != null) {
+            handler.run();
+        }
+    }
+
+    /**
+     * Execute the states by a shared thread pool, instead of a dedicated thread.
+     *
+     * <p>
+     * States then release the thread via {@link #suspend(long)} or {@link #suspendUntilWork(long)},
+     * instead of waiting for a long time. The pool executes the current state again after the time
+     * given by {@link #takeSuspendTime()}, or earlier when the given handler is run.
+     * </p>
+     *
+     * @param resumeHandler Handler executing the current state again right away.
+     */
+    public void setResumeHandler(Runnable resumeHandler) {
+        this.resumeHandler = resumeHandler;
+    }
+
+    /**
+     * Release the thread for the given amount of milliseconds, if states are executed by a shared thread pool.
+     *
+     * <p>
+     * If this returns {@code true}, the current state must return and is executed again after the given time
+     * or on shutdown. Otherwise the state has to wait itself, e.g. via {@link #sleep(long)}.
+     * </p>
+     *
+     * @param millis The number of milliseconds to release the thread.
+     * @return {@code true} if the thread is released, {@code false} otherwise.
+     */
+    boolean suspend(long millis) {
+        return suspend(millis, false);
+    }
+
+    /**
+     * Release the thread until work is signalled via {@link #signalWork()} or the given amount of milliseconds
+     * elapsed, if states are executed by a shared thread pool.
+     *
+     * <p>
+     * See {@link #suspend(long)}. If work is already pending, the thread is not released.
+     * </p>
+     *
+     * @param maxWaitMillis The maximum number of milliseconds to release the thread.
+     * @return {@code true} if the thread is released, {@code false} otherwise.
+     */
+    boolean suspendUntilWork(long maxWaitMillis) {
+        return suspend(maxWaitMillis, true);
+    }
+
+    private boolean suspend(long millis, boolean isResumedOnWork) {
+        if (resumeHandler == null || millis <= 0) {
+            // states are executed by a dedicated thread, or there's nothing to wait for
+            return false;
+        }
+
+        synchronized (workSignal) {
+            if (isShutdownRequested() || (isResumedOnWork && workPending)) {
+                return false;
+            }
+            suspendTime = millis;
+            isSuspendedUntilWork = isResumedOnWork;
+            return true;
+        }
+    }
+
+    /**
+     * Get the number of milliseconds after which the current state has to be executed again, and clear it.
+     *
+     * @return The time the thread was released for by the last execution, or zero if the state can be executed
+     * again right away.
+     */
+    public long takeSuspendTime() {
+        synchronized (workSignal) {
+            long millis = suspendTime;
+            suspendTime = 0;
+            return millis;
+        }
+    }
+
+    /**
+     * Create the budget for sending sessions in one send cycle, starting now.
+     */
+    SendBudget createSendBudget() {
+        return new SendBudget(sendCycleMaxBytes, sendCycleMaxTime, timingProvider);
+    }
+
     /**
      * Get timestamp when open sessions were sent last.
      */
@@ -379,22 +688,24 @@ public class BeaconSendingContext {
      * Clear captured data from all sessions.
      */
     private void clearAllSessionData() {
-        // clear captured data from finished sessions
-        for (SessionImpl session : finishedSessions) {
+        // clear captured data from finished sessions, and the finished sessions also
+        for (SessionImpl session : finishedSessions.clear()) {
             session.clearCapturedData();
         }
-        finishedSessions.clear(); // clear finished sessions also
 
-        // clear captured data from open sessions
+        // clear captured data from open sessions - data captured afterwards marks them again
+        openSessionsWithNewData.clear();
         for (SessionImpl session : openSessions) {
             session.clearCapturedData();
         }
+        scheduledOpenSessions.clear(); // nothing left to send early
     }
 
     /**
      * Gets the next finished session from the list of all finished sessions.
      * <p>
      * <p>
+     * This is the finished session with the highest priority according to the configured session send order.
      * This call also removes the session from the underlying data structure.
      * If there are no finished sessions any more, this method returns null.
      * </p>
@@ -405,6 +716,52 @@ public class BeaconSendingContext {
         return finishedSessions.poll();
     }
 
+    /**
+     * Gets the next open session scheduled via {@link #scheduleOpenSessionSend(SessionImpl)}.
+     * <p>
+     * <p>
+     * This call also removes the session from the underlying data structure.
+     * If there are no scheduled sessions, this method returns null.
+     * </p>
+     *
+     * @return A scheduled session or {@code null} if there is no scheduled session.
+     */
+    SessionImpl getNextScheduledOpenSession() {
+        return scheduledOpenSessions.poll();
+    }
+
+    /**
+     * Gets the next open session marked via {@link #markOpenSessionWithNewData(SessionImpl)}.
+     * <p>
+     * <p>
+     * This call also removes the session from the underlying data structure and clears its mark, so that
+     * data captured from now on marks it again. If there are no marked sessions, this method returns null.
+     * </p>
+     *
+     * @return An open session with new data or {@code null} if there is no such session.
+     */
+    SessionImpl getNextOpenSessionWithNewData() {
+        SessionImpl session = openSessionsWithNewData.poll();
+        if (session != null) {
+            session.clearNewDataMark();
+        }
+        return session;
+    }
+
+    /**
+     * Gets the number of finished sessions waiting to be sent.
+     */
+    int getNumberOfFinishedSessions() {
+        return finishedSessions.size();
+    }
+
+    /**
+     * Gets the number of open sessions marked as having new data.
+     */
+    int getNumberOfOpenSessionsWithNewData() {
+        return openSessionsWithNewData.size();
+    }
+
     /**
      * Gets all open sessions.
      * <p>
@@ -425,7 +782,8 @@ public class BeaconSendingContext {
      * </p>
      */
     SessionImpl[] getAllFinishedSessions() {
-        return finishedSessions.toArray(new SessionImpl[0]);
+        List<SessionImpl> sessions = finishedSessions.toList();
+        return sessions.toArray(new SessionImpl[sessions.size()]);
     }
 
     /**
@@ -481,6 +839,50 @@ public class BeaconSendingContext {
     public void finishSession(SessionImpl session) {
         if (openSessions.remove(session)) {
             finishedSessions.add(session);
+            signalWork();
         }
     }
+
+    /**
+     * Schedule an open session to be sent with the next run, without waiting for the send interval.
+     * <p>
+     * <p>
+     * If the session is not open (any more), the parameter is ignored, since finished sessions are sent anyway.
+     * </p>
+     *
+     * @param session The session to send.
+     */
+    public void scheduleOpenSessionSend(SessionImpl session) {
+        if (openSessions.contains(session)) {
+            scheduledOpenSessions.add(session);
+            signalWork();
+        }
+    }
+
+    /**
+     * Mark an open session as having new data, so that it is sent with the next send interval.
+     * <p>
+     * <p>
+     * Only sessions marked this way are sent with the send interval, so that idle sessions cause no requests.
+     * The session is expected to call this only once until it is taken via {@link #getNextOpenSessionWithNewData()}.
+     * </p>
+     *
+     * @param session The session with new data.
+     */
+    public void markOpenSessionWithNewData(SessionImpl session) {
+        openSessionsWithNewData.add(session);
+    }
+
+    /**
+     * Push back an open session, which could not be sent completely within the budget of a send cycle.
+     * <p>
+     * <p>
+     * The session is sent on with the next run, without waiting for the send interval.
+     * </p>
+     *
+     * @param session The session to send on.
+     */
+    void pushBackOpenSession(SessionImpl session) {
+        scheduledOpenSessions.add(session);
+    }
 }
@@ -16,12 +16,24 @@
 
 package com.dynatrace.openkit.core.communication;
 
+import com.dynatrace.openkit.api.SessionPersistenceHook;
 import com.dynatrace.openkit.core.SessionImpl;
+import com.dynatrace.openkit.protocol.SealedBeacon;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * In this state open sessions are finished. After that all sessions are sent to the server.
  * <p>
  * <p>
+ * Sessions are sent in parallel, sessions containing a crash first, until the shutdown deadline
+ * (see {@link BeaconSendingContext#getShutdownDeadline()}) expires. Data of sessions which were not sent
+ * by then is passed to the session persistence hook, if any.
+ * </p>
+ * <p>
  * Transition to:
  * <ul>
  * <li>{@link BeaconSendingTerminalState}</li>
@@ -30,6 +42,21 @@ import com.dynatrace.openkit.core.SessionImpl;
  */
 class BeaconSendingFlushSessionsState extends AbstractBeaconSendingState {
 
+    /**
+     * Maximum number of threads flushing sessions, if no send workers are configured.
+     */
+    static final int NUMBER_OF_FLUSH_WORKERS = 4;
+
+    /**
+     * Orders sessions containing a crash before all others, keeping the order otherwise.
+     */
+    private static final Comparator<SessionImpl> CRASHES_FIRST = new Comparator<SessionImpl>() {
+        @Override
+        public int compare(SessionImpl lhs, SessionImpl rhs) {
+            return (rhs.hasCrash() ? 1 : 0) - (lhs.hasCrash() ? 1 : 0);
+        }
+    };
+
     BeaconSendingFlushSessionsState() {
         super(false);
     }
@@ -37,19 +64,48 @@ class BeaconSendingFlushSessionsState extends AbstractBeaconSendingState {
     @Override
     void doExecute(BeaconSendingContext context) {
 
+        // the interrupt only signalled the shutdown request - it must not cut flushing short
+        boolean interrupted = Thread.interrupted();
+
         // end open sessions -> will be flushed afterwards
         SessionImpl[] openSessions = context.getAllOpenSessions();
         for (SessionImpl openSession : openSessions) {
             openSession.end();
         }
 
-        // flush already finished (and previously ended) sessions
+        // collect already finished (and previously ended) sessions, crashes are the most valuable data
+        List<SessionImpl> finishedSessions = new ArrayList<SessionImpl>();
         SessionImpl finishedSession = context.getNextFinishedSession();
         while (finishedSession != null) {
-            finishedSession.sendBeacon();
-            finishedSession.clearCapturedData();
+            finishedSessions.add(finishedSession);
             finishedSession = context.getNextFinishedSession();
         }
+        Collections.sort(finishedSessions, CRASHES_FIRST);
+
+        long deadline = context.getShutdownDeadline();
+        BeaconSendingWorkerPool sendWorkerPool = context.getSendWorkerPool();
+        if (sendWorkerPool == null && finishedSessions.size() > 1) {
+            sendWorkerPool = new BeaconSendingWorkerPool(Math.min(finishedSessions.size(), NUMBER_OF_FLUSH_WORKERS),
+                context.getLogger(), context);
+        }
+
+        if (sendWorkerPool == null) {
+            for (SessionImpl session : finishedSessions) {
+                flushSession(context, session, deadline);
+            }
+        } else {
+            for (SessionImpl session : finishedSessions) {
+                sendWorkerPool.flushSession(session, deadline);
+            }
+            if (!sendWorkerPool.shutdown(Math.max(0, deadline - context.getCurrentTimestamp()))) {
+                // deadline expired - sessions not sent so far are passed to the persistence hook
+                sendWorkerPool.shutdownNow();
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
 
         // make last state transition to terminal state
         context.setNextState(new BeaconSendingTerminalState());
@@ -59,4 +115,35 @@ class BeaconSendingFlushSessionsState extends AbstractBeaconSendingState {
     AbstractBeaconSendingState getShutdownState() {
         return new BeaconSendingTerminalState();
     }
+
+    /**
+     * Send a finished session one last time, unless the deadline expired, and clear its captured data.
+     *
+     * <p>
+     * Data which was not sent is passed to the session persistence hook, if any.
+     * </p>
+     *
+     * @param context State's context.
+     * @param session The session to flush.
+     * @param deadline Timestamp after which the session is not sent any more.
+     */
+    static void flushSession(BeaconSendingContext context, SessionImpl session, long deadline) {
+        if (context.getCurrentTimestamp() < deadline) {
+            session.sendBeacon();
+        }
+
+        SessionPersistenceHook sessionPersistenceHook = context.getSessionPersistenceHook();
+        if (sessionPersistenceHook != null && !session.isEmpty()) {
+            SealedBeacon unsentData = session.takeUnsentData();
+            if (unsentData != null) {
+                try {
+                    sessionPersistenceHook.persistSession(unsentData.getClientIPAddress(), unsentData.getDocuments(),
+                        session.hasCrash());
+                } catch (RuntimeException e) {
+                    // a failing hook must not stop flushing the remaining sessions
+                }
+            }
+        }
+        session.clearCapturedData();
+    }
 }
@@ -59,6 +59,11 @@ class BeaconSendingInitState extends AbstractBeaconSendingState {
      */
     private int reinitializeDelayIndex = 0;
 
+    /**
+     * Flag indicating whether the connections were warmed up already.
+     */
+    private boolean connectionsWarmedUp = false;
+
     BeaconSendingInitState() {
         super(false);
     }
@@ -66,6 +71,12 @@ class BeaconSendingInitState extends AbstractBeaconSendingState {
     @Override
     void doExecute(BeaconSendingContext context) throws InterruptedException {
 
+        if (!connectionsWarmedUp) {
+            // resolve and connect while nothing is ready to send yet, so the first beacons don't pay for it
+            context.warmUpConnections();
+            connectionsWarmedUp = true;
+        }
+
         StatusResponse statusResponse;
         while (true) {
             long currentTimestamp = context.getCurrentTimestamp();
@@ -79,9 +90,13 @@ class BeaconSendingInitState extends AbstractBeaconSendingState {
             }
 
             // status request needs to be sent again after some delay
-            context.sleep(REINIT_DELAY_MILLISECONDS[reinitializeDelayIndex]);
-
+            long reinitializeDelay = REINIT_DELAY_MILLISECONDS[reinitializeDelayIndex];
             reinitializeDelayIndex = Math.min(reinitializeDelayIndex + 1, REINIT_DELAY_MILLISECONDS.length - 1); // ensure no out of bounds
+            if (context.suspend(reinitializeDelay)) {
+                // the shared thread is released - this state is executed again after the delay
+                return;
+            }
+            context.sleep(reinitializeDelay);
         }
 
         if (context.isShutdownRequested()) {
@@ -16,6 +16,7 @@
 
 package com.dynatrace.openkit.core.communication;
 
+import com.dynatrace.openkit.core.util.Backoff;
 import com.dynatrace.openkit.protocol.HTTPConnector;
 import com.dynatrace.openkit.protocol.StatusResponse;
 
@@ -32,7 +33,8 @@ class BeaconSendingRequestUtil {
      *
      * @param context                   Used to retrieve the {@link HTTPConnector} and for delaying methods.
      * @param numRetries                The number of retries (total number of tries = numRetries + 1)
-     * @param initialRetryDelayInMillis The initial delay which is doubled between one unsuccessful attempt and the next retry.
+     * @param initialRetryDelayInMillis The initial delay which is doubled between one unsuccessful attempt and the next retry,
+     *                                  each delay is randomized (see {@link Backoff#jitter(long)}).
      * @return A status response or {@code null} if shutdown was requested or number of retries was reached.
      */
     static StatusResponse sendStatusRequest(BeaconSendingContext context, int numRetries, long initialRetryDelayInMillis) throws InterruptedException {
@@ -48,7 +50,7 @@ class BeaconSendingRequestUtil {
             }
 
             // if no (valid) status response was received -> sleep and double the delay for each retry
-            context.sleep(sleepTimeInMillis);
+            context.sleep(Backoff.jitter(sleepTimeInMillis));
             sleepTimeInMillis *= 2;
             retry++;
         }
@@ -16,6 +16,7 @@
 
 package com.dynatrace.openkit.core.communication;
 
+import com.dynatrace.openkit.core.util.Backoff;
 import com.dynatrace.openkit.protocol.TimeSyncResponse;
 
 import java.util.ArrayList;
@@ -146,7 +147,7 @@ class BeaconSendingTimeSyncState extends AbstractBeaconSendingState {
                 // retry limits exceeded
                 break;
             } else {
-                context.sleep(sleepTimeInMillis);
+                context.sleep(Backoff.jitter(sleepTimeInMillis));
                 sleepTimeInMillis *= 2;
                 retry++;
             }
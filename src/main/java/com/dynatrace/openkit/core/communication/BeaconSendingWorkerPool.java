@@ -0,0 +1,267 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.SessionImpl;
+import com.dynatrace.openkit.protocol.StatusResponse;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pool of threads sending sessions in parallel on behalf of the beacon sending states.
+ *
+ * <p>
+ * Send tasks of one session are executed one after another in the order they were dispatched,
+ * so data of one session is always sent in order, while a slow request only holds up its own session.
+ * Status responses received by the workers are collected and handled by the beacon sender thread,
+ * which is woken up for that purpose.
+ * </p>
+ */
+class BeaconSendingWorkerPool {
+
+    private static final String THREAD_NAME_PREFIX = "BeaconSendingWorker-";
+    private static final long IDLE_TIMEOUT_MILLISECONDS = TimeUnit.SECONDS.toMillis(60);
+
+    private final ThreadPoolExecutor executor;
+    private final Logger logger;
+    private final BeaconSendingContext context;
+
+    /**
+     * sessions having a task running, mapped to their tasks waiting to be run - guarded by itself
+     */
+    private final Map<SessionImpl, Queue<Runnable>> pendingTasks = new HashMap<SessionImpl, Queue<Runnable>>();
+
+    /**
+     * last status response received by any worker, not yet taken by the beacon sender thread
+     */
+    private final AtomicReference<StatusResponse> lastStatusResponse = new AtomicReference<StatusResponse>();
+
+    BeaconSendingWorkerPool(int numberOfWorkers, Logger logger, BeaconSendingContext context) {
+        this.logger = logger;
+        this.context = context;
+        executor = new ThreadPoolExecutor(numberOfWorkers, numberOfWorkers,
+            IDLE_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+        // idle workers terminate, they are started again on demand
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Send a finished session.
+     *
+     * <p>
+     * If sending fails and the session still has data, it's pushed back to the finished sessions to be retried later.
+     * Otherwise its captured data is cleared.
+     * </p>
+     */
+    void sendFinishedSession(final BeaconSendingContext context, final SessionImpl session) {
+        dispatch(session, new Runnable() {
+            @Override
+            public void run() {
+                StatusResponse statusResponse = session.sendBeacon();
+                if (statusResponse == null && !session.isEmpty()) {
+                    context.pushBackFinishedSession(session);
+                } else {
+                    session.clearCapturedData();
+                }
+                recordStatusResponse(statusResponse);
+            }
+        });
+    }
+
+    /**
+     * Send the data collected so far for an open session.
+     *
+     * @return {@code true} if sending was dispatched, {@code false} if the session is still being sent.
+     */
+    boolean sendOpenSession(final SessionImpl session) {
+        if (isSending(session)) {
+            // previous send of this session is not done yet - avoid piling up tasks for slow endpoints
+            return false;
+        }
+
+        dispatch(session, new Runnable() {
+            @Override
+            public void run() {
+                recordStatusResponse(BeaconSendingCaptureOnState.sendOpenSession(session));
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Send a finished session one last time, unless the deadline expired, and clear its captured data.
+     *
+     * @see BeaconSendingFlushSessionsState#flushSession(BeaconSendingContext, SessionImpl, long)
+     */
+    void flushSession(final SessionImpl session, final long deadline) {
+        dispatch(session, new Runnable() {
+            @Override
+            public void run() {
+                BeaconSendingFlushSessionsState.flushSession(context, session, deadline);
+            }
+        });
+    }
+
+    /**
+     * Get a boolean indicating whether a send task for the given session is running or waiting.
+     */
+    boolean isSending(SessionImpl session) {
+        synchronized (pendingTasks) {
+            return pendingTasks.containsKey(session);
+        }
+    }
+
+    /**
+     * Get the last status response received since the previous call, or {@code null} if none was received.
+     */
+    StatusResponse takeLastStatusResponse() {
+        return lastStatusResponse.getAndSet(null);
+    }
+
+    /**
+     * Stop accepting tasks and wait until all dispatched tasks are done or the timeout expired.
+     *
+     * <p>
+     * If the waiting thread is interrupted, remaining tasks are still executed but not waited for.
+     * </p>
+     *
+     * @param timeoutMillis The maximum number of milliseconds to wait.
+     * @return {@code true} if all tasks are done, {@code false} otherwise.
+     */
+    boolean shutdown(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Get a boolean indicating whether this pool stopped accepting tasks.
+     */
+    boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * Stop accepting tasks, interrupt running tasks and run all tasks not started yet on the calling thread.
+     *
+     * <p>
+     * This is used once the shutdown deadline expired, so that flush tasks still waiting for a worker
+     * hand their sessions over to the persistence hook instead of being dropped.
+     * </p>
+     */
+    void shutdownNow() {
+        for (Runnable worker : executor.shutdownNow()) {
+            worker.run();
+        }
+    }
+
+    private void recordStatusResponse(StatusResponse statusResponse) {
+        if (statusResponse != null) {
+            lastStatusResponse.set(statusResponse);
+            context.signalWork();
+        }
+    }
+
+    private void dispatch(SessionImpl session, Runnable task) {
+        synchronized (pendingTasks) {
+            Queue<Runnable> waitingTasks = pendingTasks.get(session);
+            if (waitingTasks != null) {
+                // run by the worker currently sending this session, after its current task
+                waitingTasks.add(task);
+                return;
+            }
+            pendingTasks.put(session, new LinkedList<Runnable>());
+        }
+
+        try {
+            executor.execute(new SessionWorker(session, task));
+        } catch (RejectedExecutionException e) {
+            // pool is shut down already
+            synchronized (pendingTasks) {
+                pendingTasks.remove(session);
+            }
+        }
+    }
+
+    private Runnable takeNextTask(SessionImpl session) {
+        synchronized (pendingTasks) {
+            Runnable next = pendingTasks.get(session).poll();
+            if (next == null) {
+                pendingTasks.remove(session);
+            }
+            return next;
+        }
+    }
+
+    /**
+     * Runs all tasks of one session one after another.
+     */
+    private final class SessionWorker implements Runnable {
+
+        private final SessionImpl session;
+        private final Runnable firstTask;
+
+        private SessionWorker(SessionImpl session, Runnable firstTask) {
+            this.session = session;
+            this.firstTask = firstTask;
+        }
+
+        @Override
+        public void run() {
+            Runnable task = firstTask;
+            while (task != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // a failed task must not stop the remaining tasks of this session
+                    logger.warning("Sending session failed: " + e);
+                }
+                task = takeNextTask(session);
+            }
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName(THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.api.SessionSendInfo;
+import com.dynatrace.openkit.core.SessionImpl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Thread safe queue of finished sessions waiting to be sent, ordered by priority.
+ *
+ * <p>
+ * The order is given by a comparator on {@link SessionSendInfo}, sessions comparing equal are taken
+ * in the order they were added. The information about a session is captured when the session is added,
+ * so that changes while it's waiting, e.g. cache eviction reducing its size, do not break the ordering.
+ * </p>
+ */
+class FinishedSessionQueue {
+
+    private final PriorityQueue<Entry> queue;
+
+    // sequence number of the next added session, keeping the insertion order among equal sessions - guarded by this
+    private long nextSequenceNumber = 0;
+
+    FinishedSessionQueue(final Comparator<SessionSendInfo> sessionSendOrder) {
+        queue = new PriorityQueue<Entry>(16, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                int result = sessionSendOrder.compare(lhs, rhs);
+                if (result != 0) {
+                    return result;
+                }
+                return lhs.sequenceNumber < rhs.sequenceNumber ? -1 : (lhs.sequenceNumber == rhs.sequenceNumber ? 0 : 1);
+            }
+        });
+    }
+
+    synchronized void add(SessionImpl session) {
+        queue.add(new Entry(session, nextSequenceNumber++));
+    }
+
+    /**
+     * Remove the session to be sent next.
+     *
+     * @return The session with the highest priority, or {@code null} if the queue is empty.
+     */
+    synchronized SessionImpl poll() {
+        Entry entry = queue.poll();
+        return entry == null ? null : entry.session;
+    }
+
+    synchronized int size() {
+        return queue.size();
+    }
+
+    /**
+     * Remove all sessions.
+     *
+     * @return The removed sessions, in no particular order.
+     */
+    synchronized List<SessionImpl> clear() {
+        List<SessionImpl> sessions = toList();
+        queue.clear();
+        return sessions;
+    }
+
+    /**
+     * Get all sessions, in no particular order.
+     */
+    synchronized List<SessionImpl> toList() {
+        List<SessionImpl> sessions = new ArrayList<SessionImpl>(queue.size());
+        for (Entry entry : queue) {
+            sessions.add(entry.session);
+        }
+        return sessions;
+    }
+
+    /**
+     * A queued session along with the information about it at the time it was added.
+     */
+    private static final class Entry implements SessionSendInfo {
+
+        private final SessionImpl session;
+        private final long sequenceNumber;
+        private final boolean hasCrash;
+        private final boolean hasError;
+        private final long startTime;
+        private final long dataSize;
+
+        private Entry(SessionImpl session, long sequenceNumber) {
+            this.session = session;
+            this.sequenceNumber = sequenceNumber;
+            hasCrash = session.hasCrash();
+            hasError = session.hasError();
+            startTime = session.getStartTime();
+            dataSize = session.getDataSize();
+        }
+
+        @Override
+        public boolean hasCrash() {
+            return hasCrash;
+        }
+
+        @Override
+        public boolean hasError() {
+            return hasError;
+        }
+
+        @Override
+        public long getStartTime() {
+            return startTime;
+        }
+
+        @Override
+        public long getDataSize() {
+            return dataSize;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.configuration;
+
+import com.dynatrace.openkit.api.SessionPersistenceHook;
+import com.dynatrace.openkit.api.SessionSendInfo;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration for beacon sending.
+ */
+public class BeaconSendingConfiguration {
+
+    /**
+     * The default number of send workers - sessions are sent one after another by the beacon sender thread.
+     */
+    public static final int DEFAULT_NUMBER_OF_SEND_WORKERS = 1;
+    /**
+     * The default threshold for sending open sessions early - disabled, open sessions are only sent with the send interval.
+     */
+    public static final long DEFAULT_OPEN_SESSION_SEND_THRESHOLD_IN_BYTES = -1L;
+    /**
+     * The default bandwidth limit for beacon data - disabled, beacon data is sent as fast as possible.
+     */
+    public static final long DEFAULT_MAX_BEACON_BANDWIDTH_IN_BYTES_PER_SECOND = -1L;
+    /**
+     * The default time for sending all sessions when shutting down.
+     */
+    public static final long DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLISECONDS = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * The default number of beacon bytes sent in one send cycle, before other work is done and the next cycle starts.
+     */
+    public static final long DEFAULT_SEND_CYCLE_MAX_BYTES = 1024L * 1024L;
+    /**
+     * The default time for sending beacon data in one send cycle, before other work is done and the next cycle starts.
+     */
+    public static final long DEFAULT_SEND_CYCLE_MAX_TIME_IN_MILLISECONDS = TimeUnit.SECONDS.toMillis(5);
+    /**
+     * The default number of chunks of a session uploaded at once - chunks are sent one after another.
+     */
+    public static final int DEFAULT_MAX_PARALLEL_CHUNK_UPLOADS = 1;
+    /**
+     * The default order of sending finished sessions - sessions containing a crash first, then sessions
+     * containing an error, then the session with the oldest data, which is the next one to exceed the maximum record age.
+     */
+    public static final Comparator<SessionSendInfo> DEFAULT_SESSION_SEND_ORDER = new Comparator<SessionSendInfo>() {
+        @Override
+        public int compare(SessionSendInfo lhs, SessionSendInfo rhs) {
+            if (lhs.hasCrash() != rhs.hasCrash()) {
+                return lhs.hasCrash() ? -1 : 1;
+            }
+            if (lhs.hasError() != rhs.hasError()) {
+                return lhs.hasError() ? -1 : 1;
+            }
+            return lhs.getStartTime() < rhs.getStartTime() ? -1 : (lhs.getStartTime() == rhs.getStartTime() ? 0 : 1);
+        }
+    };
+
+    private final int numberOfSendWorkers;
+    private final long openSessionSendThreshold;
+    private final long maxBeaconBandwidth;
+    private final long shutdownTimeout;
+    private final SessionPersistenceHook sessionPersistenceHook;
+    private final Comparator<SessionSendInfo> sessionSendOrder;
+    private final long sendCycleMaxBytes;
+    private final long sendCycleMaxTime;
+    private final int maxParallelChunkUploads;
+
+    /**
+     * Constructor, using the defaults for all other settings
+     *
+     * @param numberOfSendWorkers Number of threads sending sessions in parallel
+     */
+    public BeaconSendingConfiguration(int numberOfSendWorkers) {
+        this(numberOfSendWorkers, DEFAULT_OPEN_SESSION_SEND_THRESHOLD_IN_BYTES, DEFAULT_MAX_BEACON_BANDWIDTH_IN_BYTES_PER_SECOND,
+            DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLISECONDS, null, DEFAULT_SESSION_SEND_ORDER, DEFAULT_SEND_CYCLE_MAX_BYTES,
+            DEFAULT_SEND_CYCLE_MAX_TIME_IN_MILLISECONDS, DEFAULT_MAX_PARALLEL_CHUNK_UPLOADS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param numberOfSendWorkers Number of threads sending sessions in parallel
+     * @param openSessionSendThreshold Number of collected bytes after which an open session is sent right away
+     * @param maxBeaconBandwidth Maximum average number of (compressed) beacon bytes sent per second
+     * @param shutdownTimeout Time in milliseconds for sending all sessions when shutting down
+     * @param sessionPersistenceHook Hook taking over sessions not sent on shutdown, may be {@code null}
+     * @param sessionSendOrder Order in which finished sessions are sent, sessions comparing lower are sent first
+     * @param sendCycleMaxBytes Number of beacon bytes sent in one send cycle
+     * @param sendCycleMaxTime Time in milliseconds for sending beacon data in one send cycle
+     * @param maxParallelChunkUploads Number of chunks of a single session uploaded at once
+     */
+    public BeaconSendingConfiguration(int numberOfSendWorkers, long openSessionSendThreshold, long maxBeaconBandwidth,
+                                      long shutdownTimeout, SessionPersistenceHook sessionPersistenceHook,
+                                      Comparator<SessionSendInfo> sessionSendOrder, long sendCycleMaxBytes,
+                                      long sendCycleMaxTime, int maxParallelChunkUploads) {
+        this.numberOfSendWorkers = numberOfSendWorkers;
+        this.openSessionSendThreshold = openSessionSendThreshold;
+        this.maxBeaconBandwidth = maxBeaconBandwidth;
+        this.shutdownTimeout = shutdownTimeout;
+        this.sessionPersistenceHook = sessionPersistenceHook;
+        this.sessionSendOrder = sessionSendOrder;
+        this.sendCycleMaxBytes = sendCycleMaxBytes;
+        this.sendCycleMaxTime = sendCycleMaxTime;
+        this.maxParallelChunkUploads = maxParallelChunkUploads;
+    }
+
+    /**
+     * Get the number of threads sending sessions in parallel.
+     *
+     * <p>
+     * A value of one or less means that sessions are sent by the beacon sender thread itself.
+     * </p>
+     */
+    public int getNumberOfSendWorkers() {
+        return numberOfSendWorkers;
+    }
+
+    /**
+     * Get the (estimated) number of bytes an open session may collect before it is sent, regardless of the send interval.
+     *
+     * <p>
+     * A value of zero or less disables sending open sessions early.
+     * </p>
+     */
+    public long getOpenSessionSendThreshold() {
+        return openSessionSendThreshold;
+    }
+
+    /**
+     * Get the maximum average number of (compressed) beacon bytes sent per second.
+     *
+     * <p>
+     * A value of zero or less disables limiting the bandwidth.
+     * </p>
+     */
+    public long getMaxBeaconBandwidth() {
+        return maxBeaconBandwidth;
+    }
+
+    /**
+     * Get the time in milliseconds for sending all sessions when shutting down.
+     *
+     * <p>
+     * Sessions not sent by then are passed to the {@link #getSessionPersistenceHook() session persistence hook}.
+     * </p>
+     */
+    public long getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * Get the hook taking over sessions, which were not sent on shutdown.
+     *
+     * <p>
+     * If this is {@code null}, such sessions are dropped.
+     * </p>
+     */
+    public SessionPersistenceHook getSessionPersistenceHook() {
+        return sessionPersistenceHook;
+    }
+
+    /**
+     * Get the order in which finished sessions are sent.
+     *
+     * <p>
+     * Sessions comparing lower are sent first, sessions comparing equal in the order they were finished.
+     * </p>
+     */
+    public Comparator<SessionSendInfo> getSessionSendOrder() {
+        return sessionSendOrder;
+    }
+
+    /**
+     * Get the number of beacon bytes sent in one send cycle.
+     *
+     * <p>
+     * Sessions take turns sending one request each, until this budget is used up. Sessions with data left
+     * continue with the next cycle. A value of zero or less disables the limit.
+     * </p>
+     */
+    public long getSendCycleMaxBytes() {
+        return sendCycleMaxBytes;
+    }
+
+    /**
+     * Get the time in milliseconds for sending beacon data in one send cycle.
+     *
+     * <p>
+     * See {@link #getSendCycleMaxBytes()}. A value of zero or less disables the limit.
+     * </p>
+     */
+    public long getSendCycleMaxTime() {
+        return sendCycleMaxTime;
+    }
+
+    /**
+     * Get the number of chunks of a single session uploaded at once.
+     *
+     * <p>
+     * A value of one or less means that chunks are sent one after another.
+     * </p>
+     */
+    public int getMaxParallelChunkUploads() {
+        return maxParallelChunkUploads;
+    }
+}
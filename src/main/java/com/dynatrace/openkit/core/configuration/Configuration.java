@@ -16,10 +16,13 @@
 
 package com.dynatrace.openkit.core.configuration;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.dynatrace.openkit.api.SSLTrustManager;
 import com.dynatrace.openkit.core.Device;
+import com.dynatrace.openkit.protocol.BandwidthLimiter;
 import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.providers.ConnectorProvider;
 import com.dynatrace.openkit.providers.SessionIDProvider;
@@ -35,10 +38,16 @@ public class Configuration {
     private static final boolean DEFAULT_CAPTURE_ERRORS = true;                     // default: capture errors on
     private static final boolean DEFAULT_CAPTURE_CRASHES = true;                    // default: capture crashes on
 
+    /**
+     * Default maximum length of crash stacktraces (in characters).
+     */
+    public static final int DEFAULT_MAX_STACKTRACE_LENGTH = 16 * 1024;
+
     // immutable settings
     private final String applicationName;
     private final OpenKitType openKitType;
     private final String deviceID;
+    private final int maxStacktraceLength;
 
     // mutable settings
     private AtomicBoolean capture;                               // capture on/off; can be written/read by different threads -> atomic
@@ -55,6 +64,9 @@ public class Configuration {
     // caching settings
     private final BeaconCacheConfiguration beaconCacheConfiguration;
 
+    // sending settings
+    private final BeaconSendingConfiguration beaconSendingConfiguration;
+
     private SessionIDProvider sessionIDProvider;
 
     private ConnectorProvider connectorProvider;
@@ -64,12 +76,31 @@ public class Configuration {
     public Configuration(OpenKitType openKitType, String applicationName, String deviceID,
                          SessionIDProvider sessionIDProvider, SSLTrustManager trustManager, Device device, String applicationVersion,
                          BeaconCacheConfiguration beaconCacheConfiguration, ConnectorProvider connectorProvider) {
+        this(openKitType, applicationName, deviceID, sessionIDProvider, trustManager, device, applicationVersion,
+            beaconCacheConfiguration, connectorProvider, DEFAULT_MAX_STACKTRACE_LENGTH);
+    }
+
+    public Configuration(OpenKitType openKitType, String applicationName, String deviceID,
+                         SessionIDProvider sessionIDProvider, SSLTrustManager trustManager, Device device, String applicationVersion,
+                         BeaconCacheConfiguration beaconCacheConfiguration, ConnectorProvider connectorProvider,
+                         int maxStacktraceLength) {
+        this(openKitType, applicationName, deviceID, sessionIDProvider, trustManager, device, applicationVersion,
+            beaconCacheConfiguration, connectorProvider, maxStacktraceLength,
+            new BeaconSendingConfiguration(BeaconSendingConfiguration.DEFAULT_NUMBER_OF_SEND_WORKERS), null);
+    }
+
+    public Configuration(OpenKitType openKitType, String applicationName, String deviceID,
+                         SessionIDProvider sessionIDProvider, SSLTrustManager trustManager, Device device, String applicationVersion,
+                         BeaconCacheConfiguration beaconCacheConfiguration, ConnectorProvider connectorProvider,
+                         int maxStacktraceLength, BeaconSendingConfiguration beaconSendingConfiguration,
+                         List<String> beaconEndpoints) {
 
         this.openKitType = openKitType;
 
         // immutable settings
         this.applicationName = applicationName;
         this.deviceID = deviceID;
+        this.maxStacktraceLength = maxStacktraceLength;
 
         // mutable settings
         capture = new AtomicBoolean(DEFAULT_CAPTURE);
@@ -80,18 +111,31 @@ public class Configuration {
 
         this.device = device;
 
+        // the limiter is created once, so that it also applies after the server ID changed
+        BandwidthLimiter bandwidthLimiter = null;
+        if (beaconSendingConfiguration.getMaxBeaconBandwidth() > 0) {
+            bandwidthLimiter = new BandwidthLimiter(beaconSendingConfiguration.getMaxBeaconBandwidth());
+        }
+
+        // without configured endpoints the default one is used
+        if (beaconEndpoints == null || beaconEndpoints.isEmpty()) {
+            beaconEndpoints = Collections.singletonList("");
+        }
+
         httpClientConfiguration =
             new HTTPClientConfiguration(
-                "",
+                beaconEndpoints,
                 openKitType.getDefaultServerID(),
                 "",
-                trustManager);
+                trustManager,
+                bandwidthLimiter);
 
         this.connectorProvider = connectorProvider;
 
         this.applicationVersion = applicationVersion;
 
         this.beaconCacheConfiguration = beaconCacheConfiguration;
+        this.beaconSendingConfiguration = beaconSendingConfiguration;
 
         this.sessionIDProvider = sessionIDProvider;
     }
@@ -127,10 +171,11 @@ public class Configuration {
         // check if http config changed
         if (httpClientConfiguration.getServerID() != newServerID) {
             httpClientConfiguration = new HTTPClientConfiguration(
-                "",
+                httpClientConfiguration.getBaseURLs(),
                 newServerID,
                 "",
-                httpClientConfiguration.getSSLTrustManager());
+                httpClientConfiguration.getSSLTrustManager(),
+                httpClientConfiguration.getBandwidthLimiter());
         }
 
         // use send interval from beacon response or default
@@ -171,6 +216,15 @@ public class Configuration {
         return deviceID;
     }
 
+    /**
+     * Get the maximum length of crash stacktraces, longer ones are truncated.
+     *
+     * @return Maximum stacktrace length in characters, or a negative value if unbounded.
+     */
+    public int getMaxStacktraceLength() {
+        return maxStacktraceLength;
+    }
+
     public ConnectorProvider getConnectorProvider() { return this.connectorProvider; }
 
     /**
@@ -232,4 +286,8 @@ public class Configuration {
     public BeaconCacheConfiguration getBeaconCacheConfiguration() {
          return beaconCacheConfiguration;
     }
+
+    public BeaconSendingConfiguration getBeaconSendingConfiguration() {
+        return beaconSendingConfiguration;
+    }
 }
@@ -17,6 +17,11 @@
 package com.dynatrace.openkit.core.configuration;
 
 import com.dynatrace.openkit.api.SSLTrustManager;
+import com.dynatrace.openkit.protocol.BandwidthLimiter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * The HTTPClientConfiguration holds all http client related settings
@@ -24,25 +29,58 @@ import com.dynatrace.openkit.api.SSLTrustManager;
 public class HTTPClientConfiguration {
 
     // all fields are immutable
-    private final String baseURL;
+    private final List<String> baseURLs;
     private final int serverId;
     private final String applicationID;
     private final SSLTrustManager sslTrustManager;
+    private final BandwidthLimiter bandwidthLimiter;
 
     public HTTPClientConfiguration(String baseURL, int serverID, String applicationID, SSLTrustManager sslTrustManager) {
-        this.baseURL = baseURL;
+        this(baseURL, serverID, applicationID, sslTrustManager, null);
+    }
+
+    public HTTPClientConfiguration(String baseURL, int serverID, String applicationID, SSLTrustManager sslTrustManager,
+                                   BandwidthLimiter bandwidthLimiter) {
+        this(Collections.singletonList(baseURL), serverID, applicationID, sslTrustManager, bandwidthLimiter);
+    }
+
+    /**
+     * Constructor for sending to one of several endpoints, e.g. regional collectors.
+     *
+     * <p>
+     * Requests are sent to the endpoint with the lowest latency and error rate, and fail over to the others.
+     * </p>
+     *
+     * @param baseURLs Base URLs of the endpoints, at least one.
+     */
+    public HTTPClientConfiguration(List<String> baseURLs, int serverID, String applicationID,
+                                   SSLTrustManager sslTrustManager, BandwidthLimiter bandwidthLimiter) {
+        if (baseURLs.isEmpty()) {
+            throw new IllegalArgumentException("At least one base URL is required");
+        }
+        this.baseURLs = Collections.unmodifiableList(new ArrayList<String>(baseURLs));
         this.serverId = serverID;
         this.applicationID = applicationID;
         this.sslTrustManager = sslTrustManager;
+        this.bandwidthLimiter = bandwidthLimiter;
     }
 
     /**
      * Returns the base url for the http client
      *
-     * @return the base url
+     * @return the base url, the first one if there are several endpoints
      */
     public String getBaseURL() {
-        return baseURL;
+        return baseURLs.get(0);
+    }
+
+    /**
+     * Returns the base urls of all endpoints requests may be sent to
+     *
+     * @return the base urls, in the configured order
+     */
+    public List<String> getBaseURLs() {
+        return baseURLs;
     }
 
     /**
@@ -69,4 +107,13 @@ public class HTTPClientConfiguration {
     public SSLTrustManager getSSLTrustManager() {
         return sslTrustManager;
     }
+
+    /**
+     * Returns the limiter for the bandwidth used by beacon data, which is shared by all connectors of an OpenKit instance.
+     *
+     * @return the limiter, or {@code null} if the bandwidth is not limited
+     */
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
 }
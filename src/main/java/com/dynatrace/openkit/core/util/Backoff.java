@@ -0,0 +1,67 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.util;
+
+import java.util.Random;
+
+/**
+ * This class provides static methods for computing retry delays.
+ *
+ * <p>
+ * Delays are randomized, so that many OpenKit instances which lost the connection at the same time
+ * do not retry in lockstep once the server is available again.
+ * </p>
+ */
+public class Backoff {
+
+    private static final Random RANDOM = new Random();
+
+    private Backoff() {
+    }
+
+    /**
+     * Randomize the given delay.
+     *
+     * @param delayInMillis The delay in milliseconds.
+     * @return A random delay between half of {@code delayInMillis} and {@code delayInMillis}.
+     */
+    public static long jitter(long delayInMillis) {
+        if (delayInMillis <= 1) {
+            return delayInMillis;
+        }
+
+        long half = delayInMillis / 2;
+        return delayInMillis - half + (long) (RANDOM.nextDouble() * (half + 1));
+    }
+
+    /**
+     * Get the exponentially growing delay for the given attempt, without randomization.
+     *
+     * @param initialDelayInMillis The delay of the first attempt.
+     * @param attempt The attempt, starting with zero.
+     * @param maxDelayInMillis The upper bound for the delay.
+     * @return {@code initialDelayInMillis * 2^attempt}, but at most {@code maxDelayInMillis}.
+     */
+    public static long exponential(long initialDelayInMillis, int attempt, long maxDelayInMillis) {
+        long delay = initialDelayInMillis;
+        for (int i = 0; i < attempt && delay < maxDelayInMillis; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxDelayInMillis);
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.providers.DefaultTimingProvider;
+import com.dynatrace.openkit.providers.TimingProvider;
+
+/**
+ * Token bucket limiting the outbound bandwidth used for beacon data.
+ *
+ * <p>
+ * The bucket is refilled with the configured number of bytes per second, up to one second worth of bytes.
+ * Sending is allowed as long as the bucket is not empty, and the bytes actually sent are taken from it
+ * afterwards, possibly leaving a debt. This way the size of a request need not be known before sending it,
+ * while the average rate still does not exceed the limit.
+ * </p>
+ *
+ * <p>
+ * Besides limiting, the current throughput and the time sending was held back are recorded.
+ * This class is thread safe, since one instance is shared by all requests of an OpenKit instance.
+ * </p>
+ */
+public class BandwidthLimiter {
+
+    // length of the window used for measuring the throughput
+    private static final long THROUGHPUT_WINDOW_MILLISECONDS = 1000;
+
+    private final long bytesPerSecond;
+    private final TimingProvider timingProvider;
+
+    // state, guarded by this
+    private double tokens;
+    private long lastRefillTime;
+    private long throttledSince = -1;
+    private long throttledTime = 0;
+    private long sentBytes = 0;
+    private long windowStartTime;
+    private long windowBytes = 0;
+    private long throughput = 0;
+
+    public BandwidthLimiter(long bytesPerSecond) {
+        this(bytesPerSecond, new DefaultTimingProvider());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bytesPerSecond Maximum average number of bytes sent per second, must be greater than zero.
+     * @param timingProvider Provider for the current time.
+     */
+    public BandwidthLimiter(long bytesPerSecond, TimingProvider timingProvider) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("bytesPerSecond must be greater than zero");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.timingProvider = timingProvider;
+
+        long currentTime = timingProvider.provideTimestampInMilliseconds();
+        tokens = bytesPerSecond;
+        lastRefillTime = currentTime;
+        windowStartTime = currentTime;
+    }
+
+    /**
+     * Get the time until sending is allowed again.
+     *
+     * @return Time in milliseconds, zero if sending is allowed right now.
+     */
+    public synchronized long getDelay() {
+        long currentTime = timingProvider.provideTimestampInMilliseconds();
+        refill(currentTime);
+
+        if (tokens > 0) {
+            if (throttledSince >= 0) {
+                throttledTime += currentTime - throttledSince;
+                throttledSince = -1;
+            }
+            return 0;
+        }
+
+        if (throttledSince < 0) {
+            throttledSince = currentTime;
+        }
+        // time until the debt is paid off and at least one byte is available again
+        return (long) Math.ceil((1 - tokens) * 1000 / bytesPerSecond);
+    }
+
+    /**
+     * Record bytes which are sent.
+     *
+     * @param numBytes Number of bytes.
+     */
+    public synchronized void consume(long numBytes) {
+        long currentTime = timingProvider.provideTimestampInMilliseconds();
+        refill(currentTime);
+        updateThroughput(currentTime);
+
+        tokens -= numBytes;
+        sentBytes += numBytes;
+        windowBytes += numBytes;
+    }
+
+    /**
+     * @return The configured limit in bytes per second.
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return Total number of bytes sent.
+     */
+    public synchronized long getSentBytes() {
+        return sentBytes;
+    }
+
+    /**
+     * @return Number of bytes sent per second, measured over the last complete second.
+     */
+    public synchronized long getThroughput() {
+        updateThroughput(timingProvider.provideTimestampInMilliseconds());
+        return throughput;
+    }
+
+    /**
+     * @return Total time in milliseconds sending was held back, including a currently ongoing period.
+     */
+    public synchronized long getThrottledTime() {
+        if (throttledSince < 0) {
+            return throttledTime;
+        }
+        return throttledTime + timingProvider.provideTimestampInMilliseconds() - throttledSince;
+    }
+
+    private void refill(long currentTime) {
+        long elapsed = currentTime - lastRefillTime;
+        if (elapsed > 0) {
+            tokens = Math.min(bytesPerSecond, tokens + (double) elapsed * bytesPerSecond / 1000);
+            lastRefillTime = currentTime;
+        }
+    }
+
+    private void updateThroughput(long currentTime) {
+        long elapsed = currentTime - windowStartTime;
+        if (elapsed < THROUGHPUT_WINDOW_MILLISECONDS) {
+            return;
+        }
+        // nothing sent for more than a window means no throughput at all
+        throughput = elapsed < 2 * THROUGHPUT_WINDOW_MILLISECONDS ? windowBytes * 1000 / elapsed : 0;
+        windowStartTime = currentTime;
+        windowBytes = 0;
+    }
+}
@@ -21,6 +21,7 @@ import com.dynatrace.openkit.core.ActionImpl;
 import com.dynatrace.openkit.core.SessionImpl;
 import com.dynatrace.openkit.core.WebRequestTracerBaseImpl;
 import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
 import com.dynatrace.openkit.core.util.InetAddressValidator;
@@ -28,8 +29,20 @@ import com.dynatrace.openkit.providers.ConnectorProvider;
 import com.dynatrace.openkit.providers.ThreadIDProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.math.BigInteger;
 import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -59,26 +72,6 @@ public class Beacon implements IPayloadGenerator {
     private static final String BEACON_KEY_TIMESYNC_TIME = "ts";
     private static final String BEACON_KEY_TRANSMISSION_TIME = "tx";
 
-    // Action related constants
-    private static final String BEACON_KEY_EVENT_TYPE = "et";
-    private static final String BEACON_KEY_NAME = "na";
-    private static final String BEACON_KEY_THREAD_ID = "it";
-    private static final String BEACON_KEY_ACTION_ID = "ca";
-    private static final String BEACON_KEY_PARENT_ACTION_ID = "pa";
-    private static final String BEACON_KEY_START_SEQUENCE_NUMBER = "s0";
-    private static final String BEACON_KEY_TIME_0 = "t0";
-    private static final String BEACON_KEY_END_SEQUENCE_NUMBER = "s1";
-    private static final String BEACON_KEY_TIME_1 = "t1";
-
-    // data, error & crash capture constants
-    private static final String BEACON_KEY_VALUE = "vl";
-    private static final String BEACON_KEY_ERROR_CODE = "ev";
-    private static final String BEACON_KEY_ERROR_REASON = "rs";
-    private static final String BEACON_KEY_ERROR_STACKTRACE = "st";
-    private static final String BEACON_KEY_WEBREQUEST_RESPONSECODE = "rc";
-    private static final String BEACON_KEY_WEBREQUEST_BYTES_SENT = "bs";
-    private static final String BEACON_KEY_WEBREQUEST_BYTES_RECEIVED = "br";
-
     // version constants
     public static final String OPENKIT_VERSION = "7.0.0000";
     private static final int PROTOCOL_VERSION = 3;
@@ -121,8 +114,17 @@ public class Beacon implements IPayloadGenerator {
 
     private final Logger logger;
 
+    // whether an error was reported, which makes this beacon more important to send
+    private volatile boolean errorReported = false;
+
     private final BeaconCacheImpl beaconCache;
 
+    // reported events, which are only serialized when sent
+    private final BeaconEventStore eventStore;
+
+    // the session this beacon belongs to, which is marked whenever data is added
+    private volatile SessionImpl session = null;
+
     // *** constructors ***
 
     /**
@@ -139,6 +141,7 @@ public class Beacon implements IPayloadGenerator {
 			ThreadIDProvider threadIDProvider, TimingProvider timingProvider, ConnectorProvider connectorProvider) {
         this.logger = logger;
         this.beaconCache = beaconCache;
+        this.eventStore = new BeaconEventStore(logger, beaconCache);
         this.sessionNumber = configuration.createSessionNumber();
         this.timingProvider = timingProvider;
 
@@ -184,6 +187,16 @@ public class Beacon implements IPayloadGenerator {
         return timingProvider.provideTimestampInMilliseconds();
     }
 
+    /**
+     * Get the timestamp when the session of this Beacon was started.
+     *
+     * @return Session start time in milliseconds.
+     */
+    @Override
+	public long getSessionStartTime() {
+        return sessionStartTime;
+    }
+
     /**
      * Create a unique sequence number.
      *
@@ -227,54 +240,67 @@ public class Beacon implements IPayloadGenerator {
      * Add {@link ActionImpl} to Beacon.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
      * </p>
      *
      * @param action The action to add.
      */
     @Override
 	public void addAction(ActionImpl action) {
-        StringBuilder actionBuilder = new StringBuilder();
-
-        buildBasicEventData(actionBuilder, EventType.ACTION, action.getName());
+        if (!configuration.isCapture()) {
+            return;
+        }
 
-        addKeyValuePair(actionBuilder, BEACON_KEY_ACTION_ID, action.getID());
-        addKeyValuePair(actionBuilder, BEACON_KEY_PARENT_ACTION_ID, action.getParentID());
-        addKeyValuePair(actionBuilder, BEACON_KEY_START_SEQUENCE_NUMBER, action.getStartSequenceNo());
-        addKeyValuePair(actionBuilder, BEACON_KEY_TIME_0, getTimeSinceSessionStartTime(action.getStartTime()));
-        addKeyValuePair(actionBuilder, BEACON_KEY_END_SEQUENCE_NUMBER, action.getEndSequenceNo());
-        addKeyValuePair(actionBuilder, BEACON_KEY_TIME_1, action.getEndTime() - action.getStartTime());
+        int row = eventStore.addAction(truncateName(action.getName()), threadIDProvider.getThreadID(), action.getID(),
+            action.getParentID(), action.getStartSequenceNo(), getTimeSinceSessionStartTime(action.getStartTime()),
+            action.getEndSequenceNo(), action.getEndTime() - action.getStartTime());
 
-        addActionData(action.getStartTime(), actionBuilder);
+        beaconCache.addActionData(sessionNumber, action.getStartTime(), eventStore, row);
+        markNewData();
     }
 
+    /**
+     * Start the session this Beacon belongs to.
+     *
+     * <p>
+     * The session is marked whenever data is added, so that it is sent with the next send interval.
+     * Open sessions are not sent early.
+     * </p>
+     *
+     * @param session The session which is started.
+     */
+    @Override
+	public void startSession(SessionImpl session) {
+		this.session = session;
+	}
+
     /**
      * Add {@link SessionImpl} to Beacon when session is ended.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
      * </p>
      *
      * @param session The session to add.
      */
     @Override
 	public void endSession(SessionImpl session) {
-        StringBuilder eventBuilder = new StringBuilder();
-
-        buildBasicEventData(eventBuilder, EventType.SESSION_END, null);
+        int sequenceNumber = createSequenceNumber();
+        if (!configuration.isCapture()) {
+            return;
+        }
 
-        addKeyValuePair(eventBuilder, BEACON_KEY_PARENT_ACTION_ID, 0);
-        addKeyValuePair(eventBuilder, BEACON_KEY_START_SEQUENCE_NUMBER, createSequenceNumber());
-        addKeyValuePair(eventBuilder, BEACON_KEY_TIME_0, getTimeSinceSessionStartTime(session.getEndTime()));
+        int row = eventStore.addEvent(EventType.SESSION_END, null, threadIDProvider.getThreadID(), 0, sequenceNumber,
+            getTimeSinceSessionStartTime(session.getEndTime()));
 
-        addEventData(session.getEndTime(), eventBuilder);
+        addEventData(session.getEndTime(), row);
     }
 
     /**
      * Add key-value-pair to Beacon.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
      * </p>
      *
      * @param parentAction The {@link com.dynatrace.openkit.api.Action} on which this value was reported.
@@ -283,19 +309,23 @@ public class Beacon implements IPayloadGenerator {
      */
     @Override
 	public void reportValue(ActionImpl parentAction, String valueName, int value) {
-        StringBuilder eventBuilder = new StringBuilder();
+        long timestamp = timingProvider.provideTimestampInMilliseconds();
+        int sequenceNumber = createSequenceNumber();
+        if (!configuration.isCapture()) {
+            return;
+        }
 
-        long eventTimestamp = buildEvent(eventBuilder, EventType.VALUE_INT, valueName, parentAction);
-        addKeyValuePair(eventBuilder, BEACON_KEY_VALUE, value);
+        int row = eventStore.addIntValue(truncateName(valueName), threadIDProvider.getThreadID(), parentAction.getID(),
+            sequenceNumber, getTimeSinceSessionStartTime(timestamp), value);
 
-        addEventData(eventTimestamp, eventBuilder);
+        addEventData(timestamp, row);
     }
 
     /**
      * Add key-value-pair to Beacon.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
      * </p>
      *
      * @param parentAction The {@link com.dynatrace.openkit.api.Action} on which this value was reported.
@@ -304,19 +334,23 @@ public class Beacon implements IPayloadGenerator {
      */
     @Override
 	public void reportValue(ActionImpl parentAction, String valueName, double value) {
-        StringBuilder eventBuilder = new StringBuilder();
+        long timestamp = timingProvider.provideTimestampInMilliseconds();
+        int sequenceNumber = createSequenceNumber();
+        if (!configuration.isCapture()) {
+            return;
+        }
 
-        long eventTimestamp = buildEvent(eventBuilder, EventType.VALUE_DOUBLE, valueName, parentAction);
-        addKeyValuePair(eventBuilder, BEACON_KEY_VALUE, value);
+        int row = eventStore.addDoubleValue(truncateName(valueName), threadIDProvider.getThreadID(),
+            parentAction.getID(), sequenceNumber, getTimeSinceSessionStartTime(timestamp), value);
 
-        addEventData(eventTimestamp, eventBuilder);
+        addEventData(timestamp, row);
     }
 
     /**
      * Add key-value-pair to Beacon.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
      * </p>
      *
      * @param parentAction The {@link com.dynatrace.openkit.api.Action} on which this value was reported.
@@ -325,21 +359,23 @@ public class Beacon implements IPayloadGenerator {
      */
     @Override
 	public void reportValue(ActionImpl parentAction, String valueName, String value) {
-        StringBuilder eventBuilder = new StringBuilder();
-
-        long eventTimestamp = buildEvent(eventBuilder, EventType.VALUE_STRING, valueName, parentAction);
-        if (value != null) {
-            addKeyValuePair(eventBuilder, BEACON_KEY_VALUE, truncate(value));
+        long timestamp = timingProvider.provideTimestampInMilliseconds();
+        int sequenceNumber = createSequenceNumber();
+        if (!configuration.isCapture()) {
+            return;
         }
 
-        addEventData(eventTimestamp, eventBuilder);
+        int row = eventStore.addStringValue(truncateName(valueName), threadIDProvider.getThreadID(),
+            parentAction.getID(), sequenceNumber, getTimeSinceSessionStartTime(timestamp), truncateName(value));
+
+        addEventData(timestamp, row);
     }
 
     /**
      * Add event (aka. named event) to Beacon.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
      * </p>
      *
      * @param parentAction The {@link com.dynatrace.openkit.api.Action} on which this event was reported.
@@ -347,18 +383,23 @@ public class Beacon implements IPayloadGenerator {
      */
     @Override
 	public void reportEvent(ActionImpl parentAction, String eventName) {
-        StringBuilder eventBuilder = new StringBuilder();
+        long timestamp = timingProvider.provideTimestampInMilliseconds();
+        int sequenceNumber = createSequenceNumber();
+        if (!configuration.isCapture()) {
+            return;
+        }
 
-        long eventTimestamp = buildEvent(eventBuilder, EventType.NAMED_EVENT, eventName, parentAction);
+        int row = eventStore.addEvent(EventType.NAMED_EVENT, truncateName(eventName), threadIDProvider.getThreadID(),
+            parentAction.getID(), sequenceNumber, getTimeSinceSessionStartTime(timestamp));
 
-        addEventData(eventTimestamp, eventBuilder);
+        addEventData(timestamp, row);
     }
 
     /**
      * Add error to Beacon.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
      * </p>
      *
      * @param parentAction The {@link com.dynatrace.openkit.api.Action} on which this error was reported.
@@ -373,27 +414,26 @@ public class Beacon implements IPayloadGenerator {
             return;
         }
 
-        StringBuilder eventBuilder = new StringBuilder();
-
-        buildBasicEventData(eventBuilder, EventType.ERROR, errorName);
-
         long timestamp = timingProvider.provideTimestampInMilliseconds();
-        addKeyValuePair(eventBuilder, BEACON_KEY_PARENT_ACTION_ID, parentAction.getID());
-        addKeyValuePair(eventBuilder, BEACON_KEY_START_SEQUENCE_NUMBER, createSequenceNumber());
-        addKeyValuePair(eventBuilder, BEACON_KEY_TIME_0, getTimeSinceSessionStartTime(timestamp));
-        addKeyValuePair(eventBuilder, BEACON_KEY_ERROR_CODE, errorCode);
-        if (reason != null) {
-            addKeyValuePair(eventBuilder, BEACON_KEY_ERROR_REASON, reason);
+        int sequenceNumber = createSequenceNumber();
+        if (!configuration.isCapture()) {
+            return;
         }
 
-        addEventData(timestamp, eventBuilder);
+        int row = eventStore.addError(truncateName(errorName), threadIDProvider.getThreadID(), parentAction.getID(),
+            sequenceNumber, getTimeSinceSessionStartTime(timestamp), errorCode, reason);
+
+        addEventData(timestamp, row);
+        errorReported = true;
     }
 
     /**
      * Add crash to Beacon.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
+     * The stacktrace is truncated to {@link Configuration#getMaxStacktraceLength()}, and a crash identical to the
+     * previous one is only counted instead of being added again.
      * </p>
      *
      * @param errorName Error's name.
@@ -407,29 +447,28 @@ public class Beacon implements IPayloadGenerator {
             return;
         }
 
-        StringBuilder eventBuilder = new StringBuilder();
-
-        buildBasicEventData(eventBuilder, EventType.CRASH, errorName);
-
         long timestamp = timingProvider.provideTimestampInMilliseconds();
-        addKeyValuePair(eventBuilder, BEACON_KEY_PARENT_ACTION_ID, 0);                                  // no parent action
-        addKeyValuePair(eventBuilder, BEACON_KEY_START_SEQUENCE_NUMBER, createSequenceNumber());
-        addKeyValuePair(eventBuilder, BEACON_KEY_TIME_0, getTimeSinceSessionStartTime(timestamp));
-        if (reason != null) {
-            addKeyValuePair(eventBuilder, BEACON_KEY_ERROR_REASON, reason);
+        int sequenceNumber = createSequenceNumber();
+        if (!configuration.isCapture()) {
+            return;
         }
-        if (stacktrace != null) {
-            addKeyValuePair(eventBuilder, BEACON_KEY_ERROR_STACKTRACE, stacktrace);
+
+        // crashes have no parent action
+        int row = eventStore.addCrash(truncateName(errorName), threadIDProvider.getThreadID(), sequenceNumber,
+            getTimeSinceSessionStartTime(timestamp), reason, truncateStacktrace(stacktrace));
+        if (row == BeaconEventStore.NO_ROW) {
+            // identical to the previous crash, which was just counted
+            return;
         }
 
-        addEventData(timestamp, eventBuilder);
+        addEventData(timestamp, row);
     }
 
     /**
      * Add web request to Beacon.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
      * </p>
      *
      * @param parentAction The {@link com.dynatrace.openkit.api.Action} on which this web request was reported.
@@ -437,51 +476,39 @@ public class Beacon implements IPayloadGenerator {
      */
     @Override
 	public void addWebRequest(ActionImpl parentAction, WebRequestTracerBaseImpl webRequestTracer) {
-        StringBuilder eventBuilder = new StringBuilder();
-
-        buildBasicEventData(eventBuilder, EventType.WEBREQUEST, webRequestTracer.getURL());
-
-        addKeyValuePair(eventBuilder, BEACON_KEY_PARENT_ACTION_ID, parentAction.getID());
-        addKeyValuePair(eventBuilder, BEACON_KEY_START_SEQUENCE_NUMBER, webRequestTracer.getStartSequenceNo());
-        addKeyValuePair(eventBuilder, BEACON_KEY_TIME_0, getTimeSinceSessionStartTime(webRequestTracer.getStartTime()));
-        addKeyValuePair(eventBuilder, BEACON_KEY_END_SEQUENCE_NUMBER, webRequestTracer.getEndSequenceNo());
-        addKeyValuePair(eventBuilder, BEACON_KEY_TIME_1, webRequestTracer.getEndTime() - webRequestTracer.getStartTime());
-
-        if (webRequestTracer.getBytesSent() > -1) {
-            addKeyValuePair(eventBuilder, BEACON_KEY_WEBREQUEST_BYTES_SENT, webRequestTracer.getBytesSent());
-        }
-
-        if (webRequestTracer.getBytesReceived() > -1) {
-            addKeyValuePair(eventBuilder, BEACON_KEY_WEBREQUEST_BYTES_RECEIVED, webRequestTracer.getBytesReceived());
+        if (!configuration.isCapture()) {
+            return;
         }
 
-        if (webRequestTracer.getResponseCode() != -1) {
-            addKeyValuePair(eventBuilder, BEACON_KEY_WEBREQUEST_RESPONSECODE, webRequestTracer.getResponseCode());
-        }
+        int row = eventStore.addWebRequest(truncateName(webRequestTracer.getURL()), threadIDProvider.getThreadID(),
+            parentAction.getID(), webRequestTracer.getStartSequenceNo(),
+            getTimeSinceSessionStartTime(webRequestTracer.getStartTime()), webRequestTracer.getEndSequenceNo(),
+            webRequestTracer.getEndTime() - webRequestTracer.getStartTime(), webRequestTracer.getBytesSent(),
+            webRequestTracer.getBytesReceived(), webRequestTracer.getResponseCode());
 
-        addEventData(webRequestTracer.getStartTime(), eventBuilder);
+        addEventData(webRequestTracer.getStartTime(), row);
     }
     /**
      * Add user identification to Beacon.
      *
      * <p>
-     * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     * The data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache} and only serialized when it is sent.
      * </p>
      *
      * @param userTag User tag containing data to serialize.
      */
     @Override
 	public void identifyUser(String userTag) {
-        StringBuilder eventBuilder = new StringBuilder();
-
-        buildBasicEventData(eventBuilder, EventType.IDENTIFY_USER, userTag);
-
         long timestamp = timingProvider.provideTimestampInMilliseconds();
-        addKeyValuePair(eventBuilder, BEACON_KEY_PARENT_ACTION_ID, 0);
-        addKeyValuePair(eventBuilder, BEACON_KEY_START_SEQUENCE_NUMBER, createSequenceNumber());
-        addKeyValuePair(eventBuilder, BEACON_KEY_TIME_0, getTimeSinceSessionStartTime(timestamp));
+        int sequenceNumber = createSequenceNumber();
+        if (!configuration.isCapture()) {
+            return;
+        }
+
+        int row = eventStore.addEvent(EventType.IDENTIFY_USER, truncateName(userTag), threadIDProvider.getThreadID(),
+            0, sequenceNumber, getTimeSinceSessionStartTime(timestamp));
 
-        addEventData(timestamp, eventBuilder);
+        addEventData(timestamp, row);
     }
 
     /**
@@ -489,57 +516,323 @@ public class Beacon implements IPayloadGenerator {
      *
      * <p>
      * This method tries to send all so far collected and serialized data.
+     * Data which could not be sent, e.g. because the bandwidth for beacon data is exhausted, stays in the cache.
+     * </p>
+     *
+     * <p>
+     * If the data does not fit into one chunk, the following chunk is prepared in the background,
+     * while the previous one is sent. If parallel chunk uploads are configured, several chunks are sent at once instead.
      * </p>
      *
-     * @param provider Provider for getting an {@link HTTPConnector} required to send the data.
+     * @param provider Provider for getting a {@link Connector} required to send the data.
      *
      * @return Returns the last status response retrieved from the server side, or {@code null} if an error occurred.
      */
     @Override
 	public StatusResponse send() {
 
-		HTTPConnector httpClient = (HTTPConnector)connectorProvider.createConnector(httpConfiguration);
+        if (isEmpty()) {
+            // no data added so far or no data to send
+            return null;
+        }
+		Connector httpClient = connectorProvider.createConnector(httpConfiguration);
         StatusResponse response = null;
 
-        while (true) {
+        if (httpClient == null || httpClient.getThrottleDelay() > 0) {
+            // no connector or bandwidth is exhausted - data stays in the cache and is sent another time
+            return null;
+        }
 
-            // prefix for this chunk - must be built up newly, due to changing timestamps
-            String prefix = basicBeaconData + BEACON_DATA_DELIMITER + createTimestampData();
-            // subtract 1024 to ensure that the chunk does not exceed the send size configured on server side?
-            // i guess that was the original intention, but i'm not sure about this
-            // TODO stefan.eberl - This is a quite uncool algorithm and should be improved, avoid subtracting some "magic" number
-            String chunk = beaconCache.getNextBeaconChunk(sessionNumber, prefix, configuration.getMaxBeaconSize() - 1024, BEACON_DATA_DELIMITER);
-            if (chunk == null || chunk.isEmpty()) {
-                // no data added so far or no data to send
+        int maxParallelChunkUploads = getMaxParallelChunkUploads();
+        if (maxParallelChunkUploads > 1) {
+            return sendChunksInParallel(httpClient, maxParallelChunkUploads);
+        }
+
+        Chunk chunk = getNextChunk();
+        while (chunk != null && !chunk.isEmpty()) {
+
+            Future<Chunk> followingChunk = null;
+            if (chunk.length() > getMaxChunkSize()) {
+                // chunk is full, so there is more data - serialize it while this chunk is sent
+                followingChunk = ChunkPreparationExecutor.submit(new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() {
+                        return getFollowingChunk();
+                    }
+                });
+            }
+
+            response = sendRequest(httpClient, chunk);
+            Chunk nextChunk = awaitFollowingChunk(followingChunk);
+            if (response == null) {
+                // error happened - but don't know what exactly
+                // reset all retrieved chunks (restore them in internal cache) & retry another time
+                beaconCache.resetChunkedData(sessionNumber);
+                return null;
+            }
+
+            // worked -> remove the sent chunk from cache, the following one is still to be sent
+            beaconCache.removeOldestChunkedData(sessionNumber);
+            if (nextChunk == null) {
+                // preparing the following chunk failed - restore whatever it retrieved
+                beaconCache.resetChunkedData(sessionNumber);
                 return response;
             }
 
-            byte[] encodedBeacon;
-            try {
-                encodedBeacon = chunk.getBytes(CHARSET);
-            } catch (UnsupportedEncodingException e) {
-                // must not happen, as UTF-8 should *really* be supported
-                logger.error("Required charset \"" + CHARSET + "\" is not supported.", e);
+            if (!nextChunk.isEmpty() && httpClient.getThrottleDelay() > 0) {
+                // bandwidth is exhausted - remaining data stays in the cache and is sent another time
                 beaconCache.resetChunkedData(sessionNumber);
+                return null;
+            }
+            chunk = nextChunk;
+        }
+
+        return response;
+    }
+
+    /**
+     * Send all cached data, uploading up to the given number of chunks at once.
+     *
+     * <p>
+     * Chunks which were sent are removed from the cache. If any chunk of a round fails, the other chunks
+     * of that round are restored in the cache and sent another time, so that no data is sent twice.
+     * </p>
+     *
+     * @return Returns the status response of the last chunk, or {@code null} if an error occurred.
+     */
+    private StatusResponse sendChunksInParallel(final Connector httpClient, int maxParallelChunkUploads) {
+
+        StatusResponse response = null;
+        List<Chunk> chunks = new ArrayList<Chunk>(maxParallelChunkUploads);
+        List<Future<StatusResponse>> uploads = new ArrayList<Future<StatusResponse>>(maxParallelChunkUploads);
+
+        while (true) {
+            chunks.clear();
+            uploads.clear();
+
+            Chunk chunk = getNextChunk();
+            while (chunk != null && !chunk.isEmpty()) {
+                chunks.add(chunk);
+                if (chunks.size() == maxParallelChunkUploads || chunk.length() <= getMaxChunkSize()) {
+                    // enough chunks for this round or all data retrieved
+                    break;
+                }
+                chunk = getFollowingChunk();
+            }
+            if (chunks.isEmpty()) {
+                // no data added so far or no data to send
                 return response;
             }
 
-            // send the request
-            response = httpClient.sendBeaconRequest(clientIPAddress, encodedBeacon);
-            if (response == null) {
-                // error happened - but don't know what exactly
-                // reset the previously retrieved chunk (restore it in internal cache) & retry another time
+            // upload the following chunks in the background, the first one with this thread
+            for (final Chunk followingChunk : chunks.subList(1, chunks.size())) {
+                uploads.add(ChunkUploadExecutor.submit(new Callable<StatusResponse>() {
+                    @Override
+                    public StatusResponse call() {
+                        return sendRequest(httpClient, followingChunk);
+                    }
+                }));
+            }
+            StatusResponse[] responses = new StatusResponse[chunks.size()];
+            responses[0] = sendRequest(httpClient, chunks.get(0));
+            for (int i = 1; i < responses.length; i++) {
+                responses[i] = awaitUpload(uploads.get(i - 1));
+            }
+
+            // remove the chunks which were sent - newest first, so that the indices of the older ones stay valid
+            boolean allChunksSent = true;
+            for (int i = responses.length - 1; i >= 0; i--) {
+                if (responses[i] != null) {
+                    beaconCache.removeChunkedDataAt(sessionNumber, i);
+                } else {
+                    allChunksSent = false;
+                }
+            }
+            if (!allChunksSent) {
+                // error happened - restore the chunks which were not sent & retry another time
                 beaconCache.resetChunkedData(sessionNumber);
-                break;
-            } else {
-                // worked -> remove previously retrieved chunk from cache
-                beaconCache.removeChunkedData(sessionNumber);
+                return null;
+            }
+
+            response = responses[responses.length - 1];
+            if (chunks.get(chunks.size() - 1).length() <= getMaxChunkSize()) {
+                // the last chunk was not full, so all data was sent
+                return response;
             }
+            if (httpClient.getThrottleDelay() > 0) {
+                // bandwidth is exhausted - remaining data stays in the cache and is sent another time
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Wait for a chunk being uploaded in the background.
+     *
+     * @return The status response, or {@code null} if uploading the chunk failed.
+     */
+    private StatusResponse awaitUpload(Future<StatusResponse> upload) {
+        try {
+            return ChunkPreparationExecutor.await(upload);
+        } catch (ExecutionException e) {
+            logger.error("Failed to upload beacon chunk", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Send the next chunk of this Beacon, taking its size from the given budget.
+     *
+     * <p>
+     * Only one chunk is sent per call, so that sessions can take turns. The remaining data stays in the cache.
+     * </p>
+     *
+     * @param budget The budget of the current send cycle.
+     *
+     * @return Returns the status response of the sent chunk, or {@code null} if nothing was sent or an error occurred.
+     */
+    @Override
+    public StatusResponse send(SendBudget budget) {
+
+        if (isEmpty()) {
+            // no data added so far or no data to send
+            return null;
+        }
+        Connector httpClient = connectorProvider.createConnector(httpConfiguration);
+        if (httpClient == null || httpClient.getThrottleDelay() > 0) {
+            // no connector or bandwidth is exhausted - data stays in the cache and is sent another time
+            return null;
         }
 
+        Chunk chunk = getNextChunk();
+        if (chunk == null || chunk.isEmpty()) {
+            // no data added so far or no data to send
+            return null;
+        }
+
+        StatusResponse response = sendChunk(httpClient, chunk);
+        if (response != null) {
+            budget.consume(chunk.length());
+        }
         return response;
     }
 
+    /**
+     * Get the next chunk of cached data to send, which must be removed or reset afterwards.
+     */
+    private Chunk getNextChunk() {
+        // prefix for this chunk - must be built up newly, due to changing timestamps
+        String prefix = basicBeaconData + BEACON_DATA_DELIMITER + createTimestampData();
+        return Chunk.of(prefix,
+            beaconCache.getNextBeaconChunk(sessionNumber, prefix, getMaxChunkSize(), BEACON_DATA_DELIMITER));
+    }
+
+    /**
+     * Get the chunk of cached data following the chunks retrieved so far, which must be removed or reset afterwards.
+     */
+    private Chunk getFollowingChunk() {
+        String prefix = basicBeaconData + BEACON_DATA_DELIMITER + createTimestampData();
+        return Chunk.of(prefix,
+            beaconCache.getFollowingBeaconChunk(sessionNumber, prefix, getMaxChunkSize(), BEACON_DATA_DELIMITER));
+    }
+
+    private int getMaxParallelChunkUploads() {
+        BeaconSendingConfiguration beaconSendingConfiguration = configuration.getBeaconSendingConfiguration();
+        return beaconSendingConfiguration == null
+            ? BeaconSendingConfiguration.DEFAULT_MAX_PARALLEL_CHUNK_UPLOADS
+            : beaconSendingConfiguration.getMaxParallelChunkUploads();
+    }
+
+    private int getMaxChunkSize() {
+        // subtract 1024 to ensure that the chunk does not exceed the send size configured on server side?
+        // i guess that was the original intention, but i'm not sure about this
+        // TODO stefan.eberl - This is a quite uncool algorithm and should be improved, avoid subtracting some "magic" number
+        return configuration.getMaxBeaconSize() - 1024;
+    }
+
+    /**
+     * Wait for the following chunk being prepared in the background.
+     *
+     * @return The following chunk, an empty chunk if there is none, or {@code null} if preparing it failed.
+     */
+    private Chunk awaitFollowingChunk(Future<Chunk> followingChunk) {
+        if (followingChunk == null) {
+            // all data was part of the previous chunk
+            return Chunk.EMPTY;
+        }
+
+        try {
+            return ChunkPreparationExecutor.await(followingChunk);
+        } catch (ExecutionException e) {
+            logger.error("Failed to prepare beacon chunk", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Send the given chunk, and remove it from the cache if it was sent.
+     *
+     * @return The status response, or {@code null} if an error occurred and the chunk was restored in the cache.
+     */
+    private StatusResponse sendChunk(Connector httpClient, Chunk chunk) {
+
+        StatusResponse response = sendRequest(httpClient, chunk);
+        if (response == null) {
+            // error happened - but don't know what exactly
+            // reset the previously retrieved chunk (restore it in internal cache) & retry another time
+            beaconCache.resetChunkedData(sessionNumber);
+        } else {
+            // worked -> remove previously retrieved chunk from cache
+            beaconCache.removeChunkedData(sessionNumber);
+        }
+
+        return response;
+    }
+
+    /**
+     * Send the given chunk, without removing it from the cache.
+     */
+    private StatusResponse sendRequest(Connector httpClient, final Chunk chunk) {
+
+        // send the request - the chunk is encoded and compressed while it is streamed to the server
+        return httpClient.sendBeaconRequest(clientIPAddress, new HTTPConnector.BodyWriter() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                Writer writer = new OutputStreamWriter(outputStream, CHARSET);
+                writer.write(chunk.getText());
+                writer.flush();
+            }
+
+            @Override
+            public String getDocumentKey() {
+                return getChunkKey(chunk);
+            }
+        });
+    }
+
+    /**
+     * Get the key identifying the data of the given chunk.
+     *
+     * <p>
+     * The timestamp data in the chunk's prefix is built newly whenever the chunk is built, e.g. when it is sent again
+     * after an error. The key leaves it out, so that it's the same for the same data of this Beacon.
+     * </p>
+     */
+    private String getChunkKey(Chunk chunk) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            messageDigest.update(basicBeaconData.getBytes(CHARSET));
+            messageDigest.update(chunk.getData().getBytes(CHARSET));
+            return sessionNumber + ":" + new BigInteger(1, messageDigest.digest()).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            // must not happen, as every JRE supports SHA-256
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            // must not happen, as UTF-8 should *really* be supported
+            throw new IllegalStateException(e);
+        }
+    }
+
 
     /**
      * Gets all events.
@@ -566,28 +859,24 @@ public class Beacon implements IPayloadGenerator {
     }
 
     /**
-     * Add previously serialized action data to the beacon cache.
+     * Add an event, previously stored in the event store, to the beacon cache.
      *
-     * @param timestamp The timestamp when the action data occurred.
-     * @param actionBuilder Contains the serialized action data.
+     * @param timestamp The timestamp when the event data occurred.
+     * @param row The event's row in the event store.
      */
-    private void addActionData(long timestamp, StringBuilder actionBuilder) {
+    private void addEventData(long timestamp, int row) {
 
-        if (configuration.isCapture()) {
-            beaconCache.addActionData(sessionNumber, timestamp, actionBuilder.toString());
-        }
+        beaconCache.addEventData(sessionNumber, timestamp, eventStore, row);
+        markNewData();
     }
 
     /**
-     * Add previously serialized event data to the beacon cache.
-     *
-     * @param timestamp The timestamp when the event data occurred.
-     * @param eventBuilder Contains the serialized event data.
+     * Mark the session as having new data, if it was started already.
      */
-    private void addEventData(long timestamp, StringBuilder eventBuilder) {
-
-        if (configuration.isCapture()) {
-            beaconCache.addEventData(sessionNumber, timestamp, eventBuilder.toString());
+    private void markNewData() {
+        SessionImpl currentSession = session;
+        if (currentSession != null) {
+            currentSession.markNewData();
         }
     }
 
@@ -606,39 +895,37 @@ public class Beacon implements IPayloadGenerator {
     }
 
     /**
-     * Serialization helper for event data.
+     * Remove all data, which was not sent so far.
      *
-     * @param builder String builder storing the serialzed data.
-     * @param eventType The event's type.
-     * @param name Event name
-     * @param parentAction The action on which this event was reported.
-     * @return The timestamp associated with the event (timestamp since session start time).
+     * <p>
+     * This is used when the data cannot be sent any more, e.g. on shutdown, so that it can be persisted instead.
+     * The cached data is split into chunks the same way as in {@link #send()}, and each chunk is gzip compressed.
+     * </p>
+     *
+     * @return The unsent data, or {@code null} if there is no data.
      */
-    private long buildEvent(StringBuilder builder, EventType eventType, String name, ActionImpl parentAction) {
-        buildBasicEventData(builder, eventType, name);
-
-        long eventTimestamp = timingProvider.provideTimestampInMilliseconds();
-
-        addKeyValuePair(builder, BEACON_KEY_PARENT_ACTION_ID, parentAction.getID());
-        addKeyValuePair(builder, BEACON_KEY_START_SEQUENCE_NUMBER, createSequenceNumber());
-        addKeyValuePair(builder, BEACON_KEY_TIME_0, getTimeSinceSessionStartTime(eventTimestamp));
+    @Override
+    public SealedBeacon takeUnsentData() {
+        List<byte[]> documents = new ArrayList<byte[]>();
 
-        return eventTimestamp;
-    }
+        while (true) {
+            String prefix = basicBeaconData + BEACON_DATA_DELIMITER + createTimestampData();
+            String chunk = beaconCache.getNextBeaconChunk(sessionNumber, prefix, getMaxChunkSize(), BEACON_DATA_DELIMITER);
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
 
-    /**
-     * Serialization for building basic event data.
-     *
-     * @param builder String builder storing serialized data.
-     * @param eventType The event's type.
-     * @param name Event's name.
-     */
-    private void buildBasicEventData(StringBuilder builder, EventType eventType, String name) {
-        addKeyValuePair(builder, BEACON_KEY_EVENT_TYPE, eventType.protocolValue());
-        if (name != null) {
-            addKeyValuePair(builder, BEACON_KEY_NAME, truncate(name));
+            try {
+                documents.add(HTTPConnector.gzip(chunk.getBytes(CHARSET)));
+            } catch (IOException e) {
+                logger.error("Failed to compress unsent beacon data", e);
+                beaconCache.resetChunkedData(sessionNumber);
+                break;
+            }
+            beaconCache.removeChunkedData(sessionNumber);
         }
-        addKeyValuePair(builder, BEACON_KEY_THREAD_ID, threadIDProvider.getThreadID());
+
+        return documents.isEmpty() ? null : new SealedBeacon(clientIPAddress, documents);
     }
 
     /**
@@ -743,18 +1030,6 @@ public class Beacon implements IPayloadGenerator {
         builder.append(intValue);
     }
 
-    /**
-     * Serialization helper method for adding key/value pairs with double values
-     *
-     * @param builder The string builder storing serialized data.
-     * @param key The key to add.
-     * @param doubleValue The value to add.
-     */
-    private void addKeyValuePair(StringBuilder builder, String key, double doubleValue) {
-        appendKey(builder, key);
-        builder.append(doubleValue);
-    }
-
     /**
      * Serialization helper method for appending a key.
      *
@@ -771,8 +1046,13 @@ public class Beacon implements IPayloadGenerator {
 
     /**
      * helper method for truncating name at max name size
+     *
+     * @return The truncated name, or {@code null} if {@code name} is {@code null}.
      */
-    private String truncate(String name) {
+    private static String truncateName(String name) {
+        if (name == null) {
+            return null;
+        }
         name = name.trim();
         if (name.length() > MAX_NAME_LEN) {
             name = name.substring(0, MAX_NAME_LEN);
@@ -780,6 +1060,23 @@ public class Beacon implements IPayloadGenerator {
         return name;
     }
 
+    /**
+     * helper method for truncating a stacktrace at the configured max stacktrace length
+     *
+     * <p>
+     * If possible, the stacktrace is cut after the last complete line.
+     * </p>
+     */
+    private String truncateStacktrace(String stacktrace) {
+        int maxLength = configuration.getMaxStacktraceLength();
+        if (stacktrace == null || maxLength < 0 || stacktrace.length() <= maxLength) {
+            return stacktrace;
+        }
+
+        int endIndex = stacktrace.lastIndexOf('\n', maxLength - 1);
+        return stacktrace.substring(0, endIndex > 0 ? endIndex : maxLength);
+    }
+
     /**
      * Get a timestamp relative to the time this session (aka. beacon) was created.
      *
@@ -803,4 +1100,66 @@ public class Beacon implements IPayloadGenerator {
 	public boolean isEmpty() {
         return beaconCache.isEmpty(sessionNumber);
     }
+
+    /**
+     * Tests if an error was reported in this Beacon.
+     *
+     * @return {@code true} if an error was reported, {@code false} otherwise.
+     */
+    @Override
+    public boolean hasError() {
+        return errorReported;
+    }
+
+    /**
+     * Get the number of bytes of this Beacon's data, which is not sent yet.
+     *
+     * @return Number of bytes in the beacon cache.
+     */
+    @Override
+    public long getDataSize() {
+        return beaconCache.getNumBytesInCache(sessionNumber);
+    }
+
+    /**
+     * A chunk of cached data as it's sent, starting with the prefix it was built with.
+     */
+    private static final class Chunk {
+
+        // there is no (more) data to send
+        private static final Chunk EMPTY = new Chunk("", 0);
+
+        private final String text;
+        private final int prefixLength;
+
+        private Chunk(String text, int prefixLength) {
+            this.text = text;
+            this.prefixLength = prefixLength;
+        }
+
+        // the chunk retrieved from the beacon cache, or null if there is none
+        static Chunk of(String prefix, String text) {
+            if (text == null) {
+                return null;
+            }
+            return text.isEmpty() ? EMPTY : new Chunk(text, prefix.length());
+        }
+
+        String getText() {
+            return text;
+        }
+
+        // the cached data of this chunk, without its prefix
+        String getData() {
+            return text.substring(prefixLength);
+        }
+
+        int length() {
+            return text.length();
+        }
+
+        boolean isEmpty() {
+            return text.isEmpty();
+        }
+    }
 }
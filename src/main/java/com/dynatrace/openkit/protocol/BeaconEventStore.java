@@ -0,0 +1,504 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.caching.BeaconCache;
+import com.dynatrace.openkit.core.caching.DeferredRecordSource;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+
+/**
+ * Columnar store for the events and actions reported on one {@link Beacon}.
+ *
+ * <p>
+ * Each reported event occupies one row, where all numeric attributes are kept in primitive arrays
+ * and strings are kept by reference. Reporting an event is therefore just a few array stores,
+ * the beacon protocol's key/value representation is only built in {@link #serialize(int)}, when
+ * the row is put into a chunk for sending. Rows that are evicted from the cache are never serialized.
+ * </p>
+ *
+ * <p>
+ * Rows released by the cache are reused for subsequently reported events.
+ * </p>
+ *
+ * <p>
+ * Crash stacktraces are deduplicated in a {@link StacktraceTable} and a crash identical to the
+ * previous one is counted on the previous crash's row, as long as that row was not serialized yet.
+ * The stacktraces' size is not part of the rows' sizes, it's reported to the {@link BeaconCache} separately.
+ * </p>
+ */
+final class BeaconEventStore implements DeferredRecordSource {
+
+    // Action related constants
+    private static final String BEACON_KEY_EVENT_TYPE = "et";
+    private static final String BEACON_KEY_NAME = "na";
+    private static final String BEACON_KEY_THREAD_ID = "it";
+    private static final String BEACON_KEY_ACTION_ID = "ca";
+    private static final String BEACON_KEY_PARENT_ACTION_ID = "pa";
+    private static final String BEACON_KEY_START_SEQUENCE_NUMBER = "s0";
+    private static final String BEACON_KEY_TIME_0 = "t0";
+    private static final String BEACON_KEY_END_SEQUENCE_NUMBER = "s1";
+    private static final String BEACON_KEY_TIME_1 = "t1";
+
+    // data, error & crash capture constants
+    private static final String BEACON_KEY_VALUE = "vl";
+    private static final String BEACON_KEY_ERROR_CODE = "ev";
+    private static final String BEACON_KEY_ERROR_REASON = "rs";
+    private static final String BEACON_KEY_ERROR_STACKTRACE = "st";
+    private static final String BEACON_KEY_ERROR_COUNT = "cn";
+    private static final String BEACON_KEY_WEBREQUEST_RESPONSECODE = "rc";
+    private static final String BEACON_KEY_WEBREQUEST_BYTES_SENT = "bs";
+    private static final String BEACON_KEY_WEBREQUEST_BYTES_RECEIVED = "br";
+
+    private static final EventType[] EVENT_TYPES = EventType.values();
+
+    /**
+     * Returned instead of a row, if a crash was merged into the previous crash's row.
+     */
+    static final int NO_ROW = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Estimated size of the primitive columns & string references of one row.
+     */
+    private static final long ROW_SIZE_BYTES = 64L;
+    private static final long CHAR_SIZE_BYTES = 2L;
+
+    private final Logger logger;
+    private final BeaconCache beaconCache;
+
+    // numeric columns
+    private int[] eventTypes = new int[INITIAL_CAPACITY];
+    private int[] threadIDs = new int[INITIAL_CAPACITY];
+    private int[] actionIDs = new int[INITIAL_CAPACITY];
+    private int[] parentActionIDs = new int[INITIAL_CAPACITY];
+    private int[] startSequenceNumbers = new int[INITIAL_CAPACITY];
+    private int[] endSequenceNumbers = new int[INITIAL_CAPACITY];
+    private long[] times0 = new long[INITIAL_CAPACITY];
+    private long[] times1 = new long[INITIAL_CAPACITY];
+    /**
+     * Integer value, double value (raw long bits), error code or bytes sent - depending on the event type.
+     */
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int[] bytesReceived = new int[INITIAL_CAPACITY];
+    private int[] responseCodes = new int[INITIAL_CAPACITY];
+    /**
+     * Number of identical crashes reported in a row.
+     */
+    private int[] counts = new int[INITIAL_CAPACITY];
+    /**
+     * Size estimation, fixed when the row is added.
+     */
+    private long[] dataSizes = new long[INITIAL_CAPACITY];
+
+    // string columns
+    private String[] names = new String[INITIAL_CAPACITY];
+    /**
+     * String value or error/crash reason - depending on the event type.
+     */
+    private String[] texts = new String[INITIAL_CAPACITY];
+    private StacktraceTable.Entry[] stacktraces = new StacktraceTable.Entry[INITIAL_CAPACITY];
+
+    private final StacktraceTable stacktraceTable = new StacktraceTable();
+    /**
+     * Row of the most recently reported crash, as long as further identical crashes can be merged into it.
+     */
+    private int lastCrashRow = NO_ROW;
+
+    /**
+     * Number of rows ever used, released rows included.
+     */
+    private int numRows = 0;
+    /**
+     * Stack of released rows.
+     */
+    private int[] freeRows = new int[INITIAL_CAPACITY];
+    private int numFreeRows = 0;
+    /**
+     * Size estimation of all rows in use.
+     */
+    private long rowsDataSizeInBytes = 0;
+
+    BeaconEventStore(Logger logger, BeaconCache beaconCache) {
+        this.logger = logger;
+        this.beaconCache = beaconCache;
+    }
+
+    /**
+     * Add an action.
+     *
+     * @return The action's row.
+     */
+    synchronized int addAction(String name, int threadID, int actionID, int parentActionID, int startSequenceNumber,
+                               long time0, int endSequenceNumber, long time1) {
+        int row = addRow(EventType.ACTION, name, threadID, parentActionID, startSequenceNumber, time0);
+        actionIDs[row] = actionID;
+        endSequenceNumbers[row] = endSequenceNumber;
+        times1[row] = time1;
+        return completeRow(row);
+    }
+
+    /**
+     * Add an event that has no further data besides name, parent action, sequence number and time, like
+     * session end, named event or identify user.
+     *
+     * @return The event's row.
+     */
+    synchronized int addEvent(EventType eventType, String name, int threadID, int parentActionID,
+                              int startSequenceNumber, long time0) {
+        return completeRow(addRow(eventType, name, threadID, parentActionID, startSequenceNumber, time0));
+    }
+
+    /**
+     * Add a reported integer value.
+     *
+     * @return The event's row.
+     */
+    synchronized int addIntValue(String name, int threadID, int parentActionID, int startSequenceNumber,
+                                 long time0, int value) {
+        int row = addRow(EventType.VALUE_INT, name, threadID, parentActionID, startSequenceNumber, time0);
+        values[row] = value;
+        return completeRow(row);
+    }
+
+    /**
+     * Add a reported double value.
+     *
+     * @return The event's row.
+     */
+    synchronized int addDoubleValue(String name, int threadID, int parentActionID, int startSequenceNumber,
+                                    long time0, double value) {
+        int row = addRow(EventType.VALUE_DOUBLE, name, threadID, parentActionID, startSequenceNumber, time0);
+        values[row] = Double.doubleToRawLongBits(value);
+        return completeRow(row);
+    }
+
+    /**
+     * Add a reported string value.
+     *
+     * @return The event's row.
+     */
+    synchronized int addStringValue(String name, int threadID, int parentActionID, int startSequenceNumber,
+                                    long time0, String value) {
+        int row = addRow(EventType.VALUE_STRING, name, threadID, parentActionID, startSequenceNumber, time0);
+        texts[row] = value;
+        return completeRow(row);
+    }
+
+    /**
+     * Add a reported error.
+     *
+     * @return The event's row.
+     */
+    synchronized int addError(String name, int threadID, int parentActionID, int startSequenceNumber, long time0,
+                              int errorCode, String reason) {
+        int row = addRow(EventType.ERROR, name, threadID, parentActionID, startSequenceNumber, time0);
+        values[row] = errorCode;
+        texts[row] = reason;
+        return completeRow(row);
+    }
+
+    /**
+     * Add a reported crash.
+     *
+     * <p>
+     * If the previously reported crash is identical (same name, reason and stacktrace) and was not serialized
+     * yet, only its count is incremented and {@link #NO_ROW} is returned. Identical stacktraces of different
+     * crashes are stored only once.
+     * </p>
+     *
+     * @return The event's row or {@link #NO_ROW} if the crash was merged into the previous one.
+     */
+    synchronized int addCrash(String name, int threadID, int startSequenceNumber, long time0, String reason,
+                              String stacktrace) {
+        if (lastCrashRow != NO_ROW && isSameCrash(lastCrashRow, name, reason, stacktrace)) {
+            counts[lastCrashRow]++;
+            return NO_ROW;
+        }
+
+        int row = addRow(EventType.CRASH, name, threadID, 0, startSequenceNumber, time0);
+        texts[row] = reason;
+        if (stacktrace != null) {
+            long stacktracesDataSize = stacktraceTable.getDataSizeInBytes();
+            stacktraces[row] = stacktraceTable.acquire(stacktrace);
+            reportStacktracesResized(stacktracesDataSize);
+        }
+        lastCrashRow = row;
+        return completeRow(row);
+    }
+
+    /**
+     * Add a web request.
+     *
+     * @return The event's row.
+     */
+    synchronized int addWebRequest(String url, int threadID, int parentActionID, int startSequenceNumber, long time0,
+                                   int endSequenceNumber, long time1, int numBytesSent, int numBytesReceived,
+                                   int responseCode) {
+        int row = addRow(EventType.WEBREQUEST, url, threadID, parentActionID, startSequenceNumber, time0);
+        endSequenceNumbers[row] = endSequenceNumber;
+        times1[row] = time1;
+        values[row] = numBytesSent;
+        bytesReceived[row] = numBytesReceived;
+        responseCodes[row] = responseCode;
+        return completeRow(row);
+    }
+
+    @Override
+    public synchronized String serialize(int row) {
+        if (row == lastCrashRow) {
+            // the count must not change any more, once the crash might have been sent
+            lastCrashRow = NO_ROW;
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        EventType eventType = EVENT_TYPES[eventTypes[row]];
+        builder.append(BEACON_KEY_EVENT_TYPE).append('=').append(eventType.protocolValue());
+        if (names[row] != null) {
+            addKeyValuePair(builder, BEACON_KEY_NAME, names[row]);
+        }
+        addKeyValuePair(builder, BEACON_KEY_THREAD_ID, threadIDs[row]);
+
+        if (eventType == EventType.ACTION) {
+            addKeyValuePair(builder, BEACON_KEY_ACTION_ID, actionIDs[row]);
+        }
+        addKeyValuePair(builder, BEACON_KEY_PARENT_ACTION_ID, parentActionIDs[row]);
+        addKeyValuePair(builder, BEACON_KEY_START_SEQUENCE_NUMBER, startSequenceNumbers[row]);
+        addKeyValuePair(builder, BEACON_KEY_TIME_0, times0[row]);
+
+        switch (eventType) {
+            case ACTION:
+                addKeyValuePair(builder, BEACON_KEY_END_SEQUENCE_NUMBER, endSequenceNumbers[row]);
+                addKeyValuePair(builder, BEACON_KEY_TIME_1, times1[row]);
+                break;
+            case VALUE_INT:
+                addKeyValuePair(builder, BEACON_KEY_VALUE, values[row]);
+                break;
+            case VALUE_DOUBLE:
+                appendKey(builder, BEACON_KEY_VALUE);
+                builder.append(Double.longBitsToDouble(values[row]));
+                break;
+            case VALUE_STRING:
+                if (texts[row] != null) {
+                    addKeyValuePair(builder, BEACON_KEY_VALUE, texts[row]);
+                }
+                break;
+            case ERROR:
+                addKeyValuePair(builder, BEACON_KEY_ERROR_CODE, values[row]);
+                if (texts[row] != null) {
+                    addKeyValuePair(builder, BEACON_KEY_ERROR_REASON, texts[row]);
+                }
+                break;
+            case CRASH:
+                if (texts[row] != null) {
+                    addKeyValuePair(builder, BEACON_KEY_ERROR_REASON, texts[row]);
+                }
+                if (stacktraces[row] != null) {
+                    addKeyValuePair(builder, BEACON_KEY_ERROR_STACKTRACE, stacktraces[row].getStacktrace());
+                }
+                if (counts[row] > 1) {
+                    addKeyValuePair(builder, BEACON_KEY_ERROR_COUNT, counts[row]);
+                }
+                break;
+            case WEBREQUEST:
+                addKeyValuePair(builder, BEACON_KEY_END_SEQUENCE_NUMBER, endSequenceNumbers[row]);
+                addKeyValuePair(builder, BEACON_KEY_TIME_1, times1[row]);
+                if (values[row] > -1) {
+                    addKeyValuePair(builder, BEACON_KEY_WEBREQUEST_BYTES_SENT, values[row]);
+                }
+                if (bytesReceived[row] > -1) {
+                    addKeyValuePair(builder, BEACON_KEY_WEBREQUEST_BYTES_RECEIVED, bytesReceived[row]);
+                }
+                if (responseCodes[row] != -1) {
+                    addKeyValuePair(builder, BEACON_KEY_WEBREQUEST_RESPONSECODE, responseCodes[row]);
+                }
+                break;
+            default:
+                // no additional data
+                break;
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public synchronized long getDataSizeInBytes(int row) {
+        return dataSizes[row];
+    }
+
+    @Override
+    public synchronized void release(int row) {
+        if (row == lastCrashRow) {
+            lastCrashRow = NO_ROW;
+        }
+
+        // drop string references, so that they can be garbage collected
+        names[row] = null;
+        texts[row] = null;
+        if (stacktraces[row] != null) {
+            long stacktracesDataSize = stacktraceTable.getDataSizeInBytes();
+            stacktraceTable.release(stacktraces[row]);
+            stacktraces[row] = null;
+            reportStacktracesResized(stacktracesDataSize);
+        }
+        rowsDataSizeInBytes -= dataSizes[row];
+
+        if (numFreeRows == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+        }
+        freeRows[numFreeRows++] = row;
+    }
+
+    /**
+     * Get the number of rows which are currently in use.
+     */
+    synchronized int getNumberOfRows() {
+        return numRows - numFreeRows;
+    }
+
+    /**
+     * Get the number of distinct stacktraces which are currently stored.
+     */
+    synchronized int getNumberOfStacktraces() {
+        return stacktraceTable.size();
+    }
+
+    /**
+     * Get the size estimation of all rows in use and the stacktraces they reference.
+     */
+    synchronized long getDataSizeInBytes() {
+        return rowsDataSizeInBytes + stacktraceTable.getDataSizeInBytes();
+    }
+
+    private int addRow(EventType eventType, String name, int threadID, int parentActionID, int startSequenceNumber,
+                       long time0) {
+        int row = allocateRow();
+        eventTypes[row] = eventType.ordinal();
+        names[row] = name;
+        threadIDs[row] = threadID;
+        parentActionIDs[row] = parentActionID;
+        startSequenceNumbers[row] = startSequenceNumber;
+        times0[row] = time0;
+        counts[row] = 1;
+        return row;
+    }
+
+    /**
+     * Fix the size estimation of a completely added row.
+     *
+     * <p>
+     * Stacktraces are accounted for by the {@link StacktraceTable}, since they may outlive the row which added them.
+     * </p>
+     *
+     * @return The row.
+     */
+    private int completeRow(int row) {
+        dataSizes[row] = ROW_SIZE_BYTES + CHAR_SIZE_BYTES * (length(names[row]) + length(texts[row]));
+        rowsDataSizeInBytes += dataSizes[row];
+        return row;
+    }
+
+    /**
+     * Report the change of the stacktraces' size to the cache.
+     *
+     * @param previousDataSize The stacktraces' size before they were acquired or released.
+     */
+    private void reportStacktracesResized(long previousDataSize) {
+        long numBytes = stacktraceTable.getDataSizeInBytes() - previousDataSize;
+        if (numBytes != 0) {
+            beaconCache.addSharedDataSize(numBytes);
+        }
+    }
+
+    private boolean isSameCrash(int row, String name, String reason, String stacktrace) {
+        String rowStacktrace = stacktraces[row] == null ? null : stacktraces[row].getStacktrace();
+        return equal(names[row], name) && equal(texts[row], reason) && equal(rowStacktrace, stacktrace);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private int allocateRow() {
+        if (numFreeRows > 0) {
+            return freeRows[--numFreeRows];
+        }
+
+        if (numRows == eventTypes.length) {
+            grow(eventTypes.length * 2);
+        }
+        return numRows++;
+    }
+
+    private void grow(int capacity) {
+        eventTypes = Arrays.copyOf(eventTypes, capacity);
+        threadIDs = Arrays.copyOf(threadIDs, capacity);
+        actionIDs = Arrays.copyOf(actionIDs, capacity);
+        parentActionIDs = Arrays.copyOf(parentActionIDs, capacity);
+        startSequenceNumbers = Arrays.copyOf(startSequenceNumbers, capacity);
+        endSequenceNumbers = Arrays.copyOf(endSequenceNumbers, capacity);
+        times0 = Arrays.copyOf(times0, capacity);
+        times1 = Arrays.copyOf(times1, capacity);
+        values = Arrays.copyOf(values, capacity);
+        bytesReceived = Arrays.copyOf(bytesReceived, capacity);
+        responseCodes = Arrays.copyOf(responseCodes, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        dataSizes = Arrays.copyOf(dataSizes, capacity);
+        names = Arrays.copyOf(names, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+        stacktraces = Arrays.copyOf(stacktraces, capacity);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private void addKeyValuePair(StringBuilder builder, String key, String stringValue) {
+        String encodedValue;
+        try {
+            encodedValue = URLEncoder.encode(stringValue, Beacon.CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            // if encoding fails, skip this key/value pair
+            logger.error("Skipped encoding of Key/Value: " + key + "/" + stringValue, e);
+            return;
+        }
+
+        appendKey(builder, key);
+        builder.append(encodedValue);
+    }
+
+    private static void addKeyValuePair(StringBuilder builder, String key, long longValue) {
+        appendKey(builder, key);
+        builder.append(longValue);
+    }
+
+    private static void addKeyValuePair(StringBuilder builder, String key, int intValue) {
+        appendKey(builder, key);
+        builder.append(intValue);
+    }
+
+    private static void appendKey(StringBuilder builder, String key) {
+        // the event type is always written first, so a delimiter is always required
+        builder.append('&').append(key).append('=');
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.protocol.dto.Action;
+import com.dynatrace.openkit.protocol.dto.Payload;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoder for documents written by {@link BinarySerializer}.
+ *
+ * <p>
+ * This is the receiving counterpart, e.g. for a local collector stand-in.
+ * One decoder instance is not thread safe, but can be reused for several documents.
+ * </p>
+ */
+public class BinaryPayloadDecoder {
+
+    /**
+     * Decode a single document.
+     *
+     * @param document The (uncompressed) document bytes.
+     * @return The decoded payload.
+     * @throws IOException If the document is malformed or truncated.
+     */
+    public Payload decode(byte[] document) throws IOException {
+        return decode(new ByteArrayInputStream(document));
+    }
+
+    /**
+     * Decode a single document from the given stream.
+     *
+     * <p>
+     * Reading stops directly after the document's end marker.
+     * </p>
+     *
+     * @param in The stream providing the (uncompressed) document.
+     * @return The decoded payload.
+     * @throws IOException If the document is malformed or truncated.
+     */
+    public Payload decode(InputStream in) throws IOException {
+        for (byte expected : BinaryProtocol.MAGIC) {
+            if (in.read() != expected) {
+                throw new IOException("Not an OpenKit binary document");
+            }
+        }
+        long version = BinaryProtocol.readUnsignedVarLong(in);
+        if (version != BinaryProtocol.FORMAT_VERSION) {
+            throw new IOException("Unsupported binary format version " + version);
+        }
+
+        List<String> stringTable = new ArrayList<String>();
+        int sessionNumber = BinaryProtocol.readSignedVarInt(in);
+        long sessionStartTime = BinaryProtocol.readSignedVarLong(in);
+        String visitorID = readString(in, stringTable);
+        String clientIPAddress = readString(in, stringTable);
+
+        Payload payload = new Payload(clientIPAddress, sessionNumber, sessionStartTime, visitorID);
+
+        long eventType;
+        while ((eventType = BinaryProtocol.readUnsignedVarLong(in)) != BinaryProtocol.END_OF_ACTIONS) {
+            Action action = new Action();
+            action.setEventType(toEventType(eventType));
+            action.setName(readString(in, stringTable));
+            action.setThreadId(BinaryProtocol.readSignedVarInt(in));
+            action.setActionId(BinaryProtocol.readSignedVarInt(in));
+            action.setParentActionId(BinaryProtocol.readSignedVarInt(in));
+            int startSequenceNumber = BinaryProtocol.readSignedVarInt(in);
+            action.setStartSequenceNumber(startSequenceNumber);
+            action.setEndSequenceNumber(startSequenceNumber + BinaryProtocol.readSignedVarInt(in));
+            action.setStartTime(BinaryProtocol.readSignedVarLong(in));
+            action.setEndTime(BinaryProtocol.readSignedVarLong(in));
+
+            payload.addAction(action);
+        }
+
+        return payload;
+    }
+
+    private static String readString(InputStream in, List<String> stringTable) throws IOException {
+        long reference = BinaryProtocol.readUnsignedVarLong(in);
+        if (reference == BinaryProtocol.STRING_NULL) {
+            return null;
+        }
+        if (reference == BinaryProtocol.STRING_INLINE) {
+            long length = BinaryProtocol.readUnsignedVarLong(in);
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("String too long: " + length);
+            }
+            byte[] encoded = new byte[(int) length];
+            readFully(in, encoded);
+            String value = new String(encoded, Beacon.CHARSET);
+            stringTable.add(value);
+            return value;
+        }
+
+        long index = reference - BinaryProtocol.STRING_TABLE_OFFSET;
+        if (index >= stringTable.size()) {
+            throw new IOException("Invalid string reference " + reference);
+        }
+        return stringTable.get((int) index);
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int numRead = in.read(buffer, offset, buffer.length - offset);
+            if (numRead < 0) {
+                throw new EOFException("Unexpected end of document");
+            }
+            offset += numRead;
+        }
+    }
+
+    private static EventType toEventType(long protocolValue) throws IOException {
+        for (EventType eventType : EventType.values()) {
+            if (eventType.protocolValue() == protocolValue) {
+                return eventType;
+            }
+        }
+        throw new IOException("Unknown event type " + protocolValue);
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Constants and primitive encoding helpers shared by {@link BinarySerializer} and {@link BinaryPayloadDecoder}.
+ *
+ * <p>
+ * Document layout (all integers are varint encoded, signed ones additionally zigzag encoded):
+ * <pre>
+ *   magic "OKB", format version
+ *   session number, session start time, visitor id, client IP
+ *   actions: event type, name, thread id, action id, parent action id,
+ *            start sequence number, end - start sequence number,
+ *            start time relative to session start time, duration
+ *   end marker
+ * </pre>
+ * Strings are written inline the first time they occur in a document and referenced by their
+ * string table index afterwards.
+ * </p>
+ */
+final class BinaryProtocol {
+
+    static final byte[] MAGIC = {'O', 'K', 'B'};
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * Marks the end of the action list (event types are always greater than zero).
+     */
+    static final int END_OF_ACTIONS = 0;
+
+    /**
+     * String reference denoting a {@code null} string.
+     */
+    static final int STRING_NULL = 0;
+    /**
+     * String reference denoting a string which is written inline and added to the string table.
+     */
+    static final int STRING_INLINE = 1;
+    /**
+     * Offset added to string table indices, to distinguish them from {@link #STRING_NULL} and {@link #STRING_INLINE}.
+     */
+    static final int STRING_TABLE_OFFSET = 2;
+
+    private BinaryProtocol() {
+    }
+
+    static void writeUnsignedVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static void writeSignedVarLong(OutputStream out, long value) throws IOException {
+        // zigzag encoding, so that small negative values also need few bytes
+        writeUnsignedVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readUnsignedVarLong(InputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of varint");
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static long readSignedVarLong(InputStream in) throws IOException {
+        long raw = readUnsignedVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    static int readSignedVarInt(InputStream in) throws IOException {
+        return (int) readSignedVarLong(in);
+    }
+}
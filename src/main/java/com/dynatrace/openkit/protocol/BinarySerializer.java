@@ -0,0 +1,142 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.protocol.dto.Action;
+import com.dynatrace.openkit.protocol.dto.Payload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary {@link Serializer}, intended for high volume pipelines.
+ *
+ * <p>
+ * Compared to the text based formats, keys are implicit, numbers are varint encoded,
+ * timestamps and sequence numbers are stored as (small) deltas and repeated strings are
+ * only written once per document. See {@link BinaryProtocol} for the document layout and
+ * {@link BinaryPayloadDecoder} for the receiving side.
+ * </p>
+ */
+public class BinarySerializer implements Serializer {
+
+    @Override
+    public byte[] serialize(Payload data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            serialize(data, 0, Integer.MAX_VALUE, out);
+        } catch (IOException e) {
+            // must not happen when writing into memory
+            return new byte[0];
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public int serialize(Payload data, int offset, int maxSize, OutputStream out) throws IOException {
+        StringTable stringTable = new StringTable();
+        long sessionStartTime = data.getSession().getStartTime();
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        buffer.write(BinaryProtocol.MAGIC);
+        BinaryProtocol.writeUnsignedVarLong(buffer, BinaryProtocol.FORMAT_VERSION);
+        BinaryProtocol.writeSignedVarLong(buffer, data.getSession().getId());
+        BinaryProtocol.writeSignedVarLong(buffer, sessionStartTime);
+        stringTable.write(buffer, data.getDevice().getVisitorId());
+        stringTable.write(buffer, data.getDevice().getClientIPAddress());
+        buffer.writeTo(out);
+        long documentSize = buffer.size() + 1; // including end marker
+
+        List<Action> actions = data.getActions();
+        int next = offset;
+        while (next < actions.size()) {
+            buffer.reset();
+            int numStrings = stringTable.size();
+            writeAction(buffer, actions.get(next), stringTable);
+            if (next > offset && documentSize + buffer.size() > maxSize) {
+                // action goes into the next document - forget strings that were introduced by it
+                stringTable.truncate(numStrings);
+                break;
+            }
+            buffer.writeTo(out);
+            documentSize += buffer.size();
+            next++;
+        }
+
+        out.write(BinaryProtocol.END_OF_ACTIONS);
+
+        return next;
+    }
+
+    private static void writeAction(OutputStream out, Action action, StringTable stringTable) throws IOException {
+        BinaryProtocol.writeUnsignedVarLong(out, action.getEventType().protocolValue());
+        stringTable.write(out, action.getName());
+        BinaryProtocol.writeSignedVarLong(out, action.getThreadId());
+        BinaryProtocol.writeSignedVarLong(out, action.getActionId());
+        BinaryProtocol.writeSignedVarLong(out, action.getParentActionId());
+        BinaryProtocol.writeSignedVarLong(out, action.getStartSequenceNumber());
+        BinaryProtocol.writeSignedVarLong(out, (long) action.getEndSequenceNumber() - action.getStartSequenceNumber());
+        // the DTO already holds the start time relative to the session start and the duration as end time
+        BinaryProtocol.writeSignedVarLong(out, action.getStartTime());
+        BinaryProtocol.writeSignedVarLong(out, action.getEndTime());
+    }
+
+    /**
+     * Strings written so far into the current document.
+     */
+    private static final class StringTable {
+
+        private final Map<String, Integer> indices = new HashMap<String, Integer>();
+        private final List<String> strings = new ArrayList<String>();
+
+        void write(OutputStream out, String value) throws IOException {
+            if (value == null) {
+                BinaryProtocol.writeUnsignedVarLong(out, BinaryProtocol.STRING_NULL);
+                return;
+            }
+
+            Integer index = indices.get(value);
+            if (index != null) {
+                BinaryProtocol.writeUnsignedVarLong(out, index + BinaryProtocol.STRING_TABLE_OFFSET);
+                return;
+            }
+
+            indices.put(value, strings.size());
+            strings.add(value);
+
+            byte[] encoded = value.getBytes(Beacon.CHARSET);
+            BinaryProtocol.writeUnsignedVarLong(out, BinaryProtocol.STRING_INLINE);
+            BinaryProtocol.writeUnsignedVarLong(out, encoded.length);
+            out.write(encoded);
+        }
+
+        int size() {
+            return strings.size();
+        }
+
+        void truncate(int size) {
+            while (strings.size() > size) {
+                indices.remove(strings.remove(strings.size() - 1));
+            }
+        }
+    }
+}
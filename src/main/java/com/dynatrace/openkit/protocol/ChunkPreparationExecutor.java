@@ -0,0 +1,113 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor preparing the next beacon chunk, while the previous one is sent.
+ *
+ * <p>
+ * The executor is shared by all beacons. Its threads are daemon threads, which terminate when idle,
+ * so that no shutdown is required.
+ * </p>
+ */
+final class ChunkPreparationExecutor {
+
+    private static final String THREAD_NAME_PREFIX = "BeaconChunkPreparation-";
+    private static final long IDLE_TIMEOUT_MILLISECONDS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final ThreadPoolExecutor EXECUTOR;
+
+    static {
+        int numberOfThreads = Runtime.getRuntime().availableProcessors();
+        EXECUTOR = new ThreadPoolExecutor(numberOfThreads, numberOfThreads,
+            IDLE_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(), new PreparationThreadFactory());
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private ChunkPreparationExecutor() {
+    }
+
+    /**
+     * Start preparing a chunk in the background.
+     *
+     * <p>
+     * If the task cannot be scheduled, it's run by the calling thread right away.
+     * </p>
+     */
+    static <T> Future<T> submit(Callable<T> task) {
+        try {
+            return EXECUTOR.submit(task);
+        } catch (RejectedExecutionException e) {
+            FutureTask<T> future = new FutureTask<T>(task);
+            future.run();
+            return future;
+        }
+    }
+
+    /**
+     * Wait until the given task is done, even if the calling thread is interrupted.
+     *
+     * <p>
+     * The task accesses data shared with the calling thread, therefore it must always be waited for.
+     * The interrupted state of the calling thread is restored afterwards.
+     * </p>
+     *
+     * @return The result of the task.
+     * @throws ExecutionException If the task failed.
+     */
+    static <T> T await(Future<T> future) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class PreparationThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName(THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
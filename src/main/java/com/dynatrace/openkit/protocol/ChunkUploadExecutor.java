@@ -0,0 +1,81 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor uploading chunks of a beacon, while the beacon sending thread uploads another chunk of it.
+ *
+ * <p>
+ * The executor is shared by all beacons. Uploads mostly wait for the network, therefore threads are created
+ * on demand up to a fixed maximum. Its threads are daemon threads, which terminate when idle,
+ * so that no shutdown is required.
+ * </p>
+ */
+final class ChunkUploadExecutor {
+
+    private static final String THREAD_NAME_PREFIX = "BeaconChunkUpload-";
+    private static final int MAX_NUMBER_OF_THREADS = 32;
+    private static final long IDLE_TIMEOUT_MILLISECONDS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(0, MAX_NUMBER_OF_THREADS,
+        IDLE_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS,
+        new SynchronousQueue<Runnable>(), new UploadThreadFactory());
+
+    private ChunkUploadExecutor() {
+    }
+
+    /**
+     * Start uploading a chunk in the background.
+     *
+     * <p>
+     * If all threads are busy, the task is run by the calling thread right away.
+     * Use {@link ChunkPreparationExecutor#await(Future)} to wait for the result.
+     * </p>
+     */
+    static <T> Future<T> submit(Callable<T> task) {
+        try {
+            return EXECUTOR.submit(task);
+        } catch (RejectedExecutionException e) {
+            FutureTask<T> future = new FutureTask<T>(task);
+            future.run();
+            return future;
+        }
+    }
+
+    private static final class UploadThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName(THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
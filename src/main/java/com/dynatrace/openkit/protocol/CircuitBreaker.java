@@ -0,0 +1,143 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.core.util.Backoff;
+import com.dynatrace.openkit.providers.DefaultTimingProvider;
+import com.dynatrace.openkit.providers.TimingProvider;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker which suspends requests to a server failing repeatedly.
+ *
+ * <p>
+ * After {@code failureThreshold} consecutive failed requests the circuit opens, and no requests are sent
+ * for a randomized, exponentially growing time. Afterwards exactly one probe request is let through (half-open).
+ * If the probe succeeds the circuit closes again, otherwise it re-opens for a longer time.
+ * </p>
+ *
+ * <p>
+ * This class is thread safe, since one instance is shared by all requests to the same server.
+ * </p>
+ */
+public class CircuitBreaker {
+
+    /**
+     * Number of consecutive failed requests, after which the circuit opens.
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    /**
+     * Time the circuit is kept open after the first failed probe.
+     */
+    public static final long DEFAULT_INITIAL_OPEN_TIME_MILLISECONDS = TimeUnit.SECONDS.toMillis(1);
+    /**
+     * Upper bound of the time the circuit is kept open.
+     */
+    public static final long DEFAULT_MAX_OPEN_TIME_MILLISECONDS = TimeUnit.MINUTES.toMillis(2);
+
+    private final int failureThreshold;
+    private final long initialOpenTime;
+    private final long maxOpenTime;
+    private final TimingProvider timingProvider;
+
+    // state, guarded by this
+    private int consecutiveFailures = 0;
+    private int numberOfOpenings = 0;
+    private long openUntil = 0;
+    private boolean isProbing = false;
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_INITIAL_OPEN_TIME_MILLISECONDS, DEFAULT_MAX_OPEN_TIME_MILLISECONDS,
+            new DefaultTimingProvider());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param failureThreshold Number of consecutive failed requests, after which the circuit opens.
+     * @param initialOpenTime Time in milliseconds the circuit is kept open when opening for the first time.
+     * @param maxOpenTime Upper bound in milliseconds for the time the circuit is kept open.
+     * @param timingProvider Provider for the current time.
+     */
+    public CircuitBreaker(int failureThreshold, long initialOpenTime, long maxOpenTime, TimingProvider timingProvider) {
+        this.failureThreshold = failureThreshold;
+        this.initialOpenTime = initialOpenTime;
+        this.maxOpenTime = maxOpenTime;
+        this.timingProvider = timingProvider;
+    }
+
+    /**
+     * Check whether a request may be sent, and if so, register it.
+     *
+     * <p>
+     * Each request allowed by this method must be followed by a call to either {@link #recordSuccess()}
+     * or {@link #recordFailure()}.
+     * </p>
+     *
+     * @return {@code true} if the request may be sent, {@code false} if the circuit is open.
+     */
+    public synchronized boolean tryAcquire() {
+        if (consecutiveFailures < failureThreshold) {
+            return true; // closed
+        }
+        if (isProbing || timingProvider.provideTimestampInMilliseconds() < openUntil) {
+            return false; // open
+        }
+
+        // half-open - let one probe request through
+        isProbing = true;
+        return true;
+    }
+
+    /**
+     * Record a request which reached the server.
+     */
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        numberOfOpenings = 0;
+        isProbing = false;
+    }
+
+    /**
+     * Record a request which failed, because the server was not reachable or not able to handle it.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        isProbing = false;
+        if (consecutiveFailures >= failureThreshold) {
+            long openTime = Backoff.jitter(Backoff.exponential(initialOpenTime, numberOfOpenings, maxOpenTime));
+            openUntil = timingProvider.provideTimestampInMilliseconds() + openTime;
+            numberOfOpenings++;
+        }
+    }
+
+    /**
+     * Check whether requests are currently suspended.
+     *
+     * <p>
+     * Unlike {@link #tryAcquire()} this does not register a request.
+     * </p>
+     *
+     * @return {@code true} if the circuit is open, {@code false} if a request would be allowed.
+     */
+    public synchronized boolean isOpen() {
+        return consecutiveFailures >= failureThreshold
+            && (isProbing || timingProvider.provideTimestampInMilliseconds() < openUntil);
+    }
+}
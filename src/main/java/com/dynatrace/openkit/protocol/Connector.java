@@ -13,11 +13,53 @@ public interface Connector {
 	/**
 	 * sends a beacon send request and returns a status response
 	 *
+	 * <p>
+	 * Payloads exceeding {@code maxBeaconSize} are split into several requests.
+	 * </p>
+	 *
 	 * @param clientIPAddress
 	 * @param payload
-	 * @return
+	 * @param maxBeaconSize maximum size of one serialized beacon in bytes
+	 * @return the response of the last request, or {@code null} if any request failed
+	 */
+	public StatusResponse sendBeaconRequest(String clientIPAddress, Payload payload, int maxBeaconSize);
+
+	/**
+	 * sends a beacon send request, whose body is written while it is sent, and returns a status response
+	 *
+	 * <p>
+	 * The body is gzipped before it is sent. It is written again, if the request is retried.
+	 * </p>
+	 *
+	 * @param clientIPAddress
+	 * @param body writes the uncompressed request body
+	 * @return the response, or {@code null} if the request failed
+	 */
+	public StatusResponse sendBeaconRequest(String clientIPAddress, HTTPConnector.BodyWriter body);
+
+	/**
+	 * serializes and compresses the given payload into an immutable, ready to send {@link SealedBeacon}
+	 *
+	 * <p>
+	 * The payload is split into documents of at most {@code maxBeaconSize} (uncompressed) bytes,
+	 * exactly as {@link #sendBeaconRequest(String, Payload, int)} would do.
+	 * </p>
+	 *
+	 * @param clientIPAddress
+	 * @param payload
+	 * @param maxBeaconSize maximum size of one serialized beacon in bytes
+	 * @return the sealed beacon, or {@code null} if serializing failed
+	 */
+	public SealedBeacon sealBeacon(String clientIPAddress, Payload payload, int maxBeaconSize);
+
+	/**
+	 * sends one document of a sealed beacon and returns a status response
+	 *
+	 * @param sealedBeacon
+	 * @param documentIndex index of the document to send
+	 * @return the response, or {@code null} if the request failed
 	 */
-	public StatusResponse sendBeaconRequest(String clientIPAddress, Payload payload);
+	public StatusResponse sendSealedBeaconRequest(SealedBeacon sealedBeacon, int documentIndex);
 
 	/**
 	 * sends a time sync request and returns a time sync response
@@ -25,4 +67,39 @@ public interface Connector {
 	 * @return
 	 */
 	public TimeSyncResponse sendTimeSyncRequest();
+
+	/**
+	 * checks whether requests are currently suspended, because the server failed repeatedly
+	 *
+	 * <p>
+	 * While this is the case, requests fail without generating traffic. Callers should keep their data
+	 * and retry later.
+	 * </p>
+	 *
+	 * @return {@code true} if requests are suspended
+	 */
+	public boolean isCircuitOpen();
+
+	/**
+	 * gets the time until beacon data may be sent again, because the configured bandwidth is exhausted
+	 *
+	 * <p>
+	 * While this is greater than zero, callers should keep their data and retry later.
+	 * </p>
+	 *
+	 * @return time in milliseconds, zero if beacon data may be sent right now
+	 */
+	public long getThrottleDelay();
+
+	/**
+	 * opens connections to the server ahead of the first requests, so that those don't pay for the connection setup
+	 *
+	 * <p>
+	 * This is best effort - failures are ignored, as requests open connections on their own anyway.
+	 * The method returns once the connections are ready or failed.
+	 * </p>
+	 *
+	 * @param numberOfConnections number of connections, which are expected to be used in parallel
+	 */
+	public void warmUp(int numberOfConnections);
 }
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects the endpoint requests are sent to, if there are several endpoints for the same server.
+ *
+ * <p>
+ * For each endpoint moving averages of the latency of successful requests, of the time until failed requests
+ * gave up, and of the error rate are kept. Endpoints are tried in the order of the expected time until a request
+ * succeeds, which is the latency plus the time lost on the failures expected before. Endpoints not used yet come
+ * first, so that each one is measured, followed by those which responded at least once. Endpoints whose circuit
+ * is open come last.
+ * </p>
+ *
+ * <p>
+ * This class is thread safe, since one instance is shared by all requests of a connector.
+ * </p>
+ */
+class EndpointSelector {
+
+    /**
+     * Weight of the latest request in the moving averages.
+     */
+    static final double SMOOTHING_FACTOR = 0.2;
+    // keeps the expected time of an endpoint, which rarely responds, finite
+    private static final double MAX_ERROR_RATE = 0.99;
+
+    /**
+     * One endpoint, with the URLs of its requests and its circuit breaker.
+     */
+    static class Endpoint {
+
+        private final String monitorURL;
+        private final String timeSyncURL;
+        private final CircuitBreaker circuitBreaker;
+
+        // statistics, guarded by the selector
+        private boolean isMeasured = false;
+        private boolean hasSucceeded = false;
+        private boolean hasFailed = false;
+        private double averageLatency = 0;
+        private double averageFailureTime = 0;
+        private double errorRate = 0;
+
+        Endpoint(String monitorURL, String timeSyncURL, CircuitBreaker circuitBreaker) {
+            this.monitorURL = monitorURL;
+            this.timeSyncURL = timeSyncURL;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        String getMonitorURL() {
+            return monitorURL;
+        }
+
+        String getTimeSyncURL() {
+            return timeSyncURL;
+        }
+
+        CircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        // expected time in milliseconds until a request succeeds
+        private double getExpectedTime() {
+            double errors = Math.min(errorRate, MAX_ERROR_RATE);
+            return averageLatency + errors / (1 - errors) * averageFailureTime;
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+
+    /**
+     * Constructor.
+     *
+     * @param endpoints The endpoints, at least one. Among endpoints not used yet, the first one is preferred.
+     */
+    EndpointSelector(List<Endpoint> endpoints) {
+        this.endpoints = Collections.unmodifiableList(new ArrayList<Endpoint>(endpoints));
+    }
+
+    /**
+     * Gets the endpoints in the order requests should try them.
+     *
+     * @return All endpoints, the best one first.
+     */
+    synchronized List<Endpoint> getEndpointsInOrder() {
+        if (endpoints.size() == 1) {
+            return endpoints;
+        }
+
+        // the circuits might change while sorting, so they are checked up front
+        final Set<Endpoint> openEndpoints = new HashSet<Endpoint>();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getCircuitBreaker().isOpen()) {
+                openEndpoints.add(endpoint);
+            }
+        }
+
+        List<Endpoint> orderedEndpoints = new ArrayList<Endpoint>(endpoints);
+        // the sort is stable, so endpoints which are equally good keep the configured order
+        Collections.sort(orderedEndpoints, new Comparator<Endpoint>() {
+            @Override
+            public int compare(Endpoint first, Endpoint second) {
+                boolean isFirstOpen = openEndpoints.contains(first);
+                if (isFirstOpen != openEndpoints.contains(second)) {
+                    return isFirstOpen ? 1 : -1;
+                }
+                if (first.isMeasured != second.isMeasured) {
+                    return first.isMeasured ? 1 : -1;
+                }
+                if (first.hasSucceeded != second.hasSucceeded) {
+                    return first.hasSucceeded ? -1 : 1;
+                }
+                return Double.compare(first.getExpectedTime(), second.getExpectedTime());
+            }
+        });
+        return orderedEndpoints;
+    }
+
+    /**
+     * Gets the endpoint the given request URL belongs to.
+     *
+     * @param url URL of a status check, beacon send or time sync request.
+     * @return The endpoint, or the first one if no endpoint has this URL.
+     */
+    Endpoint getEndpoint(String url) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getMonitorURL().equals(url) || endpoint.getTimeSyncURL().equals(url)) {
+                return endpoint;
+            }
+        }
+        return endpoints.get(0);
+    }
+
+    /**
+     * Records a request sent to the given endpoint.
+     *
+     * @param endpoint The endpoint the request was sent to.
+     * @param latencyMillis Time in milliseconds until the request completed or gave up, including retries.
+     * @param isSuccess {@code true} if a response was received, {@code false} otherwise.
+     */
+    synchronized void recordRequest(Endpoint endpoint, long latencyMillis, boolean isSuccess) {
+        double error = isSuccess ? 0 : 1;
+        if (endpoint.isMeasured) {
+            endpoint.errorRate += SMOOTHING_FACTOR * (error - endpoint.errorRate);
+        } else {
+            endpoint.errorRate = error;
+            endpoint.isMeasured = true;
+        }
+
+        if (isSuccess) {
+            endpoint.averageLatency = endpoint.hasSucceeded
+                ? endpoint.averageLatency + SMOOTHING_FACTOR * (latencyMillis - endpoint.averageLatency)
+                : latencyMillis;
+            endpoint.hasSucceeded = true;
+        } else {
+            endpoint.averageFailureTime = endpoint.hasFailed
+                ? endpoint.averageFailureTime + SMOOTHING_FACTOR * (latencyMillis - endpoint.averageFailureTime)
+                : latencyMillis;
+            endpoint.hasFailed = true;
+        }
+    }
+
+    /**
+     * Check whether requests to all endpoints are currently suspended.
+     *
+     * @return {@code true} if the circuits of all endpoints are open, {@code false} otherwise.
+     */
+    boolean isCircuitOpen() {
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.getCircuitBreaker().isOpen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,349 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Connector delivering the same beacon data to several sinks, e.g. to the old and the new collector during a migration.
+ *
+ * <p>
+ * Each beacon document is serialized and gzipped once, and sent to all sinks in parallel. Each sink is a connector
+ * of its own, with its own retries and circuit breaker. A document is only acknowledged, so that it's released from
+ * the beacon cache, once all required sinks received it. Until then, sinks which already received it are skipped
+ * when it is sent again. A document sent again is recognized by the key its {@link BodyWriter} provides, since it may
+ * be serialized anew with a different transmission time, or else by its content.
+ * Status check and time sync requests are only sent to the first sink.
+ * </p>
+ */
+public class FanOutConnector extends HTTPConnector {
+
+    /**
+     * Number of documents, which were not received by all required sinks yet, that are remembered.
+     */
+    static final int MAX_PENDING_DOCUMENTS = 1024;
+
+    private static final String THREAD_NAME_PREFIX = "BeaconFanOut-";
+    private static final long IDLE_TIMEOUT_MILLISECONDS = TimeUnit.SECONDS.toMillis(60);
+    private static final int INITIAL_DOCUMENT_BUFFER_SIZE = 4 * 1024;
+
+    /**
+     * A connector beacon data is delivered to.
+     */
+    public static final class Sink {
+
+        private final Connector connector;
+        private final boolean isRequired;
+
+        /**
+         * Constructor.
+         *
+         * @param connector Connector sending the requests to this sink.
+         * @param isRequired {@code true} if beacon data must be received by this sink before it's released,
+         *                   {@code false} if it's delivered on a best effort basis.
+         */
+        public Sink(Connector connector, boolean isRequired) {
+            this.connector = connector;
+            this.isRequired = isRequired;
+        }
+
+        public Connector getConnector() {
+            return connector;
+        }
+
+        public boolean isRequired() {
+            return isRequired;
+        }
+    }
+
+    private final Logger logger;
+    private final List<Sink> sinks;
+    // sends to all but the first sink, the first one is sent to by the calling thread
+    private final ThreadPoolExecutor executor;
+
+    // documents not received by all required sinks yet, by key - the oldest ones are forgotten, guarded by itself
+    private final Map<String, PendingDocument> pendingDocuments =
+        new LinkedHashMap<String, PendingDocument>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PendingDocument> eldest) {
+                return size() > MAX_PENDING_DOCUMENTS;
+            }
+        };
+
+    /**
+     * Constructor.
+     *
+     * @param logger Logger for logging messages.
+     * @param configuration Configuration used for serializing beacon data.
+     * @param serializer Wire format used for beacon data.
+     * @param sinks The sinks, at least one. The first one also receives status check and time sync requests.
+     */
+    public FanOutConnector(Logger logger, HTTPClientConfiguration configuration, Serializer serializer, List<Sink> sinks) {
+        super(logger, configuration, serializer);
+        if (sinks.isEmpty()) {
+            throw new IllegalArgumentException("At least one sink is required");
+        }
+        this.logger = logger;
+        this.sinks = Collections.unmodifiableList(new ArrayList<Sink>(sinks));
+        // threads are only started for parallel requests and terminate when idle, so no shutdown is required
+        executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, IDLE_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<Runnable>(), new FanOutThreadFactory());
+    }
+
+    // status responses change the configuration, so only the first sink is asked
+    @Override
+    public StatusResponse sendStatusRequest() {
+        return sinks.get(0).getConnector().sendStatusRequest();
+    }
+
+    @Override
+    public TimeSyncResponse sendTimeSyncRequest() {
+        return sinks.get(0).getConnector().sendTimeSyncRequest();
+    }
+
+    @Override
+    public StatusResponse sendBeaconRequest(String clientIPAddress, byte[] data) {
+        try {
+            byte[] document = gzip(data);
+            return sendToSinks(clientIPAddress, document, digest(clientIPAddress, document));
+        } catch (IOException e) {
+            logger.error("ERROR: Compressing beacon failed!", e);
+            return null;
+        }
+    }
+
+    // the body is written once, and the compressed document is sent to all sinks
+    @Override
+    public StatusResponse sendBeaconRequest(String clientIPAddress, BodyWriter body) {
+        ByteArrayOutputStream document = new ByteArrayOutputStream(INITIAL_DOCUMENT_BUFFER_SIZE);
+        try {
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(document);
+            body.writeTo(gzipOutputStream);
+            gzipOutputStream.close();
+        } catch (IOException e) {
+            logger.error("ERROR: Writing beacon failed!", e);
+            return null;
+        }
+        byte[] compressedDocument = document.toByteArray();
+        String documentKey = body.getDocumentKey();
+        return sendToSinks(clientIPAddress, compressedDocument,
+            documentKey != null ? documentKey : digest(clientIPAddress, compressedDocument));
+    }
+
+    @Override
+    public StatusResponse sendSealedBeaconRequest(SealedBeacon sealedBeacon, int documentIndex) {
+        // sealed documents are never serialized again, so their content identifies them
+        String clientIPAddress = sealedBeacon.getClientIPAddress();
+        byte[] document = sealedBeacon.getDocument(documentIndex);
+        return sendToSinks(clientIPAddress, document, digest(clientIPAddress, document));
+    }
+
+    // beacon data can't be released while a required sink does not accept it
+    @Override
+    public boolean isCircuitOpen() {
+        for (Sink sink : sinks) {
+            if (sink.isRequired() && sink.getConnector().isCircuitOpen()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getThrottleDelay() {
+        long throttleDelay = 0;
+        for (Sink sink : sinks) {
+            throttleDelay = Math.max(throttleDelay, sink.getConnector().getThrottleDelay());
+        }
+        return throttleDelay;
+    }
+
+    @Override
+    public void warmUp(int numberOfConnections) {
+        for (Sink sink : sinks) {
+            sink.getConnector().warmUp(numberOfConnections);
+        }
+    }
+
+    // sends the document to all sinks, which did not receive it yet
+    // returns the response of the first sink which received it, or null if a required sink did not receive it yet
+    private StatusResponse sendToSinks(String clientIPAddress, byte[] document, String documentKey) {
+        final SealedBeacon sealedBeacon = new SealedBeacon(clientIPAddress, Collections.singletonList(document));
+        PendingDocument pendingDocument;
+        synchronized (pendingDocuments) {
+            pendingDocument = pendingDocuments.remove(documentKey);
+        }
+        if (pendingDocument == null) {
+            pendingDocument = new PendingDocument();
+        }
+
+        List<Future<StatusResponse>> responses = new ArrayList<Future<StatusResponse>>(sinks.size());
+        FutureTask<StatusResponse> firstRequest = null;
+        for (int i = 0; i < sinks.size(); i++) {
+            Sink sink = sinks.get(i);
+            if (pendingDocument.isReceivedBy(sink)) {
+                responses.add(null);
+            } else if (i == 0) {
+                firstRequest = new FutureTask<StatusResponse>(createRequest(sink, sealedBeacon));
+                responses.add(firstRequest);
+            } else {
+                responses.add(submit(createRequest(sink, sealedBeacon)));
+            }
+        }
+        if (firstRequest != null) {
+            // the first sink is sent to by the calling thread, while the others are sent to in parallel
+            firstRequest.run();
+        }
+
+        boolean isReceivedByRequiredSinks = true;
+        for (int i = 0; i < sinks.size(); i++) {
+            Sink sink = sinks.get(i);
+            if (responses.get(i) != null) {
+                pendingDocument.record(sink, await(responses.get(i)));
+            }
+            if (sink.isRequired() && !pendingDocument.isReceivedBy(sink)) {
+                isReceivedByRequiredSinks = false;
+            }
+        }
+
+        if (isReceivedByRequiredSinks) {
+            return pendingDocument.getResponse();
+        }
+        // remembered, so that the sinks which already received it are skipped when it's sent again
+        synchronized (pendingDocuments) {
+            pendingDocuments.put(documentKey, pendingDocument);
+        }
+        return null;
+    }
+
+    private static Callable<StatusResponse> createRequest(final Sink sink, final SealedBeacon sealedBeacon) {
+        return new Callable<StatusResponse>() {
+            @Override
+            public StatusResponse call() {
+                return sink.getConnector().sendSealedBeaconRequest(sealedBeacon, 0);
+            }
+        };
+    }
+
+    // starts the request in parallel, or runs it right away if that's not possible
+    private Future<StatusResponse> submit(Callable<StatusResponse> request) {
+        try {
+            return executor.submit(request);
+        } catch (RejectedExecutionException e) {
+            FutureTask<StatusResponse> future = new FutureTask<StatusResponse>(request);
+            future.run();
+            return future;
+        }
+    }
+
+    // the response of a request, or null if it failed or the calling thread was interrupted
+    private StatusResponse await(Future<StatusResponse> response) {
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            // keep the interrupt for the caller (e.g. OpenKit shutdown)
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("ERROR: Beacon Request failed!", e.getCause());
+        }
+        return null;
+    }
+
+    // identifies a document by its content
+    private static String digest(String clientIPAddress, byte[] document) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            if (clientIPAddress != null) {
+                messageDigest.update(clientIPAddress.getBytes(Beacon.CHARSET));
+            }
+            messageDigest.update((byte) 0);
+            messageDigest.update(document);
+            return new BigInteger(1, messageDigest.digest()).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            // must not happen, as every JRE supports SHA-256
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            // must not happen, as UTF-8 should *really* be supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // sinks which received a document, and the response to return for it
+    private static final class PendingDocument {
+
+        private final Set<Sink> receivingSinks = new HashSet<Sink>();
+        private StatusResponse response = null;
+
+        boolean isReceivedBy(Sink sink) {
+            return receivingSinks.contains(sink);
+        }
+
+        // sinks are recorded in order, so the response of the first sink receiving the document is kept
+        void record(Sink sink, StatusResponse sinkResponse) {
+            if (sinkResponse == null) {
+                return;
+            }
+            receivingSinks.add(sink);
+            if (response == null) {
+                response = sinkResponse;
+            }
+        }
+
+        StatusResponse getResponse() {
+            return response;
+        }
+    }
+
+    private static final class FanOutThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName(THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
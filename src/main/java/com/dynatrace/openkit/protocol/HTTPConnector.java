@@ -19,23 +19,25 @@ package com.dynatrace.openkit.protocol;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.api.SSLTrustManager;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.util.Backoff;
 import com.dynatrace.openkit.protocol.dto.Payload;
-import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.security.GeneralSecurityException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import javax.net.ssl.SSLSocketFactory;
 
 /**
  * HTTP client helper which abstracts the 3 basic request types:
@@ -63,6 +65,48 @@ public class HTTPConnector implements Connector {
 
     }
 
+    /**
+     * Writes the uncompressed body of a request, which is gzipped and streamed to the server while being written.
+     *
+     * <p>
+     * If the request is retried, the body is written once more, so it must be possible to write it repeatedly.
+     * </p>
+     */
+    public interface BodyWriter {
+
+        void writeTo(OutputStream outputStream) throws IOException;
+
+        /**
+         * Get a key identifying the document, which is the same if the document is written again for a retry,
+         * even if some bytes differ, e.g. the transmission time.
+         *
+         * @return The key, or {@code null} if the document is identified by the bytes written.
+         */
+        String getDocumentKey();
+    }
+
+    /**
+     * Status code and body of the response to a single request, before it is interpreted.
+     */
+    protected static final class RawResponse {
+
+        private final int statusCode;
+        private final String body;
+
+        public RawResponse(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+
     // request type constants
     private static final String REQUEST_TYPE_MOBILE = "type=m";
     private static final String REQUEST_TYPE_TIMESYNC = "type=mts";
@@ -79,88 +123,345 @@ public class HTTPConnector implements Connector {
     private static final String AGENT_TECHNOLOGY_TYPE = "okjava";
 
     // connection constants
-    private static final int MAX_SEND_RETRIES = 3;
-    private static final int RETRY_SLEEP_TIME = 200;        // retry sleep time in ms
-    private static final int CONNECT_TIMEOUT = 5000;
-    private static final int READ_TIMEOUT = 30000;
+    protected static final int MAX_SEND_RETRIES = 3;
+    private static final int RETRY_SLEEP_TIME = 200;        // initial retry sleep time in ms, doubled and randomized
+    protected static final int CONNECT_TIMEOUT = 5000;
+    protected static final int READ_TIMEOUT = 30000;
+    private static final int INITIAL_DOCUMENT_BUFFER_SIZE = 4 * 1024;
+    // size of the chunks a streamed request body is sent in, which is all that is buffered per request
+    protected static final int STREAMING_CHUNK_SIZE = 4 * 1024;
 
-    // URLs for requests
-    private final String monitorURL;
-    private final String timeSyncURL;
+    // URLs for requests and statistics, by endpoint
+    private final EndpointSelector endpointSelector;
 
     private final int serverID;
 
     private final SSLTrustManager sslTrustManager;
-	private final Serializer serializer;
-	private final Logger logger;
+    private volatile SSLSocketFactory sslSocketFactory = null;
+    private volatile SSLContext sslContext = null;
+    private final Serializer serializer;
+    private final Logger logger;
+
+    // shared by all connectors of an OpenKit instance, null if not limited
+    private final BandwidthLimiter bandwidthLimiter;
 
     // *** constructors ***
 
     public HTTPConnector(Logger logger, HTTPClientConfiguration configuration) {
+        this(logger, configuration, new MobileProtocolV3Serializer());
+    }
+
+    public HTTPConnector(Logger logger, HTTPClientConfiguration configuration, Serializer serializer) {
+        this(logger, configuration, serializer, new CircuitBreaker());
+    }
+
+    HTTPConnector(Logger logger, HTTPClientConfiguration configuration, Serializer serializer, CircuitBreaker circuitBreaker) {
         this.logger = logger;
         serverID = configuration.getServerID();
-        monitorURL = buildMonitorURL(configuration.getBaseURL(), configuration.getApplicationID(), serverID);
-        timeSyncURL = buildTimeSyncURL(configuration.getBaseURL());
+        // circuit breakers and endpoint statistics are shared by all requests, which is why connectors are reused
+        // per configuration - the given circuit breaker guards the first endpoint, often the only one
+        List<EndpointSelector.Endpoint> endpoints = new ArrayList<EndpointSelector.Endpoint>();
+        for (String baseURL : configuration.getBaseURLs()) {
+            endpoints.add(new EndpointSelector.Endpoint(
+                buildMonitorURL(baseURL, configuration.getApplicationID(), serverID),
+                buildTimeSyncURL(baseURL),
+                endpoints.isEmpty() ? circuitBreaker : new CircuitBreaker()));
+        }
+        endpointSelector = new EndpointSelector(endpoints);
         sslTrustManager = configuration.getSSLTrustManager();
-		this.serializer = new MobileProtocolV3Serializer();
-	}
+        bandwidthLimiter = configuration.getBandwidthLimiter();
+        this.serializer = serializer;
+    }
 
     // *** public methods ***
 
-	// sends a status check request and returns a status response
+    // sends a status check request and returns a status response
     public StatusResponse sendStatusRequest() {
-        return (StatusResponse) sendRequest(RequestType.STATUS, monitorURL, null, null, "GET");
+        return (StatusResponse) sendToEndpoints(RequestType.STATUS, null, null, false, null, "GET");
     }
 
-    // sends a beacon send request and returns a status response
-    public StatusResponse sendBeaconRequest(String clientIPAddress, Payload data) {
-    	return sendBeaconRequest(clientIPAddress, serializer.serialize(data));
+    // sends one or more beacon send requests, each at most maxBeaconSize bytes, and returns the last status response
+    public StatusResponse sendBeaconRequest(String clientIPAddress, Payload data, int maxBeaconSize) {
+        StatusResponse response;
+        DocumentWriter document = new DocumentWriter(data, maxBeaconSize);
+        do {
+            // each document is serialized straight into the request body
+            response = sendBeaconRequest(clientIPAddress, document);
+            if (response == null) {
+                // error happened - remaining documents are not sent
+                return null;
+            }
+            document.next();
+        } while (document.getOffset() < data.getActions().size());
+
+        return response;
+    }
+
+    // serializes and gzips the payload into documents of at most maxBeaconSize (uncompressed) bytes
+    public SealedBeacon sealBeacon(String clientIPAddress, Payload data, int maxBeaconSize) {
+        List<byte[]> documents = new ArrayList<byte[]>();
+        ByteArrayOutputStream document = new ByteArrayOutputStream(Math.min(maxBeaconSize, INITIAL_DOCUMENT_BUFFER_SIZE));
+        int offset = 0;
+        try {
+            do {
+                document.reset();
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(document);
+                offset = serializer.serialize(data, offset, maxBeaconSize, gzipOutputStream);
+                gzipOutputStream.close();
+                documents.add(document.toByteArray());
+            } while (offset < data.getActions().size());
+        } catch (IOException e) {
+            logger.error("ERROR: Sealing beacon failed!", e);
+            return null;
+        }
+
+        return new SealedBeacon(clientIPAddress, documents);
+    }
+
+    // sends one already compressed document of a sealed beacon and returns a status response
+    public StatusResponse sendSealedBeaconRequest(SealedBeacon sealedBeacon, int documentIndex) {
+        return (StatusResponse) sendToEndpoints(RequestType.BEACON, sealedBeacon.getClientIPAddress(),
+            sealedBeacon.getDocument(documentIndex), true, null, "POST");
     }
 
     // sends a beacon send request and returns a status response
-	public StatusResponse sendBeaconRequest(String clientIPAddress, byte[] data) {
-		return (StatusResponse) sendRequest(RequestType.BEACON, monitorURL, clientIPAddress, data, "POST");
-	}
+    public StatusResponse sendBeaconRequest(String clientIPAddress, byte[] data) {
+        return (StatusResponse) sendToEndpoints(RequestType.BEACON, clientIPAddress, data, false, null, "POST");
+    }
+
+    // sends a beacon send request, streaming the body while it is written, and returns a status response
+    public StatusResponse sendBeaconRequest(String clientIPAddress, BodyWriter body) {
+        return (StatusResponse) sendToEndpoints(RequestType.BEACON, clientIPAddress, null, false, body, "POST");
+    }
 
     // sends a time sync request and returns a time sync response
     public TimeSyncResponse sendTimeSyncRequest() {
-        return (TimeSyncResponse) sendRequest(RequestType.TIMESYNC, timeSyncURL, null, null, "GET");
+        return (TimeSyncResponse) sendToEndpoints(RequestType.TIMESYNC, null, null, false, null, "GET");
     }
 
-    // *** protected methods ***
+    // true while requests are suspended, because the server failed repeatedly at all endpoints
+    public boolean isCircuitOpen() {
+        return endpointSelector.isCircuitOpen();
+    }
 
-    // generic request send with some verbose output and exception handling
-    // protected because it's overridden by the TestHTTPClient
-    protected Response sendRequest(RequestType requestType, String url, String clientIPAddress, byte[] data, String method) {
+    // time until beacon data may be sent again, if the bandwidth is limited
+    public long getThrottleDelay() {
+        return bandwidthLimiter == null ? 0 : bandwidthLimiter.getDelay();
+    }
+
+    // resolves the server's address ahead of the first request, the JVM caches it
+    // HttpURLConnection opens connections on demand and keeps them alive, but cannot open one without a request
+    public void warmUp(int numberOfConnections) {
+        String monitorURL = getMonitorURL();
         try {
+            InetAddress.getAllByName(new URL(monitorURL).getHost());
+        } catch (IOException e) {
+            // best effort - the requests report the failure
             if (logger.isDebugEnabled()) {
-                logger.debug("HTTP " + requestType.getRequestName() + " Request: " + url);
+                logger.debug("Resolving the address of " + monitorURL + " failed: " + e);
             }
-            URL httpURL = new URL(url);
-            HttpURLConnection connection = (HttpURLConnection) httpURL.openConnection();
-            return sendRequestInternal(requestType, connection, clientIPAddress, data, method);
-        } catch (Exception e) {
-            logger.error("ERROR: " + requestType + " Request failed!", e);
         }
-        return null;
+    }
+
+    // *** protected methods, for connectors using another HTTP implementation ***
+
+    // URL used for status check and beacon send requests to the currently best endpoint
+    protected String getMonitorURL() {
+        return endpointSelector.getEndpointsInOrder().get(0).getMonitorURL();
+    }
+
+    protected SSLTrustManager getSSLTrustManager() {
+        return sslTrustManager;
+    }
+
+    // records the bytes of a request body, which count against the bandwidth limit
+    protected void consumeBandwidth(int numBytes) {
+        if (bandwidthLimiter != null) {
+            bandwidthLimiter.consume(numBytes);
+        }
+    }
+
+    // the request body for the given beacon data, gzipped unless already compressed
+    protected byte[] createRequestBody(byte[] data, boolean isCompressed) throws IOException {
+        if (isCompressed) {
+            // sealed beacon data is already gzipped
+            if (logger.isDebugEnabled()) {
+                logger.debug("Beacon Payload: " + data.length + " compressed bytes");
+            }
+            return data;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Beacon Payload: " + new String(data, Beacon.CHARSET));
+        }
+        return gzip(data);
+    }
+
+    // the SSL context for the configured trust manager, shared with all other connectors using the same trust manager
+    protected SSLContext getSSLContext() throws GeneralSecurityException {
+        // the cache only references the context weakly - keep it, so that TLS sessions are resumed
+        SSLContext context = SSLSocketFactoryCache.getSSLContext(sslTrustManager);
+        sslContext = context;
+        return context;
+    }
+
+    // request send with uncompressed data, which is gzipped before sending
+    protected Response sendRequest(RequestType requestType, String url, String clientIPAddress, byte[] data, String method) {
+        return sendRequest(requestType, url, clientIPAddress, data, false, method);
+    }
+
+    // generic request send with some verbose output and exception handling
+    // if isCompressed is true, data is already gzipped and sent as is
+    // protected because it's overridden by the TestHTTPClient
+    protected Response sendRequest(RequestType requestType, String url, String clientIPAddress, byte[] data,
+            boolean isCompressed, String method) {
+        return sendRequest(requestType, url, null, clientIPAddress, data, isCompressed, null, method);
+    }
+
+    // request send with a body, which is gzipped and sent in chunks while it is written
+    // protected because it's overridden by the TestHTTPClient
+    protected Response sendStreamingRequest(RequestType requestType, String url, String clientIPAddress, BodyWriter body,
+            String method) {
+        return sendRequest(requestType, url, null, clientIPAddress, null, false, body, method);
+    }
+
+    // request send for clients which cannot stream - the whole body is written into memory and sent as one
+    protected Response sendBufferedRequest(RequestType requestType, String url, String clientIPAddress, BodyWriter body,
+            String method) {
+        byte[] data;
+        try {
+            data = writeBody(body);
+        } catch (IOException e) {
+            logger.error("ERROR: Writing " + requestType + " Request failed!", e);
+            return null;
+        }
+        return sendRequest(requestType, url, clientIPAddress, data, false, method);
+    }
+
+    // sends a single request to the given URL, retrying on I/O errors, and returns the status code and body
+    // connectors using another HTTP implementation override this and the streaming variant only - the circuit
+    // breaker, the failover to other endpoints and the interpretation of the response are left to HTTPConnector
+    protected RawResponse execute(String url, String clientIPAddress, byte[] data, boolean isCompressed, String method)
+            throws IOException, GeneralSecurityException, InterruptedException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        return execute(connection, clientIPAddress, data, isCompressed, null, method);
+    }
+
+    // like execute, but with a body, which is gzipped and sent in chunks while it is written
+    protected RawResponse executeStreaming(String url, String clientIPAddress, BodyWriter body, String method)
+            throws IOException, GeneralSecurityException, InterruptedException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        return execute(connection, clientIPAddress, null, false, body, method);
+    }
+
+    // the whole uncompressed body, for HTTP implementations which cannot stream it
+    protected byte[] writeBody(BodyWriter body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(INITIAL_DOCUMENT_BUFFER_SIZE);
+        body.writeTo(outputStream);
+        return outputStream.toByteArray();
     }
 
     // *** private methods ***
 
+    // circuit breaker of the endpoint the request URL belongs to
+    private CircuitBreaker getCircuitBreaker(String url) {
+        return endpointSelector.getEndpoint(url).getCircuitBreaker();
+    }
+
+    // sends either the given data or the given streamed body to the best endpoint, failing over to the others
+    private Response sendToEndpoints(RequestType requestType, String clientIPAddress, byte[] data, boolean isCompressed,
+            BodyWriter body, String method) {
+        List<EndpointSelector.Endpoint> endpoints = endpointSelector.getEndpointsInOrder();
+        for (EndpointSelector.Endpoint endpoint : endpoints) {
+            if (endpoints.size() > 1 && endpoint.getCircuitBreaker().isOpen()) {
+                // failed repeatedly - the other endpoints come first, so this one can't be better
+                continue;
+            }
+
+            String url = requestType == RequestType.TIMESYNC ? endpoint.getTimeSyncURL() : endpoint.getMonitorURL();
+            long startNanos = System.nanoTime();
+            Response response = body == null
+                ? sendRequest(requestType, url, clientIPAddress, data, isCompressed, method)
+                : sendStreamingRequest(requestType, url, clientIPAddress, body, method);
+            endpointSelector.recordRequest(endpoint, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                response != null);
+            if (response != null || Thread.currentThread().isInterrupted()) {
+                return response;
+            }
+        }
+        return null;
+    }
+
     // only for unit testing the HTTPConnector
     Response sendRequest(RequestType requestType, HttpURLConnection connection, String clientIPAddress, byte[] data,
             String method) {
+        return sendRequest(requestType, connection, clientIPAddress, data, false, method);
+    }
+
+    // only for unit testing the HTTPConnector
+    Response sendRequest(RequestType requestType, HttpURLConnection connection, String clientIPAddress, byte[] data,
+            boolean isCompressed, String method) {
+        return sendRequest(requestType, null, connection, clientIPAddress, data, isCompressed, null, method);
+    }
+
+    // only for unit testing the HTTPConnector
+    Response sendStreamingRequest(RequestType requestType, HttpURLConnection connection, String clientIPAddress,
+            BodyWriter body, String method) {
+        return sendRequest(requestType, null, connection, clientIPAddress, null, false, body, method);
+    }
+
+    // sends either the given data or the given streamed body, guarded by the circuit breaker of the URL's endpoint
+    // the request is sent through the given connection if there is one, otherwise through execute
+    private Response sendRequest(RequestType requestType, String url, HttpURLConnection connection,
+            String clientIPAddress, byte[] data, boolean isCompressed, BodyWriter body, String method) {
+        CircuitBreaker circuitBreaker = getCircuitBreaker(url);
+        if (!circuitBreaker.tryAcquire()) {
+            // server failed repeatedly - don't generate any traffic for now
+            if (logger.isDebugEnabled()) {
+                logger.debug("HTTP " + requestType.getRequestName() + " Request skipped, circuit is open");
+            }
+            return null;
+        }
+
+        boolean isServerAvailable = false;
         try {
-            return sendRequestInternal(requestType, connection, clientIPAddress, data, method);
+            RawResponse response;
+            if (connection != null) {
+                response = execute(connection, clientIPAddress, data, isCompressed, body, method);
+            } else {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("HTTP " + requestType.getRequestName() + " Request: " + url);
+                }
+                response = body == null
+                    ? execute(url, clientIPAddress, data, isCompressed, method)
+                    : executeStreaming(url, clientIPAddress, body, method);
+            }
+            isServerAvailable = !isServerError(response.getStatusCode());
+            return createResponse(requestType, response.getBody(), response.getStatusCode());
+        } catch (InterruptedException e) {
+            // keep the interrupt for the caller (e.g. OpenKit shutdown)
+            Thread.currentThread().interrupt();
+            logger.error("ERROR: " + requestType + " Request interrupted!", e);
         } catch (Exception e) {
             logger.error("ERROR: " + requestType + " Request failed!", e);
+        } finally {
+            if (isServerAvailable) {
+                circuitBreaker.recordSuccess();
+            } else {
+                circuitBreaker.recordFailure();
+            }
         }
         return null;
     }
 
+    // server side errors, which indicate that the server is not able to handle requests right now
+    private static boolean isServerError(int responseCode) {
+        return responseCode >= 500 || responseCode == 429;
+    }
+
     // generic internal request send
-    private Response sendRequestInternal(RequestType requestType, HttpURLConnection connection, String clientIPAddress,
-            byte[] data, String method) throws IOException, GeneralSecurityException {
+    private RawResponse execute(HttpURLConnection connection, String clientIPAddress, byte[] data, boolean isCompressed,
+            BodyWriter body, String method) throws IOException, GeneralSecurityException {
         int retry = 1;
         while (true) {
             try {
@@ -176,8 +477,27 @@ public class HTTPConnector implements Connector {
                 connection.setReadTimeout(READ_TIMEOUT);
                 connection.setRequestMethod(method);
 
-                // gzip beacon data, if available
-                if (data != null && data.length > 0) {
+                if (body != null) {
+                    // gzip the body while writing it - only one chunk of it is held in memory
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                    connection.setChunkedStreamingMode(STREAMING_CHUNK_SIZE);
+                    connection.setDoOutput(true);
+                    writeStreamingBody(connection, body);
+                } else if (data != null && data.length > 0 && isCompressed) {
+                    // sealed beacon data is already gzipped
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Beacon Payload: " + data.length + " compressed bytes");
+                    }
+
+                    consumeBandwidth(data.length);
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                    connection.setFixedLengthStreamingMode(data.length);
+                    connection.setDoOutput(true);
+                    OutputStream outputStream = connection.getOutputStream();
+                    outputStream.write(data);
+                    outputStream.close();
+                } else if (data != null && data.length > 0) {
+                    // gzip beacon data, if available
                     byte[] gzippedData = gzip(data);
 
                     String decodedData = "";
@@ -191,6 +511,7 @@ public class HTTPConnector implements Connector {
                         logger.debug("Beacon Payload: " + decodedData);
                     }
 
+                    consumeBandwidth(gzippedData.length);
                     connection.setRequestProperty("Content-Encoding", "gzip");
                     connection.setRequestProperty("Content-Length", String.valueOf(data.length));
                     connection.setDoOutput(true);
@@ -199,53 +520,79 @@ public class HTTPConnector implements Connector {
                     outputStream.close();
                 }
 
-                return handleResponse(requestType, connection);
+                return handleResponse(connection);
 
 
             } catch (IOException exception) {
+                // drain a possibly available error response, so that the socket can be kept alive
+                drainErrorStream(connection);
+
                 retry++;
                 if (retry > MAX_SEND_RETRIES) {
                     throw exception;
                 }
 
                 try {
-                    Thread.sleep(RETRY_SLEEP_TIME);
+                    sleepBeforeRetry(retry);
                 } catch (InterruptedException e) {
-                    // TODO thomas.grassauer@dynatrace.com - check exception handling
+                    // don't retry, but keep the interrupt for the caller (e.g. OpenKit shutdown)
+                    Thread.currentThread().interrupt();
+                    throw exception;
                 }
             }
         }
     }
 
-    private Response handleResponse(RequestType requestType, HttpURLConnection connection) throws IOException {
+    // writes the gzipped body to the connection and closes it, recording the sent bytes against the bandwidth limit
+    private void writeStreamingBody(HttpURLConnection connection, BodyWriter body) throws IOException {
+        CountingOutputStream countingOutputStream = new CountingOutputStream(connection.getOutputStream());
+        try {
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(countingOutputStream, STREAMING_CHUNK_SIZE);
+            body.writeTo(gzipOutputStream);
+            // completes the gzip stream and the chunked body
+            gzipOutputStream.close();
+        } catch (IOException e) {
+            // the body is incomplete - don't let the server take it for a complete request
+            connection.disconnect();
+            throw e;
+        } finally {
+            // whatever reached the socket counts, even if the request failed
+            consumeBandwidth(countingOutputStream.getCount());
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Beacon Payload: " + countingOutputStream.getCount() + " compressed bytes, streamed");
+        }
+    }
+
+    // sleeps before the given retry (2 for the first retry), exponentially growing and randomized
+    protected static void sleepBeforeRetry(int retry) throws InterruptedException {
+        Thread.sleep(Backoff.jitter(Backoff.exponential(RETRY_SLEEP_TIME, retry - 2, Long.MAX_VALUE)));
+    }
+
+    private RawResponse handleResponse(HttpURLConnection connection) throws IOException {
         // get response code
         int responseCode = connection.getResponseCode();
 
-        // check response code
-        if (responseCode >= 400) {
-            // process error
+        // read response body - input stream is closed in readResponse
+        String response = readResponse(responseCode >= 400 ? connection.getErrorStream() : connection.getInputStream());
 
-            // read error response
-            String response = readResponse(connection.getErrorStream()); // input stream is closed in readResponse
+        return new RawResponse(responseCode, response);
+    }
 
-            if (logger.isDebugEnabled()) {
-                logger.debug("HTTP Response: " + response);
-                logger.debug("HTTP Response Code: " + responseCode);
-            }
+    // creates the typed response for the given response body, null for errors and unexpected responses
+    private Response createResponse(RequestType requestType, String response, int responseCode) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("HTTP Response: " + response);
+            logger.debug("HTTP Response Code: " + responseCode);
+        }
 
+        // check response code
+        if (responseCode >= 400) {
             // return null if error occurred
             return null;
 
         } else {
-            // process status response
-
-            // reading HTTP response
-            String response = readResponse(connection.getInputStream()); // input stream is closed in readResponse
-            if (logger.isDebugEnabled()) {
-                logger.debug("HTTP Response: " + response);
-                logger.debug("HTTP Response Code: " + responseCode);
-            }
-
             // create typed response based on request type and response content
             if (requestType.getRequestName().equals(RequestType.TIMESYNC.getRequestName())) {
                 return parseTimeSyncResponse(response, responseCode);
@@ -308,16 +655,9 @@ public class HTTPConnector implements Connector {
     }
 
     private void applySSLTrustManager(HttpsURLConnection connection) throws NoSuchAlgorithmException, KeyManagementException {
-        SSLContext context = SSLContext.getInstance("TLS");
-        X509TrustManager x509TrustManager;
-        if (sslTrustManager == null || sslTrustManager.getX509TrustManager() == null) {
-            // if provided trust manager is null use a strict one by default
-            x509TrustManager = new SSLStrictTrustManager().getX509TrustManager();
-        } else {
-            x509TrustManager = sslTrustManager.getX509TrustManager();
-        }
-        context.init(null, new TrustManager[]{x509TrustManager}, new SecureRandom());
-        connection.setSSLSocketFactory(context.getSocketFactory());
+        // the factory is shared, so TLS sessions are resumed - keep a reference, as the cache does not
+        sslSocketFactory = SSLSocketFactoryCache.getSocketFactory(sslTrustManager);
+        connection.setSSLSocketFactory(sslSocketFactory);
 
         if (sslTrustManager != null && sslTrustManager.getHostnameVerifier() != null) {
             connection.setHostnameVerifier(sslTrustManager.getHostnameVerifier());
@@ -368,7 +708,7 @@ public class HTTPConnector implements Connector {
     }
 
     // helper method for gzipping beacon data
-    private static byte[] gzip(byte[] data) throws IOException {
+    protected static byte[] gzip(byte[] data) throws IOException {
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
         gzipOutputStream.write(data);
@@ -383,8 +723,81 @@ public class HTTPConnector implements Connector {
         return serverID;
     }
 
+    // writes the documents of a payload one after the other, repeating the current one if a request is retried
+    private final class DocumentWriter implements BodyWriter {
+
+        private final Payload data;
+        private final int maxBeaconSize;
+        private int offset = 0;
+        private int nextOffset = 0;
+
+        DocumentWriter(Payload data, int maxBeaconSize) {
+            this.data = data;
+            this.maxBeaconSize = maxBeaconSize;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            nextOffset = serializer.serialize(data, offset, maxBeaconSize, outputStream);
+        }
+
+        @Override
+        public String getDocumentKey() {
+            return null;
+        }
+
+        // moves on to the next document, after the current one was sent
+        void next() {
+            offset = nextOffset;
+        }
+
+        int getOffset() {
+            return offset;
+        }
+    }
+
+    // counts the bytes written to the underlying stream
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private int count = 0;
+
+        CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        int getCount() {
+            return count;
+        }
+    }
+
+    // reads and closes the error stream - if a response body is left unread, the JDK cannot reuse the connection
+    private static void drainErrorStream(HttpURLConnection connection) {
+        try {
+            readResponse(connection.getErrorStream());
+        } catch (IOException e) {
+            // connection is closed and not reused then
+        }
+    }
+
+    // reads the response body up to its end and closes the stream, which returns the connection to the keep-alive cache
     private static String readResponse(InputStream inputStream) throws IOException {
         StringBuilder responseBuilder = new StringBuilder();
+        if (inputStream == null) {
+            // no response body available
+            return responseBuilder.toString();
+        }
 
         // reading HTTP response
         try {
@@ -0,0 +1,288 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Incremental parser for HTTP/1.1 responses, as used by {@link NIOConnector}.
+ *
+ * <p>
+ * Bytes are fed in as they arrive from the network. Bodies may be delimited by {@code Content-Length},
+ * by chunked transfer encoding or by closing the connection. Interim (1xx) responses are skipped.
+ * One parser instance handles exactly one response and is not thread safe.
+ * </p>
+ */
+class HTTPResponseParser {
+
+    // upper bound for status line and header lines, to fail on garbage instead of buffering it
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+    private enum State {
+        STATUS_LINE,
+        HEADERS,
+        BODY_FIXED_LENGTH,
+        BODY_UNTIL_CLOSE,
+        CHUNK_SIZE,
+        CHUNK_DATA,
+        CHUNK_DATA_END,
+        TRAILERS,
+        COMPLETE
+    }
+
+    private final StringBuilder line = new StringBuilder();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private State state = State.STATUS_LINE;
+    private boolean hasReceivedData = false;
+    private int statusCode = -1;
+    private boolean isHTTP10 = false;
+    private boolean keepAlive = true;
+    private long contentLength = -1;
+    private boolean isChunked = false;
+    private long remaining = 0;
+
+    /**
+     * Consumes all remaining bytes of the given buffer.
+     *
+     * <p>
+     * Bytes following a complete response are consumed as well, but ignored.
+     * </p>
+     *
+     * @param buffer Buffer with received bytes, ready to be read.
+     * @throws IOException If the response is malformed.
+     */
+    void feed(ByteBuffer buffer) throws IOException {
+        if (buffer.hasRemaining()) {
+            hasReceivedData = true;
+        }
+        while (buffer.hasRemaining() && state != State.COMPLETE) {
+            switch (state) {
+                case BODY_FIXED_LENGTH:
+                case CHUNK_DATA:
+                    readBody(buffer);
+                    break;
+                case BODY_UNTIL_CLOSE:
+                    body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                    buffer.position(buffer.limit());
+                    break;
+                default:
+                    if (readLine(buffer)) {
+                        handleLine(line.toString());
+                        line.setLength(0);
+                    }
+                    break;
+            }
+        }
+        // anything after the response (there must not be anything) is dropped
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Signals that the connection was closed by the server.
+     *
+     * @throws EOFException If the response is not complete and cannot be completed by closing the connection.
+     */
+    void endOfStream() throws EOFException {
+        if (state == State.BODY_UNTIL_CLOSE) {
+            state = State.COMPLETE;
+            keepAlive = false;
+        } else if (state != State.COMPLETE) {
+            throw new EOFException("Connection closed before response was complete");
+        }
+    }
+
+    /**
+     * @return {@code true} once the full response was received.
+     */
+    boolean isComplete() {
+        return state == State.COMPLETE;
+    }
+
+    /**
+     * @return {@code true} if any byte was received, which means a request must not be repeated.
+     */
+    boolean hasReceivedData() {
+        return hasReceivedData;
+    }
+
+    /**
+     * @return {@code true} if the connection may be used for further requests, once the response is complete.
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    byte[] getBody() {
+        return body.toByteArray();
+    }
+
+    // appends bytes to the current line, returns true if the line is complete (without CRLF)
+    private boolean readLine(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            char c = (char) (buffer.get() & 0xFF);
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return true;
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("HTTP response line too long");
+            }
+            line.append(c);
+        }
+        return false;
+    }
+
+    private void readBody(ByteBuffer buffer) {
+        int length = (int) Math.min(remaining, buffer.remaining());
+        body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        remaining -= length;
+        if (remaining == 0) {
+            state = state == State.CHUNK_DATA ? State.CHUNK_DATA_END : State.COMPLETE;
+        }
+    }
+
+    private void handleLine(String text) throws IOException {
+        switch (state) {
+            case STATUS_LINE:
+                parseStatusLine(text);
+                state = State.HEADERS;
+                break;
+            case HEADERS:
+                if (text.length() == 0) {
+                    endOfHeaders();
+                } else {
+                    parseHeader(text);
+                }
+                break;
+            case CHUNK_SIZE:
+                parseChunkSize(text);
+                break;
+            case CHUNK_DATA_END:
+                if (text.length() != 0) {
+                    throw new IOException("Malformed chunk end");
+                }
+                state = State.CHUNK_SIZE;
+                break;
+            case TRAILERS:
+                if (text.length() == 0) {
+                    state = State.COMPLETE;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected state " + state);
+        }
+    }
+
+    private void parseStatusLine(String text) throws IOException {
+        // e.g. "HTTP/1.1 200 OK"
+        if (!text.startsWith("HTTP/1.")) {
+            throw new IOException("Malformed HTTP status line: " + text);
+        }
+        int start = text.indexOf(' ');
+        int end = start < 0 ? -1 : text.indexOf(' ', start + 1);
+        try {
+            statusCode = Integer.parseInt(end < 0 ? text.substring(start + 1) : text.substring(start + 1, end));
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed HTTP status line: " + text);
+        }
+        isHTTP10 = text.startsWith("HTTP/1.0");
+        keepAlive = !isHTTP10;
+    }
+
+    private void parseHeader(String text) throws IOException {
+        int colon = text.indexOf(':');
+        if (colon <= 0) {
+            throw new IOException("Malformed HTTP header: " + text);
+        }
+        String name = text.substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+        String value = text.substring(colon + 1).trim();
+
+        if (name.equals("content-length")) {
+            try {
+                contentLength = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed Content-Length: " + value);
+            }
+            if (contentLength < 0) {
+                throw new IOException("Malformed Content-Length: " + value);
+            }
+        } else if (name.equals("transfer-encoding")) {
+            isChunked = value.toLowerCase(Locale.ENGLISH).endsWith("chunked");
+        } else if (name.equals("connection")) {
+            String lowerValue = value.toLowerCase(Locale.ENGLISH);
+            if (lowerValue.contains("close")) {
+                keepAlive = false;
+            } else if (lowerValue.contains("keep-alive")) {
+                keepAlive = true;
+            }
+        }
+    }
+
+    private void endOfHeaders() {
+        if (statusCode >= 100 && statusCode < 200) {
+            // interim response (e.g. 100 Continue), the final response follows
+            resetHeaders();
+            state = State.STATUS_LINE;
+        } else if (statusCode == 204 || statusCode == 304) {
+            state = State.COMPLETE;
+        } else if (isChunked) {
+            state = State.CHUNK_SIZE;
+        } else if (contentLength >= 0) {
+            remaining = contentLength;
+            state = contentLength == 0 ? State.COMPLETE : State.BODY_FIXED_LENGTH;
+        } else {
+            // neither length nor chunked - the body ends when the server closes the connection
+            keepAlive = false;
+            state = State.BODY_UNTIL_CLOSE;
+        }
+    }
+
+    private void resetHeaders() {
+        keepAlive = !isHTTP10;
+        contentLength = -1;
+        isChunked = false;
+    }
+
+    private void parseChunkSize(String text) throws IOException {
+        // chunk extensions (";name=value") are ignored
+        int semicolon = text.indexOf(';');
+        String size = (semicolon < 0 ? text : text.substring(0, semicolon)).trim();
+        try {
+            remaining = Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed chunk size: " + text);
+        }
+        if (remaining < 0) {
+            throw new IOException("Malformed chunk size: " + text);
+        }
+        state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+    }
+}
@@ -10,12 +10,16 @@ public interface IPayloadGenerator {
 
 	long getCurrentTimestamp();
 
+	long getSessionStartTime();
+
 	int createSequenceNumber();
 
 	String createTag(ActionImpl parentAction, int sequenceNo);
 
 	void addAction(ActionImpl action);
 
+	void startSession(SessionImpl session);
+
 	void endSession(SessionImpl session);
 
 	void reportValue(ActionImpl parentAction, String valueName, int value);
@@ -36,7 +40,15 @@ public interface IPayloadGenerator {
 
 	StatusResponse send();
 
+	StatusResponse send(SendBudget budget);
+
 	void clearData();
 
+	SealedBeacon takeUnsentData();
+
 	boolean isEmpty();
+
+	boolean hasError();
+
+	long getDataSize();
 }
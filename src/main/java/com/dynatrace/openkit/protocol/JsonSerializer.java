@@ -1,8 +1,9 @@
 package com.dynatrace.openkit.protocol;
 
-import java.util.Arrays;
-
-import javax.print.event.PrintEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 
 import com.dynatrace.openkit.protocol.dto.Action;
 import com.dynatrace.openkit.protocol.dto.Device;
@@ -10,9 +11,25 @@ import com.dynatrace.openkit.protocol.dto.Payload;
 import com.dynatrace.openkit.protocol.dto.Session;
 
 public class JsonSerializer implements Serializer {
+
+	// number of bytes required to close the document ("]}")
+	private static final int DOCUMENT_TRAILER_SIZE = 2;
+
 	@Override
 	public byte[] serialize(Payload data) {
-		StringBuilder builder = new StringBuilder();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			serialize(data, 0, Integer.MAX_VALUE, out);
+		} catch (IOException e) {
+			// must not happen when writing into memory
+			return new byte[0];
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public int serialize(Payload data, int offset, int maxSize, OutputStream out) throws IOException {
+		JsonWriter writer = new JsonWriter(out);
 
 		//        var payload = {
 		//                timestamp: new Date().getTime(),
@@ -20,38 +37,53 @@ public class JsonSerializer implements Serializer {
 		//                endpoint: "Dynatrace",
 		//                agent: "DT OpenAgent",
 		//                version: "0.1",
-		builder.append("{")
-				.append("\"timestamp\": ").append(System.currentTimeMillis() / 1000).append(",")
-				.append("\"sessionStart\": ").append(data.getSession().getStartTime()).append(",")
-				.append("\"endpoint\": \"Dynatrace\",")
-				.append("\"agent\": \"DT OpenAgent\",")
-				.append("\"version\": \"0.1\",")
-				//                device: {
-				//        },
-				.append("\"device\": ").append(serializeDevice(data.getDevice())).append(",")
-				//        session: {
-				//        },
-				.append("\"session\": ").append(serializeSession(data.getSession())).append(",")
-				//        entities: [],
-				.append("\"entities\": [],")
-		;
+		writer.beginObject()
+				.name("timestamp").value(System.currentTimeMillis() / 1000)
+				.name("sessionStart").value(data.getSession().getStartTime())
+				.name("endpoint").value("Dynatrace")
+				.name("agent").value("DT OpenAgent")
+				.name("version").value("0.1");
+		//                device: {
+		//        },
+		writer.name("device");
+		serializeDevice(writer, data.getDevice());
+		//        session: {
+		//        },
+		writer.name("session");
+		serializeSession(writer, data.getSession());
+		//        entities: [],
+		writer.name("entities").beginArray().endArray();
 		//        actions: []
 		//        };
-
-		builder.append("\"actions\": [");
-		//        for (i in actionStack) {
-		for (int i = 0; i < data.getActions().size(); i++) {
-			Action action = data.getActions().get(i);
-			if (i > 0) {
-				builder.append(",");
+		writer.name("actions").beginArray();
+
+		// each action is encoded upfront, to check whether it still fits into this document
+		ByteArrayOutputStream actionBuffer = new ByteArrayOutputStream();
+		List<Action> actions = data.getActions();
+		int next = offset;
+		while (next < actions.size()) {
+			actionBuffer.reset();
+			JsonWriter actionWriter = new JsonWriter(actionBuffer);
+			serializeAction(actionWriter, actions.get(next), data.getSession());
+			actionWriter.flush();
+
+			long separatorSize = next > offset ? 1 : 0;
+			long documentSize = writer.getBytesWritten() + separatorSize + actionBuffer.size() + DOCUMENT_TRAILER_SIZE;
+			if (next > offset && documentSize > maxSize) {
+				// action goes into the next document
+				break;
 			}
-			builder.append(serializeAction(action, data.getSession()));
+			writer.rawValue(actionBuffer);
+			next++;
 		}
-		builder.append("]");
-		return builder.append("}").toString().getBytes();
+
+		writer.endArray().endObject();
+		writer.flush();
+
+		return next;
 	}
 
-	private String serializeDevice(Device device) {
+	private void serializeDevice(JsonWriter writer, Device device) throws IOException {
 		//            id:             this.deviceEntity.id,
 		//                    name:           this.deviceEntity.name,
 		//                    clientIP:       this.deviceEntity.ip,
@@ -65,24 +97,24 @@ public class JsonSerializer implements Serializer {
 		//                    appVersion:     this.deviceEntity.appVersion,
 		//                    appBuild:       this.deviceEntity.appBuild
 
-		String builder = "{" + "\"id\":\"" + device.getVisitorId() + "\","
-				+ "\"clientIP\":\"" + device.getClientIPAddress() + "\""
-				+ "}";
-		return builder;
+		writer.beginObject()
+				.name("id").value(device.getVisitorId())
+				.name("clientIP").value(device.getClientIPAddress())
+				.endObject();
 	}
 
-	private String serializeSession(Session session) {
+	private void serializeSession(JsonWriter writer, Session session) throws IOException {
 		//            id: this.sessionId,
 		//                    name: this.deviceEntity.name,
 		//                    start: this.startTs,
 
-		String builder = "{" + "\"id\":" + session.getId() + ","
-				+ "\"start\":" + session.getStartTime()
-				+ "}";
-		return builder;
+		writer.beginObject()
+				.name("id").value(session.getId())
+				.name("start").value(session.getStartTime())
+				.endObject();
 	}
 
-	private String serializeAction(Action action, Session session) {
+	private void serializeAction(JsonWriter writer, Action action, Session session) throws IOException {
 
 		//            var entry = {
 		//                    name:               action.name,
@@ -118,34 +150,17 @@ public class JsonSerializer implements Serializer {
 		//            payload.actions.push(entry);
 		//        }
 
-		String builder = "{" + "\"name\":\"" + action.getName() + "\","
-				+ "\"type\":\"" + action.getEventType() + "\","
-				+ "\"id\":" + action.getActionId() + ","
-				+ "\"parent\":" + action.getParentActionId() + ","
-				+ "\"s0\":" + action.getStartSequenceNumber() + ","
-				+ "\"start\":" + action.getStartTime() + ","
-				+ "\"t0\":" + (action.getStartTime() - session.getStartTime()) + ","
-				+ "\"s1\":" + action.getEndSequenceNumber() + ","
-				+ "\"end\":" + action.getEndTime() + ","
-				+ "\"t1\":" + (action.getEndTime() - session.getStartTime())
-				+ "}";
-		return builder;
-	}
-
-	public static void main(String[] args) {
-		Payload data = new Payload("1.2.3.4", 1, System.currentTimeMillis(), "Visitor1");
-
-		Action action = new Action();
-		action.setActionId(1);
-		action.setName("Action 1");
-		action.setEventType(EventType.ACTION);
-		action.setStartSequenceNumber(1);
-		action.setStartTime(System.currentTimeMillis()+ 3);
-		action.setEndSequenceNumber(2);
-		action.setEndTime(System.currentTimeMillis() + 7);
-		action.setName("Action 1");
-		data.getActions().add(action);
-
-		System.out.println(new String(new JsonSerializer().serialize(data)));
+		writer.beginObject()
+				.name("name").value(action.getName())
+				.name("type").value(String.valueOf(action.getEventType()))
+				.name("id").value(action.getActionId())
+				.name("parent").value(action.getParentActionId())
+				.name("s0").value(action.getStartSequenceNumber())
+				.name("start").value(action.getStartTime())
+				.name("t0").value(action.getStartTime() - session.getStartTime())
+				.name("s1").value(action.getEndSequenceNumber())
+				.name("end").value(action.getEndTime())
+				.name("t1").value(action.getEndTime() - session.getStartTime())
+				.endObject();
 	}
 }
@@ -0,0 +1,284 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Minimal streaming JSON writer, writing properly escaped UTF-8 directly to an {@link OutputStream}.
+ *
+ * <p>
+ * The writer only takes care of separators and escaping, it does not validate the document structure.
+ * Output is buffered internally, therefore {@link #flush()} must be called once the document is complete.
+ * </p>
+ */
+public class JsonWriter {
+
+    private static final int BUFFER_SIZE = 512;
+    private static final int MAX_NESTING_DEPTH = 32;
+    // valid in JSON strings, but not in JavaScript string literals, therefore always escaped
+    private static final char LINE_SEPARATOR = 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+    private static final byte[] HEX_DIGITS = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int bufferPosition = 0;
+    private long bytesWritten = 0;
+
+    // per nesting level: true if no value has been written on this level so far
+    private final boolean[] firstValue = new boolean[MAX_NESTING_DEPTH + 1];
+    private int depth = 0;
+    private boolean nameWritten = false;
+
+    /**
+     * Constructor.
+     *
+     * @param out The stream receiving the UTF-8 encoded JSON data.
+     */
+    public JsonWriter(OutputStream out) {
+        this.out = out;
+        firstValue[0] = true;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Write the name of the next object member.
+     *
+     * @param name The member's name, which is escaped.
+     */
+    public JsonWriter name(String name) throws IOException {
+        writeSeparator();
+        writeString(name);
+        writeByte(':');
+        nameWritten = true;
+        return this;
+    }
+
+    /**
+     * Write a string value, or {@code null} if {@code value} is {@code null}.
+     */
+    public JsonWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            // not representable in JSON
+            writeAscii("null");
+        } else {
+            writeAscii(Double.toString(value));
+        }
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Write an already encoded JSON value without any further escaping.
+     *
+     * <p>
+     * This is used to append values that were encoded upfront, e.g. to determine their size.
+     * </p>
+     *
+     * @param encodedValue The UTF-8 encoded JSON value.
+     */
+    public JsonWriter rawValue(ByteArrayOutputStream encodedValue) throws IOException {
+        beforeValue();
+        flushBuffer();
+        encodedValue.writeTo(out);
+        bytesWritten += encodedValue.size();
+        return this;
+    }
+
+    /**
+     * Get the number of bytes written so far, including bytes which are still buffered.
+     */
+    public long getBytesWritten() {
+        return bytesWritten + bufferPosition;
+    }
+
+    /**
+     * Write all buffered bytes to the underlying stream and flush it.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        if (depth >= MAX_NESTING_DEPTH) {
+            throw new IllegalStateException("Nesting too deep");
+        }
+        beforeValue();
+        writeByte(bracket);
+        depth++;
+        firstValue[depth] = true;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("Nothing to close");
+        }
+        depth--;
+        writeByte(bracket);
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        if (nameWritten) {
+            // value of an object member, separator was already written together with the name
+            nameWritten = false;
+        } else {
+            writeSeparator();
+        }
+    }
+
+    private void writeSeparator() throws IOException {
+        if (firstValue[depth]) {
+            firstValue[depth] = false;
+        } else {
+            writeByte(',');
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    writeByte('\\');
+                    writeByte(c);
+                    break;
+                case '\b':
+                    writeEscaped('b');
+                    break;
+                case '\f':
+                    writeEscaped('f');
+                    break;
+                case '\n':
+                    writeEscaped('n');
+                    break;
+                case '\r':
+                    writeEscaped('r');
+                    break;
+                case '\t':
+                    writeEscaped('t');
+                    break;
+                default:
+                    if (c < 0x20 || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR) {
+                        writeUnicodeEscape(c);
+                    } else if (c < 0x80) {
+                        writeByte(c);
+                    } else if (c < 0x800) {
+                        writeByte(0xc0 | (c >> 6));
+                        writeByte(0x80 | (c & 0x3f));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        writeByte(0xf0 | (codePoint >> 18));
+                        writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                        writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                        writeByte(0x80 | (codePoint & 0x3f));
+                    } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                        // unpaired surrogate cannot be encoded in UTF-8
+                        writeUnicodeEscape(c);
+                    } else {
+                        writeByte(0xe0 | (c >> 12));
+                        writeByte(0x80 | ((c >> 6) & 0x3f));
+                        writeByte(0x80 | (c & 0x3f));
+                    }
+                    break;
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        writeByte('\\');
+        writeByte(c);
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        writeByte('\\');
+        writeByte('u');
+        writeByte(HEX_DIGITS[(c >> 12) & 0xf]);
+        writeByte(HEX_DIGITS[(c >> 8) & 0xf]);
+        writeByte(HEX_DIGITS[(c >> 4) & 0xf]);
+        writeByte(HEX_DIGITS[c & 0xf]);
+    }
+
+    private void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            writeByte(value.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (bufferPosition == buffer.length) {
+            flushBuffer();
+        }
+        buffer[bufferPosition++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (bufferPosition > 0) {
+            out.write(buffer, 0, bufferPosition);
+            bytesWritten += bufferPosition;
+            bufferPosition = 0;
+        }
+    }
+}
@@ -3,8 +3,11 @@ package com.dynatrace.openkit.protocol;
 import com.dynatrace.openkit.protocol.dto.Action;
 import com.dynatrace.openkit.protocol.dto.Payload;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.List;
 
 public class MobileProtocolV3Serializer implements Serializer {
 
@@ -55,8 +58,29 @@ public class MobileProtocolV3Serializer implements Serializer {
             // if encoding fails, skip the payload
             return new byte[1];
         }
+    }
 
+    @Override
+    public int serialize(Payload data, int offset, int maxSize, OutputStream out) throws IOException {
+        byte[] prefix = (createBasicBeaconData(data) + BEACON_DATA_DELIMITER + createTimestampData(data)).getBytes(CHARSET);
+        out.write(prefix);
+
+        long documentSize = prefix.length;
+        List<Action> actions = data.getActions();
+        int next = offset;
+        while (next < actions.size()) {
+            byte[] encodedAction = addAction(actions.get(next)).getBytes(CHARSET);
+            documentSize += 1 + encodedAction.length;
+            if (next > offset && documentSize > maxSize) {
+                // action goes into the next document
+                break;
+            }
+            out.write(BEACON_DATA_DELIMITER);
+            out.write(encodedAction);
+            next++;
+        }
 
+        return next;
     }
 
     /**
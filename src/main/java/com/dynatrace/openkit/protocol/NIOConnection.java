@@ -0,0 +1,400 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+
+/**
+ * A non-blocking (keep-alive) HTTP connection, optionally using TLS.
+ *
+ * <p>
+ * Only the {@link NIOEventLoop}'s I/O thread accesses a connection. Whenever the channel is ready,
+ * {@link #process()} moves as many bytes as possible without blocking: flushing the request,
+ * stepping the TLS handshake, reading and parsing the response.
+ * </p>
+ */
+final class NIOConnection {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int PLAIN_BUFFER_SIZE = 16 * 1024;
+
+    private final NIOExchange.Endpoint endpoint;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final SSLEngine engine;
+
+    // plain connections read directly into appIn and write the request directly
+    private ByteBuffer netIn;
+    private ByteBuffer netOut;
+    private ByteBuffer appIn;
+
+    private final long connectDeadlineNanos;
+    private boolean isConnected = false;
+    private boolean isEndOfStream = false;
+    private boolean isHandshakeVerified = false;
+
+    private NIOExchange exchange = null;
+    private ByteBuffer request = null;
+    private HTTPResponseParser parser = null;
+    private int numExchanges = 0;
+    private long idleSinceNanos;
+
+    private NIOConnection(NIOExchange.Endpoint endpoint, SocketChannel channel, Selector selector, long connectDeadlineNanos)
+        throws IOException {
+        this.endpoint = endpoint;
+        this.channel = channel;
+        this.connectDeadlineNanos = connectDeadlineNanos;
+        idleSinceNanos = System.nanoTime();
+
+        if (endpoint.getSSLContext() == null) {
+            engine = null;
+            appIn = ByteBuffer.allocate(PLAIN_BUFFER_SIZE);
+            netIn = appIn;
+        } else {
+            // host and port are hints for TLS session resumption
+            engine = endpoint.getSSLContext().createSSLEngine(endpoint.getHost(), endpoint.getPort());
+            engine.setUseClientMode(true);
+            SSLSession session = engine.getSession();
+            netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+            netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+            appIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+        }
+
+        key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+    }
+
+    /**
+     * Starts connecting to the exchange's address, without waiting for the connection to be established.
+     */
+    static NIOConnection open(NIOExchange exchange, Selector selector) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.connect(exchange.getAddress());
+            return new NIOConnection(exchange.getEndpoint(), channel, selector,
+                System.nanoTime() + exchange.getConnectTimeoutNanos());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    NIOExchange.Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Starts sending the given exchange's request. The connection must be idle.
+     */
+    void start(NIOExchange newExchange) throws IOException {
+        exchange = newExchange;
+        request = newExchange.isConnectOnly() ? null : ByteBuffer.wrap(newExchange.getRequest());
+        parser = new HTTPResponseParser();
+        numExchanges++;
+        process();
+    }
+
+    /**
+     * Moves as many bytes as possible, called whenever the channel is ready.
+     *
+     * <p>
+     * A completed exchange is completed before this method returns, a failed one is left to the caller,
+     * which should {@link #detachExchange() detach} it and close the connection.
+     * </p>
+     */
+    void process() throws IOException {
+        if (!isConnected) {
+            if (!channel.finishConnect()) {
+                return;
+            }
+            isConnected = true;
+            if (engine != null) {
+                engine.beginHandshake();
+            }
+        }
+
+        boolean isProgress;
+        do {
+            isProgress = flush();
+            if (!hasPendingOutput()) {
+                isProgress |= wrap();
+            }
+            isProgress |= read();
+            isProgress |= unwrap();
+            isProgress |= runDelegatedTasks();
+            isProgress |= parse();
+        } while (isProgress);
+
+        if (isEndOfStream) {
+            // everything received was processed above
+            if (exchange != null) {
+                parser.endOfStream();
+                completeExchange();
+            }
+            close();
+            return;
+        }
+
+        if (exchange != null && exchange.isConnectOnly() && isConnected
+            && (engine == null || isHandshakeDone(engine.getHandshakeStatus()))) {
+            if (engine != null && !isHandshakeVerified) {
+                // connections to the wrong server must not be kept for the following exchanges
+                verifyHostname();
+            }
+            completeConnect();
+        }
+
+        key.interestOps(hasPendingOutput() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * @return The current exchange, which is no longer handled by this connection.
+     */
+    NIOExchange detachExchange() {
+        NIOExchange detached = exchange;
+        exchange = null;
+        request = null;
+        return detached;
+    }
+
+    /**
+     * @return {@code true} if the connection was used before and failed without receiving anything,
+     * which typically means the server closed the idle connection in the meantime.
+     */
+    boolean isStale() {
+        return numExchanges > 1 && (parser == null || !parser.hasReceivedData());
+    }
+
+    boolean isIdle() {
+        return exchange == null && channel.isOpen();
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    long getIdleSinceNanos() {
+        return idleSinceNanos;
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} at which the current connect or exchange times out,
+     * {@link Long#MAX_VALUE} if idle.
+     */
+    long getDeadlineNanos() {
+        if (!isConnected) {
+            return exchange == null ? connectDeadlineNanos : Math.min(connectDeadlineNanos, exchange.getDeadlineNanos());
+        }
+        return exchange == null ? Long.MAX_VALUE : exchange.getDeadlineNanos();
+    }
+
+    void close() {
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to do
+        }
+    }
+
+    private boolean hasPendingOutput() {
+        if (engine == null) {
+            return request != null && request.hasRemaining();
+        }
+        return netOut.position() > 0;
+    }
+
+    private boolean flush() throws IOException {
+        if (engine == null) {
+            return request != null && request.hasRemaining() && channel.write(request) > 0;
+        }
+        if (netOut.position() == 0) {
+            return false;
+        }
+        netOut.flip();
+        int numWritten = channel.write(netOut);
+        netOut.compact();
+        return numWritten > 0;
+    }
+
+    private boolean wrap() throws IOException {
+        if (engine == null) {
+            return false;
+        }
+        HandshakeStatus handshakeStatus = engine.getHandshakeStatus();
+        boolean hasRequestData = request != null && request.hasRemaining() && isHandshakeDone(handshakeStatus);
+        if (handshakeStatus != HandshakeStatus.NEED_WRAP && !hasRequestData) {
+            return false;
+        }
+        if (hasRequestData && !isHandshakeVerified) {
+            // nothing is sent before the server is known to be the right one
+            verifyHostname();
+        }
+
+        SSLEngineResult result = engine.wrap(hasRequestData ? request : EMPTY, netOut);
+        switch (result.getStatus()) {
+            case CLOSED:
+                throw new IOException("TLS connection closed");
+            case BUFFER_OVERFLOW:
+                // only happens if the engine requires larger packets after the handshake
+                netOut = enlarge(netOut, engine.getSession().getPacketBufferSize());
+                return true;
+            default:
+                break;
+        }
+        return result.bytesProduced() > 0 || result.bytesConsumed() > 0;
+    }
+
+    private boolean read() throws IOException {
+        if (isEndOfStream || !netIn.hasRemaining()) {
+            return false;
+        }
+        int numRead = channel.read(netIn);
+        if (numRead < 0) {
+            isEndOfStream = true;
+            return true;
+        }
+        return numRead > 0;
+    }
+
+    private boolean unwrap() throws IOException {
+        if (engine == null || netIn.position() == 0) {
+            return false;
+        }
+
+        netIn.flip();
+        SSLEngineResult result;
+        try {
+            result = engine.unwrap(netIn, appIn);
+        } finally {
+            netIn.compact();
+        }
+
+        switch (result.getStatus()) {
+            case CLOSED:
+                // close_notify from the server
+                isEndOfStream = true;
+                return true;
+            case BUFFER_UNDERFLOW:
+                // incomplete TLS record - wait for more data, making room for a full record if necessary
+                if (!netIn.hasRemaining()) {
+                    netIn = enlarge(netIn, engine.getSession().getPacketBufferSize());
+                    return true;
+                }
+                return false;
+            case BUFFER_OVERFLOW:
+                if (appIn.position() == 0) {
+                    appIn = enlarge(appIn, engine.getSession().getApplicationBufferSize());
+                    return true;
+                }
+                // appIn is drained by parse()
+                return false;
+            default:
+                break;
+        }
+        return result.bytesProduced() > 0 || result.bytesConsumed() > 0;
+    }
+
+    private boolean runDelegatedTasks() {
+        if (engine == null || engine.getHandshakeStatus() != HandshakeStatus.NEED_TASK) {
+            return false;
+        }
+        // tasks (e.g. certificate validation) are short, so they are run on the I/O thread
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+        return true;
+    }
+
+    private boolean parse() throws IOException {
+        if (appIn.position() == 0) {
+            return false;
+        }
+        if (exchange == null) {
+            throw new IOException("Unexpected data received on idle connection to " + endpoint);
+        }
+
+        appIn.flip();
+        parser.feed(appIn);
+        appIn.clear();
+
+        if (parser.isComplete()) {
+            completeExchange();
+        }
+        return true;
+    }
+
+    private void completeExchange() {
+        NIOExchange completed = detachExchange();
+        if (!parser.isKeepAlive()) {
+            // no further exchanges, the connection is closed once everything is processed
+            isEndOfStream = true;
+        }
+        completed.complete(parser.getStatusCode(), parser.getBody());
+        idleSinceNanos = System.nanoTime();
+    }
+
+    private void completeConnect() {
+        NIOExchange completed = detachExchange();
+        completed.complete(0, new byte[0]);
+        idleSinceNanos = System.nanoTime();
+    }
+
+    private void verifyHostname() throws SSLPeerUnverifiedException {
+        // same as HttpsURLConnection: built-in check first, the configured verifier decides on a mismatch
+        SSLSession session = engine.getSession();
+        Certificate[] certificates = session.getPeerCertificates();
+        if (certificates.length > 0 && certificates[0] instanceof X509Certificate
+            && X509HostnameMatcher.matches(endpoint.getHost(), (X509Certificate) certificates[0])) {
+            isHandshakeVerified = true;
+            return;
+        }
+        HostnameVerifier hostnameVerifier = endpoint.getHostnameVerifier();
+        if (hostnameVerifier != null && hostnameVerifier.verify(endpoint.getHost(), session)) {
+            isHandshakeVerified = true;
+            return;
+        }
+        throw new SSLPeerUnverifiedException("Certificate does not match host " + endpoint.getHost());
+    }
+
+    private static boolean isHandshakeDone(HandshakeStatus handshakeStatus) {
+        return handshakeStatus == HandshakeStatus.NOT_HANDSHAKING || handshakeStatus == HandshakeStatus.FINISHED;
+    }
+
+    private static ByteBuffer enlarge(ByteBuffer buffer, int minCapacity) {
+        ByteBuffer enlarged = ByteBuffer.allocate(Math.max(minCapacity, 2 * buffer.capacity()));
+        buffer.flip();
+        enlarged.put(buffer);
+        return enlarged;
+    }
+}
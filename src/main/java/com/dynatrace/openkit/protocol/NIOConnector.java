@@ -0,0 +1,183 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.api.SSLTrustManager;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.net.ssl.HostnameVerifier;
+
+/**
+ * {@link Connector} sending its requests through a shared {@link NIOEventLoop}.
+ *
+ * <p>
+ * Requests, responses and retries are the same as for {@link HTTPConnector}, but no thread is tied to a socket.
+ * The calling thread only waits for its response, while a single I/O thread keeps the requests of all
+ * connectors in flight. This allows sending many sessions in parallel (see
+ * {@link com.dynatrace.openkit.AbstractOpenKitBuilder#withNumberOfSendWorkers(int)}) without a blocking socket
+ * per request.
+ * </p>
+ */
+public class NIOConnector extends HTTPConnector {
+
+    private static final Charset HEADER_CHARSET = Charset.forName("ISO-8859-1");
+
+    private final Logger logger;
+    private final NIOEventLoop eventLoop;
+
+    public NIOConnector(Logger logger, HTTPClientConfiguration configuration, NIOEventLoop eventLoop) {
+        this(logger, configuration, new MobileProtocolV3Serializer(), eventLoop);
+    }
+
+    public NIOConnector(Logger logger, HTTPClientConfiguration configuration, Serializer serializer, NIOEventLoop eventLoop) {
+        super(logger, configuration, serializer);
+        this.logger = logger;
+        this.eventLoop = eventLoop;
+    }
+
+    // the I/O thread must not wait for a body being written, so it is prepared in memory up front
+    @Override
+    protected RawResponse executeStreaming(String url, String clientIPAddress, BodyWriter body, String method)
+            throws IOException, GeneralSecurityException, InterruptedException {
+        return execute(url, clientIPAddress, writeBody(body), false, method);
+    }
+
+    // opens the connections in parallel, they are kept alive by the event loop for the following requests
+    @Override
+    public void warmUp(int numberOfConnections) {
+        if (isCircuitOpen()) {
+            // server failed repeatedly - don't generate any traffic for now
+            return;
+        }
+
+        try {
+            NIOExchange.Endpoint endpoint = createEndpoint(new URL(getMonitorURL()));
+            InetSocketAddress address = new InetSocketAddress(endpoint.getHost(), endpoint.getPort());
+            if (address.isUnresolved()) {
+                throw new UnknownHostException(endpoint.getHost());
+            }
+
+            List<NIOExchange> exchanges = new ArrayList<NIOExchange>(numberOfConnections);
+            for (int i = 0; i < numberOfConnections; i++) {
+                NIOExchange exchange = NIOExchange.connectOnly(endpoint, address, CONNECT_TIMEOUT, CONNECT_TIMEOUT + READ_TIMEOUT);
+                eventLoop.submit(exchange);
+                exchanges.add(exchange);
+            }
+            for (NIOExchange exchange : exchanges) {
+                exchange.await();
+            }
+        } catch (InterruptedException e) {
+            // keep the interrupt for the caller (e.g. OpenKit shutdown)
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // best effort - the requests open connections on their own
+            if (logger.isDebugEnabled()) {
+                logger.debug("Warming up connections to " + getMonitorURL() + " failed: " + e);
+            }
+        }
+    }
+
+    // sends the request through the event loop, retrying on I/O errors like HTTPConnector
+    @Override
+    protected RawResponse execute(String url, String clientIPAddress, byte[] data, boolean isCompressed, String method)
+            throws IOException, GeneralSecurityException, InterruptedException {
+        URL requestURL = new URL(url);
+        NIOExchange.Endpoint endpoint = createEndpoint(requestURL);
+        byte[] body = data == null || data.length == 0 ? null : createRequestBody(data, isCompressed);
+        byte[] request = buildRequest(requestURL, clientIPAddress, body, method);
+
+        int retry = 1;
+        while (true) {
+            try {
+                // resolve the host name here, as the I/O thread must not block
+                InetSocketAddress address = new InetSocketAddress(endpoint.getHost(), endpoint.getPort());
+                if (address.isUnresolved()) {
+                    throw new UnknownHostException(endpoint.getHost());
+                }
+
+                if (body != null) {
+                    consumeBandwidth(body.length);
+                }
+                NIOExchange exchange = new NIOExchange(endpoint, address, request, CONNECT_TIMEOUT, CONNECT_TIMEOUT + READ_TIMEOUT);
+                eventLoop.submit(exchange);
+                exchange.await();
+                return new RawResponse(exchange.getStatusCode(), new String(exchange.getBody(), Beacon.CHARSET));
+            } catch (IOException exception) {
+                retry++;
+                if (retry > MAX_SEND_RETRIES) {
+                    throw exception;
+                }
+                sleepBeforeRetry(retry);
+            }
+        }
+    }
+
+    private NIOExchange.Endpoint createEndpoint(URL url) throws IOException, GeneralSecurityException {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        if (url.getProtocol().equals("http")) {
+            return new NIOExchange.Endpoint(url.getHost(), port, null, null);
+        }
+        if (!url.getProtocol().equals("https")) {
+            throw new IOException("Unsupported protocol " + url.getProtocol());
+        }
+
+        SSLTrustManager sslTrustManager = getSSLTrustManager();
+        HostnameVerifier hostnameVerifier = sslTrustManager == null ? null : sslTrustManager.getHostnameVerifier();
+        return new NIOExchange.Endpoint(url.getHost(), port, getSSLContext(), hostnameVerifier);
+    }
+
+    // body is the (gzipped) request body, null if there is none
+    private static byte[] buildRequest(URL url, String clientIPAddress, byte[] body, String method) throws IOException {
+        String target = url.getFile().length() == 0 ? "/" : url.getFile();
+        StringBuilder header = new StringBuilder();
+        header.append(method).append(' ').append(target).append(" HTTP/1.1\r\n");
+        header.append("Host: ").append(url.getHost());
+        if (url.getPort() != -1) {
+            header.append(':').append(url.getPort());
+        }
+        header.append("\r\n");
+        if (clientIPAddress != null) {
+            header.append("X-Client-IP: ").append(clientIPAddress).append("\r\n");
+        }
+        if (body != null) {
+            header.append("Content-Encoding: gzip\r\n");
+            header.append("Content-Length: ").append(body.length).append("\r\n");
+        } else if (method.equals("POST")) {
+            header.append("Content-Length: 0\r\n");
+        }
+        header.append("\r\n");
+
+        ByteArrayOutputStream request = new ByteArrayOutputStream(header.length() + (body == null ? 0 : body.length));
+        request.write(header.toString().getBytes(HEADER_CHARSET));
+        if (body != null) {
+            request.write(body);
+        }
+        return request.toByteArray();
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single I/O thread multiplexing the requests of any number of {@link NIOConnector}s.
+ *
+ * <p>
+ * Requests are sent over non-blocking channels, so any number of them can be in flight at the same time
+ * without tying up a thread per request. Connections are kept alive and reused per host and port.
+ * The thread is a daemon thread, which is started with the first request.
+ * </p>
+ */
+public class NIOEventLoop {
+
+    // granularity of timeout checks
+    private static final long SELECT_TIMEOUT = 250;
+    // idle connections are closed after this time, well before typical server keep-alive timeouts
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private final Logger logger;
+
+    // exchanges submitted by other threads, picked up by the I/O thread
+    private final Queue<NIOExchange> pendingExchanges = new ConcurrentLinkedQueue<NIOExchange>();
+
+    // only accessed by the I/O thread
+    private final Set<NIOConnection> connections = new HashSet<NIOConnection>();
+    private final Map<NIOExchange.Endpoint, Deque<NIOConnection>> idleConnections =
+        new HashMap<NIOExchange.Endpoint, Deque<NIOConnection>>();
+
+    // guarded by this
+    private Selector selector = null;
+    private Thread thread = null;
+    private volatile boolean isShutdown = false;
+
+    public NIOEventLoop(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Stops the I/O thread. Requests in flight fail, new requests are rejected.
+     */
+    public void shutdown() {
+        Selector selectorToWakeUp;
+        synchronized (this) {
+            isShutdown = true;
+            selectorToWakeUp = selector;
+        }
+        if (selectorToWakeUp != null) {
+            selectorToWakeUp.wakeup();
+        }
+        failPendingExchanges();
+    }
+
+    /**
+     * Hands the given exchange over to the I/O thread.
+     *
+     * @throws IOException If the event loop is shut down or could not be started.
+     */
+    void submit(NIOExchange exchange) throws IOException {
+        Selector selectorToWakeUp = start();
+        pendingExchanges.add(exchange);
+        selectorToWakeUp.wakeup();
+        if (isShutdown) {
+            // the I/O thread might have missed it
+            failPendingExchanges();
+        }
+    }
+
+    private synchronized Selector start() throws IOException {
+        if (isShutdown) {
+            throw new IOException("NIO event loop is shut down");
+        }
+        if (thread == null) {
+            selector = Selector.open();
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runLoop();
+                }
+            }, "OpenKit-NIOEventLoop");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return selector;
+    }
+
+    private void runLoop() {
+        try {
+            while (!isShutdown) {
+                selector.select(connections.isEmpty() ? 0 : SELECT_TIMEOUT);
+
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    process((NIOConnection) key.attachment());
+                }
+
+                NIOExchange exchange;
+                while ((exchange = pendingExchanges.poll()) != null) {
+                    dispatch(exchange);
+                }
+
+                checkTimeouts();
+            }
+        } catch (IOException e) {
+            logger.error("NIO event loop failed", e);
+        } finally {
+            synchronized (this) {
+                isShutdown = true;
+            }
+            for (NIOConnection connection : new ArrayList<NIOConnection>(connections)) {
+                fail(connection, new IOException("NIO event loop is shut down"));
+            }
+            failPendingExchanges();
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+
+    private void dispatch(NIOExchange exchange) {
+        // connect-only exchanges always open a connection, the connection completing one of them is already idle
+        NIOConnection connection = exchange.isConnectOnly() ? null : pollIdleConnection(exchange.getEndpoint());
+        try {
+            if (connection == null) {
+                connection = NIOConnection.open(exchange, selector);
+                connections.add(connection);
+            }
+            connection.start(exchange);
+        } catch (IOException e) {
+            if (connection == null) {
+                exchange.fail(e);
+                return;
+            }
+            fail(connection, e);
+            return;
+        } catch (RuntimeException e) {
+            if (connection == null) {
+                exchange.fail(new IOException(e));
+                return;
+            }
+            fail(connection, new IOException(e));
+            return;
+        }
+        update(connection);
+    }
+
+    private void process(NIOConnection connection) {
+        try {
+            connection.process();
+        } catch (IOException e) {
+            fail(connection, e);
+            return;
+        } catch (CancelledKeyException e) {
+            fail(connection, new IOException(e));
+            return;
+        } catch (RuntimeException e) {
+            // e.g. from the SSLEngine - the loop has to survive
+            fail(connection, new IOException(e));
+            return;
+        }
+        update(connection);
+    }
+
+    // keeps track of the connection's state after it was processed
+    private void update(NIOConnection connection) {
+        if (!connection.isOpen()) {
+            remove(connection);
+        } else if (connection.isIdle()) {
+            Deque<NIOConnection> idle = idleConnections.get(connection.getEndpoint());
+            if (idle == null) {
+                idle = new ArrayDeque<NIOConnection>();
+                idleConnections.put(connection.getEndpoint(), idle);
+            }
+            if (!idle.contains(connection)) {
+                idle.addLast(connection);
+            }
+        }
+    }
+
+    private NIOConnection pollIdleConnection(NIOExchange.Endpoint endpoint) {
+        Deque<NIOConnection> idle = idleConnections.get(endpoint);
+        if (idle == null) {
+            return null;
+        }
+        // the most recently used connection is the least likely to be closed by the server
+        NIOConnection connection = idle.pollLast();
+        if (idle.isEmpty()) {
+            idleConnections.remove(endpoint);
+        }
+        return connection;
+    }
+
+    private void fail(NIOConnection connection, IOException failure) {
+        boolean isStale = connection.isStale();
+        NIOExchange exchange = connection.detachExchange();
+        connection.close();
+        remove(connection);
+
+        if (exchange == null) {
+            return;
+        }
+        if (isStale && !exchange.isRetried() && !isShutdown) {
+            // the server closed the kept alive connection, try once more using a new one
+            exchange.setRetried();
+            dispatch(exchange);
+        } else {
+            exchange.fail(failure);
+        }
+    }
+
+    private void remove(NIOConnection connection) {
+        connections.remove(connection);
+        Deque<NIOConnection> idle = idleConnections.get(connection.getEndpoint());
+        if (idle != null) {
+            idle.remove(connection);
+            if (idle.isEmpty()) {
+                idleConnections.remove(connection.getEndpoint());
+            }
+        }
+    }
+
+    private void checkTimeouts() {
+        long now = System.nanoTime();
+        List<NIOConnection> timedOut = new ArrayList<NIOConnection>();
+        List<NIOConnection> expired = new ArrayList<NIOConnection>();
+        for (NIOConnection connection : connections) {
+            if (connection.isIdle()) {
+                if (now - connection.getIdleSinceNanos() >= IDLE_TIMEOUT_NANOS) {
+                    expired.add(connection);
+                }
+            } else if (now - connection.getDeadlineNanos() >= 0) {
+                timedOut.add(connection);
+            }
+        }
+
+        for (NIOConnection connection : timedOut) {
+            NIOExchange exchange = connection.detachExchange();
+            connection.close();
+            remove(connection);
+            if (exchange != null) {
+                exchange.fail(new SocketTimeoutException("Request to " + connection.getEndpoint() + " timed out"));
+            }
+        }
+        for (NIOConnection connection : expired) {
+            connection.close();
+            remove(connection);
+        }
+    }
+
+    private void failPendingExchanges() {
+        NIOExchange exchange;
+        while ((exchange = pendingExchanges.poll()) != null) {
+            exchange.fail(new IOException("NIO event loop is shut down"));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+
+/**
+ * One HTTP request/response exchange handled by a {@link NIOEventLoop}.
+ *
+ * <p>
+ * The exchange is completed (or failed) by the event loop's I/O thread, while the submitting thread
+ * waits for it in {@link #await()}.
+ * </p>
+ */
+final class NIOExchange {
+
+    // additional time the caller waits, before giving up on the event loop
+    private static final long AWAIT_GRACE_TIME_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Endpoint endpoint;
+    private final InetSocketAddress address;
+    private final byte[] request;
+    private final long connectTimeoutNanos;
+    private final long deadlineNanos;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private int statusCode = -1;
+    private byte[] body = null;
+    private IOException failure = null;
+
+    // only accessed by the I/O thread
+    private boolean isRetried = false;
+
+    NIOExchange(Endpoint endpoint, InetSocketAddress address, byte[] request, long connectTimeoutMillis, long timeoutMillis) {
+        this.endpoint = endpoint;
+        this.address = address;
+        this.request = request;
+        this.connectTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(connectTimeoutMillis);
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Creates an exchange, which only opens a connection without sending a request.
+     *
+     * <p>
+     * The exchange always opens a new connection and is completed as soon as it is established, including the
+     * TLS handshake. The connection is kept alive for the following exchanges.
+     * </p>
+     */
+    static NIOExchange connectOnly(Endpoint endpoint, InetSocketAddress address, long connectTimeoutMillis, long timeoutMillis) {
+        return new NIOExchange(endpoint, address, null, connectTimeoutMillis, timeoutMillis);
+    }
+
+    Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    byte[] getRequest() {
+        return request;
+    }
+
+    /**
+     * @return {@code true} if the exchange only opens a connection, without sending a request.
+     */
+    boolean isConnectOnly() {
+        return request == null;
+    }
+
+    long getConnectTimeoutNanos() {
+        return connectTimeoutNanos;
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} at which the exchange times out.
+     */
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    boolean isRetried() {
+        return isRetried;
+    }
+
+    void setRetried() {
+        isRetried = true;
+    }
+
+    synchronized void complete(int statusCode, byte[] body) {
+        if (done.getCount() > 0) {
+            this.statusCode = statusCode;
+            this.body = body;
+            done.countDown();
+        }
+    }
+
+    synchronized void fail(IOException failure) {
+        if (done.getCount() > 0) {
+            this.failure = failure;
+            done.countDown();
+        }
+    }
+
+    /**
+     * Waits until the exchange is completed.
+     *
+     * @throws IOException If the exchange failed or timed out.
+     * @throws InterruptedException If the waiting thread was interrupted.
+     */
+    void await() throws IOException, InterruptedException {
+        long timeout = deadlineNanos - System.nanoTime() + AWAIT_GRACE_TIME_NANOS;
+        if (!done.await(Math.max(timeout, 0), TimeUnit.NANOSECONDS)) {
+            throw new SocketTimeoutException("No response from event loop");
+        }
+        synchronized (this) {
+            if (failure != null) {
+                // wrap, so that the caller's stack trace is included as well
+                throw new IOException(failure.getMessage(), failure);
+            }
+        }
+    }
+
+    synchronized int getStatusCode() {
+        return statusCode;
+    }
+
+    synchronized byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Target of an exchange - connections are only reused for the same endpoint.
+     */
+    static final class Endpoint {
+
+        private final String host;
+        private final int port;
+        private final SSLContext sslContext;
+        private final HostnameVerifier hostnameVerifier;
+
+        /**
+         * @param host Host name, as used in the URL.
+         * @param port Port number.
+         * @param sslContext Context for TLS connections, {@code null} for plain connections.
+         * @param hostnameVerifier Fallback, if the host name does not match the certificate. May be {@code null}.
+         */
+        Endpoint(String host, int port, SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+            this.host = host;
+            this.port = port;
+            this.sslContext = sslContext;
+            this.hostnameVerifier = hostnameVerifier;
+        }
+
+        String getHost() {
+            return host;
+        }
+
+        int getPort() {
+            return port;
+        }
+
+        SSLContext getSSLContext() {
+            return sslContext;
+        }
+
+        HostnameVerifier getHostnameVerifier() {
+            return hostnameVerifier;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Endpoint)) {
+                return false;
+            }
+            Endpoint other = (Endpoint) obj;
+            // contexts and verifiers are compared by identity, as they are shared anyway
+            return host.equals(other.host) && port == other.port
+                && sslContext == other.sslContext && hostnameVerifier == other.hostnameVerifier;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * host.hashCode() + port;
+        }
+
+        @Override
+        public String toString() {
+            return (sslContext == null ? "http://" : "https://") + host + ":" + port;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.dynatrace.openkit.protocol;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.dynatrace.openkit.api.Logger;
@@ -7,6 +9,8 @@ import com.dynatrace.openkit.core.ActionImpl;
 import com.dynatrace.openkit.core.SessionImpl;
 import com.dynatrace.openkit.core.WebRequestTracerBaseImpl;
 import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.caching.MemoryBudget;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
 import com.dynatrace.openkit.protocol.dto.Action;
@@ -24,6 +28,9 @@ public class PayloadGenerator implements IPayloadGenerator {
 	// max name length
 	private static final int MAX_NAME_LEN = 250;
 
+	// rough size of a serialized action without its name, used to estimate the size of the collected data
+	static final int ACTION_SIZE_ESTIMATE = 80;
+
 	// web request tag prefix constant
 	private static final String TAG_PREFIX = "MT";
 	private final long sessionStartTime;
@@ -40,11 +47,27 @@ public class PayloadGenerator implements IPayloadGenerator {
 	// dependencies
 	private final Logger logger;
 	private final BeaconCacheImpl beaconCache;
+	private final MemoryBudget memoryBudget;
 	private final TimingProvider timingProvider;
 	private final ThreadIDProvider threadIDProvider;
 
 	private final Payload payload;
 
+	// session to schedule for sending, once the collected data exceeds the threshold
+	private volatile SessionImpl session = null;
+	private final long openSessionSendThreshold;
+
+	// estimated size of the collected actions and whether the session was already scheduled, guarded by this
+	private long collectedDataSize = 0;
+	private boolean sendScheduled = false;
+
+	// bytes taken from the memory budget, guarded by this
+	private long reservedDataSize = 0;
+
+	// data of the ended session, guarded by this
+	private SealedBeacon sealedBeacon = null;
+	private int nextSealedDocument = 0;
+
 	// *** constructors ***
 
 	/**
@@ -59,8 +82,30 @@ public class PayloadGenerator implements IPayloadGenerator {
 	 */
 	public PayloadGenerator(Logger logger, BeaconCacheImpl beaconCache, Configuration configuration, String clientIPAddress,
 			ThreadIDProvider threadIDProvider, TimingProvider timingProvider) {
+		this(logger, beaconCache, null, configuration, clientIPAddress, threadIDProvider, timingProvider);
+	}
+
+	/**
+	 * Constructor for a generator, whose data counts against a memory budget shared with other sessions.
+	 *
+	 * <p>
+	 * Actions not fitting into the budget any more are dropped, until enough data was sent.
+	 * Sealed data is accounted for with at most the estimated size of the actions it was sealed from.
+	 * </p>
+	 *
+	 * @param logger Logger for logging messages.
+	 * @param beaconCache Cache storing beacon related data.
+	 * @param memoryBudget Budget for the data not sent yet, {@code null} for an unlimited budget.
+	 * @param configuration OpenKit related configuration.
+	 * @param clientIPAddress The client's IP address.
+	 * @param threadIDProvider Provider for retrieving thread id.
+	 * @param timingProvider Provider for time related methods.
+	 */
+	public PayloadGenerator(Logger logger, BeaconCacheImpl beaconCache, MemoryBudget memoryBudget, Configuration configuration,
+			String clientIPAddress, ThreadIDProvider threadIDProvider, TimingProvider timingProvider) {
 		this.logger = logger;
 		this.beaconCache = beaconCache;
+		this.memoryBudget = memoryBudget;
 		this.timingProvider = timingProvider;
 
 		this.configuration = configuration;
@@ -76,6 +121,11 @@ public class PayloadGenerator implements IPayloadGenerator {
 				String.valueOf(configuration.getDeviceID()));
 
 		this.httpClientConfig = configuration.getHttpClientConfig();
+
+		BeaconSendingConfiguration beaconSendingConfiguration = configuration.getBeaconSendingConfiguration();
+		this.openSessionSendThreshold = beaconSendingConfiguration == null
+				? BeaconSendingConfiguration.DEFAULT_OPEN_SESSION_SEND_THRESHOLD_IN_BYTES
+				: beaconSendingConfiguration.getOpenSessionSendThreshold();
 	}
 
 	/**
@@ -101,6 +151,16 @@ public class PayloadGenerator implements IPayloadGenerator {
 		return timingProvider.provideTimestampInMilliseconds();
 	}
 
+	/**
+	 * Get the timestamp when the session of this payload generator was started.
+	 *
+	 * @return Session start time in milliseconds.
+	 */
+	@Override
+	public long getSessionStartTime() {
+		return sessionStartTime;
+	}
+
 	/**
 	 * Create a unique sequence number.
 	 *
@@ -149,22 +209,71 @@ public class PayloadGenerator implements IPayloadGenerator {
 		actionDto.setEndSequenceNumber(action.getEndSequenceNo());
 		actionDto.setEndTime(action.getEndTime() - action.getStartTime());
 
+		long actionSize = ACTION_SIZE_ESTIMATE + (actionDto.getName() == null ? 0 : actionDto.getName().length());
+		if (memoryBudget != null && !memoryBudget.tryReserve(actionSize)) {
+			// the unsent data of all sessions sharing the budget would exceed it
+			if (logger.isDebugEnabled()) {
+				logger.debug("Action " + action.getID() + " dropped, the memory budget is exhausted");
+			}
+			return;
+		}
+
+		boolean scheduleSend = false;
 		synchronized (this) {
 			payload.addAction(actionDto);
+
+			reservedDataSize += actionSize;
+			collectedDataSize += actionSize;
+			if (openSessionSendThreshold > 0 && !sendScheduled && collectedDataSize >= openSessionSendThreshold) {
+				sendScheduled = true;
+				scheduleSend = true;
+			}
+		}
+
+		SessionImpl currentSession = session;
+		if (currentSession != null) {
+			currentSession.markNewData();
+		}
+		if (scheduleSend && currentSession != null) {
+			// enough data collected - send it without waiting for the send interval
+			currentSession.scheduleSend();
 		}
 	}
 
 	/**
-	 * Add {@link SessionImpl} to Beacon when session is ended.
+	 * Start the session this generator belongs to.
 	 *
 	 * <p>
-	 * The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+	 * If an open session send threshold is configured, the session is scheduled for sending
+	 * as soon as the collected data exceeds this threshold.
+	 * </p>
+	 *
+	 * @param session The session which is started.
+	 */
+	public void startSession(SessionImpl session) {
+		this.session = session;
+	}
+
+	/**
+	 * Seal the collected data when the session is ended.
+	 *
+	 * <p>
+	 * An ended session can no longer change, therefore its data is serialized and compressed right away
+	 * into a {@link SealedBeacon}, so that sending it later on is a plain byte transfer.
+	 * If sealing fails, the data is kept and serialized when sending, as for open sessions.
+	 * If no actions are pending, nothing is sealed, since this would only produce a document without any data.
 	 * </p>
 	 *
-	 * @param session The session to add.
+	 * @param session The session which is ended.
 	 */
 	public void endSession(SessionImpl session) {
-		// not yet implemented
+		Connector connector = configuration.getConnectorProvider().createConnector(httpClientConfig);
+
+		synchronized (this) {
+			if (!payload.getActions().isEmpty()) {
+				sealCollectedActions(connector);
+			}
+		}
 	}
 
 	/**
@@ -288,6 +397,12 @@ public class PayloadGenerator implements IPayloadGenerator {
 	 *
 	 * <p>
 	 * This method tries to send all so far collected and serialized data.
+	 * If the session has been sealed, documents which could not be sent are kept and retried with the next call.
+	 * Collected actions are only removed once they were sent, otherwise they are retried with the next call.
+	 * While the server is failing repeatedly (see {@link Connector#isCircuitOpen()}), all data is kept.
+	 * The same applies while the bandwidth for beacon data is exhausted (see {@link Connector#getThrottleDelay()}),
+	 * which is checked before each document of a sealed session.
+	 * If nothing was collected since the last send, no request is sent at all.
 	 * </p>
 	 *
 	 * @return Returns the last status response retrieved from the server side, or {@code null} if an error occurred.
@@ -295,30 +410,211 @@ public class PayloadGenerator implements IPayloadGenerator {
 	public StatusResponse send() {
 		StatusResponse retVal = null;
 
+		if (isEmpty()) {
+			// nothing collected since the last send - don't send an empty beacon
+			return null;
+		}
+
 		Connector connector = configuration.getConnectorProvider().createConnector(httpClientConfig);
+		if (connector.isCircuitOpen() || connector.getThrottleDelay() > 0) {
+			// server is failing or bandwidth is exhausted - keep the data and retry later
+			return null;
+		}
 
 		synchronized (this) {
-			retVal = connector.sendBeaconRequest(clientIPAddress, payload);
+			if (sealedBeacon != null) {
+				while (nextSealedDocument < sealedBeacon.getNumberOfDocuments()) {
+					if (connector.getThrottleDelay() > 0) {
+						// bandwidth is exhausted - remaining documents are sent with the next attempt
+						return null;
+					}
+					retVal = connector.sendSealedBeaconRequest(sealedBeacon, nextSealedDocument);
+					if (retVal == null) {
+						// error happened - remaining documents are sent with the next attempt
+						return null;
+					}
+					nextSealedDocument++;
+				}
+				sealedBeacon = null;
+				releaseUnusedBudget();
+
+				if (payload.getActions().isEmpty()) {
+					return retVal;
+				}
+			}
+
+			retVal = connector.sendBeaconRequest(clientIPAddress, payload, configuration.getMaxBeaconSize());
+			if (retVal == null) {
+				// error happened, or not all required sinks received the data - it is sent with the next attempt
+				return null;
+			}
 			payload.clearActions();
+			resetCollectedDataSize();
 		}
 
 		return retVal;
 	}
 
+	/**
+	 * Send the next request worth of data, taking its size from the given budget.
+	 *
+	 * <p>
+	 * Collected actions are sealed first, then one document is sent per call, so that sessions can take turns.
+	 * A partially sent session continues with its next document with the next call.
+	 * Like with {@link #send()}, all data is kept while the server is failing or the bandwidth is exhausted.
+	 * </p>
+	 *
+	 * @param budget The budget of the current send cycle.
+	 * @return Returns the status response of the sent document, or {@code null} if nothing was sent or an error occurred.
+	 */
+	public StatusResponse send(SendBudget budget) {
+		if (isEmpty()) {
+			// nothing collected since the last send - don't send an empty beacon
+			return null;
+		}
+
+		Connector connector = configuration.getConnectorProvider().createConnector(httpClientConfig);
+		if (connector.isCircuitOpen() || connector.getThrottleDelay() > 0) {
+			// server is failing or bandwidth is exhausted - keep the data and retry later
+			return null;
+		}
+
+		synchronized (this) {
+			if (sealedBeacon == null && !sealCollectedActions(connector)) {
+				// serializing failed - drop the data, as send() does
+				payload.clearActions();
+				resetCollectedDataSize();
+				return null;
+			}
+
+			StatusResponse retVal = connector.sendSealedBeaconRequest(sealedBeacon, nextSealedDocument);
+			if (retVal == null) {
+				// error happened - the document is sent with the next attempt
+				return null;
+			}
+			budget.consume(sealedBeacon.getDocument(nextSealedDocument).length);
+			nextSealedDocument++;
+			if (nextSealedDocument >= sealedBeacon.getNumberOfDocuments()) {
+				sealedBeacon = null;
+				releaseUnusedBudget();
+			}
+			return retVal;
+		}
+	}
+
 	/**
 	 * Clears all previously collected data for this Beacon.
 	 *
 	 * <p>
-	 * This only affects the so far serialized data, which gets removed from the cache.
+	 * This affects both the collected actions and a not yet sent {@link SealedBeacon}.
+	 * </p>
+	 */
+	public synchronized void clearData() {
+		sealedBeacon = null;
+		payload.clearActions();
+		resetCollectedDataSize();
+	}
+
+	/**
+	 * Remove all data, which was not sent so far.
+	 *
+	 * <p>
+	 * This is used when the data cannot be sent any more, e.g. on shutdown, so that it can be persisted instead.
+	 * Documents of the sealed session which were not sent yet are returned as they are, while collected actions
+	 * are sealed first.
 	 * </p>
+	 *
+	 * @return The unsent data, or {@code null} if there is no data or it could not be serialized.
 	 */
-	public void clearData() {
+	public SealedBeacon takeUnsentData() {
+		Connector connector = configuration.getConnectorProvider().createConnector(httpClientConfig);
 
+		synchronized (this) {
+			List<byte[]> documents = new ArrayList<byte[]>();
+			if (sealedBeacon != null) {
+				for (int i = nextSealedDocument; i < sealedBeacon.getNumberOfDocuments(); i++) {
+					documents.add(sealedBeacon.getDocument(i));
+				}
+			}
+			if (!payload.getActions().isEmpty()) {
+				SealedBeacon sealed = connector.sealBeacon(clientIPAddress, payload, configuration.getMaxBeaconSize());
+				if (sealed != null) {
+					for (int i = 0; i < sealed.getNumberOfDocuments(); i++) {
+						documents.add(sealed.getDocument(i));
+					}
+				}
+			}
+			clearData();
+
+			return documents.isEmpty() ? null : new SealedBeacon(clientIPAddress, documents);
+		}
+	}
+
+	// must be called with the lock held - seals the collected actions behind the documents not sent so far
+	private boolean sealCollectedActions(Connector connector) {
+		SealedBeacon sealed = connector.sealBeacon(clientIPAddress, payload, configuration.getMaxBeaconSize());
+		if (sealed == null) {
+			return false;
+		}
+
+		if (sealedBeacon != null) {
+			// partially sent with a send budget
+			List<byte[]> documents = new ArrayList<byte[]>();
+			for (int i = nextSealedDocument; i < sealedBeacon.getNumberOfDocuments(); i++) {
+				documents.add(sealedBeacon.getDocument(i));
+			}
+			for (int i = 0; i < sealed.getNumberOfDocuments(); i++) {
+				documents.add(sealed.getDocument(i));
+			}
+			sealed = new SealedBeacon(clientIPAddress, documents);
+		}
+
+		sealedBeacon = sealed;
+		nextSealedDocument = 0;
+		payload.clearActions();
+		resetCollectedDataSize();
+		return true;
+	}
+
+	// must be called with the lock held, whenever the collected actions are cleared
+	private void resetCollectedDataSize() {
+		collectedDataSize = 0;
+		sendScheduled = false;
+		releaseUnusedBudget();
+	}
+
+	// must be called with the lock held, whenever data was removed - returns the bytes no longer used to the budget
+	private void releaseUnusedBudget() {
+		long dataSize = getDataSize();
+		if (memoryBudget != null && dataSize < reservedDataSize) {
+			memoryBudget.release(reservedDataSize - dataSize);
+			reservedDataSize = dataSize;
+		}
 	}
 
 	@Override
-	public boolean isEmpty() {
-		return this.payload.getActions().isEmpty();
+	public synchronized boolean isEmpty() {
+		return sealedBeacon == null && payload.getActions().isEmpty();
+	}
+
+	@Override
+	public boolean hasError() {
+		// errors are not collected yet
+		return false;
+	}
+
+	/**
+	 * Get the number of bytes of the data, which is not sent yet.
+	 *
+	 * <p>
+	 * This is the compressed size of a sealed session, plus the estimated serialized size of the collected actions.
+	 * </p>
+	 *
+	 * @return Number of bytes.
+	 */
+	@Override
+	public synchronized long getDataSize() {
+		return (sealedBeacon == null ? 0 : sealedBeacon.getSizeInBytes()) + collectedDataSize;
 	}
 
 	/**
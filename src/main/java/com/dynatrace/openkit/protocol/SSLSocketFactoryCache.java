@@ -0,0 +1,118 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.SSLTrustManager;
+import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
+
+import java.lang.ref.WeakReference;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Shares one {@link SSLSocketFactory} (and {@link SSLContext}) per {@link X509TrustManager}.
+ *
+ * <p>
+ * Each {@link SSLContext} has its own TLS session cache, so creating a context per request means a full handshake
+ * per request. Sharing the factory allows TLS sessions to be resumed and lets the JDK reuse HTTPS connections,
+ * as kept alive connections are only reused for the same socket factory.
+ * </p>
+ *
+ * <p>
+ * A factory references its trust manager, therefore factories are only weakly referenced here.
+ * Users of a factory keep it alive by holding a strong reference to it. The same applies to contexts,
+ * which are used directly by {@link NIOConnector}.
+ * </p>
+ */
+final class SSLSocketFactoryCache {
+
+    // used if no trust manager is configured
+    private static final SSLTrustManager DEFAULT_TRUST_MANAGER = new SSLStrictTrustManager();
+
+    private static final Map<X509TrustManager, WeakReference<SSLSocketFactory>> socketFactories =
+        new WeakHashMap<X509TrustManager, WeakReference<SSLSocketFactory>>();
+    private static final Map<X509TrustManager, WeakReference<SSLContext>> contexts =
+        new WeakHashMap<X509TrustManager, WeakReference<SSLContext>>();
+
+    private SSLSocketFactoryCache() {
+    }
+
+    /**
+     * Get the socket factory for the given trust manager, creating it if necessary.
+     *
+     * @param sslTrustManager The trust manager, {@code null} for the strict default.
+     * @return The socket factory, which is the same for subsequent calls with the same trust manager.
+     */
+    static synchronized SSLSocketFactory getSocketFactory(SSLTrustManager sslTrustManager)
+        throws NoSuchAlgorithmException, KeyManagementException {
+
+        X509TrustManager x509TrustManager = getX509TrustManager(sslTrustManager);
+
+        WeakReference<SSLSocketFactory> reference = socketFactories.get(x509TrustManager);
+        SSLSocketFactory socketFactory = reference == null ? null : reference.get();
+        if (socketFactory == null) {
+            // the factory references its context, so both share the TLS session cache
+            socketFactory = getSSLContext(sslTrustManager).getSocketFactory();
+            socketFactories.put(x509TrustManager, new WeakReference<SSLSocketFactory>(socketFactory));
+        }
+
+        return socketFactory;
+    }
+
+    /**
+     * Get the SSL context for the given trust manager, creating it if necessary.
+     *
+     * @param sslTrustManager The trust manager, {@code null} for the strict default.
+     * @return The context, which is the same for subsequent calls with the same trust manager.
+     */
+    static synchronized SSLContext getSSLContext(SSLTrustManager sslTrustManager)
+        throws NoSuchAlgorithmException, KeyManagementException {
+
+        X509TrustManager x509TrustManager = getX509TrustManager(sslTrustManager);
+
+        WeakReference<SSLContext> reference = contexts.get(x509TrustManager);
+        SSLContext context = reference == null ? null : reference.get();
+        if (context == null) {
+            context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[]{x509TrustManager}, new SecureRandom());
+            contexts.put(x509TrustManager, new WeakReference<SSLContext>(context));
+        }
+
+        return context;
+    }
+
+    private static X509TrustManager getX509TrustManager(SSLTrustManager sslTrustManager) {
+        X509TrustManager x509TrustManager = null;
+        if (sslTrustManager != null) {
+            x509TrustManager = sslTrustManager.getX509TrustManager();
+        }
+        if (x509TrustManager == null) {
+            // if provided trust manager is null use a strict one by default
+            x509TrustManager = DEFAULT_TRUST_MANAGER.getX509TrustManager();
+        }
+        return x509TrustManager;
+    }
+}
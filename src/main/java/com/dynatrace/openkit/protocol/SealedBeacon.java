@@ -0,0 +1,98 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, ready to send beacon data of a finished session.
+ *
+ * <p>
+ * A sealed beacon consists of one or more documents, each already serialized and gzip compressed,
+ * so sending it is a plain byte transfer. Instances are created by {@link Connector#sealBeacon}
+ * and sent document by document with {@link Connector#sendSealedBeaconRequest}.
+ * </p>
+ */
+public final class SealedBeacon {
+
+    private final String clientIPAddress;
+    private final byte[][] documents;
+    private final long sizeInBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param clientIPAddress The client's IP address.
+     * @param compressedDocuments The gzip compressed documents, in sending order.
+     */
+    SealedBeacon(String clientIPAddress, List<byte[]> compressedDocuments) {
+        this.clientIPAddress = clientIPAddress;
+        documents = compressedDocuments.toArray(new byte[compressedDocuments.size()][]);
+
+        long size = 0;
+        for (byte[] document : documents) {
+            size += document.length;
+        }
+        sizeInBytes = size;
+    }
+
+    /**
+     * Get the client's IP address the documents are sent for.
+     */
+    public String getClientIPAddress() {
+        return clientIPAddress;
+    }
+
+    /**
+     * Get the number of documents in this sealed beacon.
+     */
+    public int getNumberOfDocuments() {
+        return documents.length;
+    }
+
+    /**
+     * Get the total size of all compressed documents in bytes.
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Get the compressed document with the given index.
+     *
+     * <p>
+     * The returned array is not copied and must not be modified.
+     * </p>
+     */
+    public byte[] getDocument(int index) {
+        return documents[index];
+    }
+
+    /**
+     * Get all compressed documents, in sending order.
+     *
+     * <p>
+     * The returned list is unmodifiable, the documents are not copied and must not be modified.
+     * </p>
+     */
+    public List<byte[]> getDocuments() {
+        return Collections.unmodifiableList(Arrays.asList(documents));
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.providers.TimingProvider;
+
+/**
+ * Budget of beacon bytes and time for one send cycle.
+ *
+ * <p>
+ * Sessions sent with a budget send at most one request per call, and take the size of the sent data from the budget.
+ * This allows the caller to let sessions take turns, until either the bytes or the time are used up.
+ * A budget is only used by a single thread.
+ * </p>
+ */
+public class SendBudget {
+
+    private final TimingProvider timingProvider;
+    private final long deadline;
+    private long remainingBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes Number of bytes which may be sent, zero or less for no limit.
+     * @param maxTime Time in milliseconds for sending, starting now, zero or less for no limit.
+     * @param timingProvider Provider for the current time.
+     */
+    public SendBudget(long maxBytes, long maxTime, TimingProvider timingProvider) {
+        this.timingProvider = timingProvider;
+        remainingBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        deadline = maxTime > 0 ? timingProvider.provideTimestampInMilliseconds() + maxTime : Long.MAX_VALUE;
+    }
+
+    /**
+     * Get a boolean indicating whether no more data shall be sent with this budget.
+     */
+    public boolean isExhausted() {
+        return remainingBytes <= 0 || timingProvider.provideTimestampInMilliseconds() >= deadline;
+    }
+
+    /**
+     * Take the given number of sent bytes from this budget.
+     *
+     * <p>
+     * The last request may exceed the remaining bytes, since its size is only known after sending.
+     * </p>
+     *
+     * @param numBytes The number of bytes sent.
+     */
+    public void consume(long numBytes) {
+        remainingBytes -= numBytes;
+    }
+
+    /**
+     * Get the number of bytes which may still be sent, which is negative if the last request exceeded the budget.
+     */
+    public long getRemainingBytes() {
+        return remainingBytes;
+    }
+}
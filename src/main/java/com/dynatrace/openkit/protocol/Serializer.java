@@ -2,6 +2,9 @@ package com.dynatrace.openkit.protocol;
 
 import com.dynatrace.openkit.protocol.dto.Payload;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 public interface Serializer {
 
     /**
@@ -9,4 +12,20 @@ public interface Serializer {
      * @param data the data to serialize
      */
     byte[] serialize(Payload data);
+
+    /**
+     * Serialize one document, containing the Payload's actions starting at {@code offset}, into {@code out}.
+     *
+     * <p>
+     * Actions are appended as long as the document does not exceed {@code maxSize} bytes.
+     * At least one action is always written, even if this exceeds {@code maxSize}, to guarantee progress.
+     * </p>
+     *
+     * @param data the data to serialize
+     * @param offset index of the first action to serialize
+     * @param maxSize maximum number of bytes the document should have
+     * @param out stream receiving the serialized document
+     * @return the index of the first action not contained in the document
+     */
+    int serialize(Payload data, int offset, int maxSize, OutputStream out) throws IOException;
 }
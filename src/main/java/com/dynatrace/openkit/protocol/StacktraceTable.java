@@ -0,0 +1,115 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Table of deduplicated crash stacktraces.
+ *
+ * <p>
+ * Crash records reference an {@link Entry} instead of holding their own copy of the stacktrace.
+ * Entries are looked up by the stacktrace's hash and reference counted, an entry is removed as soon
+ * as the last crash record referencing it is released.
+ * </p>
+ *
+ * <p>
+ * The size of a stacktrace is accounted for by the table, from its first acquisition until its last release,
+ * independent of which crash records reference it in the meantime.
+ * </p>
+ *
+ * <p>
+ * This class is not thread safe, access must be synchronized by the caller.
+ * </p>
+ */
+final class StacktraceTable {
+
+    /**
+     * A single, reference counted stacktrace.
+     */
+    static final class Entry {
+
+        private final String stacktrace;
+        private int numReferences = 0;
+
+        private Entry(String stacktrace) {
+            this.stacktrace = stacktrace;
+        }
+
+        String getStacktrace() {
+            return stacktrace;
+        }
+
+        int getNumReferences() {
+            return numReferences;
+        }
+    }
+
+    private static final long CHAR_SIZE_BYTES = 2L;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    /**
+     * Size estimation of all distinct stacktraces.
+     */
+    private long dataSizeInBytes = 0;
+
+    /**
+     * Get the entry for the given stacktrace and increment its reference count.
+     *
+     * @param stacktrace The stacktrace to look up.
+     * @return The already existing or newly created entry.
+     */
+    Entry acquire(String stacktrace) {
+        Entry entry = entries.get(stacktrace);
+        if (entry == null) {
+            entry = new Entry(stacktrace);
+            entries.put(stacktrace, entry);
+            dataSizeInBytes += CHAR_SIZE_BYTES * stacktrace.length();
+        }
+        entry.numReferences++;
+        return entry;
+    }
+
+    /**
+     * Decrement the entry's reference count and remove it from the table, when it is no longer referenced.
+     *
+     * @param entry The entry to release.
+     */
+    void release(Entry entry) {
+        entry.numReferences--;
+        if (entry.numReferences == 0) {
+            entries.remove(entry.stacktrace);
+            dataSizeInBytes -= CHAR_SIZE_BYTES * entry.stacktrace.length();
+        }
+    }
+
+    /**
+     * Get the number of distinct stacktraces.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the size estimation of all distinct stacktraces.
+     */
+    long getDataSizeInBytes() {
+        return dataSizeInBytes;
+    }
+}
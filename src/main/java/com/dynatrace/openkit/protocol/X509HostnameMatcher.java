@@ -0,0 +1,160 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+
+/**
+ * Matches a host name against a server certificate (RFC 2818).
+ *
+ * <p>
+ * {@link javax.net.ssl.HttpsURLConnection} performs this check itself and only consults the configured
+ * {@link javax.net.ssl.HostnameVerifier} on a mismatch. {@link NIOConnector} talks to an {@link javax.net.ssl.SSLEngine}
+ * directly, so it needs its own built-in check to behave the same way.
+ * </p>
+ */
+final class X509HostnameMatcher {
+
+    // subject alternative name types
+    private static final int SAN_DNS_NAME = 2;
+    private static final int SAN_IP_ADDRESS = 7;
+
+    private X509HostnameMatcher() {
+    }
+
+    /**
+     * Checks whether the certificate was issued for the given host.
+     *
+     * @param host The host name or IP address, as used in the request URL.
+     * @param certificate The server's end entity certificate.
+     * @return {@code true} if the certificate matches the host.
+     */
+    static boolean matches(String host, X509Certificate certificate) {
+        String normalizedHost = normalize(host);
+        boolean isIPAddress = isIPAddress(normalizedHost);
+
+        Collection<List<?>> subjectAltNames;
+        try {
+            subjectAltNames = certificate.getSubjectAlternativeNames();
+        } catch (CertificateParsingException e) {
+            return false;
+        }
+
+        boolean hasDNSNames = false;
+        if (subjectAltNames != null) {
+            for (List<?> subjectAltName : subjectAltNames) {
+                int type = ((Integer) subjectAltName.get(0)).intValue();
+                Object value = subjectAltName.get(1);
+                if (!(value instanceof String)) {
+                    continue;
+                }
+                if (type == SAN_DNS_NAME) {
+                    hasDNSNames = true;
+                    if (!isIPAddress && matchesDNSName(normalizedHost, normalize((String) value))) {
+                        return true;
+                    }
+                } else if (type == SAN_IP_ADDRESS && isIPAddress && isSameIPAddress(normalizedHost, (String) value)) {
+                    return true;
+                }
+            }
+        }
+
+        if (hasDNSNames || isIPAddress) {
+            // the common name is only considered if there are no DNS names
+            return false;
+        }
+
+        String commonName = getCommonName(certificate);
+        return commonName != null && matchesDNSName(normalizedHost, normalize(commonName));
+    }
+
+    // wildcards are only allowed as the complete left most label, matching exactly one label
+    private static boolean matchesDNSName(String host, String pattern) {
+        if (!pattern.startsWith("*.")) {
+            return host.equals(pattern);
+        }
+        String suffix = pattern.substring(1);
+        if (suffix.indexOf('.', 1) < 0) {
+            // don't allow "*.com"
+            return false;
+        }
+        return host.endsWith(suffix) && host.length() > suffix.length()
+            && host.lastIndexOf('.', host.length() - suffix.length() - 1) < 0;
+    }
+
+    private static boolean isSameIPAddress(String first, String second) {
+        try {
+            // literals are parsed without a name service lookup - IPv6 addresses may be written differently
+            return InetAddress.getByName(first).equals(InetAddress.getByName(second));
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static String getCommonName(X509Certificate certificate) {
+        try {
+            LdapName name = new LdapName(certificate.getSubjectX500Principal().getName());
+            // the most specific common name is the last one
+            List<Rdn> rdns = name.getRdns();
+            for (int i = rdns.size() - 1; i >= 0; i--) {
+                Rdn rdn = rdns.get(i);
+                if (rdn.getType().equalsIgnoreCase("CN")) {
+                    return rdn.getValue().toString();
+                }
+            }
+        } catch (InvalidNameException e) {
+            // no usable common name
+        }
+        return null;
+    }
+
+    private static String normalize(String name) {
+        String normalized = name.toLowerCase(Locale.ENGLISH);
+        if (normalized.startsWith("[") && normalized.endsWith("]")) {
+            // IPv6 literal as used in URLs
+            normalized = normalized.substring(1, normalized.length() - 1);
+        }
+        if (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private static boolean isIPAddress(String host) {
+        if (host.indexOf(':') >= 0) {
+            return true;
+        }
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c != '.' && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return host.length() > 0;
+    }
+}
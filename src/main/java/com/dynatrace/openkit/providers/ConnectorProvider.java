@@ -27,6 +27,10 @@ public interface ConnectorProvider {
 
     /**
      * Returns an HTTPConnector based on the provided configuration.
+     *
+     * <p>
+     * Implementations may return the same connector for the same configuration instance.
+     * </p>
      */
     Connector createConnector(Object configuration);
 }
@@ -19,21 +19,52 @@ package com.dynatrace.openkit.providers;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
 import com.dynatrace.openkit.protocol.HTTPConnector;
+import com.dynatrace.openkit.protocol.MobileProtocolV3Serializer;
+import com.dynatrace.openkit.protocol.Serializer;
+
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Implementation of an ConnectorProvider which creates a HTTP client for executing status check, beacon send and time sync requests.
+ *
+ * <p>
+ * Connectors are stateless, therefore one connector is created per {@link HTTPClientConfiguration} instance and reused
+ * for all subsequent requests. A configuration which is no longer referenced is dropped together with its connector.
+ * </p>
  */
 public class DefaultConnectorProvider implements ConnectorProvider {
 
     private final Logger logger;
+    private final Serializer serializer;
+
+    // connectors by configuration instance, guarded by this
+    private final Map<HTTPClientConfiguration, HTTPConnector> connectors = new WeakHashMap<HTTPClientConfiguration, HTTPConnector>();
 
     public DefaultConnectorProvider(Logger logger) {
+        this(logger, new MobileProtocolV3Serializer());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param logger Logger for logging messages.
+     * @param serializer Wire format used for beacon data, e.g. {@link com.dynatrace.openkit.protocol.BinarySerializer}.
+     */
+    public DefaultConnectorProvider(Logger logger, Serializer serializer) {
         this.logger = logger;
+        this.serializer = serializer;
     }
 
     @Override
-    public HTTPConnector createConnector(Object configuration) {
-        return new HTTPConnector(logger, (HTTPClientConfiguration)configuration);
+    public synchronized HTTPConnector createConnector(Object configuration) {
+        HTTPClientConfiguration httpClientConfiguration = (HTTPClientConfiguration)configuration;
+        HTTPConnector connector = connectors.get(httpClientConfiguration);
+        if (connector == null) {
+            connector = new HTTPConnector(logger, httpClientConfiguration, serializer);
+            connectors.put(httpClientConfiguration, connector);
+        }
+        return connector;
     }
 
 }
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.providers;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.FanOutConnector;
+import com.dynatrace.openkit.protocol.MobileProtocolV3Serializer;
+import com.dynatrace.openkit.protocol.Serializer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Implementation of a ConnectorProvider which creates {@link FanOutConnector}s, delivering beacon data to several
+ * collectors.
+ *
+ * <p>
+ * For each collector a configuration with its base URL is derived, all other settings are the same as for
+ * the OpenKit instance. The connectors for the collectors are created by their own providers, e.g. a
+ * {@link DefaultConnectorProvider}. As with {@link DefaultConnectorProvider}, one connector is created per
+ * {@link HTTPClientConfiguration} instance.
+ * </p>
+ */
+public class FanOutConnectorProvider implements ConnectorProvider {
+
+    /**
+     * A collector beacon data is delivered to.
+     */
+    public static final class Collector {
+
+        private final String baseURL;
+        private final ConnectorProvider connectorProvider;
+        private final boolean isRequired;
+
+        /**
+         * Constructor.
+         *
+         * @param baseURL Base URL of the collector.
+         * @param connectorProvider Provider creating the connector for the collector.
+         * @param isRequired {@code true} if beacon data must be received by this collector before it's released,
+         *                   {@code false} if it's delivered on a best effort basis.
+         */
+        public Collector(String baseURL, ConnectorProvider connectorProvider, boolean isRequired) {
+            this.baseURL = baseURL;
+            this.connectorProvider = connectorProvider;
+            this.isRequired = isRequired;
+        }
+    }
+
+    private final Logger logger;
+    private final Serializer serializer;
+    private final List<Collector> collectors;
+
+    // connectors by configuration instance, guarded by this
+    private final Map<HTTPClientConfiguration, FanOutConnector> connectors = new WeakHashMap<HTTPClientConfiguration, FanOutConnector>();
+
+    public FanOutConnectorProvider(Logger logger, List<Collector> collectors) {
+        this(logger, new MobileProtocolV3Serializer(), collectors);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param logger Logger for logging messages.
+     * @param serializer Wire format used for beacon data, which is serialized once for all collectors.
+     * @param collectors The collectors, at least one. The first one also receives status check and time sync requests.
+     */
+    public FanOutConnectorProvider(Logger logger, Serializer serializer, List<Collector> collectors) {
+        this.logger = logger;
+        this.serializer = serializer;
+        this.collectors = Collections.unmodifiableList(new ArrayList<Collector>(collectors));
+    }
+
+    @Override
+    public synchronized FanOutConnector createConnector(Object configuration) {
+        HTTPClientConfiguration httpClientConfiguration = (HTTPClientConfiguration)configuration;
+        FanOutConnector connector = connectors.get(httpClientConfiguration);
+        if (connector == null) {
+            List<FanOutConnector.Sink> sinks = new ArrayList<FanOutConnector.Sink>(collectors.size());
+            for (Collector collector : collectors) {
+                HTTPClientConfiguration collectorConfiguration = new HTTPClientConfiguration(collector.baseURL,
+                    httpClientConfiguration.getServerID(), httpClientConfiguration.getApplicationID(),
+                    httpClientConfiguration.getSSLTrustManager(), httpClientConfiguration.getBandwidthLimiter());
+                sinks.add(new FanOutConnector.Sink(collector.connectorProvider.createConnector(collectorConfiguration),
+                    collector.isRequired));
+            }
+            connector = new FanOutConnector(logger, httpClientConfiguration, serializer, sinks);
+            connectors.put(httpClientConfiguration, connector);
+        }
+        return connector;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.providers;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.MobileProtocolV3Serializer;
+import com.dynatrace.openkit.protocol.NIOConnector;
+import com.dynatrace.openkit.protocol.NIOEventLoop;
+import com.dynatrace.openkit.protocol.Serializer;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Implementation of a ConnectorProvider which creates non-blocking {@link NIOConnector}s.
+ *
+ * <p>
+ * All connectors share one {@link NIOEventLoop}, so a single I/O thread handles all requests.
+ * As with {@link DefaultConnectorProvider}, one connector is created per {@link HTTPClientConfiguration} instance.
+ * </p>
+ */
+public class NIOConnectorProvider implements ConnectorProvider {
+
+    private final Logger logger;
+    private final Serializer serializer;
+    private final NIOEventLoop eventLoop;
+
+    // connectors by configuration instance, guarded by this
+    private final Map<HTTPClientConfiguration, NIOConnector> connectors = new WeakHashMap<HTTPClientConfiguration, NIOConnector>();
+
+    public NIOConnectorProvider(Logger logger) {
+        this(logger, new MobileProtocolV3Serializer());
+    }
+
+    public NIOConnectorProvider(Logger logger, Serializer serializer) {
+        this(logger, serializer, new NIOEventLoop(logger));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param logger Logger for logging messages.
+     * @param serializer Wire format used for beacon data.
+     * @param eventLoop Event loop used by all connectors, which might be shared with other providers.
+     */
+    public NIOConnectorProvider(Logger logger, Serializer serializer, NIOEventLoop eventLoop) {
+        this.logger = logger;
+        this.serializer = serializer;
+        this.eventLoop = eventLoop;
+    }
+
+    @Override
+    public synchronized NIOConnector createConnector(Object configuration) {
+        HTTPClientConfiguration httpClientConfiguration = (HTTPClientConfiguration)configuration;
+        NIOConnector connector = connectors.get(httpClientConfiguration);
+        if (connector == null) {
+            connector = new NIOConnector(logger, httpClientConfiguration, serializer, eventLoop);
+            connectors.put(httpClientConfiguration, connector);
+        }
+        return connector;
+    }
+
+    /**
+     * Stops the event loop's I/O thread, after which all connectors of this provider fail.
+     *
+     * <p>
+     * Calling this is optional, as the I/O thread is a daemon thread. It should be called after {@code OpenKit.shutdown()}.
+     * </p>
+     */
+    public void shutdown() {
+        eventLoop.shutdown();
+    }
+}
@@ -19,15 +19,24 @@ package com.dynatrace.openkit;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.api.OpenKitConstants;
 import com.dynatrace.openkit.api.SSLTrustManager;
+import com.dynatrace.openkit.api.SessionPersistenceHook;
+import com.dynatrace.openkit.api.SessionSendInfo;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.util.DefaultLogger;
 import com.dynatrace.openkit.protocol.Connector;
 import com.dynatrace.openkit.protocol.JsonSerializer;
+import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.Mockito.mock;
@@ -69,6 +78,14 @@ public class OpenKitBuilderTest {
         assertThat(configuration.getBeaconCacheConfiguration().getMaxRecordAge(), is(BeaconCacheConfiguration.DEFAULT_MAX_RECORD_AGE_IN_MILLIS));
         assertThat(configuration.getBeaconCacheConfiguration().getCacheSizeUpperBound(), is(BeaconCacheConfiguration.DEFAULT_UPPER_MEMORY_BOUNDARY_IN_BYTES));
         assertThat(configuration.getBeaconCacheConfiguration().getCacheSizeLowerBound(), is(BeaconCacheConfiguration.DEFAULT_LOWER_MEMORY_BOUNDARY_IN_BYTES));
+        assertThat(configuration.getBeaconSendingConfiguration(), is(notNullValue()));
+        assertThat(configuration.getBeaconSendingConfiguration().getNumberOfSendWorkers(), is(BeaconSendingConfiguration.DEFAULT_NUMBER_OF_SEND_WORKERS));
+        assertThat(configuration.getBeaconSendingConfiguration().getOpenSessionSendThreshold(), is(BeaconSendingConfiguration.DEFAULT_OPEN_SESSION_SEND_THRESHOLD_IN_BYTES));
+        assertThat(configuration.getBeaconSendingConfiguration().getMaxBeaconBandwidth(), is(BeaconSendingConfiguration.DEFAULT_MAX_BEACON_BANDWIDTH_IN_BYTES_PER_SECOND));
+        assertThat(configuration.getHttpClientConfig().getBandwidthLimiter(), is(nullValue()));
+        assertThat(configuration.getBeaconSendingConfiguration().getShutdownTimeout(), is(BeaconSendingConfiguration.DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLISECONDS));
+        assertThat(configuration.getBeaconSendingConfiguration().getSessionPersistenceHook(), is(nullValue()));
+        assertThat(configuration.getBeaconSendingConfiguration().getSessionSendOrder(), is(BeaconSendingConfiguration.DEFAULT_SESSION_SEND_ORDER));
     }
 
     @Test
@@ -310,4 +327,214 @@ public class OpenKitBuilderTest {
         assertThat((AppMonOpenKitBuilder)obtained, is(sameInstance(target)));
         assertThat(target.getBeaconCacheUpperMemoryBoundary(), is(upperMemoryBoundary));
     }
+
+    @Test
+    public void canSetNumberOfSendWorkers() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(deviceID);
+
+        // when
+        Configuration obtained = target.withNumberOfSendWorkers(4).buildConfiguration();
+
+        // then
+        assertThat(target.getNumberOfSendWorkers(), is(4));
+        assertThat(obtained.getBeaconSendingConfiguration().getNumberOfSendWorkers(), is(4));
+    }
+
+    @Test
+    public void canSetOpenSessionSendThreshold() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(deviceID);
+
+        // when
+        Configuration obtained = target.withOpenSessionSendThreshold(64 * 1024).buildConfiguration();
+
+        // then
+        assertThat(target.getOpenSessionSendThreshold(), is(64 * 1024L));
+        assertThat(obtained.getBeaconSendingConfiguration().getOpenSessionSendThreshold(), is(64 * 1024L));
+    }
+
+    @Test
+    public void canSetMaxBeaconBandwidth() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(deviceID);
+
+        // when
+        Configuration obtained = target.withMaxBeaconBandwidth(16 * 1024).buildConfiguration();
+
+        // then
+        assertThat(target.getMaxBeaconBandwidth(), is(16 * 1024L));
+        assertThat(obtained.getBeaconSendingConfiguration().getMaxBeaconBandwidth(), is(16 * 1024L));
+        assertThat(obtained.getHttpClientConfig().getBandwidthLimiter().getBytesPerSecond(), is(16 * 1024L));
+    }
+
+    @Test
+    public void canSetShutdownTimeoutAndSessionPersistenceHook() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(deviceID);
+        SessionPersistenceHook mockHook = mock(SessionPersistenceHook.class);
+
+        // when
+        Configuration obtained = target.withShutdownTimeout(2500)
+                                       .withSessionPersistenceHook(mockHook)
+                                       .buildConfiguration();
+
+        // then
+        assertThat(target.getShutdownTimeout(), is(2500L));
+        assertThat(obtained.getBeaconSendingConfiguration().getShutdownTimeout(), is(2500L));
+        assertThat(obtained.getBeaconSendingConfiguration().getSessionPersistenceHook(), is(mockHook));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void canSetSessionSendOrder() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(deviceID);
+        Comparator<SessionSendInfo> mockOrder = mock(Comparator.class);
+
+        // when
+        Configuration obtained = target.withSessionSendOrder(mockOrder).buildConfiguration();
+
+        // then
+        assertThat(target.getSessionSendOrder(), is(mockOrder));
+        assertThat(obtained.getBeaconSendingConfiguration().getSessionSendOrder(), is(mockOrder));
+
+        // and when resetting to the default order
+        target.withSessionSendOrder(null);
+
+        // then
+        assertThat(target.getSessionSendOrder(), is(BeaconSendingConfiguration.DEFAULT_SESSION_SEND_ORDER));
+    }
+
+    @Test
+    public void canSetSendCycleBudget() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(deviceID);
+
+        // when
+        Configuration obtained = target.withSendCycleBudget(256 * 1024, 2000).buildConfiguration();
+
+        // then
+        assertThat(target.getSendCycleMaxBytes(), is(256 * 1024L));
+        assertThat(target.getSendCycleMaxTime(), is(2000L));
+        assertThat(obtained.getBeaconSendingConfiguration().getSendCycleMaxBytes(), is(256 * 1024L));
+        assertThat(obtained.getBeaconSendingConfiguration().getSendCycleMaxTime(), is(2000L));
+    }
+
+    @Test
+    public void sendCycleBudgetIsUsedByDefault() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(appName, deviceID);
+
+        // when
+        Configuration obtained = target.buildConfiguration();
+
+        // then
+        assertThat(obtained.getBeaconSendingConfiguration().getSendCycleMaxBytes(),
+            is(BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_BYTES));
+        assertThat(obtained.getBeaconSendingConfiguration().getSendCycleMaxTime(),
+            is(BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_TIME_IN_MILLISECONDS));
+    }
+
+    @Test
+    public void canSetParallelChunkUploads() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(deviceID);
+
+        // when
+        Configuration obtained = target.withParallelChunkUploads(4).buildConfiguration();
+
+        // then
+        assertThat(target.getMaxParallelChunkUploads(), is(4));
+        assertThat(obtained.getBeaconSendingConfiguration().getMaxParallelChunkUploads(), is(4));
+    }
+
+    @Test
+    public void parallelChunkUploadsAreDisabledByDefault() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(appName, deviceID);
+
+        // when
+        Configuration obtained = target.buildConfiguration();
+
+        // then
+        assertThat(obtained.getBeaconSendingConfiguration().getMaxParallelChunkUploads(),
+            is(BeaconSendingConfiguration.DEFAULT_MAX_PARALLEL_CHUNK_UPLOADS));
+    }
+
+    @Test
+    public void canSetBeaconEndpoints() {
+
+        // given
+        List<String> endpoints = Arrays.asList(endpoint, "https://localhost:23456");
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(deviceID);
+
+        // when
+        Configuration obtained = target.withBeaconEndpoints(endpoints).buildConfiguration();
+
+        // then
+        assertThat(target.getBeaconEndpoints(), is(equalTo(endpoints)));
+        assertThat(obtained.getHttpClientConfig().getBaseURLs(), is(equalTo(endpoints)));
+        assertThat(obtained.getHttpClientConfig().getBaseURL(), is(equalTo(endpoint)));
+    }
+
+    @Test
+    public void beaconEndpointsAreKeptWhenServerIDChanges() {
+
+        // given
+        List<String> endpoints = Arrays.asList(endpoint, "https://localhost:23456");
+        Configuration target = new AppMonOpenKitBuilder(appName, deviceID).withBeaconEndpoints(endpoints).buildConfiguration();
+
+        // when
+        target.updateSettings(new StatusResponse("type=m&cp=1&id=42", 200));
+
+        // then
+        assertThat(target.getHttpClientConfig().getServerID(), is(42));
+        assertThat(target.getHttpClientConfig().getBaseURLs(), is(equalTo(endpoints)));
+    }
+
+    @Test
+    public void defaultBeaconEndpointIsUsedIfNoneAreSet() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(appName, deviceID);
+
+        // when
+        Configuration obtained = target.withBeaconEndpoints(Collections.<String>emptyList()).buildConfiguration();
+
+        // then
+        assertThat(target.getBeaconEndpoints(), is(nullValue()));
+        assertThat(obtained.getHttpClientConfig().getBaseURLs(), is(equalTo(Collections.singletonList(""))));
+    }
+
+    @Test
+    public void instancesOfARuntimeGetUniqueSessionNumbers() {
+
+        // given
+        OpenKitRuntime runtime = new OpenKitRuntime(1);
+        try {
+            AbstractOpenKitBuilder target = new DynatraceOpenKitBuilder(deviceID).withRuntime(runtime);
+            Configuration first = target.buildConfiguration();
+            Configuration second = new AppMonOpenKitBuilder(appName, deviceID).withRuntime(runtime).buildConfiguration();
+
+            // when
+            int firstSessionNumber = first.createSessionNumber();
+            int secondSessionNumber = second.createSessionNumber();
+
+            // then
+            assertThat(target.getRuntime(), is(sameInstance(runtime)));
+            assertThat(secondSessionNumber, is(not(equalTo(firstSessionNumber))));
+        } finally {
+            runtime.shutdown();
+        }
+    }
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit;
+
+import com.dynatrace.openkit.api.OpenKit;
+import com.dynatrace.openkit.api.Session;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.Connector;
+import com.dynatrace.openkit.protocol.StatusResponse;
+import com.dynatrace.openkit.protocol.TimeSyncResponse;
+import com.dynatrace.openkit.providers.ConnectorProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OpenKitRuntimeTest {
+
+    private ConnectorProvider connectorProvider;
+    private OpenKitRuntime target;
+
+    @Before
+    public void setUp() {
+        Connector connector = mock(Connector.class);
+        when(connector.sendStatusRequest()).thenReturn(new StatusResponse("", 200));
+        // an empty time sync response disables time syncs
+        when(connector.sendTimeSyncRequest()).thenReturn(new TimeSyncResponse("", 200));
+        connectorProvider = mock(ConnectorProvider.class);
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(connector);
+
+        target = new OpenKitRuntime(1);
+    }
+
+    @After
+    public void tearDown() {
+        target.shutdown();
+    }
+
+    @Test
+    public void instancesRegisterWithTheRuntime() {
+
+        // given
+        OpenKit first = buildOpenKit("first");
+        OpenKit second = buildOpenKit("second");
+
+        // when
+        boolean isFirstInitialized = first.waitForInitCompletion(5000L);
+        boolean isSecondInitialized = second.waitForInitCompletion(5000L);
+
+        // then
+        assertThat(isFirstInitialized, is(true));
+        assertThat(isSecondInitialized, is(true));
+        assertThat(target.getNumberOfInstances(), is(2));
+    }
+
+    @Test
+    public void shutdownOfAnInstanceUnregistersIt() {
+
+        // given
+        OpenKit first = buildOpenKit("first");
+        buildOpenKit("second");
+
+        // when
+        first.shutdown();
+
+        // then
+        assertThat(target.getNumberOfInstances(), is(1));
+    }
+
+    @Test
+    public void shutdownOfTheRuntimeShutsDownAllInstances() {
+
+        // given
+        buildOpenKit("first");
+        buildOpenKit("second");
+
+        // when
+        target.shutdown();
+
+        // then
+        assertThat(target.getNumberOfInstances(), is(0));
+    }
+
+    @Test
+    public void dataOfAllInstancesIsKeptWithinTheMemoryBudget() {
+
+        // given
+        target.shutdown();
+        target = new OpenKitRuntime(1, 1000L);
+        Session first = buildOpenKit("first").createSession("127.0.0.1");
+        Session second = buildOpenKit("second").createSession("127.0.0.1");
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            first.enterAction("action").leaveAction();
+            second.enterAction("action").leaveAction();
+        }
+
+        // then
+        assertThat(target.getMemoryBudget().getUsedBytes(), is(greaterThan(0L)));
+        assertThat(target.getMemoryBudget().getUsedBytes(), is(lessThanOrEqualTo(1000L)));
+    }
+
+    private OpenKit buildOpenKit(String deviceID) {
+        return new DynatraceOpenKitBuilder(deviceID)
+            .withConnector(connectorProvider)
+            .withRuntime(target)
+            .build();
+    }
+}
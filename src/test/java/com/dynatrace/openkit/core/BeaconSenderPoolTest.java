@@ -0,0 +1,140 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
+import com.dynatrace.openkit.core.configuration.Configuration;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.configuration.OpenKitType;
+import com.dynatrace.openkit.protocol.Connector;
+import com.dynatrace.openkit.protocol.StatusResponse;
+import com.dynatrace.openkit.protocol.TimeSyncResponse;
+import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
+import com.dynatrace.openkit.providers.ConnectorProvider;
+import com.dynatrace.openkit.providers.DefaultSessionIDProvider;
+import com.dynatrace.openkit.providers.DefaultTimingProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BeaconSenderPoolTest {
+
+    private Configuration configuration;
+    private BeaconSenderPool target;
+
+    @Before
+    public void setUp() {
+        Connector connector = mock(Connector.class);
+        when(connector.sendStatusRequest()).thenReturn(new StatusResponse("", 200));
+        // an empty time sync response disables time syncs
+        when(connector.sendTimeSyncRequest()).thenReturn(new TimeSyncResponse("", 200));
+        ConnectorProvider connectorProvider = mock(ConnectorProvider.class);
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(connector);
+
+        configuration = new Configuration(OpenKitType.DYNATRACE, "appName", "deviceID", new DefaultSessionIDProvider(),
+            new SSLStrictTrustManager(), new Device("", "", ""), "1.0", new BeaconCacheConfiguration(-1, -1, -1),
+            connectorProvider);
+
+        target = new BeaconSenderPool(1);
+    }
+
+    @After
+    public void tearDown() {
+        target.shutdown();
+    }
+
+    @Test
+    public void sendersShareTheThreadsOfThePool() {
+
+        // given
+        List<BeaconSender> beaconSenders = new ArrayList<BeaconSender>();
+        for (int i = 0; i < 3; i++) {
+            beaconSenders.add(createBeaconSender());
+        }
+
+        // when initializing one after another, then all are initialized,
+        // although the idle senders initialized before would block the only thread
+        for (BeaconSender beaconSender : beaconSenders) {
+            beaconSender.initialize();
+            assertThat(beaconSender.waitForInit(5000L), is(true));
+        }
+        assertThat(target.getNumberOfSenders(), is(3));
+    }
+
+    @Test
+    public void shutdownOfSenderUnregistersIt() {
+
+        // given
+        BeaconSender beaconSender = createBeaconSender();
+        BeaconSender otherBeaconSender = createBeaconSender();
+        beaconSender.initialize();
+        otherBeaconSender.initialize();
+        beaconSender.waitForInit(5000L);
+
+        // when
+        long start = System.currentTimeMillis();
+        beaconSender.shutdown();
+
+        // then
+        assertThat(System.currentTimeMillis() - start, is(lessThan(BeaconSender.PERSIST_TIMEOUT)));
+        assertThat(target.getNumberOfSenders(), is(1));
+    }
+
+    @Test
+    public void shutdownOfPoolShutsDownAllSenders() {
+
+        // given
+        BeaconSender beaconSender = createBeaconSender();
+        BeaconSender otherBeaconSender = createBeaconSender();
+        beaconSender.initialize();
+        otherBeaconSender.initialize();
+        beaconSender.waitForInit(5000L);
+        otherBeaconSender.waitForInit(5000L);
+
+        // when
+        target.shutdown();
+
+        // then
+        assertThat(target.getNumberOfSenders(), is(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sendersCannotBeInitializedAfterShutdownOfPool() {
+
+        // given
+        target.shutdown();
+
+        // when, then
+        createBeaconSender().initialize();
+    }
+
+    private BeaconSender createBeaconSender() {
+        return new BeaconSender(mock(Logger.class), configuration, configuration.getConnectorProvider(),
+            new DefaultTimingProvider(), target);
+    }
+}
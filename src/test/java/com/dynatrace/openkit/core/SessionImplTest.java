@@ -397,7 +397,7 @@ public class SessionImplTest {
 		// mock a valid status response via the HTTPConnector to be sure the beacon cache is empty
 		final HTTPConnector httpClient = mock(HTTPConnector.class);
 		final StatusResponse statusResponse = new StatusResponse("", 200);
-		when(httpClient.sendBeaconRequest(isA(String.class), any(byte[].class))).thenReturn(statusResponse);
+		when(httpClient.sendBeaconRequest(isA(String.class), any(HTTPConnector.BodyWriter.class))).thenReturn(statusResponse);
 		final ConnectorProvider clientProvider = mock(ConnectorProvider.class);
 		when(clientProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
 
@@ -431,6 +431,27 @@ public class SessionImplTest {
         verify(beacon, times(1)).send();
     }
 
+    @Test
+    public void capturedDataMarksTheSessionOnlyOnceUntilTheMarkIsCleared() {
+        // create test environment
+        final SessionImpl session = new SessionImpl(logger, beaconSender, beacon);
+        // the beacon only marks sessions it was started with, which OpenKitImpl does after construction
+        beacon.startSession(session);
+
+        // capture data twice
+        session.enterAction("Some action 1").leaveAction();
+        session.enterAction("Some action 2").leaveAction();
+
+        // verify that the session is handed over only once
+        verify(beaconSender, times(1)).markOpenSessionWithNewData(session);
+
+        // and when the session is taken for sending, new data marks it again
+        session.clearNewDataMark();
+        session.enterAction("Some action 3").leaveAction();
+
+        verify(beaconSender, times(2)).markOpenSessionWithNewData(session);
+    }
+
     @Test
     public void clearCapturedData() {
         // create test environment
@@ -335,6 +335,145 @@ public class BeaconCacheEntryTest {
         assertThat(obtained, is("prefix&One&Four"));
     }
 
+    @Test
+    public void getFollowingChunkSkipsDataOfPreviousChunks() {
+
+        // given
+        BeaconCacheRecord dataOne = new BeaconCacheRecord(0L, "One");
+        BeaconCacheRecord dataTwo = new BeaconCacheRecord(0L, "Two");
+        BeaconCacheRecord dataThree = new BeaconCacheRecord(1L, "Three");
+        BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
+
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.addEventData(dataOne);
+        target.addEventData(dataFour);
+        target.addActionData(dataTwo);
+        target.addActionData(dataThree);
+
+        target.copyDataForChunking();
+
+        // when getting the first chunk and the following ones
+        String first = target.getChunk("a", 2, '&');
+        String second = target.getFollowingChunk("a", 2, '&');
+        String third = target.getFollowingChunk("a", 2, '&');
+
+        // then
+        assertThat(first, is("a&One"));
+        assertThat(second, is("a&Four"));
+        assertThat(third, is("a&Two"));
+        assertThat(dataThree.isMarkedForSending(), is(false));
+
+        // and when getting the following chunks once all data was retrieved
+        String fourth = target.getFollowingChunk("a", 2, '&');
+        String fifth = target.getFollowingChunk("a", 2, '&');
+
+        // then
+        assertThat(fourth, is("a&Three"));
+        assertThat(fifth, isEmptyString());
+        assertThat(target.needsDataCopyBeforeChunking(), is(false));
+    }
+
+    @Test
+    public void removeOldestChunkMarkedForSendingKeepsFollowingChunks() {
+
+        // given
+        BeaconCacheRecord dataOne = new BeaconCacheRecord(0L, "One");
+        BeaconCacheRecord dataTwo = new BeaconCacheRecord(0L, "Two");
+        BeaconCacheRecord dataThree = new BeaconCacheRecord(1L, "Three");
+
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.addEventData(dataOne);
+        target.addActionData(dataTwo);
+        target.addActionData(dataThree);
+
+        target.copyDataForChunking();
+        target.getChunk("a", 2, '&');
+        target.getFollowingChunk("a", 2, '&');
+
+        // when removing the first chunk
+        target.removeOldestChunkMarkedForSending();
+
+        // then
+        assertThat(target.getEventDataBeingSent(), is(empty()));
+        assertThat(target.getActionDataBeingSent(), is(equalTo(Arrays.asList(dataTwo, dataThree))));
+        assertThat(dataTwo.isMarkedForSending(), is(true));
+        assertThat(dataThree.isMarkedForSending(), is(false));
+
+        // and when removing the second chunk
+        target.removeOldestChunkMarkedForSending();
+
+        // then
+        assertThat(target.getActionDataBeingSent(), is(equalTo(Collections.singletonList(dataThree))));
+
+        // and when resetting the chunks
+        target.resetDataMarkedForSending();
+
+        // then
+        assertThat(target.getActionData(), is(equalTo(Collections.singletonList(dataThree))));
+        assertThat(dataThree.isMarkedForSending(), is(false));
+    }
+
+    @Test
+    public void removeChunkMarkedForSendingRemovesOnlyTheGivenChunk() {
+
+        // given
+        BeaconCacheRecord dataOne = new BeaconCacheRecord(0L, "One");
+        BeaconCacheRecord dataTwo = new BeaconCacheRecord(0L, "Two");
+        BeaconCacheRecord dataThree = new BeaconCacheRecord(1L, "Three");
+        BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
+
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.addEventData(dataOne);
+        target.addEventData(dataTwo);
+        target.addActionData(dataThree);
+        target.addActionData(dataFour);
+
+        target.copyDataForChunking();
+        target.getChunk("a", 2, '&');
+        target.getFollowingChunk("a", 2, '&');
+        target.getFollowingChunk("a", 2, '&');
+
+        // when removing the third chunk, then the first one
+        target.removeChunkMarkedForSending(2);
+        target.removeChunkMarkedForSending(0);
+
+        // then
+        assertThat(target.getEventDataBeingSent(), is(equalTo(Collections.singletonList(dataTwo))));
+        assertThat(target.getActionDataBeingSent(), is(equalTo(Collections.singletonList(dataFour))));
+        assertThat(dataTwo.isMarkedForSending(), is(true));
+        assertThat(dataFour.isMarkedForSending(), is(false));
+
+        // and when resetting the remaining chunk
+        target.resetDataMarkedForSending();
+
+        // then
+        assertThat(target.getEventData(), is(equalTo(Collections.singletonList(dataTwo))));
+        assertThat(target.getActionData(), is(equalTo(Collections.singletonList(dataFour))));
+        assertThat(dataTwo.isMarkedForSending(), is(false));
+    }
+
+    @Test
+    public void removeChunkMarkedForSendingIgnoresUnknownChunk() {
+
+        // given
+        BeaconCacheRecord dataOne = new BeaconCacheRecord(0L, "One");
+        BeaconCacheRecord dataTwo = new BeaconCacheRecord(0L, "Two");
+
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.addEventData(dataOne);
+        target.addActionData(dataTwo);
+
+        target.copyDataForChunking();
+        target.getChunk("a", 2, '&');
+
+        // when
+        target.removeChunkMarkedForSending(1);
+
+        // then
+        assertThat(target.getEventDataBeingSent(), is(equalTo(Collections.singletonList(dataOne))));
+        assertThat(target.getActionDataBeingSent(), is(equalTo(Collections.singletonList(dataTwo))));
+    }
+
     @Test
     public void removeDataMarkedForSendingReturnsIfDataHasNotBeenCopied() {
 
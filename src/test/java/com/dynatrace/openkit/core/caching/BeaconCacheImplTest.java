@@ -431,6 +431,90 @@ public class BeaconCacheImplTest {
         assertThat(target.getEventsBeingSent(1), is(equalTo(expectedEventRecords)));
     }
 
+    @Test
+    public void getFollowingBeaconChunkReturnsNullIfGivenBeaconIDDoesNotExist() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl();
+
+        // when
+        String obtained = target.getFollowingBeaconChunk(666, "", 1024, '&');
+
+        // then
+        assertThat(obtained, is(nullValue()));
+    }
+
+    @Test
+    public void removeOldestChunkedDataKeepsFollowingChunk() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl();
+        target.addActionData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "iii");
+        target.addEventData(1, 1000L, "b");
+        target.addEventData(1, 1001L, "jjj");
+
+        // when retrieving two chunks and removing the first one
+        String first = target.getNextBeaconChunk(1, "prefix", 10, '&');
+        String second = target.getFollowingBeaconChunk(1, "prefix", 10, '&');
+        target.removeOldestChunkedData(1);
+
+        // then
+        assertThat(first, is("prefix&b&jjj"));
+        assertThat(second, is("prefix&a&iii"));
+        assertThat(target.getEventsBeingSent(1), is(empty()));
+        List<BeaconCacheRecord> expectedActionRecords = Arrays.asList(new BeaconCacheRecord(1000L, "a"), new BeaconCacheRecord(1001L, "iii"));
+        for (BeaconCacheRecord record : expectedActionRecords) {
+            record.markForSending();
+        }
+        assertThat(target.getActionsBeingSent(1), is(equalTo(expectedActionRecords)));
+
+        // and when removing the second one
+        target.removeOldestChunkedData(1);
+
+        // then
+        assertThat(target.getActionsBeingSent(1), is(empty()));
+        assertThat(target.getNextBeaconChunk(1, "prefix", 10, '&'), isEmptyString());
+    }
+
+    @Test
+    public void removeChunkedDataAtKeepsOtherChunks() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl();
+        target.addActionData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "iii");
+        target.addEventData(1, 1000L, "b");
+        target.addEventData(1, 1001L, "jjj");
+
+        // when retrieving two chunks, removing the second one and resetting the first one
+        target.getNextBeaconChunk(1, "prefix", 10, '&');
+        target.getFollowingBeaconChunk(1, "prefix", 10, '&');
+        target.removeChunkedDataAt(1, 1);
+        target.resetChunkedData(1);
+
+        // then
+        assertThat(target.getActions(1), is(equalTo(new String[0])));
+        assertThat(target.getEvents(1), is(equalTo(new String[]{"b", "jjj"})));
+    }
+
+    @Test
+    public void removeChunkedDataAtIgnoresUnknownBeacon() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl();
+        target.addEventData(1, 1000L, "b");
+        target.getNextBeaconChunk(1, "prefix", 10, '&');
+
+        // when
+        target.removeChunkedDataAt(2, 0);
+
+        // then
+        BeaconCacheRecord expectedEventRecord = new BeaconCacheRecord(1000L, "b");
+        expectedEventRecord.markForSending();
+        assertThat(target.getEventsBeingSent(1), is(equalTo(Collections.singletonList(expectedEventRecord))));
+    }
+
     @Test
     public void resetChunkedRestoresData() {
 
@@ -642,4 +726,20 @@ public class BeaconCacheImplTest {
         // then
         assertThat(target.isEmpty(1), is(true));
     }
+
+    @Test
+    public void numBytesInCacheForBeaconOnlyCountsDataOfThisBeacon() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl();
+        target.addEventData(1, 1000L, "a");
+        target.addEventData(42, 1000L, "z");
+        target.addActionData(1, 1000L, "iii");
+
+        // then
+        assertThat(target.getNumBytesInCache(1), is(new BeaconCacheRecord(1000L, "a").getDataSizeInBytes()
+            + new BeaconCacheRecord(1000L, "iii").getDataSizeInBytes()));
+        assertThat(target.getNumBytesInCache(42), is(new BeaconCacheRecord(1000L, "z").getDataSizeInBytes()));
+        assertThat(target.getNumBytesInCache(666), is(0L));
+    }
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void bytesAreReservedAsLongAsTheyFit() {
+
+        // given
+        MemoryBudget target = new MemoryBudget(100L);
+
+        // when, then
+        assertThat(target.tryReserve(60L), is(true));
+        assertThat(target.tryReserve(40L), is(true));
+        assertThat(target.tryReserve(1L), is(false));
+        assertThat(target.getUsedBytes(), is(100L));
+    }
+
+    @Test
+    public void releasedBytesCanBeReservedAgain() {
+
+        // given
+        MemoryBudget target = new MemoryBudget(100L);
+        target.tryReserve(100L);
+
+        // when
+        target.release(30L);
+
+        // then
+        assertThat(target.getUsedBytes(), is(70L));
+        assertThat(target.tryReserve(31L), is(false));
+        assertThat(target.tryReserve(30L), is(true));
+    }
+
+    @Test
+    public void budgetWithoutSizeIsUnlimited() {
+
+        // given
+        MemoryBudget target = new MemoryBudget(0L);
+
+        // when, then
+        assertThat(target.tryReserve(Long.MAX_VALUE / 2), is(true));
+        assertThat(target.getUsedBytes(), is(Long.MAX_VALUE / 2));
+    }
+}
@@ -120,4 +120,21 @@ public class BeaconSendingCaptureOffStateTest {
         // verify that after sleeping the transition to BeaconSendingTimeSyncState works
         verify(mockContext, times(1)).setNextState(org.mockito.Matchers.any(BeaconSendingTimeSyncState.class));
     }
+
+    @Test
+    public void aBeaconSendingCaptureOffStateReleasesSharedThreadUntilNextStatusCheck() throws InterruptedException {
+
+        //given
+        BeaconSendingCaptureOffState target = new BeaconSendingCaptureOffState();
+        when(mockContext.suspend(7200000)).thenReturn(true);
+
+        // when calling execute
+        target.doExecute(mockContext);
+
+        // then no status request is sent, until the state is executed again
+        verify(mockContext, times(1)).disableCapture();
+        verify(mockContext, times(0)).sleep(org.mockito.Matchers.anyLong());
+        verify(mockContext, times(0)).getConnector();
+        verify(mockContext, times(0)).setNextState(org.mockito.Matchers.any(AbstractBeaconSendingState.class));
+    }
 }
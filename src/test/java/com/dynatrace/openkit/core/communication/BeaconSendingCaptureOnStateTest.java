@@ -17,11 +17,13 @@
 package com.dynatrace.openkit.core.communication;
 
 import com.dynatrace.openkit.core.SessionImpl;
+import com.dynatrace.openkit.protocol.SendBudget;
 import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.providers.ConnectorProvider;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
@@ -36,6 +38,7 @@ public class BeaconSendingCaptureOnStateTest {
     private SessionImpl mockSession2Open;
     private SessionImpl mockSession3Finished;
     private SessionImpl mockSession4Finished;
+    private SendBudget mockSendBudget;
 
     @Before
     public void setUp() {
@@ -43,8 +46,14 @@ public class BeaconSendingCaptureOnStateTest {
         mockSession2Open = mock(SessionImpl.class);
         mockSession3Finished = mock(SessionImpl.class);
         mockSession4Finished = mock(SessionImpl.class);
-        when(mockSession1Open.sendBeacon()).thenReturn(new StatusResponse("", 200));
-        when(mockSession2Open.sendBeacon()).thenReturn(new StatusResponse("", 404));
+        when(mockSession1Open.sendBeacon(any(SendBudget.class))).thenReturn(new StatusResponse("", 200));
+        when(mockSession2Open.sendBeacon(any(SendBudget.class))).thenReturn(new StatusResponse("", 404));
+        when(mockSession1Open.getEndTime()).thenReturn(-1L);
+        when(mockSession2Open.getEndTime()).thenReturn(-1L);
+        for (SessionImpl session : new SessionImpl[]{mockSession1Open, mockSession2Open, mockSession3Finished, mockSession4Finished}) {
+            // everything is sent with a single request
+            when(session.isEmpty()).thenReturn(true);
+        }
 
         ConnectorProvider mockConnectorProvider = mock(ConnectorProvider.class);
 
@@ -52,11 +61,16 @@ public class BeaconSendingCaptureOnStateTest {
         when(mockContext.isTimeSyncSupported()).thenReturn(true);
         when(mockContext.getLastTimeSyncTime()).thenReturn(0L);
         when(mockContext.getCurrentTimestamp()).thenReturn(42L);
-        when(mockContext.getAllOpenSessions()).thenReturn(new SessionImpl[]{mockSession1Open, mockSession2Open});
+        when(mockContext.getNumberOfOpenSessionsWithNewData()).thenReturn(2);
+        when(mockContext.getNextOpenSessionWithNewData()).thenReturn(mockSession1Open)
+                                                         .thenReturn(mockSession2Open)
+                                                         .thenReturn(null);
         when(mockContext.getNextFinishedSession()).thenReturn(mockSession3Finished)
                                                   .thenReturn(mockSession4Finished)
                                                   .thenReturn(null);
         when(mockContext.getHTTPClientProvider()).thenReturn(mockConnectorProvider);
+        mockSendBudget = mock(SendBudget.class);
+        when(mockContext.createSendBudget()).thenReturn(mockSendBudget);
     }
 
     @Test
@@ -119,14 +133,14 @@ public class BeaconSendingCaptureOnStateTest {
         //given
         BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
 
-        when(mockSession3Finished.sendBeacon()).thenReturn(mock(StatusResponse.class));
-        when(mockSession4Finished.sendBeacon()).thenReturn(mock(StatusResponse.class));
+        when(mockSession3Finished.sendBeacon(any(SendBudget.class))).thenReturn(mock(StatusResponse.class));
+        when(mockSession4Finished.sendBeacon(any(SendBudget.class))).thenReturn(mock(StatusResponse.class));
 
         //when calling execute
         target.doExecute(mockContext);
 
-        verify(mockSession3Finished, times(1)).sendBeacon();
-        verify(mockSession4Finished, times(1)).sendBeacon();
+        verify(mockSession3Finished, times(1)).sendBeacon(any(SendBudget.class));
+        verify(mockSession4Finished, times(1)).sendBeacon(any(SendBudget.class));
     }
 
     @Test
@@ -135,18 +149,20 @@ public class BeaconSendingCaptureOnStateTest {
         //given
         BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
 
-        when(mockSession3Finished.sendBeacon()).thenReturn(null);
-        when(mockSession4Finished.sendBeacon()).thenReturn(mock(StatusResponse.class));
+        when(mockSession3Finished.sendBeacon(any(SendBudget.class))).thenReturn(null);
+        when(mockSession4Finished.sendBeacon(any(SendBudget.class))).thenReturn(mock(StatusResponse.class));
         when(mockSession3Finished.isEmpty()).thenReturn(false);
 
         //when calling execute
         target.doExecute(mockContext);
 
-        verify(mockSession3Finished, times(1)).sendBeacon();
-        verify(mockSession4Finished, times(0)).sendBeacon();
+        verify(mockSession3Finished, times(1)).sendBeacon(any(SendBudget.class));
+        verify(mockSession4Finished, times(0)).sendBeacon(any(SendBudget.class));
 
-        verify(mockContext, times(1)).getNextFinishedSession();
+        verify(mockContext, times(3)).getNextFinishedSession();
         verify(mockContext, times(1)).pushBackFinishedSession(mockSession3Finished);
+        verify(mockContext, times(1)).pushBackFinishedSession(mockSession4Finished);
+        verify(mockContext, times(0)).signalWork();
     }
 
     @Test
@@ -155,15 +171,15 @@ public class BeaconSendingCaptureOnStateTest {
         //given
         BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
 
-        when(mockSession3Finished.sendBeacon()).thenReturn(mock(StatusResponse.class));
-        when(mockSession4Finished.sendBeacon()).thenReturn(mock(StatusResponse.class));
+        when(mockSession3Finished.sendBeacon(any(SendBudget.class))).thenReturn(mock(StatusResponse.class));
+        when(mockSession4Finished.sendBeacon(any(SendBudget.class))).thenReturn(mock(StatusResponse.class));
         when(mockSession3Finished.isEmpty()).thenReturn(true);
 
         //when calling execute
         target.doExecute(mockContext);
 
-        verify(mockSession3Finished, times(1)).sendBeacon();
-        verify(mockSession4Finished, times(1)).sendBeacon();
+        verify(mockSession3Finished, times(1)).sendBeacon(any(SendBudget.class));
+        verify(mockSession4Finished, times(1)).sendBeacon(any(SendBudget.class));
         verify(mockSession3Finished, times(1)).clearCapturedData();
         verify(mockSession4Finished, times(1)).clearCapturedData();
 
@@ -179,11 +195,114 @@ public class BeaconSendingCaptureOnStateTest {
         //when calling execute
         target.doExecute(mockContext);
 
-        verify(mockSession1Open, times(1)).sendBeacon();
-        verify(mockSession2Open, times(1)).sendBeacon();
+        verify(mockSession1Open, times(1)).sendBeacon(any(SendBudget.class));
+        verify(mockSession2Open, times(1)).sendBeacon(any(SendBudget.class));
+        verify(mockContext, times(1)).setLastOpenSessionBeaconSendTime(org.mockito.Matchers.anyLong());
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateDoesNotSendOpenSessionsWithoutNewData() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getNumberOfOpenSessionsWithNewData()).thenReturn(0);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then idle sessions are not even looked at
+        verify(mockContext, times(0)).getNextOpenSessionWithNewData();
+        verify(mockContext, times(0)).getAllOpenSessions();
+        verify(mockSession1Open, times(0)).sendBeacon(any(SendBudget.class));
         verify(mockContext, times(1)).setLastOpenSessionBeaconSendTime(org.mockito.Matchers.anyLong());
     }
 
+    @Test
+    public void aBeaconSendingCaptureOnStateSkipsOpenSessionsFinishedInTheMeantime() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockSession1Open.getEndTime()).thenReturn(1234L);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then the finished session is left to be sent as finished session
+        verify(mockSession1Open, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockSession2Open, times(1)).sendBeacon(any(SendBudget.class));
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateMarksOpenSessionsAgainIfSendingFailed() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockSession1Open.sendBeacon(any(SendBudget.class))).thenReturn(null);
+        when(mockSession1Open.isEmpty()).thenReturn(false);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then sending stops, and the sessions are sent with the next send interval
+        verify(mockSession2Open, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockSession1Open, times(1)).markNewData();
+        verify(mockSession2Open, times(1)).markNewData();
+        verify(mockContext, times(0)).pushBackOpenSession(any(SessionImpl.class));
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateLetsFinishedSessionsTakeTurns() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockSession3Finished.sendBeacon(any(SendBudget.class))).thenReturn(mock(StatusResponse.class));
+        when(mockSession4Finished.sendBeacon(any(SendBudget.class))).thenReturn(mock(StatusResponse.class));
+        when(mockSession3Finished.isEmpty()).thenReturn(false, true);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then the large session does not hold back the other one
+        InOrder inOrder = inOrder(mockSession3Finished, mockSession4Finished);
+        inOrder.verify(mockSession3Finished).sendBeacon(mockSendBudget);
+        inOrder.verify(mockSession4Finished).sendBeacon(mockSendBudget);
+        inOrder.verify(mockSession3Finished).sendBeacon(mockSendBudget);
+        verify(mockContext, times(0)).pushBackFinishedSession(any(SessionImpl.class));
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStatePushesBackFinishedSessionsWhenBudgetIsExhausted() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockSession3Finished.sendBeacon(any(SendBudget.class))).thenReturn(mock(StatusResponse.class));
+        when(mockSession3Finished.isEmpty()).thenReturn(false);
+        when(mockSendBudget.isExhausted()).thenReturn(false, true);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then both sessions are sent on with the next run, which starts right away
+        verify(mockSession4Finished, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockSession3Finished, times(0)).clearCapturedData();
+        verify(mockContext, times(1)).pushBackFinishedSession(mockSession3Finished);
+        verify(mockContext, times(1)).pushBackFinishedSession(mockSession4Finished);
+        verify(mockContext, atLeastOnce()).signalWork();
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStatePushesBackOpenSessionsWhenBudgetIsExhausted() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getNextFinishedSession()).thenReturn(null);
+        when(mockSendBudget.isExhausted()).thenReturn(true);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then the open sessions are sent with the next run, without waiting for the send interval
+        verify(mockSession1Open, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockContext, times(1)).pushBackOpenSession(mockSession1Open);
+        verify(mockContext, times(1)).pushBackOpenSession(mockSession2Open);
+        verify(mockContext, times(1)).signalWork();
+        verify(mockSession1Open, times(0)).markNewData();
+    }
+
     @Test
     public void aBeaconSendingCaptureOnStateTransitionsToTimeSyncStateIfSessionExpired() throws InterruptedException {
 
@@ -201,6 +320,151 @@ public class BeaconSendingCaptureOnStateTest {
         verifyNoMoreInteractions(mockContext);
     }
 
+    @Test
+    public void aBeaconSendingCaptureOnStateSendsScheduledOpenSessionsBeforeSendInterval() throws InterruptedException {
+
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(60 * 1000);
+        when(mockContext.getNextScheduledOpenSession()).thenReturn(mockSession2Open).thenReturn(null);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then only the scheduled session is sent
+        verify(mockSession2Open, times(1)).sendBeacon(any(SendBudget.class));
+        verify(mockSession1Open, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockContext, times(0)).setLastOpenSessionBeaconSendTime(org.mockito.Matchers.anyLong());
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateSendsNothingWhileCircuitIsOpen() throws InterruptedException {
+
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.isCircuitOpen()).thenReturn(true);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then sessions are kept
+        verify(mockContext, times(0)).getNextFinishedSession();
+        verify(mockSession1Open, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockSession2Open, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockContext, times(0)).setNextState(any(AbstractBeaconSendingState.class));
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateSendsNothingWhileBandwidthIsExhausted() throws InterruptedException {
+
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getThrottleDelay()).thenReturn(250L);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then sessions are kept
+        verify(mockContext, times(0)).getNextFinishedSession();
+        verify(mockSession1Open, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockSession2Open, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockContext, times(0)).setNextState(any(AbstractBeaconSendingState.class));
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateWaitsForWorkUntilNextOpenSessionSend() throws InterruptedException {
+
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.isTimeSyncSupported()).thenReturn(false);
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(1000);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then the wait ends at the next scheduled send of open sessions
+        verify(mockContext, times(1)).waitForWork(998L);
+        verify(mockContext, times(0)).sleep();
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateReleasesSharedThreadUntilWork() throws InterruptedException {
+
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.isTimeSyncSupported()).thenReturn(false);
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(1000);
+        when(mockContext.suspendUntilWork(998L)).thenReturn(true);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then nothing is waited for or sent, until the state is executed again
+        verify(mockContext, times(0)).waitForWork(org.mockito.Matchers.anyLong());
+        verify(mockContext, times(0)).getNextFinishedSession();
+        verify(mockContext, times(0)).setNextState(any(AbstractBeaconSendingState.class));
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateRetriesFinishedSessionsAfterDefaultSleepTime() throws InterruptedException {
+
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.isTimeSyncSupported()).thenReturn(false);
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(60 * 1000);
+        when(mockContext.getNumberOfFinishedSessions()).thenReturn(1);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then
+        verify(mockContext, times(1)).waitForWork(BeaconSendingContext.DEFAULT_SLEEP_TIME_MILLISECONDS);
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateDispatchesSessionsToSendWorkers() throws InterruptedException {
+
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        BeaconSendingWorkerPool mockSendWorkerPool = mock(BeaconSendingWorkerPool.class);
+        when(mockContext.getSendWorkerPool()).thenReturn(mockSendWorkerPool);
+        when(mockContext.getNumberOfFinishedSessions()).thenReturn(2);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then sessions are not sent by the beacon sender thread itself
+        verify(mockSendWorkerPool, times(1)).sendFinishedSession(mockContext, mockSession3Finished);
+        verify(mockSendWorkerPool, times(1)).sendFinishedSession(mockContext, mockSession4Finished);
+        verify(mockSendWorkerPool, times(1)).sendOpenSession(mockSession1Open);
+        verify(mockSendWorkerPool, times(1)).sendOpenSession(mockSession2Open);
+        verify(mockSendWorkerPool, times(1)).takeLastStatusResponse();
+        verify(mockSession3Finished, times(0)).sendBeacon(any(SendBudget.class));
+        verify(mockSession1Open, times(0)).sendBeacon(any(SendBudget.class));
+    }
+
+    @Test
+    public void aBeaconSendingCaptureOnStateDoesNotDispatchFinishedSessionsPushedBackDuringDispatch() throws InterruptedException {
+
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        BeaconSendingWorkerPool mockSendWorkerPool = mock(BeaconSendingWorkerPool.class);
+        when(mockContext.getSendWorkerPool()).thenReturn(mockSendWorkerPool);
+        when(mockContext.getNumberOfFinishedSessions()).thenReturn(1);
+
+        //when calling execute
+        target.doExecute(mockContext);
+
+        //then only the sessions present at the beginning are dispatched
+        verify(mockContext, times(1)).getNextFinishedSession();
+        verify(mockSendWorkerPool, times(1)).sendFinishedSession(mockContext, mockSession3Finished);
+        verify(mockSendWorkerPool, times(0)).sendFinishedSession(mockContext, mockSession4Finished);
+    }
+
     @Test
     public void aBeaconSendingCaptureOnStateTransitionsToCaptureOffStateWhenCapturingGotDisabled() {
 
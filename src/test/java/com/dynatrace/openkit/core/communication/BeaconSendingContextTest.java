@@ -17,6 +17,7 @@
 package com.dynatrace.openkit.core.communication;
 
 import com.dynatrace.openkit.core.SessionImpl;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
 import com.dynatrace.openkit.protocol.Connector;
@@ -286,6 +287,7 @@ public class BeaconSendingContextTest {
         // then
         assertThat(obtained, is(1234));
         verify(configuration, times(1)).getSendInterval();
+        verify(configuration, times(1)).getBeaconSendingConfiguration();
         verifyNoMoreInteractions(configuration);
     }
 
@@ -313,7 +315,9 @@ public class BeaconSendingContextTest {
 
         BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
 
-        verifyZeroInteractions(configuration, connectorProvider);
+        verify(configuration, times(1)).getBeaconSendingConfiguration();
+        verifyNoMoreInteractions(configuration);
+        verifyZeroInteractions(connectorProvider);
 
         Connector obtained = target.getConnector();
 
@@ -326,6 +330,57 @@ public class BeaconSendingContextTest {
         verifyZeroInteractions(mockClient, mockConfiguration);
     }
 
+    @Test
+    public void warmUpConnectionsOpensOneConnectionWithoutSendWorkers() {
+
+        // given
+        Connector mockClient = mock(HTTPConnector.class);
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(mockClient);
+
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+
+        // when
+        target.warmUpConnections();
+
+        // then
+        verify(mockClient, times(1)).warmUp(1);
+    }
+
+    @Test
+    public void warmUpConnectionsOpensOneConnectionPerSendWorker() {
+
+        // given
+        Connector mockClient = mock(HTTPConnector.class);
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(mockClient);
+
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        // workers are only configured afterwards, so the context doesn't start them
+        when(configuration.getBeaconSendingConfiguration()).thenReturn(new BeaconSendingConfiguration(4));
+
+        // when
+        target.warmUpConnections();
+
+        // then
+        verify(mockClient, times(1)).warmUp(4);
+    }
+
+    @Test
+    public void sendWorkersAreShutDownWhenTerminalStateIsReached() {
+
+        // given
+        when(configuration.getBeaconSendingConfiguration()).thenReturn(new BeaconSendingConfiguration(4));
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(mock(Connector.class));
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        target.requestShutdown();
+
+        // when
+        target.executeCurrentState();
+
+        // then
+        assertThat(target.isInTerminalState(), is(true));
+        assertThat(target.getSendWorkerPool().isShutdown(), is(true));
+    }
+
     @Test
     public void getCurrentTimestamp() {
 
@@ -368,6 +423,165 @@ public class BeaconSendingContextTest {
         verifyNoMoreInteractions(timingProvider);
     }
 
+    @Test
+    public void waitForWorkReturnsImmediatelyIfWorkWasSignalledBefore() throws InterruptedException {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        target.signalWork();
+
+        // when
+        long start = System.currentTimeMillis();
+        target.waitForWork(60 * 1000L);
+
+        // then
+        assertThat(System.currentTimeMillis() - start, is(lessThan(30 * 1000L)));
+    }
+
+    @Test
+    public void finishingASessionWakesUpWaitingThread() throws InterruptedException {
+
+        // given
+        final BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        final SessionImpl mockSession = mock(SessionImpl.class);
+        target.startSession(mockSession);
+        Thread finishingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                target.finishSession(mockSession);
+            }
+        });
+
+        // when
+        long start = System.currentTimeMillis();
+        finishingThread.start();
+        target.waitForWork(60 * 1000L);
+        finishingThread.join();
+
+        // then
+        assertThat(System.currentTimeMillis() - start, is(lessThan(30 * 1000L)));
+        verifyZeroInteractions(timingProvider);
+    }
+
+    @Test
+    public void waitForWorkReturnsAfterGivenTimeIfNoWorkIsSignalled() throws InterruptedException {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+
+        // when
+        long start = System.currentTimeMillis();
+        target.waitForWork(50L);
+
+        // then
+        assertThat(System.currentTimeMillis() - start, is(greaterThanOrEqualTo(50L)));
+    }
+
+    @Test
+    public void waitForWorkConsumesSignal() throws InterruptedException {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        target.signalWork();
+        target.waitForWork(0L);
+
+        // when
+        long start = System.currentTimeMillis();
+        target.waitForWork(50L);
+
+        // then
+        assertThat(System.currentTimeMillis() - start, is(greaterThanOrEqualTo(50L)));
+    }
+
+    @Test
+    public void suspendDoesNotReleaseDedicatedThread() {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+
+        // when
+        boolean obtained = target.suspend(1000L);
+
+        // then
+        assertThat(obtained, is(false));
+        assertThat(target.takeSuspendTime(), is(0L));
+    }
+
+    @Test
+    public void suspendReleasesSharedThread() {
+
+        // given
+        Runnable resumeHandler = mock(Runnable.class);
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        target.setResumeHandler(resumeHandler);
+
+        // when
+        boolean obtained = target.suspend(1000L);
+        target.signalWork();
+
+        // then
+        assertThat(obtained, is(true));
+        assertThat(target.takeSuspendTime(), is(1000L));
+        assertThat(target.takeSuspendTime(), is(0L));
+        verifyZeroInteractions(resumeHandler);
+    }
+
+    @Test
+    public void signalledWorkResumesStateSuspendedUntilWork() {
+
+        // given
+        Runnable resumeHandler = mock(Runnable.class);
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        target.setResumeHandler(resumeHandler);
+
+        // when
+        boolean obtained = target.suspendUntilWork(1000L);
+        target.signalWork();
+        target.signalWork();
+
+        // then
+        assertThat(obtained, is(true));
+        verify(resumeHandler, times(1)).run();
+    }
+
+    @Test
+    public void suspendUntilWorkDoesNotReleaseThreadIfWorkIsPending() {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        target.setResumeHandler(mock(Runnable.class));
+        target.signalWork();
+
+        // when
+        boolean obtained = target.suspendUntilWork(1000L);
+
+        // then
+        assertThat(obtained, is(false));
+        assertThat(target.takeSuspendTime(), is(0L));
+    }
+
+    @Test
+    public void requestShutdownResumesSuspendedState() {
+
+        // given
+        Runnable resumeHandler = mock(Runnable.class);
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        target.setResumeHandler(resumeHandler);
+        target.suspend(1000L);
+
+        // when
+        target.requestShutdown();
+
+        // then
+        verify(resumeHandler, times(1)).run();
+        assertThat(target.suspend(1000L), is(false));
+    }
+
     @Test
     public void defaultLastTimeSyncTimeIsMinusOne() {
 
@@ -457,6 +671,56 @@ public class BeaconSendingContextTest {
         assertThat(target.getAllFinishedSessions(), is(equalTo(new SessionImpl[]{mockSessionOne, mockSessionTwo})));
     }
 
+    @Test
+    public void schedulingAnOpenSessionMakesItAvailableOnce() {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        SessionImpl mockSession = mock(SessionImpl.class);
+        target.startSession(mockSession);
+
+        // when
+        target.scheduleOpenSessionSend(mockSession);
+
+        // then
+        assertThat(target.getNextScheduledOpenSession(), is(sameInstance(mockSession)));
+        assertThat(target.getNextScheduledOpenSession(), is(nullValue()));
+    }
+
+    @Test
+    public void openSessionWithNewDataIsTakenOnceAndItsMarkIsCleared() {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        SessionImpl mockSession = mock(SessionImpl.class);
+        target.startSession(mockSession);
+
+        // when
+        target.markOpenSessionWithNewData(mockSession);
+
+        // then
+        assertThat(target.getNumberOfOpenSessionsWithNewData(), is(1));
+        assertThat(target.getNextOpenSessionWithNewData(), is(sameInstance(mockSession)));
+        assertThat(target.getNextOpenSessionWithNewData(), is(nullValue()));
+        verify(mockSession, times(1)).clearNewDataMark();
+    }
+
+    @Test
+    public void schedulingASessionWhichIsNotOpenIsIgnored() {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(configuration, connectorProvider, timingProvider);
+        SessionImpl mockSession = mock(SessionImpl.class);
+        target.startSession(mockSession);
+        target.finishSession(mockSession);
+
+        // when
+        target.scheduleOpenSessionSend(mockSession);
+
+        // then
+        assertThat(target.getNextScheduledOpenSession(), is(nullValue()));
+    }
+
     @Test
     public void finishingASessionThatHasNotBeenStartedBeforeIsNotAddedToFinishedSessions() {
 
@@ -535,6 +799,9 @@ public class BeaconSendingContextTest {
         assertThat(target.getAllFinishedSessions(), is(emptyArray()));
 
         verify(configuration, times(1)).disableCapture();
+        verify(configuration, times(1)).getBeaconSendingConfiguration();
+        verifySendInfoWasQueued(mockSessionOne);
+        verifySendInfoWasQueued(mockSessionFour);
         verify(mockSessionOne, times(1)).clearCapturedData();
         verify(mockSessionTwo, times(1)).clearCapturedData();
         verify(mockSessionThree, times(1)).clearCapturedData();
@@ -567,8 +834,11 @@ public class BeaconSendingContextTest {
 
         verify(configuration, times(1)).updateSettings(mockStatusResponse);
         verify(configuration, times(1)).isCapture();
+        verify(configuration, times(1)).getBeaconSendingConfiguration();
         verifyNoMoreInteractions(configuration);
-        verifyZeroInteractions(mockSessionOne, mockSessionTwo);
+        verifySendInfoWasQueued(mockSessionOne);
+        verifyNoMoreInteractions(mockSessionOne);
+        verifyZeroInteractions(mockSessionTwo);
     }
 
     @Test
@@ -601,8 +871,11 @@ public class BeaconSendingContextTest {
 
         verify(configuration, times(1)).updateSettings(mockStatusResponse);
         verify(configuration, times(1)).isCapture();
+        verify(configuration, times(1)).getBeaconSendingConfiguration();
         verifyNoMoreInteractions(configuration);
 
+        verifySendInfoWasQueued(mockSessionOne);
+        verifySendInfoWasQueued(mockSessionFour);
         verify(mockSessionOne, times(1)).clearCapturedData();
         verify(mockSessionTwo, times(1)).clearCapturedData();
         verify(mockSessionThree, times(1)).clearCapturedData();
@@ -642,4 +915,14 @@ public class BeaconSendingContextTest {
         // then
         verify(timingProvider, times(1)).initialize(1234L, true);
     }
+
+    /**
+     * Verify that the send order information of a finished session was read once, when it was queued.
+     */
+    private static void verifySendInfoWasQueued(SessionImpl session) {
+        verify(session, times(1)).hasCrash();
+        verify(session, times(1)).hasError();
+        verify(session, times(1)).getStartTime();
+        verify(session, times(1)).getDataSize();
+    }
 }
@@ -16,12 +16,14 @@
 
 package com.dynatrace.openkit.core.communication;
 
+import com.dynatrace.openkit.api.SessionPersistenceHook;
 import com.dynatrace.openkit.core.SessionImpl;
 import com.dynatrace.openkit.protocol.HTTPConnector;
 import com.dynatrace.openkit.protocol.StatusResponse;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
@@ -49,6 +51,7 @@ public class BeaconSendingFlushSessionsStateTest {
 
         mockContext = mock(BeaconSendingContext.class);
         when(mockContext.getConnector()).thenReturn(mockHttpClient);
+        when(mockContext.getShutdownDeadline()).thenReturn(Long.MAX_VALUE);
         when(mockContext.getAllOpenSessions()).thenReturn(new SessionImpl[]{mockSession1Open, mockSession2Open});
         when(mockContext.getNextFinishedSession()).thenReturn(mockSession3Closed)
                                                   .thenReturn(mockSession2Open)
@@ -117,4 +120,97 @@ public class BeaconSendingFlushSessionsStateTest {
         verify(mockSession3Closed, times(1)).sendBeacon();
     }
 
+
+    @Test
+    public void aBeaconSendingFlushSessionsStateFlushesSessionsWithSendWorkers() {
+
+        //given
+        BeaconSendingFlushSessionsState target = new BeaconSendingFlushSessionsState();
+        BeaconSendingWorkerPool mockSendWorkerPool = mock(BeaconSendingWorkerPool.class);
+        when(mockContext.getSendWorkerPool()).thenReturn(mockSendWorkerPool);
+
+        // when
+        target.doExecute(mockContext);
+
+        // then
+        verify(mockSendWorkerPool, times(1)).flushSession(mockSession3Closed, Long.MAX_VALUE);
+        verify(mockSendWorkerPool, times(1)).flushSession(mockSession2Open, Long.MAX_VALUE);
+        verify(mockSendWorkerPool, times(1)).flushSession(mockSession1Open, Long.MAX_VALUE);
+        verify(mockSendWorkerPool, times(1)).shutdown(Long.MAX_VALUE);
+        verify(mockSession3Closed, times(0)).sendBeacon();
+        verify(mockContext, times(1)).setNextState(org.mockito.Matchers.any(BeaconSendingTerminalState.class));
+    }
+
+    @Test
+    public void aBeaconSendingFlushSessionsStateFlushesSessionsWithCrashesFirst() {
+
+        //given
+        BeaconSendingFlushSessionsState target = new BeaconSendingFlushSessionsState();
+        BeaconSendingWorkerPool mockSendWorkerPool = mock(BeaconSendingWorkerPool.class);
+        when(mockContext.getSendWorkerPool()).thenReturn(mockSendWorkerPool);
+        when(mockSession1Open.hasCrash()).thenReturn(true);
+
+        // when
+        target.doExecute(mockContext);
+
+        // then
+        InOrder inOrder = inOrder(mockSendWorkerPool);
+        inOrder.verify(mockSendWorkerPool).flushSession(mockSession1Open, Long.MAX_VALUE);
+        inOrder.verify(mockSendWorkerPool).flushSession(mockSession3Closed, Long.MAX_VALUE);
+        inOrder.verify(mockSendWorkerPool).flushSession(mockSession2Open, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void aBeaconSendingFlushSessionsStateStopsWorkersOnceDeadlineExpired() {
+
+        //given
+        BeaconSendingFlushSessionsState target = new BeaconSendingFlushSessionsState();
+        BeaconSendingWorkerPool mockSendWorkerPool = mock(BeaconSendingWorkerPool.class);
+        when(mockContext.getSendWorkerPool()).thenReturn(mockSendWorkerPool);
+        when(mockContext.getShutdownDeadline()).thenReturn(1000L);
+        when(mockContext.getCurrentTimestamp()).thenReturn(400L);
+        when(mockSendWorkerPool.shutdown(anyLong())).thenReturn(false);
+
+        // when
+        target.doExecute(mockContext);
+
+        // then
+        verify(mockSendWorkerPool, times(1)).shutdown(600L);
+        verify(mockSendWorkerPool, times(1)).shutdownNow();
+    }
+
+    @Test
+    public void aBeaconSendingFlushSessionsStatePassesUnsentDataToPersistenceHook() {
+
+        //given
+        SessionPersistenceHook mockHook = mock(SessionPersistenceHook.class);
+        when(mockContext.getSessionPersistenceHook()).thenReturn(mockHook);
+        when(mockContext.getCurrentTimestamp()).thenReturn(1000L);
+        when(mockSession3Closed.isEmpty()).thenReturn(false);
+
+        // when
+        BeaconSendingFlushSessionsState.flushSession(mockContext, mockSession3Closed, 1000L);
+
+        // then
+        verify(mockSession3Closed, times(0)).sendBeacon();
+        verify(mockSession3Closed, times(1)).takeUnsentData();
+        verify(mockSession3Closed, times(1)).clearCapturedData();
+    }
+
+    @Test
+    public void aBeaconSendingFlushSessionsStateDoesNotPersistSentSessions() {
+
+        //given
+        SessionPersistenceHook mockHook = mock(SessionPersistenceHook.class);
+        when(mockContext.getSessionPersistenceHook()).thenReturn(mockHook);
+        when(mockSession3Closed.isEmpty()).thenReturn(true);
+
+        // when
+        BeaconSendingFlushSessionsState.flushSession(mockContext, mockSession3Closed, Long.MAX_VALUE);
+
+        // then
+        verify(mockSession3Closed, times(1)).sendBeacon();
+        verify(mockSession3Closed, times(0)).takeUnsentData();
+        verifyZeroInteractions(mockHook);
+    }
 }
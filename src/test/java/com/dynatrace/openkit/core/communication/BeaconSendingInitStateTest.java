@@ -24,6 +24,7 @@ import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import static com.dynatrace.openkit.test.BackoffMatchers.jittered;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
@@ -129,6 +130,40 @@ public class BeaconSendingInitStateTest {
         verify(stateContext, times(1)).setLastStatusCheckTime(123456789L);
     }
 
+    @Test
+    public void executeWarmsUpConnectionsOnce() {
+
+        // given
+        when(httpClient.sendStatusRequest()).thenReturn(null);
+        when(stateContext.isShutdownRequested()).thenReturn(false, false, false, false, false, false, true);
+
+        BeaconSendingInitState target = new BeaconSendingInitState();
+
+        // when
+        target.execute(stateContext);
+
+        // then
+        verify(stateContext, times(1)).warmUpConnections();
+    }
+
+    @Test
+    public void reExecutionAfterSuspendDoesNotWarmUpConnectionsAgain() {
+
+        // given
+        when(httpClient.sendStatusRequest()).thenReturn(null);
+        when(stateContext.isShutdownRequested()).thenReturn(false);
+        when(stateContext.suspend(anyLong())).thenReturn(true);
+
+        BeaconSendingInitState target = new BeaconSendingInitState();
+
+        // when executing the state again after the shared thread was released
+        target.execute(stateContext);
+        target.execute(stateContext);
+
+        // then
+        verify(stateContext, times(1)).warmUpConnections();
+    }
+
 
     @Test
     public void initIsTerminatedIfShutdownRequestedWithValidResponse() {
@@ -174,59 +209,59 @@ public class BeaconSendingInitStateTest {
         // verify sleeps
         verify(stateContext, times(41)).sleep(anyLong());
         // from first round
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16));
         // delay between first and second attempt
         inOrder.verify(stateContext).sleep(BeaconSendingInitState.REINIT_DELAY_MILLISECONDS[0]);
         // and again the sequence
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16));
         // delay between second and third attempt
         inOrder.verify(stateContext).sleep(BeaconSendingInitState.REINIT_DELAY_MILLISECONDS[1]);
         // and again the sequence
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16));
         // delay between third and fourth attempt
         inOrder.verify(stateContext).sleep(BeaconSendingInitState.REINIT_DELAY_MILLISECONDS[2]);
         // and again the sequence
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16));
         // delay between fourth and fifth attempt
         inOrder.verify(stateContext).sleep(BeaconSendingInitState.REINIT_DELAY_MILLISECONDS[3]);
         // and again the sequence
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16));
         // delay between fifth and sixth attempt
         inOrder.verify(stateContext).sleep(BeaconSendingInitState.REINIT_DELAY_MILLISECONDS[4]);
         // and again the sequence
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16));
         // delay between sixth and seventh attempt
         inOrder.verify(stateContext).sleep(BeaconSendingInitState.REINIT_DELAY_MILLISECONDS[4]);
         // and again the sequence
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16));
     }
 
     @Test
@@ -244,11 +279,11 @@ public class BeaconSendingInitStateTest {
 
         // then
         verify(stateContext, times(5)).sleep(anyLong()); // verify it's five, since we have 5 further checks
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
-        inOrder.verify(stateContext).sleep(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingInitState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16));
     }
 
     @Test
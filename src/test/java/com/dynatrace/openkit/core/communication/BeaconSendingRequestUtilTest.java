@@ -22,6 +22,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
 
+import static com.dynatrace.openkit.test.BackoffMatchers.jittered;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
@@ -119,12 +120,10 @@ public class BeaconSendingRequestUtilTest {
         verify(context, times(6)).getConnector();
         verify(httpClient, times(6)).sendStatusRequest();
 
-        inOrder.verify(context).sleep(1000L);
-        inOrder.verify(context).sleep(2000L);
-        inOrder.verify(context).sleep(4000L);
-        inOrder.verify(context).sleep(8000L);
-        inOrder.verify(context).sleep(16000L);
+        inOrder.verify(context).sleep(jittered(1000L));
+        inOrder.verify(context).sleep(jittered(2000L));
+        inOrder.verify(context).sleep(jittered(4000L));
+        inOrder.verify(context).sleep(jittered(8000L));
+        inOrder.verify(context).sleep(jittered(16000L));
     }
-
-
 }
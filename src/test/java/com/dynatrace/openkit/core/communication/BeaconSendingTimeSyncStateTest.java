@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
 
+import static com.dynatrace.openkit.test.BackoffMatchers.jittered;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyBoolean;
@@ -231,11 +232,11 @@ public class BeaconSendingTimeSyncStateTest {
 
         // then
         verify(stateContext, times(5)).sleep(anyLong()); // verify it's five, since we have 5 further checks
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 16));
     }
 
     @Test
@@ -295,19 +296,19 @@ public class BeaconSendingTimeSyncStateTest {
         // and verify method calls
         verify(stateContext, times(10)).sleep(anyLong()); // verify it's four, since we have 4 further checks
         // first time sync request -> 1 retry
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
         // second time sync request -> 2 retries
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
         // third time sync request -> 3 retries
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
         // fourth time sync request -> 4 retries
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4);
-        inOrder.verify(stateContext).sleep(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8);
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 2));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 4));
+        inOrder.verify(stateContext).sleep(jittered(BeaconSendingTimeSyncState.INITIAL_RETRY_SLEEP_TIME_MILLISECONDS * 8));
         // fifth time sync request -> 0 retries
 
         verify(stateContext, times(1)).setLastTimeSyncTime(66L);
@@ -0,0 +1,230 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.SessionImpl;
+import com.dynatrace.openkit.protocol.StatusResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class BeaconSendingWorkerPoolTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private Logger mockLogger;
+    private BeaconSendingContext mockContext;
+    private SessionImpl mockSession1;
+    private SessionImpl mockSession2;
+    private CountDownLatch sendLatch;
+    private BeaconSendingWorkerPool target;
+
+    @Before
+    public void setUp() {
+        mockLogger = mock(Logger.class);
+        mockContext = mock(BeaconSendingContext.class);
+        mockSession1 = mock(SessionImpl.class);
+        mockSession2 = mock(SessionImpl.class);
+        sendLatch = new CountDownLatch(1);
+        target = new BeaconSendingWorkerPool(2, mockLogger, mockContext);
+    }
+
+    @After
+    public void tearDown() {
+        sendLatch.countDown();
+        target.shutdown(TIMEOUT);
+    }
+
+    @Test
+    public void successfullySentFinishedSessionIsCleared() {
+        // given
+        StatusResponse statusResponse = new StatusResponse("", 200);
+        when(mockSession1.sendBeacon()).thenReturn(statusResponse);
+
+        // when
+        target.sendFinishedSession(mockContext, mockSession1);
+        target.shutdown(TIMEOUT);
+
+        // then
+        verify(mockSession1, times(1)).clearCapturedData();
+        verify(mockContext, times(0)).pushBackFinishedSession(mockSession1);
+        assertThat(target.takeLastStatusResponse(), is(sameInstance(statusResponse)));
+        assertThat(target.takeLastStatusResponse(), is(nullValue()));
+    }
+
+    @Test
+    public void unsuccessfullySentFinishedSessionIsPushedBack() {
+        // given
+        when(mockSession1.sendBeacon()).thenReturn(null);
+        when(mockSession1.isEmpty()).thenReturn(false);
+
+        // when
+        target.sendFinishedSession(mockContext, mockSession1);
+        target.shutdown(TIMEOUT);
+
+        // then
+        verify(mockContext, times(1)).pushBackFinishedSession(mockSession1);
+        verify(mockSession1, times(0)).clearCapturedData();
+    }
+
+    @Test
+    public void openSessionIsNotDispatchedAgainWhileBeingSent() {
+        // given
+        when(mockSession1.sendBeacon()).thenAnswer(new BlockingSend());
+
+        // when
+        boolean firstDispatched = target.sendOpenSession(mockSession1);
+        boolean secondDispatched = target.sendOpenSession(mockSession1);
+        sendLatch.countDown();
+        target.shutdown(TIMEOUT);
+
+        // then
+        assertThat(firstDispatched, is(true));
+        assertThat(secondDispatched, is(false));
+        verify(mockSession1, times(1)).sendBeacon();
+        assertThat(target.isSending(mockSession1), is(false));
+    }
+
+    @Test
+    public void tasksOfOneSessionAreExecutedInOrder() {
+        // given
+        when(mockSession1.sendBeacon()).thenAnswer(new BlockingSend());
+
+        // when
+        target.sendOpenSession(mockSession1);
+        target.flushSession(mockSession1, Long.MAX_VALUE);
+        sendLatch.countDown();
+        target.shutdown(TIMEOUT);
+
+        // then
+        InOrder inOrder = inOrder(mockSession1);
+        inOrder.verify(mockSession1, times(2)).sendBeacon();
+        inOrder.verify(mockSession1, times(1)).clearCapturedData();
+    }
+
+    @Test
+    public void sessionIsNotSentOnceFlushDeadlineExpired() {
+        // given
+        when(mockContext.getCurrentTimestamp()).thenReturn(1000L);
+
+        // when
+        target.flushSession(mockSession1, 1000L);
+        target.shutdown(TIMEOUT);
+
+        // then
+        verify(mockSession1, times(0)).sendBeacon();
+        verify(mockSession1, times(1)).clearCapturedData();
+    }
+
+    @Test
+    public void shutdownNowRunsWaitingTasksOnCallingThread() {
+        // given
+        BeaconSendingWorkerPool singleWorkerPool = new BeaconSendingWorkerPool(1, mockLogger, mockContext);
+        when(mockSession1.sendBeacon()).thenAnswer(new BlockingSend());
+        singleWorkerPool.sendOpenSession(mockSession1);
+        singleWorkerPool.flushSession(mockSession2, 0L);
+
+        // when
+        singleWorkerPool.shutdownNow();
+
+        // then
+        verify(mockSession2, times(0)).sendBeacon();
+        verify(mockSession2, times(1)).clearCapturedData();
+    }
+
+    @Test
+    public void slowSessionDoesNotBlockOtherSessions() {
+        // given
+        when(mockSession1.sendBeacon()).thenAnswer(new BlockingSend());
+
+        // when
+        target.sendOpenSession(mockSession1);
+        target.sendOpenSession(mockSession2);
+
+        // then
+        verify(mockSession2, timeout(TIMEOUT).times(1)).sendBeacon();
+        assertThat(target.isSending(mockSession1), is(true));
+    }
+
+    @Test
+    public void failedTaskIsLoggedAndNextTaskOfSessionIsStillExecuted() {
+        // given
+        when(mockSession1.sendBeacon()).thenAnswer(new Answer<StatusResponse>() {
+            @Override
+            public StatusResponse answer(InvocationOnMock invocation) throws Throwable {
+                sendLatch.await();
+                throw new IllegalStateException("send failed");
+            }
+        }).thenReturn(null);
+
+        // when
+        target.sendOpenSession(mockSession1);
+        target.flushSession(mockSession1, Long.MAX_VALUE);
+        sendLatch.countDown();
+        target.shutdown(TIMEOUT);
+
+        // then
+        verify(mockLogger, times(1)).warning(anyString());
+        verify(mockSession1, times(1)).clearCapturedData();
+    }
+
+    @Test
+    public void workerThreadsAreDaemonThreads() {
+        // given
+        final AtomicBoolean isDaemon = new AtomicBoolean(false);
+        when(mockSession1.sendBeacon()).thenAnswer(new Answer<StatusResponse>() {
+            @Override
+            public StatusResponse answer(InvocationOnMock invocation) {
+                isDaemon.set(Thread.currentThread().isDaemon());
+                return null;
+            }
+        });
+
+        // when
+        target.sendOpenSession(mockSession1);
+        target.shutdown(TIMEOUT);
+
+        // then
+        assertThat(isDaemon.get(), is(true));
+    }
+
+    /**
+     * Send which does not return before the test releases {@link #sendLatch}.
+     */
+    private final class BlockingSend implements Answer<StatusResponse> {
+
+        @Override
+        public StatusResponse answer(InvocationOnMock invocation) throws Throwable {
+            sendLatch.await();
+            return null;
+        }
+    }
+}
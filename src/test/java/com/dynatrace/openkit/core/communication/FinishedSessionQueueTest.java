@@ -0,0 +1,152 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.api.SessionSendInfo;
+import com.dynatrace.openkit.core.SessionImpl;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Comparator;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FinishedSessionQueueTest {
+
+    private SessionImpl mockSession1;
+    private SessionImpl mockSession2;
+    private SessionImpl mockSession3;
+    private FinishedSessionQueue target;
+
+    @Before
+    public void setUp() {
+        mockSession1 = mock(SessionImpl.class);
+        mockSession2 = mock(SessionImpl.class);
+        mockSession3 = mock(SessionImpl.class);
+        target = new FinishedSessionQueue(BeaconSendingConfiguration.DEFAULT_SESSION_SEND_ORDER);
+    }
+
+    @Test
+    public void emptyQueueGivesNull() {
+        // then
+        assertThat(target.poll(), is(nullValue()));
+        assertThat(target.size(), is(0));
+    }
+
+    @Test
+    public void equalSessionsAreTakenInInsertionOrder() {
+        // given
+        target.add(mockSession1);
+        target.add(mockSession2);
+        target.add(mockSession3);
+
+        // then
+        assertThat(target.poll(), is(mockSession1));
+        assertThat(target.poll(), is(mockSession2));
+        assertThat(target.poll(), is(mockSession3));
+    }
+
+    @Test
+    public void sessionsWithCrashAreTakenFirst() {
+        // given
+        when(mockSession1.hasError()).thenReturn(true);
+        when(mockSession3.hasCrash()).thenReturn(true);
+        target.add(mockSession1);
+        target.add(mockSession2);
+        target.add(mockSession3);
+
+        // then
+        assertThat(target.poll(), is(mockSession3));
+        assertThat(target.poll(), is(mockSession1));
+        assertThat(target.poll(), is(mockSession2));
+    }
+
+    @Test
+    public void sessionsWithOldestDataAreTakenFirst() {
+        // given
+        when(mockSession1.getStartTime()).thenReturn(3000L);
+        when(mockSession2.getStartTime()).thenReturn(1000L);
+        when(mockSession3.getStartTime()).thenReturn(2000L);
+        target.add(mockSession1);
+        target.add(mockSession2);
+        target.add(mockSession3);
+
+        // then
+        assertThat(target.poll(), is(mockSession2));
+        assertThat(target.poll(), is(mockSession3));
+        assertThat(target.poll(), is(mockSession1));
+    }
+
+    @Test
+    public void orderIsPluggable() {
+        // given
+        target = new FinishedSessionQueue(new Comparator<SessionSendInfo>() {
+            @Override
+            public int compare(SessionSendInfo lhs, SessionSendInfo rhs) {
+                // largest first
+                return Long.valueOf(rhs.getDataSize()).compareTo(lhs.getDataSize());
+            }
+        });
+        when(mockSession1.getDataSize()).thenReturn(10L);
+        when(mockSession2.getDataSize()).thenReturn(30L);
+        when(mockSession3.getDataSize()).thenReturn(20L);
+        target.add(mockSession1);
+        target.add(mockSession2);
+        target.add(mockSession3);
+
+        // then
+        assertThat(target.poll(), is(mockSession2));
+        assertThat(target.poll(), is(mockSession3));
+        assertThat(target.poll(), is(mockSession1));
+    }
+
+    @Test
+    public void orderIsCapturedWhenSessionIsAdded() {
+        // given
+        when(mockSession1.getStartTime()).thenReturn(1000L);
+        when(mockSession2.getStartTime()).thenReturn(2000L);
+        target.add(mockSession1);
+        target.add(mockSession2);
+
+        // when
+        when(mockSession1.getStartTime()).thenReturn(3000L);
+
+        // then
+        assertThat(target.poll(), is(mockSession1));
+        assertThat(target.poll(), is(mockSession2));
+    }
+
+    @Test
+    public void clearGivesAllSessions() {
+        // given
+        target.add(mockSession1);
+        target.add(mockSession2);
+
+        // when
+        Iterable<SessionImpl> obtained = target.clear();
+
+        // then
+        assertThat(obtained, containsInAnyOrder(mockSession1, mockSession2));
+        assertThat(target.size(), is(0));
+    }
+}
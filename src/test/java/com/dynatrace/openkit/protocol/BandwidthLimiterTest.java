@@ -0,0 +1,127 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.providers.TimingProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BandwidthLimiterTest {
+
+    private static final long BYTES_PER_SECOND = 1000L;
+
+    private TimingProvider mockTimingProvider;
+    private BandwidthLimiter target;
+
+    @Before
+    public void setUp() {
+        mockTimingProvider = mock(TimingProvider.class);
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(0L);
+        target = new BandwidthLimiter(BYTES_PER_SECOND, mockTimingProvider);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void limitMustBeGreaterThanZero() {
+        new BandwidthLimiter(0, mockTimingProvider);
+    }
+
+    @Test
+    public void sendingIsAllowedInitially() {
+        // then
+        assertThat(target.getDelay(), is(0L));
+    }
+
+    @Test
+    public void sendingIsDelayedOnceBucketIsEmpty() {
+        // when
+        target.consume(1500);
+
+        // then
+        assertThat(target.getDelay(), is(501L));
+    }
+
+    @Test
+    public void bucketIsRefilledOverTime() {
+        // given
+        target.consume(1500);
+
+        // when
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(501L);
+
+        // then
+        assertThat(target.getDelay(), is(0L));
+    }
+
+    @Test
+    public void bucketIsNotRefilledBeyondOneSecond() {
+        // given
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(10000L);
+
+        // when
+        target.consume(1001);
+
+        // then
+        assertThat(target.getDelay(), is(2L));
+    }
+
+    @Test
+    public void throttledTimeIsRecorded() {
+        // given
+        target.consume(2000);
+        target.getDelay();
+
+        // when
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(600L);
+
+        // then
+        assertThat(target.getThrottledTime(), is(600L));
+
+        // and when
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(1100L);
+        target.getDelay();
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(5000L);
+
+        // then
+        assertThat(target.getThrottledTime(), is(1100L));
+    }
+
+    @Test
+    public void throughputIsMeasuredPerSecond() {
+        // given
+        target.consume(300);
+        target.consume(500);
+
+        // when
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(1000L);
+
+        // then
+        assertThat(target.getThroughput(), is(800L));
+        assertThat(target.getSentBytes(), is(800L));
+
+        // and when nothing is sent anymore
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(5000L);
+
+        // then
+        assertThat(target.getThroughput(), is(0L));
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class BeaconEventStoreTest {
+
+    private static final Integer BEACON_ID = 1;
+
+    private BeaconCacheImpl cache;
+    private BeaconEventStore eventStore;
+
+    @Before
+    public void setUp() {
+        cache = new BeaconCacheImpl();
+        eventStore = new BeaconEventStore(mock(Logger.class), cache);
+    }
+
+    @Test
+    public void actionIsSerializedInBeaconProtocolFormat() {
+        // given
+        int row = eventStore.addAction("my action", 42, 3, 1, 5, 100L, 8, 20L);
+
+        // when
+        String serialized = eventStore.serialize(row);
+
+        // then
+        assertThat(serialized, is(equalTo("et=1&na=my+action&it=42&ca=3&pa=1&s0=5&t0=100&s1=8&t1=20")));
+    }
+
+    @Test
+    public void eventWithoutNameIsSerializedWithoutNameKey() {
+        // given
+        int row = eventStore.addEvent(EventType.SESSION_END, null, 42, 0, 7, 1000L);
+
+        // when
+        String serialized = eventStore.serialize(row);
+
+        // then
+        assertThat(serialized, is(equalTo("et=19&it=42&pa=0&s0=7&t0=1000")));
+    }
+
+    @Test
+    public void doubleValueIsSerializedLikeJavaDoubles() {
+        // given
+        int row = eventStore.addDoubleValue("value", 42, 3, 5, 10L, 3.25);
+
+        // when
+        String serialized = eventStore.serialize(row);
+
+        // then
+        assertThat(serialized, is(equalTo("et=13&na=value&it=42&pa=3&s0=5&t0=10&vl=3.25")));
+    }
+
+    @Test
+    public void crashStringsAreUrlEncoded() {
+        // given
+        int row = eventStore.addCrash("crash", 42, 5, 10L, "some reason", "at a.b(C.java:1)");
+
+        // when
+        String serialized = eventStore.serialize(row);
+
+        // then
+        assertThat(serialized,
+            is(equalTo("et=50&na=crash&it=42&pa=0&s0=5&t0=10&rs=some+reason&st=at+a.b%28C.java%3A1%29")));
+    }
+
+    @Test
+    public void identicalConsecutiveCrashesAreCounted() {
+        // given
+        int row = eventStore.addCrash("crash", 42, 1, 10L, "reason", "stacktrace");
+
+        // when
+        int second = eventStore.addCrash("crash", 42, 2, 11L, "reason", "stacktrace");
+        int third = eventStore.addCrash("crash", 42, 3, 12L, "reason", "stacktrace");
+
+        // then
+        assertThat(second, is(BeaconEventStore.NO_ROW));
+        assertThat(third, is(BeaconEventStore.NO_ROW));
+        assertThat(eventStore.getNumberOfRows(), is(1));
+        assertThat(eventStore.serialize(row), endsWith("&rs=reason&st=stacktrace&cn=3"));
+    }
+
+    @Test
+    public void crashIsNotCountedAfterPreviousCrashWasSerialized() {
+        // given
+        int row = eventStore.addCrash("crash", 42, 1, 10L, "reason", "stacktrace");
+        eventStore.serialize(row);
+
+        // when
+        int second = eventStore.addCrash("crash", 42, 2, 11L, "reason", "stacktrace");
+
+        // then
+        assertThat(second, is(not(BeaconEventStore.NO_ROW)));
+        assertThat(eventStore.serialize(row), not(containsString("cn=")));
+        assertThat(eventStore.getNumberOfStacktraces(), is(1));
+    }
+
+    @Test
+    public void differentCrashesShareTheirStacktrace() {
+        // given
+        int first = eventStore.addCrash("crash", 42, 1, 10L, "first reason", "stacktrace");
+
+        // when
+        int second = eventStore.addCrash("crash", 42, 2, 11L, "second reason", "stacktrace");
+
+        // then
+        assertThat(second, is(not(first)));
+        assertThat(eventStore.getNumberOfStacktraces(), is(1));
+        assertThat(eventStore.getDataSizeInBytes(second) - eventStore.getDataSizeInBytes(first),
+            is(2L * ("second reason".length() - "first reason".length())));
+        assertThat(eventStore.getDataSizeInBytes(), is(eventStore.getDataSizeInBytes(first)
+            + eventStore.getDataSizeInBytes(second) + 2L * "stacktrace".length()));
+    }
+
+    @Test
+    public void stacktraceIsRemovedWithLastReferencingCrash() {
+        // given
+        int first = eventStore.addCrash("crash", 42, 1, 10L, "first reason", "stacktrace");
+        int second = eventStore.addCrash("crash", 42, 2, 11L, "second reason", "stacktrace");
+
+        // when
+        eventStore.release(first);
+        int numStacktracesAfterFirstRelease = eventStore.getNumberOfStacktraces();
+        eventStore.release(second);
+
+        // then
+        assertThat(numStacktracesAfterFirstRelease, is(1));
+        assertThat(eventStore.getNumberOfStacktraces(), is(0));
+    }
+
+    @Test
+    public void sharedStacktraceIsAccountedForAfterEvictionOfCrashWhichAddedIt() {
+        // given
+        int first = eventStore.addCrash("crash", 42, 1, 10L, "first reason", "stacktrace");
+        cache.addEventData(BEACON_ID, 10L, eventStore, first);
+        int second = eventStore.addCrash("crash", 42, 2, 11L, "second reason", "stacktrace");
+        cache.addEventData(BEACON_ID, 11L, eventStore, second);
+        long secondDataSize = eventStore.getDataSizeInBytes(second);
+
+        // when
+        int numEvicted = cache.evictRecordsByAge(BEACON_ID, 11L);
+
+        // then
+        assertThat(numEvicted, is(1));
+        assertThat(eventStore.getNumberOfStacktraces(), is(1));
+        assertThat(eventStore.getDataSizeInBytes(), is(secondDataSize + 2L * "stacktrace".length()));
+    }
+
+    @Test
+    public void sharedStacktraceSizeIsReportedToCacheUntilLastReferenceIsReleased() {
+        // given
+        int first = eventStore.addCrash("crash", 42, 1, 10L, "first reason", "stacktrace");
+        cache.addEventData(BEACON_ID, 10L, eventStore, first);
+        int second = eventStore.addCrash("crash", 42, 2, 11L, "second reason", "stacktrace");
+        cache.addEventData(BEACON_ID, 11L, eventStore, second);
+        long numBytesInCache = cache.getNumBytesInCache();
+
+        // when
+        cache.deleteCacheEntry(BEACON_ID);
+
+        // then
+        assertThat(numBytesInCache, is(eventStore.getDataSizeInBytes(first) + eventStore.getDataSizeInBytes(second)
+            + 2L * "stacktrace".length()));
+        assertThat(cache.getNumBytesInCache(), is(0L));
+    }
+
+    @Test
+    public void crashIsNotCountedOnReleasedRow() {
+        // given
+        int row = eventStore.addCrash("crash", 42, 1, 10L, "reason", "stacktrace");
+        eventStore.release(row);
+
+        // when
+        int second = eventStore.addCrash("crash", 42, 2, 11L, "reason", "stacktrace");
+
+        // then
+        assertThat(second, is(not(BeaconEventStore.NO_ROW)));
+        assertThat(eventStore.serialize(second), not(containsString("cn=")));
+    }
+
+    @Test
+    public void webRequestOmitsUnsetOptionalValues() {
+        // given
+        int row = eventStore.addWebRequest("http://host/", 42, 3, 5, 10L, 6, 4L, -1, 17, -1);
+
+        // when
+        String serialized = eventStore.serialize(row);
+
+        // then
+        assertThat(serialized, is(equalTo("et=30&na=http%3A%2F%2Fhost%2F&it=42&pa=3&s0=5&t0=10&s1=6&t1=4&br=17")));
+    }
+
+    @Test
+    public void releasedRowsAreReused() {
+        // given
+        int first = eventStore.addEvent(EventType.NAMED_EVENT, "first", 42, 3, 1, 10L);
+        int second = eventStore.addEvent(EventType.NAMED_EVENT, "second", 42, 3, 2, 11L);
+
+        // when
+        eventStore.release(first);
+        int third = eventStore.addEvent(EventType.NAMED_EVENT, "third", 42, 3, 3, 12L);
+
+        // then
+        assertThat(third, is(first));
+        assertThat(eventStore.getNumberOfRows(), is(2));
+        assertThat(eventStore.serialize(second), containsString("na=second"));
+        assertThat(eventStore.serialize(third), containsString("na=third"));
+    }
+
+    @Test
+    public void storeGrowsBeyondInitialCapacity() {
+        // when
+        for (int i = 0; i < 100; i++) {
+            eventStore.addIntValue("value", 42, 3, i, i, i);
+        }
+
+        // then
+        assertThat(eventStore.getNumberOfRows(), is(100));
+        assertThat(eventStore.serialize(99), endsWith("&vl=99"));
+    }
+
+    @Test
+    public void dataSizeIncludesStrings() {
+        // given
+        int withoutStrings = eventStore.addEvent(EventType.SESSION_END, null, 42, 0, 1, 10L);
+        int withStrings = eventStore.addError("error", 42, 3, 2, 11L, 500, "reason");
+
+        // then
+        assertThat(eventStore.getDataSizeInBytes(withStrings) - eventStore.getDataSizeInBytes(withoutStrings),
+            is(2L * ("error".length() + "reason".length())));
+    }
+
+    @Test
+    public void rowsEvictedFromCacheAreReleasedWithoutBeingSerialized() {
+        // given
+        for (int i = 0; i < 10; i++) {
+            int row = eventStore.addEvent(EventType.NAMED_EVENT, "event", 42, 3, i, i);
+            cache.addEventData(BEACON_ID, i, eventStore, row);
+        }
+
+        // when
+        int numEvicted = cache.evictRecordsByAge(BEACON_ID, 5L);
+
+        // then
+        assertThat(numEvicted, is(5));
+        assertThat(eventStore.getNumberOfRows(), is(5));
+    }
+
+    @Test
+    public void rowsAreReleasedAfterSending() {
+        // given
+        int row = eventStore.addEvent(EventType.NAMED_EVENT, "event", 42, 3, 1, 10L);
+        cache.addEventData(BEACON_ID, 10L, eventStore, row);
+
+        // when
+        String chunk = cache.getNextBeaconChunk(BEACON_ID, "prefix", 1024, '&');
+        cache.removeChunkedData(BEACON_ID);
+
+        // then
+        assertThat(chunk, is(equalTo("prefix&et=10&na=event&it=42&pa=3&s0=1&t0=10")));
+        assertThat(eventStore.getNumberOfRows(), is(0));
+    }
+
+    @Test
+    public void rowsAreReleasedWhenCacheEntryIsDeleted() {
+        // given
+        int row = eventStore.addAction("action", 42, 3, 0, 1, 10L, 2, 5L);
+        cache.addActionData(BEACON_ID, 10L, eventStore, row);
+
+        // when
+        cache.deleteCacheEntry(BEACON_ID);
+
+        // then
+        assertThat(eventStore.getNumberOfRows(), is(0));
+        assertThat(cache.getNumBytesInCache(), is(0L));
+    }
+}
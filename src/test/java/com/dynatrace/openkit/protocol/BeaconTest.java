@@ -19,6 +19,7 @@ package com.dynatrace.openkit.protocol;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.*;
 import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
 import com.dynatrace.openkit.providers.ConnectorProvider;
@@ -28,6 +29,12 @@ import com.dynatrace.openkit.providers.ThreadIDProvider;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
@@ -60,6 +67,7 @@ public class BeaconTest {
         when(configuration.isCaptureErrors()).thenReturn(true);
         when(configuration.isCaptureCrashes()).thenReturn(true);
         when(configuration.getMaxBeaconSize()).thenReturn(30 * 1024); // 30kB
+        when(configuration.getMaxStacktraceLength()).thenReturn(Configuration.DEFAULT_MAX_STACKTRACE_LENGTH);
 
         HTTPClientConfiguration mockHTTPClientConfiguration = mock(HTTPClientConfiguration.class);
         when(mockHTTPClientConfiguration.getServerID()).thenReturn(SERVER_ID);
@@ -357,6 +365,39 @@ public class BeaconTest {
                 + "&pa=0&s0=1&t0=0&rs=" + reason + "&st=" + stacktrace })));
     }
 
+    @Test
+    public void reportCrashTruncatesStacktraceAfterLastCompleteLine() {
+        // given
+        when(configuration.getMaxStacktraceLength()).thenReturn(10);
+        final Beacon beacon = new Beacon(logger, new BeaconCacheImpl(), configuration, "127.0.0.1", threadIDProvider,
+                new NullTimeProvider(), mock(ConnectorProvider.class));
+
+        // when
+        beacon.reportCrash("errorName", null, "line1\nline2\nline3");
+        String[] events = beacon.getEvents();
+
+        // then
+        assertThat(events, is(equalTo(new String[] { "et=50&na=errorName&it=" + THREAD_ID
+                + "&pa=0&s0=1&t0=0&st=line1" })));
+    }
+
+    @Test
+    public void identicalCrashesAreCountedInsteadOfCopied() {
+        // given
+        final Beacon beacon = new Beacon(logger, new BeaconCacheImpl(), configuration, "127.0.0.1", threadIDProvider,
+                new NullTimeProvider(), mock(ConnectorProvider.class));
+
+        // when
+        for (int i = 0; i < 3; i++) {
+            beacon.reportCrash("errorName", "reason", "stacktrace");
+        }
+        String[] events = beacon.getEvents();
+
+        // then
+        assertThat(events, is(equalTo(new String[] { "et=50&na=errorName&it=" + THREAD_ID
+                + "&pa=0&s0=1&t0=0&rs=reason&st=stacktrace&cn=3" })));
+    }
+
     @Test
     public void reportCrashWithDetailsNull() {
         // given
@@ -620,7 +661,7 @@ public class BeaconTest {
         ConnectorProvider connectorProvider = mock(ConnectorProvider.class);
 		HTTPConnector httpClient = mock(HTTPConnector.class);
 		int responseCode = 200;
-		when(httpClient.sendBeaconRequest(any(String.class), any(byte[].class)))
+		when(httpClient.sendBeaconRequest(any(String.class), any(HTTPConnector.BodyWriter.class)))
                 .thenReturn(new StatusResponse("", responseCode));
 		when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
 		Beacon beacon = new Beacon(logger, new BeaconCacheImpl(), configuration, ipAddr, threadIDProvider,
@@ -633,7 +674,38 @@ public class BeaconTest {
         // then
         assertThat(response, notNullValue());
         assertThat(response.getResponseCode(), is(responseCode));
-        verify(httpClient, times(1)).sendBeaconRequest(eq(ipAddr), any(byte[].class));
+        verify(httpClient, times(1)).sendBeaconRequest(eq(ipAddr), any(HTTPConnector.BodyWriter.class));
+    }
+
+    @Test
+    public void chunkSentAgainHasTheSameDocumentKeyAlthoughItsTransmissionTimeDiffers() throws IOException {
+        // given
+        ConnectorProvider connectorProvider = mock(ConnectorProvider.class);
+        HTTPConnector httpClient = mock(HTTPConnector.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(HTTPConnector.BodyWriter.class)))
+            .thenReturn(null)
+            .thenReturn(new StatusResponse("", 200));
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+        AdvancingTimeProvider timingProvider = new AdvancingTimeProvider();
+        timingProvider.initialize(0, false);
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(), configuration, "127.0.0.1", threadIDProvider,
+            timingProvider, connectorProvider);
+        beacon.reportCrash("errorName", "errorReason", "errorStackTrace");
+
+        // when (the first request fails, and the chunk is serialized once more for the retry)
+        StatusResponse failed = beacon.send();
+        StatusResponse retried = beacon.send();
+
+        // then
+        assertThat(failed, nullValue());
+        assertThat(retried, notNullValue());
+        ArgumentCaptor<HTTPConnector.BodyWriter> bodyCaptor = ArgumentCaptor.forClass(HTTPConnector.BodyWriter.class);
+        verify(httpClient, times(2)).sendBeaconRequest(any(String.class), bodyCaptor.capture());
+        HTTPConnector.BodyWriter failedBody = bodyCaptor.getAllValues().get(0);
+        HTTPConnector.BodyWriter retriedBody = bodyCaptor.getAllValues().get(1);
+        assertThat(getRequestBodies(httpClient).get(0), is(not(equalTo(getRequestBodies(httpClient).get(1)))));
+        assertThat(failedBody.getDocumentKey(), is(notNullValue()));
+        assertThat(retriedBody.getDocumentKey(), is(equalTo(failedBody.getDocumentKey())));
     }
 
     @Test
@@ -643,7 +715,7 @@ public class BeaconTest {
         ConnectorProvider connectorProvider = mock(ConnectorProvider.class);
 		HTTPConnector httpClient = mock(HTTPConnector.class);
 		int responseCode = 418;
-		when(httpClient.sendBeaconRequest(any(String.class), any(byte[].class)))
+		when(httpClient.sendBeaconRequest(any(String.class), any(HTTPConnector.BodyWriter.class)))
                 .thenReturn(new StatusResponse("", responseCode));
 		when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
 		Beacon beacon = new Beacon(logger, new BeaconCacheImpl(), configuration, ipAddr, threadIDProvider,
@@ -656,7 +728,137 @@ public class BeaconTest {
         // then
         assertThat(response, notNullValue());
         assertThat(response.getResponseCode(), is(responseCode));
-        verify(httpClient, times(1)).sendBeaconRequest(eq(ipAddr), any(byte[].class));
+        verify(httpClient, times(1)).sendBeaconRequest(eq(ipAddr), any(HTTPConnector.BodyWriter.class));
+    }
+
+    @Test
+    public void sendSendsAllChunksOnce() throws IOException {
+        // given
+        when(configuration.getMaxBeaconSize()).thenReturn(2 * 1024);
+        ConnectorProvider connectorProvider = mock(ConnectorProvider.class);
+        HTTPConnector httpClient = mock(HTTPConnector.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(HTTPConnector.BodyWriter.class)))
+            .thenReturn(new StatusResponse("", 200));
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(), configuration, "127.0.0.1", threadIDProvider,
+            new NullTimeProvider(), connectorProvider);
+        reportLargeCrashes(beacon, 20);
+
+        // when
+        StatusResponse response = beacon.send();
+
+        // then
+        assertThat(response, notNullValue());
+        List<String> requestBodies = getRequestBodies(httpClient);
+        assertThat(requestBodies.size(), is(greaterThan(1)));
+        for (int i = 0; i < 20; i++) {
+            assertThat(countOccurrences(requestBodies, "crash" + i + "x"), is(1));
+        }
+        assertThat(beacon.isEmpty(), is(true));
+    }
+
+    @Test
+    public void sendRetriesChunksWhichWereNotSent() throws IOException {
+        // given
+        when(configuration.getMaxBeaconSize()).thenReturn(2 * 1024);
+        ConnectorProvider connectorProvider = mock(ConnectorProvider.class);
+        HTTPConnector httpClient = mock(HTTPConnector.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(HTTPConnector.BodyWriter.class)))
+            .thenReturn(new StatusResponse("", 200))
+            .thenReturn(null)
+            .thenReturn(new StatusResponse("", 200));
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(), configuration, "127.0.0.1", threadIDProvider,
+            new NullTimeProvider(), connectorProvider);
+        reportLargeCrashes(beacon, 20);
+
+        // when the second request fails
+        StatusResponse response = beacon.send();
+
+        // then
+        assertThat(response, nullValue());
+        assertThat(beacon.isEmpty(), is(false));
+
+        // and when sending again
+        response = beacon.send();
+
+        // then all data is sent once, apart from the failed request
+        assertThat(response, notNullValue());
+        List<String> requestBodies = getRequestBodies(httpClient);
+        requestBodies.remove(1);
+        for (int i = 0; i < 20; i++) {
+            assertThat(countOccurrences(requestBodies, "crash" + i + "x"), is(1));
+        }
+        assertThat(beacon.isEmpty(), is(true));
+    }
+
+    @Test
+    public void sendUploadsAllChunksOnceInParallel() throws IOException {
+        // given
+        when(configuration.getMaxBeaconSize()).thenReturn(2 * 1024);
+        when(configuration.getBeaconSendingConfiguration()).thenReturn(createParallelChunkUploadConfiguration(4));
+        ConnectorProvider connectorProvider = mock(ConnectorProvider.class);
+        HTTPConnector httpClient = mock(HTTPConnector.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(HTTPConnector.BodyWriter.class)))
+            .thenReturn(new StatusResponse("", 200));
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(), configuration, "127.0.0.1", threadIDProvider,
+            new NullTimeProvider(), connectorProvider);
+        reportLargeCrashes(beacon, 20);
+
+        // when
+        StatusResponse response = beacon.send();
+
+        // then
+        assertThat(response, notNullValue());
+        List<String> requestBodies = getRequestBodies(httpClient);
+        assertThat(requestBodies.size(), is(greaterThan(4)));
+        for (int i = 0; i < 20; i++) {
+            assertThat(countOccurrences(requestBodies, "crash" + i + "x"), is(1));
+        }
+        assertThat(beacon.isEmpty(), is(true));
+    }
+
+    @Test
+    public void sendInParallelRetriesOnlyChunksWhichWereNotSent() throws IOException {
+        // given
+        when(configuration.getMaxBeaconSize()).thenReturn(2 * 1024);
+        when(configuration.getBeaconSendingConfiguration()).thenReturn(createParallelChunkUploadConfiguration(4));
+        ConnectorProvider connectorProvider = mock(ConnectorProvider.class);
+        HTTPConnector httpClient = mock(HTTPConnector.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(HTTPConnector.BodyWriter.class)))
+            .thenReturn(new StatusResponse("", 200))
+            .thenReturn(null)
+            .thenReturn(new StatusResponse("", 200));
+        when(connectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(), configuration, "127.0.0.1", threadIDProvider,
+            new NullTimeProvider(), connectorProvider);
+        reportLargeCrashes(beacon, 20);
+
+        // when one of the parallel requests fails
+        StatusResponse response = beacon.send();
+
+        // then
+        assertThat(response, nullValue());
+        assertThat(beacon.isEmpty(), is(false));
+
+        // and when sending again
+        response = beacon.send();
+
+        // then all data is sent once, apart from the failed request - which one failed depends on thread timing
+        assertThat(response, notNullValue());
+        List<String> requestBodies = getRequestBodies(httpClient);
+        boolean allDataSentOnce = false;
+        for (int failedRequest = 0; failedRequest < requestBodies.size() && !allDataSentOnce; failedRequest++) {
+            List<String> sentRequestBodies = new ArrayList<String>(requestBodies);
+            sentRequestBodies.remove(failedRequest);
+            allDataSentOnce = true;
+            for (int i = 0; i < 20; i++) {
+                allDataSentOnce &= countOccurrences(sentRequestBodies, "crash" + i + "x") == 1;
+            }
+        }
+        assertThat(allDataSentOnce, is(true));
+        assertThat(beacon.isEmpty(), is(true));
     }
 
     @Test
@@ -687,6 +889,50 @@ public class BeaconTest {
         assertThat(beacon.isEmpty(), is(true));
     }
 
+    private static void reportLargeCrashes(Beacon beacon, int numberOfCrashes) {
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            padding.append('x');
+        }
+        for (int i = 0; i < numberOfCrashes; i++) {
+            beacon.reportCrash("crash" + i + padding, "reason", "stacktrace");
+        }
+    }
+
+    private static BeaconSendingConfiguration createParallelChunkUploadConfiguration(int maxParallelChunkUploads) {
+        return new BeaconSendingConfiguration(BeaconSendingConfiguration.DEFAULT_NUMBER_OF_SEND_WORKERS,
+            BeaconSendingConfiguration.DEFAULT_OPEN_SESSION_SEND_THRESHOLD_IN_BYTES,
+            BeaconSendingConfiguration.DEFAULT_MAX_BEACON_BANDWIDTH_IN_BYTES_PER_SECOND,
+            BeaconSendingConfiguration.DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLISECONDS, null,
+            BeaconSendingConfiguration.DEFAULT_SESSION_SEND_ORDER, BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_BYTES,
+            BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_TIME_IN_MILLISECONDS, maxParallelChunkUploads);
+    }
+
+    private static List<String> getRequestBodies(HTTPConnector httpClient) throws IOException {
+        ArgumentCaptor<HTTPConnector.BodyWriter> bodyCaptor = ArgumentCaptor.forClass(HTTPConnector.BodyWriter.class);
+        verify(httpClient, atLeastOnce()).sendBeaconRequest(any(String.class), bodyCaptor.capture());
+
+        List<String> requestBodies = new ArrayList<String>();
+        for (HTTPConnector.BodyWriter body : bodyCaptor.getAllValues()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            body.writeTo(outputStream);
+            requestBodies.add(outputStream.toString(Beacon.CHARSET));
+        }
+        return requestBodies;
+    }
+
+    private static int countOccurrences(List<String> requestBodies, String data) {
+        int count = 0;
+        for (String body : requestBodies) {
+            int index = body.indexOf(data);
+            while (index >= 0) {
+                count++;
+                index = body.indexOf(data, index + 1);
+            }
+        }
+        return count;
+    }
+
     private class NullTimeProvider extends DefaultTimingProvider {
 
         @Override
@@ -694,4 +940,16 @@ public class BeaconTest {
             return 0;
         }
     }
+
+    // every timestamp is a second later than the previous one
+    private class AdvancingTimeProvider extends DefaultTimingProvider {
+
+        private long timestamp = 0;
+
+        @Override
+        public long provideTimestampInMilliseconds() {
+            timestamp += 1000;
+            return timestamp;
+        }
+    }
 }
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.protocol.dto.Action;
+import com.dynatrace.openkit.protocol.dto.Payload;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class BinarySerializerTest {
+
+    private static final long SESSION_START = 1500000000000L;
+
+    @Test
+    public void decodedPayloadEqualsSerializedPayload() throws IOException {
+        // given
+        Payload payload = createPayload(20);
+        payload.getActions().get(3).setName(null);
+
+        // when
+        Payload decoded = new BinaryPayloadDecoder().decode(new BinarySerializer().serialize(payload));
+
+        // then
+        assertThat(decoded.getSession().getId(), is(payload.getSession().getId()));
+        assertThat(decoded.getSession().getStartTime(), is(SESSION_START));
+        assertThat(decoded.getDevice().getVisitorId(), is("visitor"));
+        assertThat(decoded.getDevice().getClientIPAddress(), is("127.0.0.1"));
+        assertThat(decoded.getActions().size(), is(20));
+        for (int i = 0; i < 20; i++) {
+            assertActionEquals(decoded.getActions().get(i), payload.getActions().get(i));
+        }
+    }
+
+    @Test
+    public void actionTimingsAreWrittenAsRelativeStartTimeAndDuration() throws IOException {
+        // given
+        Payload payload = new Payload("127.0.0.1", 42, SESSION_START, "visitor");
+        Action action = new Action();
+        action.setEventType(EventType.ACTION);
+        action.setStartTime(1234);
+        action.setEndTime(56);
+        payload.addAction(action);
+
+        // when
+        byte[] document = new BinarySerializer().serialize(payload);
+        Action decoded = new BinaryPayloadDecoder().decode(document).getActions().get(0);
+
+        // then
+        assertThat(decoded.getStartTime(), is(1234L));
+        assertThat(decoded.getEndTime(), is(56L));
+        // timings are the last values of an action, written unchanged
+        ByteArrayOutputStream expectedEnd = new ByteArrayOutputStream();
+        BinaryProtocol.writeSignedVarLong(expectedEnd, 1234);
+        BinaryProtocol.writeSignedVarLong(expectedEnd, 56);
+        expectedEnd.write(BinaryProtocol.END_OF_ACTIONS);
+        byte[] documentEnd = Arrays.copyOfRange(document, document.length - expectedEnd.size(), document.length);
+        assertThat(documentEnd, is(equalTo(expectedEnd.toByteArray())));
+    }
+
+    @Test
+    public void repeatedNamesAreOnlyWrittenOnce() {
+        // given
+        Payload onceNamed = createPayload(1);
+        Payload repeatedlyNamed = createPayload(2);
+        repeatedlyNamed.getActions().get(1).setName(repeatedlyNamed.getActions().get(0).getName());
+        BinarySerializer target = new BinarySerializer();
+
+        // when
+        int oneActionSize = target.serialize(onceNamed).length;
+        int twoActionsSize = target.serialize(repeatedlyNamed).length;
+
+        // then
+        int nameLength = onceNamed.getActions().get(0).getName().length();
+        assertThat(twoActionsSize - oneActionSize, is(lessThan(nameLength)));
+    }
+
+    @Test
+    public void documentIsSmallerThanMobileProtocolDocument() {
+        // given
+        Payload payload = createPayload(100);
+
+        // when
+        int binarySize = new BinarySerializer().serialize(payload).length;
+        int textSize = new MobileProtocolV3Serializer().serialize(payload).length;
+
+        // then
+        assertThat(binarySize, is(lessThan(textSize / 2)));
+    }
+
+    @Test
+    public void splitDocumentsAreSelfContained() throws IOException {
+        // given
+        Payload payload = createPayload(100);
+        BinarySerializer target = new BinarySerializer();
+        BinaryPayloadDecoder decoder = new BinaryPayloadDecoder();
+        int maxSize = 256;
+
+        // when
+        int offset = 0;
+        int numDecodedActions = 0;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (offset < payload.getActions().size()) {
+            out.reset();
+            int next = target.serialize(payload, offset, maxSize, out);
+
+            // then
+            assertThat(out.size(), is(lessThanOrEqualTo(maxSize)));
+            Payload decoded = decoder.decode(out.toByteArray());
+            assertThat(decoded.getActions().size(), is(next - offset));
+            for (Action action : decoded.getActions()) {
+                assertActionEquals(action, payload.getActions().get(numDecodedActions));
+                numDecodedActions++;
+            }
+            offset = next;
+        }
+        assertThat(numDecodedActions, is(100));
+    }
+
+    @Test(expected = IOException.class)
+    public void decodingTruncatedDocumentThrows() throws IOException {
+        // given
+        byte[] document = new BinarySerializer().serialize(createPayload(2));
+        byte[] truncated = new byte[document.length / 2];
+        System.arraycopy(document, 0, truncated, 0, truncated.length);
+
+        // when
+        new BinaryPayloadDecoder().decode(truncated);
+    }
+
+    private static void assertActionEquals(Action actual, Action expected) {
+        assertThat(actual.getEventType(), is(expected.getEventType()));
+        assertThat(actual.getName(), is(expected.getName()));
+        assertThat(actual.getThreadId(), is(expected.getThreadId()));
+        assertThat(actual.getActionId(), is(expected.getActionId()));
+        assertThat(actual.getParentActionId(), is(expected.getParentActionId()));
+        assertThat(actual.getStartSequenceNumber(), is(expected.getStartSequenceNumber()));
+        assertThat(actual.getEndSequenceNumber(), is(expected.getEndSequenceNumber()));
+        assertThat(actual.getStartTime(), is(expected.getStartTime()));
+        assertThat(actual.getEndTime(), is(expected.getEndTime()));
+    }
+
+    private static Payload createPayload(int numActions) {
+        Payload payload = new Payload("127.0.0.1", 42, SESSION_START, "visitor");
+        for (int i = 0; i < numActions; i++) {
+            Action action = new Action();
+            action.setEventType(i % 2 == 0 ? EventType.ACTION : EventType.NAMED_EVENT);
+            action.setName("action name " + (i % 5));
+            action.setThreadId(7);
+            action.setActionId(i + 1);
+            action.setParentActionId(i / 2);
+            action.setStartSequenceNumber(2 * i + 1);
+            // like PayloadGenerator: start time relative to the session start, duration as end time
+            action.setStartTime(10 * i);
+            action.setEndSequenceNumber(2 * i + 2);
+            action.setEndTime(3);
+            payload.addAction(action);
+        }
+        return payload;
+    }
+}
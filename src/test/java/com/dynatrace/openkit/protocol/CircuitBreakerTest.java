@@ -0,0 +1,132 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.providers.TimingProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CircuitBreakerTest {
+
+    private static final long INITIAL_OPEN_TIME = 1000L;
+    private static final long MAX_OPEN_TIME = 4000L;
+
+    private TimingProvider mockTimingProvider;
+    private CircuitBreaker target;
+
+    @Before
+    public void setUp() {
+        mockTimingProvider = mock(TimingProvider.class);
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(0L);
+        target = new CircuitBreaker(2, INITIAL_OPEN_TIME, MAX_OPEN_TIME, mockTimingProvider);
+    }
+
+    @Test
+    public void circuitOpensAfterConsecutiveFailures() {
+        // when
+        target.recordFailure();
+
+        // then
+        assertThat(target.isOpen(), is(false));
+        assertThat(target.tryAcquire(), is(true));
+
+        // and when
+        target.recordFailure();
+
+        // then
+        assertThat(target.isOpen(), is(true));
+        assertThat(target.tryAcquire(), is(false));
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        // when
+        target.recordFailure();
+        target.recordSuccess();
+        target.recordFailure();
+
+        // then
+        assertThat(target.isOpen(), is(false));
+    }
+
+    @Test
+    public void onlyOneProbeIsAllowedAfterOpenTime() {
+        // given
+        target.recordFailure();
+        target.recordFailure();
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(INITIAL_OPEN_TIME);
+
+        // when
+        boolean isProbeAllowed = target.tryAcquire();
+
+        // then
+        assertThat(isProbeAllowed, is(true));
+        assertThat(target.tryAcquire(), is(false));
+        assertThat(target.isOpen(), is(true));
+
+        // and when the probe succeeds
+        target.recordSuccess();
+
+        // then
+        assertThat(target.isOpen(), is(false));
+        assertThat(target.tryAcquire(), is(true));
+    }
+
+    @Test
+    public void failedProbeReopensCircuitForLongerTime() {
+        // given
+        target.recordFailure();
+        target.recordFailure();
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(INITIAL_OPEN_TIME);
+        target.tryAcquire();
+
+        // when
+        target.recordFailure();
+
+        // then the circuit is open for at least half of the doubled open time
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(2 * INITIAL_OPEN_TIME - 1);
+        assertThat(target.isOpen(), is(true));
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(3 * INITIAL_OPEN_TIME);
+        assertThat(target.isOpen(), is(false));
+    }
+
+    @Test
+    public void openTimeIsLimited() {
+        // given
+        long now = 0;
+        target.recordFailure();
+        for (int i = 0; i < 10; i++) {
+            target.recordFailure();
+            now += MAX_OPEN_TIME;
+            when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(now);
+            target.tryAcquire();
+        }
+
+        // when
+        target.recordFailure();
+
+        // then
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(now + MAX_OPEN_TIME);
+        assertThat(target.isOpen(), is(false));
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.providers.TimingProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EndpointSelectorTest {
+
+    private TimingProvider mockTimingProvider;
+    private EndpointSelector.Endpoint first;
+    private EndpointSelector.Endpoint second;
+    private EndpointSelector target;
+
+    @Before
+    public void setUp() {
+        mockTimingProvider = mock(TimingProvider.class);
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(0L);
+
+        first = createEndpoint("first");
+        second = createEndpoint("second");
+        target = new EndpointSelector(Arrays.asList(first, second));
+    }
+
+    @Test
+    public void endpointsNotUsedYetAreTriedFirstInConfiguredOrder() {
+        // when
+        target.recordRequest(first, 10, true);
+
+        // then
+        assertThat(target.getEndpointsInOrder(), contains(second, first));
+    }
+
+    @Test
+    public void endpointWithLowerLatencyComesFirst() {
+        // given
+        target.recordRequest(first, 100, true);
+        target.recordRequest(second, 20, true);
+
+        // when, then
+        assertThat(target.getEndpointsInOrder(), contains(second, first));
+
+        // and when the second endpoint gets slow
+        for (int i = 0; i < 10; i++) {
+            target.recordRequest(second, 500, true);
+        }
+
+        // then
+        assertThat(target.getEndpointsInOrder(), contains(first, second));
+    }
+
+    @Test
+    public void errorsIncreaseTheExpectedTimeOfAnEndpoint() {
+        // given
+        target.recordRequest(first, 20, true);
+        target.recordRequest(second, 40, true);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            target.recordRequest(first, 5000, false);
+        }
+
+        // then
+        assertThat(target.getEndpointsInOrder(), contains(second, first));
+    }
+
+    @Test
+    public void endpointWhichOnlyFailedComesAfterWorkingEndpoint() {
+        // when
+        target.recordRequest(first, 1, false);
+        target.recordRequest(second, 100, true);
+
+        // then
+        assertThat(target.getEndpointsInOrder(), contains(second, first));
+    }
+
+    @Test
+    public void endpointWithOpenCircuitComesLast() {
+        // given
+        target.recordRequest(first, 10, true);
+        target.recordRequest(second, 100, true);
+
+        // when
+        first.getCircuitBreaker().recordFailure();
+
+        // then
+        assertThat(target.getEndpointsInOrder(), contains(second, first));
+    }
+
+    @Test
+    public void circuitIsOnlyOpenIfOpenForAllEndpoints() {
+        // when
+        first.getCircuitBreaker().recordFailure();
+
+        // then
+        assertThat(target.isCircuitOpen(), is(false));
+
+        // and when
+        second.getCircuitBreaker().recordFailure();
+
+        // then
+        assertThat(target.isCircuitOpen(), is(true));
+    }
+
+    @Test
+    public void getEndpointFindsEndpointOfRequestURL() {
+        // when, then
+        assertThat(target.getEndpoint("second?type=m"), is(sameInstance(second)));
+        assertThat(target.getEndpoint("second?type=mts"), is(sameInstance(second)));
+        assertThat(target.getEndpoint("unknown"), is(sameInstance(first)));
+        assertThat(target.getEndpoint(null), is(sameInstance(first)));
+    }
+
+    private EndpointSelector.Endpoint createEndpoint(String baseURL) {
+        // the circuit opens after the first failure
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 1000L, 1000L, mockTimingProvider);
+        return new EndpointSelector.Endpoint(baseURL + "?type=m", baseURL + "?type=mts", circuitBreaker);
+    }
+}
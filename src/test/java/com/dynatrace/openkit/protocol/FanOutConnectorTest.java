@@ -0,0 +1,190 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class FanOutConnectorTest {
+
+    private Logger logger;
+    private Connector first;
+    private Connector second;
+    private Connector optional;
+    private FanOutConnector target;
+
+    @Before
+    public void setUp() {
+        logger = mock(Logger.class);
+        first = mock(Connector.class);
+        second = mock(Connector.class);
+        optional = mock(Connector.class);
+        target = new FanOutConnector(logger, new HTTPClientConfiguration("http://localhost", 1, "appID", null),
+            new MobileProtocolV3Serializer(), Arrays.asList(
+                new FanOutConnector.Sink(first, true),
+                new FanOutConnector.Sink(second, true),
+                new FanOutConnector.Sink(optional, false)));
+    }
+
+    @Test
+    public void beaconIsWrittenOnceAndSentToAllSinks() throws IOException {
+        // given
+        StatusResponse firstResponse = new StatusResponse("type=m&si=1", 200);
+        when(first.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(firstResponse);
+        when(second.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(new StatusResponse("type=m&si=2", 200));
+        when(optional.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(new StatusResponse("type=m&si=3", 200));
+        HTTPConnector.BodyWriter body = mock(HTTPConnector.BodyWriter.class);
+
+        // when
+        StatusResponse response = target.sendBeaconRequest("1.2.3.4", body);
+
+        // then
+        assertThat(response, is(sameInstance(firstResponse)));
+        verify(body, times(1)).writeTo(any(OutputStream.class));
+        verify(first, times(1)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+        verify(second, times(1)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+        verify(optional, times(1)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+    }
+
+    @Test
+    public void beaconIsOnlyAcknowledgedOnceAllRequiredSinksReceivedIt() {
+        // given
+        StatusResponse firstResponse = new StatusResponse("type=m&si=1", 200);
+        when(first.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(firstResponse);
+        when(second.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt()))
+            .thenReturn(null)
+            .thenReturn(new StatusResponse("type=m&si=2", 200));
+        when(optional.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(new StatusResponse("type=m&si=3", 200));
+
+        // when
+        StatusResponse failed = target.sendBeaconRequest("1.2.3.4", "et=1&na=action".getBytes());
+        StatusResponse retried = target.sendBeaconRequest("1.2.3.4", "et=1&na=action".getBytes());
+
+        // then the retry is only sent to the sink which did not receive the beacon
+        assertThat(failed, is(nullValue()));
+        assertThat(retried, is(sameInstance(firstResponse)));
+        verify(first, times(1)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+        verify(second, times(2)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+        verify(optional, times(1)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+    }
+
+    @Test
+    public void reserializedBeaconIsRecognizedByItsDocumentKey() throws IOException {
+        // given
+        StatusResponse firstResponse = new StatusResponse("type=m&si=1", 200);
+        when(first.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(firstResponse);
+        when(second.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt()))
+            .thenReturn(null)
+            .thenReturn(new StatusResponse("type=m&si=2", 200));
+        when(optional.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(new StatusResponse("type=m&si=3", 200));
+
+        // when the retry is serialized anew, with another transmission time, but the same data
+        StatusResponse failed = target.sendBeaconRequest("1.2.3.4", createBody("tx=1000&et=1&na=action", "1:abc"));
+        StatusResponse retried = target.sendBeaconRequest("1.2.3.4", createBody("tx=2000&et=1&na=action", "1:abc"));
+
+        // then the retry is only sent to the sink which did not receive the beacon
+        assertThat(failed, is(nullValue()));
+        assertThat(retried, is(sameInstance(firstResponse)));
+        verify(first, times(1)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+        verify(second, times(2)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+        verify(optional, times(1)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+    }
+
+    @Test
+    public void beaconsWithDifferentDocumentKeysAreSentToAllSinks() throws IOException {
+        // given
+        when(first.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(new StatusResponse("type=m&si=1", 200));
+        when(second.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(null);
+
+        // when the same bytes are sent for different documents
+        target.sendBeaconRequest("1.2.3.4", createBody("et=1&na=action", "1:abc"));
+        target.sendBeaconRequest("1.2.3.4", createBody("et=1&na=action", "2:abc"));
+
+        // then the second one is not mistaken for a retry of the first one
+        verify(first, times(2)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+        verify(second, times(2)).sendSealedBeaconRequest(any(SealedBeacon.class), eq(0));
+    }
+
+    @Test
+    public void optionalSinkDoesNotHoldBackBeacon() {
+        // given
+        StatusResponse firstResponse = new StatusResponse("type=m&si=1", 200);
+        when(first.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(firstResponse);
+        when(second.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(new StatusResponse("type=m&si=2", 200));
+        when(optional.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt())).thenReturn(null);
+
+        // when
+        StatusResponse response = target.sendBeaconRequest("1.2.3.4", "et=1&na=action".getBytes());
+
+        // then
+        assertThat(response, is(sameInstance(firstResponse)));
+    }
+
+    @Test
+    public void statusAndTimeSyncRequestsAreOnlySentToFirstSink() {
+        // when
+        target.sendStatusRequest();
+        target.sendTimeSyncRequest();
+
+        // then
+        verify(first, times(1)).sendStatusRequest();
+        verify(first, times(1)).sendTimeSyncRequest();
+        verifyZeroInteractions(second, optional);
+    }
+
+    @Test
+    public void circuitIsOpenIfOpenForARequiredSink() {
+        // given
+        when(optional.isCircuitOpen()).thenReturn(true);
+
+        // when, then
+        assertThat(target.isCircuitOpen(), is(false));
+
+        // and when
+        when(second.isCircuitOpen()).thenReturn(true);
+
+        // then
+        assertThat(target.isCircuitOpen(), is(true));
+    }
+
+    private static HTTPConnector.BodyWriter createBody(final String data, final String documentKey) {
+        return new HTTPConnector.BodyWriter() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(data.getBytes(Beacon.CHARSET));
+            }
+
+            @Override
+            public String getDocumentKey() {
+                return documentKey;
+            }
+        };
+    }
+}
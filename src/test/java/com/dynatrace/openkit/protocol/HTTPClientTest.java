@@ -19,19 +19,29 @@ package com.dynatrace.openkit.protocol;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
 import com.dynatrace.openkit.protocol.HTTPConnector.RequestType;
+import com.dynatrace.openkit.protocol.dto.Action;
+import com.dynatrace.openkit.protocol.dto.Payload;
+import com.dynatrace.openkit.providers.DefaultTimingProvider;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.*;
 import java.net.HttpURLConnection;
+import java.util.Collections;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.HttpsURLConnection;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class HTTPClientTest {
@@ -51,6 +61,7 @@ public class HTTPClientTest {
         when(configuration.getApplicationID()).thenReturn(APP_ID);
         when(configuration.getServerID()).thenReturn(SERVER_ID);
         when(configuration.getBaseURL()).thenReturn(BASE_URL);
+        when(configuration.getBaseURLs()).thenReturn(Collections.singletonList(BASE_URL));
 
         logger = mock(Logger.class);
         when(logger.isDebugEnabled()).thenReturn(true);
@@ -80,6 +91,7 @@ public class HTTPClientTest {
     public void canHandleMalformedURLExceptionWhenSendRequest() {
         // given
         when(configuration.getBaseURL()).thenReturn("This is not a valid URL");
+        when(configuration.getBaseURLs()).thenReturn(Collections.singletonList("This is not a valid URL"));
         HTTPConnector client = new HTTPConnector(logger, configuration);
 
         // when
@@ -194,6 +206,130 @@ public class HTTPClientTest {
         assertThat(gunzip(os.toByteArray()), is(data));
     }
 
+    @Test
+    public void sealBeaconSplitsPayloadIntoCompressedDocuments() throws IOException {
+        // given
+        HTTPConnector client = new HTTPConnector(logger, configuration, new BinarySerializer());
+        Payload payload = new Payload("127.0.0.1", 1, 1000L, "visitor");
+        for (int i = 0; i < 100; i++) {
+            Action action = new Action();
+            action.setEventType(EventType.ACTION);
+            action.setName("action " + i);
+            action.setActionId(i + 1);
+            payload.addAction(action);
+        }
+
+        // when
+        SealedBeacon sealedBeacon = client.sealBeacon("127.0.0.1", payload, 256);
+
+        // then
+        assertThat(sealedBeacon.getClientIPAddress(), is("127.0.0.1"));
+        assertThat(sealedBeacon.getNumberOfDocuments(), is(greaterThan(1)));
+        int numActions = 0;
+        for (int i = 0; i < sealedBeacon.getNumberOfDocuments(); i++) {
+            GZIPInputStream document = new GZIPInputStream(new ByteArrayInputStream(sealedBeacon.getDocument(i)));
+            for (Action action : new BinaryPayloadDecoder().decode(document).getActions()) {
+                assertThat(action.getName(), is("action " + numActions));
+                numActions++;
+            }
+        }
+        assertThat(numActions, is(100));
+    }
+
+    @Test
+    public void sendCompressedBeaconRequestWritesDataUnchanged() throws IOException {
+        // given
+        HTTPConnector client = new HTTPConnector(logger, configuration);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getResponseCode()).thenReturn(200);
+        InputStream is = new ByteArrayInputStream("type=m".getBytes(CHARSET));
+        when(connection.getInputStream()).thenReturn(is);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        when(connection.getOutputStream()).thenReturn(os);
+        byte[] data = gzip("type=m");
+
+        // when
+        Response response = client.sendRequest(RequestType.BEACON, connection, "127.0.0.1", data, true, "POST");
+
+        // then
+        assertThat(response.getResponseCode(), is(200));
+        assertThat(os.toByteArray(), is(equalTo(data)));
+        verify(connection).setFixedLengthStreamingMode(data.length);
+    }
+
+    @Test
+    public void sendStreamingBeaconRequestWritesGzippedBodyInChunks() throws IOException {
+        // given
+        HTTPConnector client = new HTTPConnector(logger, configuration);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getResponseCode()).thenReturn(200);
+        InputStream is = new ByteArrayInputStream("type=m".getBytes(CHARSET));
+        when(connection.getInputStream()).thenReturn(is);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        when(connection.getOutputStream()).thenReturn(os);
+        final String data = "type=m";
+
+        // when
+        Response response = client.sendStreamingRequest(RequestType.BEACON, connection, "127.0.0.1",
+            new HTTPConnector.BodyWriter() {
+                @Override
+                public void writeTo(OutputStream outputStream) throws IOException {
+                    outputStream.write(data.getBytes(CHARSET));
+                }
+
+                @Override
+                public String getDocumentKey() {
+                    return null;
+                }
+            }, "POST");
+
+        // then
+        assertThat(response.getResponseCode(), is(200));
+        assertThat(gunzip(os.toByteArray()), is(data));
+        verify(connection).setChunkedStreamingMode(HTTPConnector.STREAMING_CHUNK_SIZE);
+        verify(connection).setRequestProperty("Content-Encoding", "gzip");
+        verify(connection, never()).setFixedLengthStreamingMode(anyInt());
+    }
+
+    @Test
+    public void sendStreamingBeaconRequestDisconnectsIfBodyCannotBeWritten() throws IOException {
+        // given
+        HTTPConnector client = new HTTPConnector(logger, configuration);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getResponseCode()).thenReturn(200);
+        when(connection.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+
+        // when
+        Response response = client.sendStreamingRequest(RequestType.BEACON, connection, "127.0.0.1",
+            new HTTPConnector.BodyWriter() {
+                @Override
+                public void writeTo(OutputStream outputStream) throws IOException {
+                    throw new IOException("serializing failed");
+                }
+
+                @Override
+                public String getDocumentKey() {
+                    return null;
+                }
+            }, "POST");
+
+        // then (the incomplete body is never completed, but the connection is dropped)
+        assertThat(response, nullValue());
+        verify(connection, times(HTTPConnector.MAX_SEND_RETRIES)).disconnect();
+        verify(connection, never()).getInputStream();
+    }
+
+    /**
+     * Local helper function to GZIP compress a string
+     */
+    private static byte[] gzip(String data) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        GZIPOutputStream gos = new GZIPOutputStream(bos);
+        gos.write(data.getBytes(CHARSET));
+        gos.close();
+        return bos.toByteArray();
+    }
+
     /**
      * Local helper function to decompress a GZIP compressed byte array
      */
@@ -270,6 +406,22 @@ public class HTTPClientTest {
         assertThat(gunzip(os.toByteArray()), is(data));
     }
 
+    @Test
+    public void failedRequestDrainsErrorStream() throws IOException {
+        // given
+        HTTPConnector client = new HTTPConnector(logger, configuration);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getOutputStream()).thenThrow(new IOException("Always fail"));
+        InputStream errorStream = new ByteArrayInputStream("error".getBytes(CHARSET));
+        when(connection.getErrorStream()).thenReturn(errorStream);
+
+        // when
+        client.sendRequest(RequestType.BEACON, connection, "127.0.0.1", "type=m".getBytes(CHARSET), "POST");
+
+        // then
+        assertThat(errorStream.available(), is(0));
+    }
+
     /**
      * Breaks the retry mechanism (method shall never succeed).
      */
@@ -291,6 +443,60 @@ public class HTTPClientTest {
         assertThat(response, nullValue());
     }
 
+    @Test
+    public void interruptDuringRetryStopsRetryingAndKeepsInterruptFlag() throws IOException {
+        // given
+        HTTPConnector client = new HTTPConnector(logger, configuration);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getOutputStream()).thenThrow(new IOException("Always fail"));
+        Thread.currentThread().interrupt();
+
+        // when
+        Response response = client.sendRequest(RequestType.BEACON, connection, "127.0.0.1", "type=m".getBytes(), "POST");
+
+        // then
+        boolean isInterrupted = Thread.interrupted(); // also clears the flag for subsequent tests
+        assertThat(isInterrupted, is(true));
+        assertThat(response, nullValue());
+        verify(connection, times(1)).getOutputStream();
+    }
+
+    @Test
+    public void requestsAreNotSentWhileCircuitIsOpen() throws IOException {
+        // given
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 60 * 1000L, 60 * 1000L, new DefaultTimingProvider());
+        HTTPConnector client = new HTTPConnector(logger, configuration, new MobileProtocolV3Serializer(), circuitBreaker);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getResponseCode()).thenReturn(503);
+        when(connection.getErrorStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        client.sendRequest(RequestType.STATUS, connection, null, null, "GET");
+
+        // when
+        HttpURLConnection nextConnection = mock(HttpURLConnection.class);
+        Response response = client.sendRequest(RequestType.STATUS, nextConnection, null, null, "GET");
+
+        // then
+        assertThat(client.isCircuitOpen(), is(true));
+        assertThat(response, nullValue());
+        verifyZeroInteractions(nextConnection);
+    }
+
+    @Test
+    public void clientErrorsDoNotOpenCircuit() throws IOException {
+        // given
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 60 * 1000L, 60 * 1000L, new DefaultTimingProvider());
+        HTTPConnector client = new HTTPConnector(logger, configuration, new MobileProtocolV3Serializer(), circuitBreaker);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(connection.getResponseCode()).thenReturn(404);
+        when(connection.getErrorStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+
+        // when
+        client.sendRequest(RequestType.STATUS, connection, null, null, "GET");
+
+        // then
+        assertThat(client.isCircuitOpen(), is(false));
+    }
+
     @Test
     public void sendTimesyncRequestWithMobileResponse() throws IOException {
         // given
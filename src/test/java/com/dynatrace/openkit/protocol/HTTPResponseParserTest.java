@@ -0,0 +1,139 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HTTPResponseParserTest {
+
+    @Test
+    public void responseWithContentLengthIsCompleteAfterBody() throws IOException {
+        // given
+        HTTPResponseParser target = new HTTPResponseParser();
+
+        // when
+        feed(target, "HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\ntype=m&si");
+        boolean isCompleteBeforeLastByte = target.isComplete();
+        feed(target, "=");
+
+        // then
+        assertThat(isCompleteBeforeLastByte, is(false));
+        assertThat(target.isComplete(), is(true));
+        assertThat(target.getStatusCode(), is(200));
+        assertThat(new String(target.getBody(), Beacon.CHARSET), is("type=m&si="));
+        assertThat(target.isKeepAlive(), is(true));
+    }
+
+    @Test
+    public void responseCanBeFedByteByByte() throws IOException {
+        // given
+        HTTPResponseParser target = new HTTPResponseParser();
+        String response = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n4\r\ntype\r\n3;ext=1\r\n=mt\r\n0\r\n\r\n";
+
+        // when
+        for (int i = 0; i < response.length(); i++) {
+            feed(target, response.substring(i, i + 1));
+        }
+
+        // then
+        assertThat(target.isComplete(), is(true));
+        assertThat(new String(target.getBody(), Beacon.CHARSET), is("type=mt"));
+    }
+
+    @Test
+    public void interimResponsesAreSkipped() throws IOException {
+        // given
+        HTTPResponseParser target = new HTTPResponseParser();
+
+        // when
+        feed(target, "HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 204 No Content\r\n\r\n");
+
+        // then
+        assertThat(target.isComplete(), is(true));
+        assertThat(target.getStatusCode(), is(204));
+        assertThat(target.getBody().length, is(0));
+    }
+
+    @Test
+    public void bodyWithoutLengthEndsWithConnection() throws IOException {
+        // given
+        HTTPResponseParser target = new HTTPResponseParser();
+        feed(target, "HTTP/1.0 500 Internal Server Error\r\n\r\nfailed");
+
+        // when
+        target.endOfStream();
+
+        // then
+        assertThat(target.isComplete(), is(true));
+        assertThat(target.getStatusCode(), is(500));
+        assertThat(new String(target.getBody(), Beacon.CHARSET), is("failed"));
+        assertThat(target.isKeepAlive(), is(false));
+    }
+
+    @Test
+    public void connectionCloseHeaderDisablesKeepAlive() throws IOException {
+        // given
+        HTTPResponseParser target = new HTTPResponseParser();
+
+        // when
+        feed(target, "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n");
+
+        // then
+        assertThat(target.isComplete(), is(true));
+        assertThat(target.isKeepAlive(), is(false));
+    }
+
+    @Test(expected = EOFException.class)
+    public void endOfStreamBeforeCompleteResponseThrows() throws IOException {
+        // given
+        HTTPResponseParser target = new HTTPResponseParser();
+        feed(target, "HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\ntype");
+
+        // when
+        target.endOfStream();
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedStatusLineThrows() throws IOException {
+        // when
+        feed(new HTTPResponseParser(), "SSH-2.0-OpenSSH\r\n");
+    }
+
+    @Test
+    public void nothingIsReceivedBeforeFirstByte() throws IOException {
+        // given
+        HTTPResponseParser target = new HTTPResponseParser();
+
+        // when
+        feed(target, "");
+
+        // then
+        assertThat(target.hasReceivedData(), is(false));
+    }
+
+    private static void feed(HTTPResponseParser parser, String data) throws IOException {
+        parser.feed(ByteBuffer.wrap(data.getBytes(Beacon.CHARSET)));
+    }
+}
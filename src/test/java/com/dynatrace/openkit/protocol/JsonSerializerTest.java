@@ -0,0 +1,119 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.protocol.dto.Action;
+import com.dynatrace.openkit.protocol.dto.Payload;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class JsonSerializerTest {
+
+    private static final long SESSION_START = 1000L;
+
+    @Test
+    public void actionNamesAreEscaped() throws IOException {
+        // given
+        Payload payload = createPayload(1);
+        payload.getActions().get(0).setName("a \"quoted\" name");
+
+        // when
+        String document = new String(new JsonSerializer().serialize(payload), Beacon.CHARSET);
+
+        // then
+        assertThat(document, containsString("\"name\":\"a \\\"quoted\\\" name\""));
+    }
+
+    @Test
+    public void serializeWritesAllActionsIntoOneDocument() throws IOException {
+        // given
+        Payload payload = createPayload(3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        int next = new JsonSerializer().serialize(payload, 0, Integer.MAX_VALUE, out);
+
+        // then
+        assertThat(next, is(3));
+        String document = new String(out.toByteArray(), Beacon.CHARSET);
+        assertThat(document, startsWith("{\"timestamp\":"));
+        assertThat(document, containsString("\"session\":{\"id\":1,\"start\":1000}"));
+        assertThat(document, containsString("\"name\":\"action 0\""));
+        assertThat(document, containsString("\"name\":\"action 2\""));
+        assertThat(document, endsWith("}]}"));
+    }
+
+    @Test
+    public void largePayloadIsSplitIntoDocumentsWithinMaxSize() throws IOException {
+        // given
+        Payload payload = createPayload(50);
+        JsonSerializer target = new JsonSerializer();
+        int maxSize = 1024;
+
+        // when
+        int offset = 0;
+        int numDocuments = 0;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (offset < payload.getActions().size()) {
+            out.reset();
+            int next = target.serialize(payload, offset, maxSize, out);
+
+            // then
+            assertThat(next, is(greaterThan(offset)));
+            assertThat(out.size(), is(lessThanOrEqualTo(maxSize)));
+            assertThat(new String(out.toByteArray(), Beacon.CHARSET), endsWith("}]}"));
+
+            offset = next;
+            numDocuments++;
+        }
+        assertThat(numDocuments, is(greaterThan(1)));
+    }
+
+    @Test
+    public void oneActionIsAlwaysWrittenEvenIfExceedingMaxSize() throws IOException {
+        // given
+        Payload payload = createPayload(2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        int next = new JsonSerializer().serialize(payload, 0, 1, out);
+
+        // then
+        assertThat(next, is(1));
+    }
+
+    private static Payload createPayload(int numActions) {
+        Payload payload = new Payload("127.0.0.1", 1, SESSION_START, "visitor");
+        for (int i = 0; i < numActions; i++) {
+            Action action = new Action();
+            action.setActionId(i + 1);
+            action.setName("action " + i);
+            action.setEventType(EventType.ACTION);
+            action.setStartSequenceNumber(2 * i + 1);
+            action.setStartTime(SESSION_START + i);
+            action.setEndSequenceNumber(2 * i + 2);
+            action.setEndTime(SESSION_START + i + 5);
+            payload.addAction(action);
+        }
+        return payload;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class JsonWriterTest {
+
+    private ByteArrayOutputStream out;
+    private JsonWriter target;
+
+    @Before
+    public void setUp() {
+        out = new ByteArrayOutputStream();
+        target = new JsonWriter(out);
+    }
+
+    @Test
+    public void separatorsAreWrittenBetweenMembersAndElements() throws IOException {
+        // when
+        target.beginObject()
+            .name("a").value(1)
+            .name("b").beginArray().value(true).value("x").value((String) null).endArray()
+            .name("c").beginObject().endObject()
+            .endObject();
+        target.flush();
+
+        // then
+        assertThat(written(), is("{\"a\":1,\"b\":[true,\"x\",null],\"c\":{}}"));
+    }
+
+    @Test
+    public void specialCharactersAreEscaped() throws IOException {
+        // when
+        target.value("\"quoted\" back\\slash\n\r\t\b\f\u0001\u2028");
+        target.flush();
+
+        // then
+        assertThat(written(), is("\"\\\"quoted\\\" back\\\\slash\\n\\r\\t\\b\\f\\u0001\\u2028\""));
+    }
+
+    @Test
+    public void namesAreEscaped() throws IOException {
+        // when
+        target.beginObject().name("a\"b").value(0).endObject();
+        target.flush();
+
+        // then
+        assertThat(written(), is("{\"a\\\"b\":0}"));
+    }
+
+    @Test
+    public void nonAsciiCharactersAreWrittenAsUtf8() throws IOException {
+        // given
+        String value = "\u00e4\u20ac\ud83d\ude00";
+
+        // when
+        target.value(value);
+        target.flush();
+
+        // then
+        assertThat(out.toByteArray(), is(equalTo(("\"" + value + "\"").getBytes(Beacon.CHARSET))));
+    }
+
+    @Test
+    public void unpairedSurrogateIsEscaped() throws IOException {
+        // when
+        target.value("\ud83d");
+        target.flush();
+
+        // then
+        assertThat(written(), is("\"\\ud83d\""));
+    }
+
+    @Test
+    public void nonFiniteDoublesAreWrittenAsNull() throws IOException {
+        // when
+        target.beginArray().value(Double.NaN).value(Double.POSITIVE_INFINITY).value(1.5).endArray();
+        target.flush();
+
+        // then
+        assertThat(written(), is("[null,null,1.5]"));
+    }
+
+    @Test
+    public void rawValueIsAppendedWithSeparator() throws IOException {
+        // given
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        encoded.write("{\"x\":1}".getBytes(Beacon.CHARSET));
+
+        // when
+        target.beginArray().value(0).rawValue(encoded).endArray();
+        target.flush();
+
+        // then
+        assertThat(written(), is("[0,{\"x\":1}]"));
+    }
+
+    @Test
+    public void bytesWrittenIncludesBufferedData() throws IOException {
+        // when
+        target.beginArray().value("abc").endArray();
+
+        // then
+        assertThat(target.getBytesWritten(), is(7L));
+        assertThat(out.size(), is(0));
+    }
+
+    @Test
+    public void largeValuesAreFlushedThroughTheBuffer() throws IOException {
+        // given
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            builder.append('a');
+        }
+
+        // when
+        target.value(builder.toString());
+        target.flush();
+
+        // then
+        assertThat(written(), is("\"" + builder + "\""));
+        assertThat(target.getBytesWritten(), is(2002L));
+    }
+
+    private String written() throws IOException {
+        return new String(out.toByteArray(), Beacon.CHARSET);
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dynatrace.openkit.test.StandInServers.drain;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class MultipleEndpointsTest {
+
+    private static final String STATUS_RESPONSE = "type=m&si=1&bn=dynaTraceMonitor&id=1";
+    private static final long SLOW_LATENCY_MILLIS = 200;
+
+    private final List<HttpServer> servers = new ArrayList<HttpServer>();
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = mock(Logger.class);
+    }
+
+    @After
+    public void tearDown() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void requestsAreSentToEndpointWithLowerLatency() throws IOException {
+        // given
+        AtomicInteger slowRequests = new AtomicInteger();
+        AtomicInteger fastRequests = new AtomicInteger();
+        HTTPConnector target = createConnector(startServer(SLOW_LATENCY_MILLIS, slowRequests),
+            startServer(0, fastRequests));
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            assertThat(target.sendStatusRequest(), is(notNullValue()));
+        }
+
+        // then each endpoint was measured once, afterwards only the fast one is used
+        assertThat(slowRequests.get(), is(1));
+        assertThat(fastRequests.get(), is(9));
+    }
+
+    @Test
+    public void requestsFailOverToAvailableEndpoint() throws IOException {
+        // given
+        AtomicInteger unavailableRequests = new AtomicInteger();
+        AtomicInteger availableRequests = new AtomicInteger();
+        String unavailable = startServer(0, unavailableRequests);
+        servers.get(0).stop(0);
+        HTTPConnector target = createConnector(unavailable, startServer(SLOW_LATENCY_MILLIS, availableRequests));
+
+        // when
+        StatusResponse first = target.sendStatusRequest();
+        StatusResponse second = target.sendStatusRequest();
+
+        // then
+        assertThat(first, is(notNullValue()));
+        assertThat(second, is(notNullValue()));
+        assertThat(availableRequests.get(), is(2));
+        assertThat(target.isCircuitOpen(), is(false));
+    }
+
+    private HTTPConnector createConnector(String... baseURLs) {
+        return new HTTPConnector(logger,
+            new HTTPClientConfiguration(Arrays.asList(baseURLs), 1, "appID", null, null));
+    }
+
+    // starts a stand-in, which delays each response by the given latency, and returns its base URL
+    private String startServer(final long latencyMillis, final AtomicInteger requests) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/mbeacon", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                drain(exchange.getRequestBody());
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                byte[] response = STATUS_RESPONSE.getBytes(Beacon.CHARSET);
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.start();
+        servers.add(server);
+        return "http://localhost:" + server.getAddress().getPort() + "/mbeacon";
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class NIOConnectorTest {
+
+    private static final String STATUS_RESPONSE = "type=m&si=1&bn=dynaTraceMonitor&id=1";
+
+    private HttpServer server;
+    private NIOEventLoop eventLoop;
+    private Logger logger;
+
+    // written by the server's thread
+    private volatile int responseCode = 200;
+    private volatile String lastRequestBody = null;
+    private volatile String lastClientIP = null;
+    private final Set<Integer> clientPorts = new HashSet<Integer>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/mbeacon", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream body = exchange.getRequestBody();
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                    body = new GZIPInputStream(body);
+                }
+                lastRequestBody = readFully(body);
+                lastClientIP = exchange.getRequestHeaders().getFirst("X-Client-IP");
+                synchronized (clientPorts) {
+                    clientPorts.add(exchange.getRemoteAddress().getPort());
+                }
+
+                byte[] response = STATUS_RESPONSE.getBytes(Beacon.CHARSET);
+                exchange.sendResponseHeaders(responseCode, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        logger = mock(Logger.class);
+        eventLoop = new NIOEventLoop(logger);
+    }
+
+    @After
+    public void tearDown() {
+        eventLoop.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void statusRequestReturnsStatusResponse() {
+        // given
+        NIOConnector target = createConnector();
+
+        // when
+        StatusResponse response = target.sendStatusRequest();
+
+        // then
+        assertThat(response, is(notNullValue()));
+        assertThat(response.getResponseCode(), is(200));
+        assertThat(response.getServerID(), is(1));
+    }
+
+    @Test
+    public void beaconDataIsSentGzippedWithClientIP() {
+        // given
+        NIOConnector target = createConnector();
+
+        // when
+        StatusResponse response = target.sendBeaconRequest("1.2.3.4", "et=1&na=action".getBytes());
+
+        // then
+        assertThat(response, is(notNullValue()));
+        assertThat(lastRequestBody, is("et=1&na=action"));
+        assertThat(lastClientIP, is("1.2.3.4"));
+    }
+
+    @Test
+    public void connectionIsKeptAliveForSubsequentRequests() {
+        // given
+        NIOConnector target = createConnector();
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            assertThat(target.sendStatusRequest(), is(notNullValue()));
+        }
+
+        // then
+        synchronized (clientPorts) {
+            assertThat(clientPorts.size(), is(1));
+        }
+    }
+
+    @Test
+    public void requestsUseWarmedUpConnections() {
+        // given
+        NIOConnector target = createConnector();
+        target.warmUp(2);
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            assertThat(target.sendStatusRequest(), is(notNullValue()));
+        }
+
+        // then
+        synchronized (clientPorts) {
+            assertThat(clientPorts.size(), is(1));
+        }
+    }
+
+    @Test
+    public void warmUpIgnoresUnreachableServer() throws IOException {
+        // given
+        int port = server.getAddress().getPort();
+        server.stop(0);
+        NIOConnector target = new NIOConnector(logger,
+            new HTTPClientConfiguration("http://localhost:" + port + "/mbeacon", 1, "appID", null), eventLoop);
+
+        // when
+        target.warmUp(2);
+
+        // then
+        assertThat(target.isCircuitOpen(), is(false));
+    }
+
+    @Test
+    public void errorResponseReturnsNull() {
+        // given
+        responseCode = 400;
+        NIOConnector target = createConnector();
+
+        // when
+        StatusResponse response = target.sendStatusRequest();
+
+        // then
+        assertThat(response, is(nullValue()));
+    }
+
+    @Test
+    public void requestsFailAfterEventLoopIsShutDown() {
+        // given
+        NIOConnector target = createConnector();
+        eventLoop.shutdown();
+
+        // when
+        StatusResponse response = target.sendStatusRequest();
+
+        // then
+        assertThat(response, is(nullValue()));
+    }
+
+    private NIOConnector createConnector() {
+        String baseURL = "http://localhost:" + server.getAddress().getPort() + "/mbeacon";
+        return new NIOConnector(logger, new HTTPClientConfiguration(baseURL, 1, "appID", null), eventLoop);
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = in.read(buffer)) > 0) {
+            out.write(buffer, 0, length);
+        }
+        return new String(out.toByteArray(), Beacon.CHARSET);
+    }
+}
@@ -0,0 +1,412 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.ActionImpl;
+import com.dynatrace.openkit.core.SessionImpl;
+import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.caching.MemoryBudget;
+import com.dynatrace.openkit.core.configuration.BeaconSendingConfiguration;
+import com.dynatrace.openkit.core.configuration.Configuration;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.dto.Payload;
+import com.dynatrace.openkit.providers.ConnectorProvider;
+import com.dynatrace.openkit.providers.ThreadIDProvider;
+import com.dynatrace.openkit.providers.TimingProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PayloadGeneratorTest {
+
+    private Connector mockConnector;
+    private Configuration configuration;
+    private SessionImpl mockSession;
+    private ActionImpl mockAction;
+
+    @Before
+    public void setUp() {
+        mockConnector = mock(Connector.class);
+        when(mockConnector.sendBeaconRequest(anyString(), any(Payload.class), anyInt()))
+            .thenReturn(new StatusResponse("", 200));
+        ConnectorProvider mockConnectorProvider = mock(ConnectorProvider.class);
+        when(mockConnectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(mockConnector);
+
+        configuration = mock(Configuration.class);
+        when(configuration.getDeviceID()).thenReturn("42");
+        when(configuration.getHttpClientConfig()).thenReturn(mock(HTTPClientConfiguration.class));
+        when(configuration.getConnectorProvider()).thenReturn(mockConnectorProvider);
+        when(configuration.getBeaconSendingConfiguration())
+            .thenReturn(createOpenSessionSendThresholdConfiguration(3 * PayloadGenerator.ACTION_SIZE_ESTIMATE));
+
+        mockSession = mock(SessionImpl.class);
+        mockAction = mock(ActionImpl.class);
+    }
+
+    @Test
+    public void sessionIsScheduledOnceCollectedDataExceedsThreshold() {
+        // given
+        PayloadGenerator target = createPayloadGenerator();
+        target.startSession(mockSession);
+
+        // when
+        target.addAction(mockAction);
+        target.addAction(mockAction);
+
+        // then
+        verify(mockSession, times(0)).scheduleSend();
+
+        // and when
+        target.addAction(mockAction);
+        target.addAction(mockAction);
+
+        // then
+        verify(mockSession, times(1)).scheduleSend();
+    }
+
+    @Test
+    public void sessionIsScheduledAgainAfterCollectedDataWasSent() {
+        // given
+        PayloadGenerator target = createPayloadGenerator();
+        target.startSession(mockSession);
+        for (int i = 0; i < 3; i++) {
+            target.addAction(mockAction);
+        }
+
+        // when
+        target.send();
+        for (int i = 0; i < 3; i++) {
+            target.addAction(mockAction);
+        }
+
+        // then
+        verify(mockSession, times(2)).scheduleSend();
+    }
+
+    @Test
+    public void sessionIsNeverScheduledWithoutThreshold() {
+        // given
+        when(configuration.getBeaconSendingConfiguration())
+            .thenReturn(new BeaconSendingConfiguration(1));
+        PayloadGenerator target = createPayloadGenerator();
+        target.startSession(mockSession);
+
+        // when
+        for (int i = 0; i < 100; i++) {
+            target.addAction(mockAction);
+        }
+
+        // then
+        verify(mockSession, times(0)).scheduleSend();
+    }
+
+    @Test
+    public void sessionIsMarkedWhenDataIsCollected() {
+        // given
+        PayloadGenerator target = createPayloadGenerator();
+        target.startSession(mockSession);
+
+        // when
+        target.addAction(mockAction);
+
+        // then
+        verify(mockSession, times(1)).markNewData();
+    }
+
+    @Test
+    public void nothingIsSentWithoutCollectedData() {
+        // given
+        PayloadGenerator target = createPayloadGenerator();
+
+        // when
+        StatusResponse obtained = target.send();
+
+        // then
+        assertThat(obtained, is(nullValue()));
+        verifyZeroInteractions(mockConnector);
+    }
+
+    @Test
+    public void collectedDataIsKeptWhileCircuitIsOpen() {
+        // given
+        when(mockConnector.isCircuitOpen()).thenReturn(true);
+        PayloadGenerator target = createPayloadGenerator();
+        target.addAction(mockAction);
+
+        // when
+        StatusResponse obtained = target.send();
+
+        // then
+        assertThat(obtained, is(nullValue()));
+        assertThat(target.isEmpty(), is(false));
+        verify(mockConnector, times(0)).sendBeaconRequest(anyString(), any(Payload.class), anyInt());
+    }
+
+    @Test
+    public void collectedDataIsKeptWhileBandwidthIsExhausted() {
+        // given
+        when(mockConnector.getThrottleDelay()).thenReturn(500L);
+        PayloadGenerator target = createPayloadGenerator();
+        target.addAction(mockAction);
+
+        // when
+        StatusResponse obtained = target.send();
+
+        // then
+        assertThat(obtained, is(nullValue()));
+        assertThat(target.isEmpty(), is(false));
+        verify(mockConnector, times(0)).sendBeaconRequest(anyString(), any(Payload.class), anyInt());
+    }
+
+    @Test
+    public void collectedDataIsKeptUntilAllRequiredSinksReceivedIt() {
+        // given
+        Connector firstSink = mock(Connector.class);
+        when(firstSink.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt()))
+            .thenReturn(new StatusResponse("type=m&si=1", 200));
+        Connector secondSink = mock(Connector.class);
+        when(secondSink.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt()))
+            .thenReturn(null)
+            .thenReturn(new StatusResponse("type=m&si=2", 200));
+        FanOutConnector fanOutConnector = new FanOutConnector(mock(Logger.class),
+            new HTTPClientConfiguration("http://localhost", 1, "appID", null), new MobileProtocolV3Serializer(),
+            Arrays.asList(new FanOutConnector.Sink(firstSink, true), new FanOutConnector.Sink(secondSink, true)));
+        ConnectorProvider fanOutConnectorProvider = mock(ConnectorProvider.class);
+        when(fanOutConnectorProvider.createConnector(any(HTTPClientConfiguration.class))).thenReturn(fanOutConnector);
+        when(configuration.getConnectorProvider()).thenReturn(fanOutConnectorProvider);
+        when(configuration.getMaxBeaconSize()).thenReturn(30 * 1024);
+        when(mockAction.getName()).thenReturn("action");
+        PayloadGenerator target = createPayloadGenerator();
+        target.addAction(mockAction);
+
+        // when (the second sink fails)
+        StatusResponse failed = target.send();
+
+        // then the actions survive for the next send
+        assertThat(failed, is(nullValue()));
+        assertThat(target.isEmpty(), is(false));
+
+        // and when
+        StatusResponse retried = target.send();
+
+        // then
+        assertThat(retried, is(notNullValue()));
+        assertThat(target.isEmpty(), is(true));
+        verify(secondSink, times(2)).sendSealedBeaconRequest(any(SealedBeacon.class), anyInt());
+    }
+
+    @Test
+    public void unsentDataIsSealedAndRemoved() {
+        // given
+        byte[] document = new byte[]{1, 2, 3};
+        when(mockConnector.sealBeacon(anyString(), any(Payload.class), anyInt()))
+            .thenReturn(new SealedBeacon("127.0.0.1", Collections.singletonList(document)));
+        PayloadGenerator target = createPayloadGenerator();
+        target.addAction(mockAction);
+
+        // when
+        SealedBeacon obtained = target.takeUnsentData();
+
+        // then
+        assertThat(obtained.getNumberOfDocuments(), is(1));
+        assertThat(obtained.getDocument(0), is(document));
+        assertThat(obtained.getDocuments(), contains(document));
+        assertThat(target.isEmpty(), is(true));
+        verify(mockConnector, times(0)).sendBeaconRequest(anyString(), any(Payload.class), anyInt());
+    }
+
+    @Test
+    public void noUnsentDataWithoutCollectedData() {
+        // given
+        PayloadGenerator target = createPayloadGenerator();
+
+        // then
+        assertThat(target.takeUnsentData(), is(nullValue()));
+    }
+
+    @Test
+    public void endingSessionWithoutPendingActionsSendsNothing() {
+        // given
+        when(mockConnector.sealBeacon(anyString(), any(Payload.class), anyInt()))
+            .thenReturn(new SealedBeacon("127.0.0.1", Collections.singletonList(new byte[]{1, 2, 3})));
+        PayloadGenerator target = createPayloadGenerator();
+        target.startSession(mockSession);
+
+        // when
+        target.endSession(mockSession);
+        StatusResponse obtained = target.send();
+
+        // then
+        assertThat(target.isEmpty(), is(true));
+        assertThat(obtained, is(nullValue()));
+        verify(mockConnector, never()).sealBeacon(anyString(), any(Payload.class), anyInt());
+        verify(mockConnector, never()).sendSealedBeaconRequest(any(SealedBeacon.class), anyInt());
+        verify(mockConnector, never()).sendBeaconRequest(anyString(), any(Payload.class), anyInt());
+    }
+
+    @Test
+    public void sendWithBudgetSendsOneDocumentPerCall() {
+        // given
+        byte[] firstDocument = new byte[]{1, 2, 3};
+        byte[] secondDocument = new byte[]{4, 5};
+        SealedBeacon sealedBeacon = new SealedBeacon("127.0.0.1", Arrays.asList(firstDocument, secondDocument));
+        when(mockConnector.sealBeacon(anyString(), any(Payload.class), anyInt())).thenReturn(sealedBeacon);
+        when(mockConnector.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt()))
+            .thenReturn(new StatusResponse("", 200));
+        SendBudget budget = new SendBudget(100, 0, mock(TimingProvider.class));
+        PayloadGenerator target = createPayloadGenerator();
+        target.addAction(mockAction);
+
+        // when
+        target.send(budget);
+
+        // then
+        verify(mockConnector, times(1)).sendSealedBeaconRequest(sealedBeacon, 0);
+        assertThat(budget.getRemainingBytes(), is(97L));
+        assertThat(target.isEmpty(), is(false));
+
+        // and when
+        target.send(budget);
+
+        // then
+        verify(mockConnector, times(1)).sendSealedBeaconRequest(sealedBeacon, 1);
+        assertThat(budget.getRemainingBytes(), is(95L));
+        assertThat(target.isEmpty(), is(true));
+        verify(mockConnector, times(0)).sendBeaconRequest(anyString(), any(Payload.class), anyInt());
+    }
+
+    @Test
+    public void endingPartiallySentSessionKeepsRemainingDocuments() {
+        // given
+        byte[] firstDocument = new byte[]{1};
+        byte[] secondDocument = new byte[]{2};
+        byte[] lastDocument = new byte[]{3};
+        when(mockConnector.sealBeacon(anyString(), any(Payload.class), anyInt()))
+            .thenReturn(new SealedBeacon("127.0.0.1", Arrays.asList(firstDocument, secondDocument)))
+            .thenReturn(new SealedBeacon("127.0.0.1", Collections.singletonList(lastDocument)));
+        when(mockConnector.sendSealedBeaconRequest(any(SealedBeacon.class), anyInt()))
+            .thenReturn(new StatusResponse("", 200));
+        PayloadGenerator target = createPayloadGenerator();
+        target.addAction(mockAction);
+        target.send(new SendBudget(0, 0, mock(TimingProvider.class)));
+
+        // when
+        target.addAction(mockAction);
+        target.endSession(mockSession);
+
+        // then
+        SealedBeacon obtained = target.takeUnsentData();
+        assertThat(obtained.getNumberOfDocuments(), is(2));
+        assertThat(obtained.getDocument(0), is(secondDocument));
+        assertThat(obtained.getDocument(1), is(lastDocument));
+    }
+
+    @Test
+    public void actionsAreDroppedWhileTheSharedMemoryBudgetIsExhausted() {
+        // given
+        MemoryBudget memoryBudget = new MemoryBudget(3 * PayloadGenerator.ACTION_SIZE_ESTIMATE);
+        PayloadGenerator first = createPayloadGenerator(memoryBudget);
+        PayloadGenerator second = createPayloadGenerator(memoryBudget);
+
+        // when
+        first.addAction(mockAction);
+        first.addAction(mockAction);
+        second.addAction(mockAction);
+        second.addAction(mockAction);
+
+        // then
+        assertThat(memoryBudget.getUsedBytes(), is((long) 3 * PayloadGenerator.ACTION_SIZE_ESTIMATE));
+        assertThat(first.getDataSize() + second.getDataSize(), is(memoryBudget.getUsedBytes()));
+        assertThat(second.getDataSize(), is((long) PayloadGenerator.ACTION_SIZE_ESTIMATE));
+    }
+
+    @Test
+    public void sentDataIsReturnedToTheSharedMemoryBudget() {
+        // given
+        MemoryBudget memoryBudget = new MemoryBudget(2 * PayloadGenerator.ACTION_SIZE_ESTIMATE);
+        PayloadGenerator first = createPayloadGenerator(memoryBudget);
+        PayloadGenerator second = createPayloadGenerator(memoryBudget);
+        first.addAction(mockAction);
+        first.addAction(mockAction);
+        second.addAction(mockAction);
+
+        // when
+        first.send();
+        second.addAction(mockAction);
+
+        // then
+        assertThat(first.isEmpty(), is(true));
+        assertThat(second.getDataSize(), is((long) PayloadGenerator.ACTION_SIZE_ESTIMATE));
+        assertThat(memoryBudget.getUsedBytes(), is((long) PayloadGenerator.ACTION_SIZE_ESTIMATE));
+    }
+
+    @Test
+    public void sealedDataIsKeptWithinTheSharedMemoryBudget() {
+        // given
+        when(mockConnector.sealBeacon(anyString(), any(Payload.class), anyInt()))
+            .thenReturn(new SealedBeacon("127.0.0.1", Collections.singletonList(new byte[10])));
+        MemoryBudget memoryBudget = new MemoryBudget(2 * PayloadGenerator.ACTION_SIZE_ESTIMATE);
+        PayloadGenerator target = createPayloadGenerator(memoryBudget);
+        target.addAction(mockAction);
+        target.addAction(mockAction);
+
+        // when
+        target.endSession(mockSession);
+
+        // then
+        assertThat(memoryBudget.getUsedBytes(), is(target.getDataSize()));
+
+        // and when
+        target.clearData();
+
+        // then
+        assertThat(memoryBudget.getUsedBytes(), is(0L));
+    }
+
+    private static BeaconSendingConfiguration createOpenSessionSendThresholdConfiguration(long openSessionSendThreshold) {
+        return new BeaconSendingConfiguration(1, openSessionSendThreshold,
+            BeaconSendingConfiguration.DEFAULT_MAX_BEACON_BANDWIDTH_IN_BYTES_PER_SECOND,
+            BeaconSendingConfiguration.DEFAULT_SHUTDOWN_TIMEOUT_IN_MILLISECONDS, null,
+            BeaconSendingConfiguration.DEFAULT_SESSION_SEND_ORDER, BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_BYTES,
+            BeaconSendingConfiguration.DEFAULT_SEND_CYCLE_MAX_TIME_IN_MILLISECONDS,
+            BeaconSendingConfiguration.DEFAULT_MAX_PARALLEL_CHUNK_UPLOADS);
+    }
+
+    private PayloadGenerator createPayloadGenerator() {
+        return new PayloadGenerator(mock(Logger.class), new BeaconCacheImpl(), configuration, "127.0.0.1",
+            mock(ThreadIDProvider.class), mock(TimingProvider.class));
+    }
+
+    private PayloadGenerator createPayloadGenerator(MemoryBudget memoryBudget) {
+        return new PayloadGenerator(mock(Logger.class), new BeaconCacheImpl(), memoryBudget, configuration, "127.0.0.1",
+            mock(ThreadIDProvider.class), mock(TimingProvider.class));
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.SSLTrustManager;
+import com.dynatrace.openkit.protocol.ssl.SSLBlindTrustManager;
+import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
+import org.junit.Test;
+
+import java.security.GeneralSecurityException;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SSLSocketFactoryCacheTest {
+
+    @Test
+    public void sameTrustManagerGetsSameSocketFactory() throws GeneralSecurityException {
+        // given
+        SSLTrustManager trustManager = new SSLStrictTrustManager();
+
+        // when
+        SSLSocketFactory first = SSLSocketFactoryCache.getSocketFactory(trustManager);
+        SSLSocketFactory second = SSLSocketFactoryCache.getSocketFactory(trustManager);
+
+        // then
+        assertThat(first, is(notNullValue()));
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    @Test
+    public void differentTrustManagersGetDifferentSocketFactories() throws GeneralSecurityException {
+        // when
+        SSLSocketFactory strict = SSLSocketFactoryCache.getSocketFactory(new SSLStrictTrustManager());
+        SSLSocketFactory blind = SSLSocketFactoryCache.getSocketFactory(new SSLBlindTrustManager());
+
+        // then
+        assertThat(blind, is(not(sameInstance(strict))));
+    }
+
+    @Test
+    public void missingTrustManagerGetsSharedDefaultSocketFactory() throws GeneralSecurityException {
+        // when
+        SSLSocketFactory first = SSLSocketFactoryCache.getSocketFactory(null);
+        SSLSocketFactory second = SSLSocketFactoryCache.getSocketFactory(null);
+
+        // then
+        assertThat(first, is(notNullValue()));
+        assertThat(second, is(sameInstance(first)));
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.providers.TimingProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SendBudgetTest {
+
+    private TimingProvider mockTimingProvider;
+
+    @Before
+    public void setUp() {
+        mockTimingProvider = mock(TimingProvider.class);
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(1000L);
+    }
+
+    @Test
+    public void budgetIsNotExhaustedInitially() {
+        // given
+        SendBudget target = new SendBudget(100, 50, mockTimingProvider);
+
+        // then
+        assertThat(target.isExhausted(), is(false));
+        assertThat(target.getRemainingBytes(), is(100L));
+    }
+
+    @Test
+    public void budgetIsExhaustedOnceBytesAreUsedUp() {
+        // given
+        SendBudget target = new SendBudget(100, 50, mockTimingProvider);
+
+        // when
+        target.consume(60);
+
+        // then
+        assertThat(target.isExhausted(), is(false));
+
+        // and when the last request exceeds the budget
+        target.consume(60);
+
+        // then
+        assertThat(target.isExhausted(), is(true));
+        assertThat(target.getRemainingBytes(), is(-20L));
+    }
+
+    @Test
+    public void budgetIsExhaustedOnceTimeIsUsedUp() {
+        // given
+        SendBudget target = new SendBudget(100, 50, mockTimingProvider);
+
+        // when
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(1049L);
+
+        // then
+        assertThat(target.isExhausted(), is(false));
+
+        // and when
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(1050L);
+
+        // then
+        assertThat(target.isExhausted(), is(true));
+    }
+
+    @Test
+    public void budgetWithoutLimitsIsNeverExhausted() {
+        // given
+        SendBudget target = new SendBudget(0, -1, mockTimingProvider);
+
+        // when
+        target.consume(Integer.MAX_VALUE);
+        when(mockTimingProvider.provideTimestampInMilliseconds()).thenReturn(Long.MAX_VALUE - 1);
+
+        // then
+        assertThat(target.isExhausted(), is(false));
+    }
+}
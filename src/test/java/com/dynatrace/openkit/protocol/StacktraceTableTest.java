@@ -0,0 +1,91 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class StacktraceTableTest {
+
+    @Test
+    public void equalStacktracesShareOneEntry() {
+        // given
+        StacktraceTable target = new StacktraceTable();
+
+        // when
+        StacktraceTable.Entry first = target.acquire(new String("stacktrace"));
+        StacktraceTable.Entry second = target.acquire(new String("stacktrace"));
+
+        // then
+        assertThat(second, is(sameInstance(first)));
+        assertThat(first.getNumReferences(), is(2));
+        assertThat(target.size(), is(1));
+    }
+
+    @Test
+    public void entryIsRemovedWhenLastReferenceIsReleased() {
+        // given
+        StacktraceTable target = new StacktraceTable();
+        StacktraceTable.Entry entry = target.acquire("stacktrace");
+        target.acquire("stacktrace");
+
+        // when
+        target.release(entry);
+        int sizeAfterFirstRelease = target.size();
+        target.release(entry);
+
+        // then
+        assertThat(sizeAfterFirstRelease, is(1));
+        assertThat(target.size(), is(0));
+    }
+
+    @Test
+    public void dataSizeIsAccountedFromFirstAcquireToLastRelease() {
+        // given
+        StacktraceTable target = new StacktraceTable();
+
+        // when
+        StacktraceTable.Entry entry = target.acquire("stacktrace");
+        target.acquire("stacktrace");
+        long dataSizeAfterAcquire = target.getDataSizeInBytes();
+        target.release(entry);
+        long dataSizeAfterFirstRelease = target.getDataSizeInBytes();
+        target.release(entry);
+
+        // then
+        assertThat(dataSizeAfterAcquire, is(2L * "stacktrace".length()));
+        assertThat(dataSizeAfterFirstRelease, is(dataSizeAfterAcquire));
+        assertThat(target.getDataSizeInBytes(), is(0L));
+    }
+
+    @Test
+    public void differentStacktracesGetDifferentEntries() {
+        // given
+        StacktraceTable target = new StacktraceTable();
+
+        // when
+        StacktraceTable.Entry first = target.acquire("first");
+        StacktraceTable.Entry second = target.acquire("second");
+
+        // then
+        assertThat(second, is(not(sameInstance(first))));
+        assertThat(target.size(), is(2));
+    }
+}
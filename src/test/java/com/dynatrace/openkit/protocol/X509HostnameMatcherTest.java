@@ -0,0 +1,97 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import org.junit.Test;
+
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.security.auth.x500.X500Principal;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class X509HostnameMatcherTest {
+
+    @Test
+    public void dnsNamesAreMatchedCaseInsensitive() throws CertificateParsingException {
+        // given
+        X509Certificate certificate = createCertificate("CN=other.example.com", "Monitor.Example.com");
+
+        // then
+        assertThat(X509HostnameMatcher.matches("monitor.example.com", certificate), is(true));
+        assertThat(X509HostnameMatcher.matches("other.example.com", certificate), is(false));
+    }
+
+    @Test
+    public void wildcardsMatchExactlyOneLabel() throws CertificateParsingException {
+        // given
+        X509Certificate certificate = createCertificate("CN=example.com", "*.example.com");
+
+        // then
+        assertThat(X509HostnameMatcher.matches("monitor.example.com", certificate), is(true));
+        assertThat(X509HostnameMatcher.matches("a.monitor.example.com", certificate), is(false));
+        assertThat(X509HostnameMatcher.matches("example.com", certificate), is(false));
+    }
+
+    @Test
+    public void commonNameIsOnlyUsedWithoutDNSNames() throws CertificateParsingException {
+        // given
+        X509Certificate certificate = createCertificate("O=Example, CN=monitor.example.com");
+
+        // then
+        assertThat(X509HostnameMatcher.matches("monitor.example.com", certificate), is(true));
+        assertThat(X509HostnameMatcher.matches("10.0.0.1", certificate), is(false));
+    }
+
+    @Test
+    public void ipAddressesAreMatchedAgainstIPAddressNames() throws CertificateParsingException {
+        // given
+        X509Certificate certificate = createCertificate("CN=localhost", "localhost");
+        List<List<?>> subjectAltNames = new ArrayList<List<?>>(certificate.getSubjectAlternativeNames());
+        subjectAltNames.add(Arrays.<Object>asList(7, "0:0:0:0:0:0:0:1"));
+        when(certificate.getSubjectAlternativeNames()).thenReturn(subjectAltNames);
+
+        // then
+        assertThat(X509HostnameMatcher.matches("[::1]", certificate), is(true));
+        assertThat(X509HostnameMatcher.matches("127.0.0.1", certificate), is(false));
+    }
+
+    private static X509Certificate createCertificate(String subject, String... dnsNames)
+        throws CertificateParsingException {
+        X509Certificate certificate = mock(X509Certificate.class);
+        when(certificate.getSubjectX500Principal()).thenReturn(new X500Principal(subject));
+
+        Collection<List<?>> subjectAltNames = null;
+        if (dnsNames.length > 0) {
+            subjectAltNames = new ArrayList<List<?>>();
+            for (String dnsName : dnsNames) {
+                subjectAltNames.add(Arrays.<Object>asList(2, dnsName));
+            }
+        }
+        when(certificate.getSubjectAlternativeNames()).thenReturn(subjectAltNames);
+        return certificate;
+    }
+}
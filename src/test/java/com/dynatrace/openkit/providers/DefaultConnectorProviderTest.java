@@ -0,0 +1,64 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.providers;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.Connector;
+import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class DefaultConnectorProviderTest {
+
+    @Test
+    public void sameConfigurationReturnsSameConnector() {
+        // given
+        DefaultConnectorProvider provider = new DefaultConnectorProvider(mock(Logger.class));
+        HTTPClientConfiguration configuration = createConfiguration(1);
+
+        // when
+        Connector first = provider.createConnector(configuration);
+        Connector second = provider.createConnector(configuration);
+
+        // then
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    @Test
+    public void newConfigurationReturnsNewConnector() {
+        // given
+        DefaultConnectorProvider provider = new DefaultConnectorProvider(mock(Logger.class));
+
+        // when
+        Connector first = provider.createConnector(createConfiguration(1));
+        Connector second = provider.createConnector(createConfiguration(2));
+
+        // then
+        assertThat(second, is(not(sameInstance(first))));
+    }
+
+    private static HTTPClientConfiguration createConfiguration(int serverID) {
+        return new HTTPClientConfiguration("http://localhost", serverID, "appID", new SSLStrictTrustManager());
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.providers;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.Connector;
+import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class FanOutConnectorProviderTest {
+
+    @Test
+    public void sameConfigurationReturnsSameConnector() {
+        // given
+        RecordingConnectorProvider collectorProvider = new RecordingConnectorProvider();
+        FanOutConnectorProvider provider = createProvider(collectorProvider);
+        HTTPClientConfiguration configuration = createConfiguration();
+
+        // when
+        Connector first = provider.createConnector(configuration);
+        Connector second = provider.createConnector(configuration);
+
+        // then
+        assertThat(second, is(sameInstance(first)));
+        assertThat(collectorProvider.configurations.size(), is(2));
+    }
+
+    @Test
+    public void eachCollectorGetsItsBaseURLAndTheOtherSettingsOfTheConfiguration() {
+        // given
+        RecordingConnectorProvider collectorProvider = new RecordingConnectorProvider();
+        FanOutConnectorProvider provider = createProvider(collectorProvider);
+        HTTPClientConfiguration configuration = createConfiguration();
+
+        // when
+        provider.createConnector(configuration);
+
+        // then
+        HTTPClientConfiguration old = collectorProvider.configurations.get(0);
+        HTTPClientConfiguration migrated = collectorProvider.configurations.get(1);
+        assertThat(old.getBaseURL(), is("http://old.example.com/mbeacon"));
+        assertThat(migrated.getBaseURL(), is("http://new.example.com/mbeacon"));
+        assertThat(migrated.getServerID(), is(configuration.getServerID()));
+        assertThat(migrated.getApplicationID(), is(configuration.getApplicationID()));
+        assertThat(migrated.getSSLTrustManager(), is(sameInstance(configuration.getSSLTrustManager())));
+    }
+
+    private static FanOutConnectorProvider createProvider(ConnectorProvider collectorProvider) {
+        return new FanOutConnectorProvider(mock(Logger.class), Arrays.asList(
+            new FanOutConnectorProvider.Collector("http://old.example.com/mbeacon", collectorProvider, true),
+            new FanOutConnectorProvider.Collector("http://new.example.com/mbeacon", collectorProvider, false)));
+    }
+
+    private static HTTPClientConfiguration createConfiguration() {
+        return new HTTPClientConfiguration("", 1, "appID", new SSLStrictTrustManager());
+    }
+
+    private static final class RecordingConnectorProvider implements ConnectorProvider {
+
+        private final List<HTTPClientConfiguration> configurations = new ArrayList<HTTPClientConfiguration>();
+
+        @Override
+        public Connector createConnector(Object configuration) {
+            configurations.add((HTTPClientConfiguration) configuration);
+            return mock(Connector.class);
+        }
+    }
+}
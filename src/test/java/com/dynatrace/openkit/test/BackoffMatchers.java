@@ -0,0 +1,44 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.test;
+
+import static org.mockito.AdditionalMatchers.and;
+import static org.mockito.AdditionalMatchers.geq;
+import static org.mockito.AdditionalMatchers.leq;
+
+/**
+ * Mockito argument matchers for delays computed by {@link com.dynatrace.openkit.core.util.Backoff}.
+ */
+public final class BackoffMatchers {
+
+    private BackoffMatchers() {
+    }
+
+    /**
+     * Matches a delay jittered by {@link com.dynatrace.openkit.core.util.Backoff#jitter(long)}.
+     *
+     * <p>
+     * Retry delays are randomized between half of the delay and the delay.
+     * </p>
+     *
+     * @param delayInMillis The delay before it was jittered.
+     * @return {@code 0}, as any other Mockito matcher.
+     */
+    public static long jittered(long delayInMillis) {
+        return and(geq(delayInMillis / 2), leq(delayInMillis));
+    }
+}
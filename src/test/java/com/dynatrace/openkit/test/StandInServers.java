@@ -0,0 +1,43 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Helpers for the stand-in HTTP servers used by tests and benchmarks.
+ */
+public final class StandInServers {
+
+    private StandInServers() {
+    }
+
+    /**
+     * Reads and discards the given stream until its end and closes it.
+     *
+     * @param in The stream to drain, e.g. a request body.
+     * @throws IOException If reading or closing the stream fails.
+     */
+    public static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) >= 0) {
+            // discard
+        }
+        in.close();
+    }
+}
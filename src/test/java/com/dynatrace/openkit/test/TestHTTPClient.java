@@ -21,8 +21,12 @@ import com.dynatrace.openkit.core.util.DefaultLogger;
 import com.dynatrace.openkit.protocol.*;
 import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
 
 public class TestHTTPClient extends HTTPConnector {
 
@@ -87,12 +91,19 @@ public class TestHTTPClient extends HTTPConnector {
     }
 
     @Override
-    protected Response sendRequest(RequestType requestType, String url, String clientIPAddress, byte[] data, String method) {
-        Request request = new Request(requestType, url, clientIPAddress, data, method);
+    protected Response sendStreamingRequest(RequestType requestType, String url, String clientIPAddress, BodyWriter body,
+            String method) {
+        return sendBufferedRequest(requestType, url, clientIPAddress, body, method);
+    }
+
+    @Override
+    protected Response sendRequest(RequestType requestType, String url, String clientIPAddress, byte[] data,
+            boolean isCompressed, String method) {
+        Request request = new Request(requestType, url, clientIPAddress, isCompressed ? gunzip(data) : data, method);
         sentRequests.add(request);
 
         if (remoteTest) {
-            return super.sendRequest(requestType, url, clientIPAddress, data, method);
+            return super.sendRequest(requestType, url, clientIPAddress, data, isCompressed, method);
         } else {
             System.out.println("Local HTTP " + requestType.getRequestName() + " Request: " + url);
 
@@ -124,6 +135,29 @@ public class TestHTTPClient extends HTTPConnector {
         }
     }
 
+    @Override
+    public void warmUp(int numberOfConnections) {
+        if (remoteTest) {
+            super.warmUp(numberOfConnections);
+        }
+    }
+
+    private static byte[] gunzip(byte[] compressed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+            byte[] buffer = new byte[1024];
+            int numRead;
+            while ((numRead = in.read(buffer)) > 0) {
+                out.write(buffer, 0, numRead);
+            }
+            in.close();
+        } catch (IOException e) {
+            // must not happen, as sealed documents are always valid gzip data
+        }
+        return out.toByteArray();
+    }
+
     public ArrayList<Request> getSentRequests() {
         return sentRequests;
     }
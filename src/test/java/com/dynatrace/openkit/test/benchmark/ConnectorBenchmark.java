@@ -0,0 +1,113 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.test.benchmark;
+
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.util.DefaultLogger;
+import com.dynatrace.openkit.protocol.Connector;
+import com.dynatrace.openkit.protocol.HTTPConnector;
+import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
+import com.dynatrace.openkit.providers.ConnectorProvider;
+import com.dynatrace.openkit.providers.DefaultConnectorProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.dynatrace.openkit.test.StandInServers.drain;
+
+/**
+ * Measures status requests per second against a local HTTP stand-in.
+ *
+ * <p>
+ * Compares creating a new connector for each request with reusing the connector provided by
+ * {@link DefaultConnectorProvider}, and reports how many TCP connections the stand-in has seen.
+ * This is not a unit test - run it via its main method.
+ * </p>
+ */
+public class ConnectorBenchmark {
+
+    private static final int DEFAULT_NUM_REQUESTS = 5000;
+    private static final byte[] STATUS_RESPONSE = "type=m&si=120".getBytes();
+
+    public static void main(String[] args) throws IOException {
+        int numRequests = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_REQUESTS;
+
+        // otherwise Nagle's algorithm delays each response of the stand-in by the client's delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                drain(exchange.getRequestBody());
+                exchange.sendResponseHeaders(200, STATUS_RESPONSE.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(STATUS_RESPONSE);
+                out.close();
+            }
+        });
+        server.start();
+
+        try {
+            final HTTPClientConfiguration configuration = new HTTPClientConfiguration(
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/mbeacon", 1, "benchmark", new SSLStrictTrustManager());
+
+            ConnectorProvider newConnectorPerRequest = new ConnectorProvider() {
+                @Override
+                public Connector createConnector(Object config) {
+                    return new HTTPConnector(new DefaultLogger(false), (HTTPClientConfiguration) config);
+                }
+            };
+            ConnectorProvider cachedConnector = new DefaultConnectorProvider(new DefaultLogger(false));
+
+            // warm up both variants, so that class loading and JIT do not distort the first measurement
+            run(newConnectorPerRequest, configuration, numRequests / 10);
+            run(cachedConnector, configuration, numRequests / 10);
+
+            clientPorts.clear();
+            double before = run(newConnectorPerRequest, configuration, numRequests);
+            System.out.printf("new connector per request: %10.1f requests/s, %d connections%n", before, clientPorts.size());
+
+            clientPorts.clear();
+            double after = run(cachedConnector, configuration, numRequests);
+            System.out.printf("cached connector:          %10.1f requests/s, %d connections%n", after, clientPorts.size());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static double run(ConnectorProvider provider, HTTPClientConfiguration configuration, int numRequests) {
+        long start = System.nanoTime();
+        for (int i = 0; i < numRequests; i++) {
+            if (provider.createConnector(configuration).sendStatusRequest() == null) {
+                throw new IllegalStateException("Status request failed");
+            }
+        }
+        long durationInNanos = System.nanoTime() - start;
+        return numRequests * 1e9 / durationInNanos;
+    }
+}
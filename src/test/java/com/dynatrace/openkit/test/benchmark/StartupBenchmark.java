@@ -0,0 +1,167 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.test.benchmark;
+
+import com.dynatrace.openkit.DynatraceOpenKitBuilder;
+import com.dynatrace.openkit.api.OpenKit;
+import com.dynatrace.openkit.api.Session;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.util.DefaultLogger;
+import com.dynatrace.openkit.protocol.Connector;
+import com.dynatrace.openkit.protocol.NIOConnector;
+import com.dynatrace.openkit.protocol.NIOEventLoop;
+import com.dynatrace.openkit.providers.ConnectorProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.dynatrace.openkit.test.StandInServers.drain;
+
+/**
+ * Measures the time from building OpenKit until the first beacon arrives at a local HTTP stand-in.
+ *
+ * <p>
+ * Compares the NIO connector with and without warming up connections in the init state, and reports how
+ * many TCP connections the stand-in has seen. On localhost, connecting is cheap, so the difference mostly
+ * shows with a remote server - pass its base URL as second argument to measure against a real stand-in.
+ * This is not a unit test - run it via its main method.
+ * </p>
+ */
+public class StartupBenchmark {
+
+    private static final int DEFAULT_NUM_RUNS = 20;
+    private static final int NUM_SEND_WORKERS = 2;
+    private static final long FIRST_BEACON_TIMEOUT_MILLIS = 30 * 1000L;
+    private static final byte[] STATUS_RESPONSE = "type=m&si=120".getBytes();
+
+    public static void main(String[] args) throws Exception {
+        int numRuns = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_RUNS;
+
+        // otherwise Nagle's algorithm delays each response of the stand-in by the client's delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+        final AtomicLong firstBeaconNanos = new AtomicLong();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    firstBeaconNanos.compareAndSet(0, System.nanoTime());
+                }
+                drain(exchange.getRequestBody());
+
+                byte[] response = STATUS_RESPONSE;
+                String query = exchange.getRequestURI().getQuery();
+                if (query != null && query.startsWith("type=mts")) {
+                    long now = System.currentTimeMillis();
+                    response = ("type=mts&t1=" + now + "&t2=" + now).getBytes();
+                }
+                exchange.sendResponseHeaders(200, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+
+        try {
+            String baseURL = args.length > 1
+                ? args[1]
+                : "http://127.0.0.1:" + server.getAddress().getPort() + "/mbeacon";
+
+            // warm up both variants, so that class loading and JIT do not distort the first measurement
+            run(baseURL, false, firstBeaconNanos);
+            run(baseURL, true, firstBeaconNanos);
+
+            for (boolean isWarmedUp : new boolean[]{false, true}) {
+                clientPorts.clear();
+                long totalNanos = 0;
+                for (int i = 0; i < numRuns; i++) {
+                    totalNanos += run(baseURL, isWarmedUp, firstBeaconNanos);
+                }
+                System.out.printf("%-28s %8.2f ms to first beacon, %d connections%n",
+                    isWarmedUp ? "with connection warm-up:" : "without connection warm-up:",
+                    totalNanos / 1e6 / numRuns, clientPorts.size());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static long run(String baseURL, boolean isWarmedUp, AtomicLong firstBeaconNanos) throws InterruptedException {
+        // each run has its own event loop, so no connection survives from the previous run
+        NIOEventLoop eventLoop = new NIOEventLoop(new DefaultLogger(false));
+        firstBeaconNanos.set(0);
+
+        long start = System.nanoTime();
+        OpenKit openKit = new DynatraceOpenKitBuilder("1")
+            .withConnector(createConnectorProvider(baseURL, eventLoop, isWarmedUp))
+            .withNumberOfSendWorkers(NUM_SEND_WORKERS)
+            .build();
+        try {
+            Session session = openKit.createSession("1.2.3.4");
+            session.enterAction("startup").leaveAction();
+            session.end();
+
+            long deadline = start + FIRST_BEACON_TIMEOUT_MILLIS * 1000000L;
+            while (firstBeaconNanos.get() == 0) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("No beacon received");
+                }
+                Thread.sleep(1);
+            }
+            return firstBeaconNanos.get() - start;
+        } finally {
+            openKit.shutdown();
+            eventLoop.shutdown();
+        }
+    }
+
+    private static ConnectorProvider createConnectorProvider(final String baseURL, final NIOEventLoop eventLoop,
+                                                             final boolean isWarmedUp) {
+        return new ConnectorProvider() {
+            private Connector connector = null;
+
+            @Override
+            public synchronized Connector createConnector(Object config) {
+                if (connector == null) {
+                    HTTPClientConfiguration configuration = new HTTPClientConfiguration(baseURL, 1, "benchmark", null);
+                    connector = isWarmedUp
+                        ? new NIOConnector(new DefaultLogger(false), configuration, eventLoop)
+                        : new NIOConnector(new DefaultLogger(false), configuration, eventLoop) {
+                            @Override
+                            public void warmUp(int numberOfConnections) {
+                                // requests open their connections on their own
+                            }
+                        };
+                }
+                return connector;
+            }
+        };
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2018 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.test.benchmark;
+
+import com.dynatrace.openkit.api.SSLTrustManager;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.util.DefaultLogger;
+import com.dynatrace.openkit.providers.ConnectorProvider;
+import com.dynatrace.openkit.providers.DefaultConnectorProvider;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsExchange;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import static com.dynatrace.openkit.test.StandInServers.drain;
+
+/**
+ * Measures HTTPS status requests per second against a local TLS stand-in.
+ *
+ * <p>
+ * Reports the number of TCP connections and the number of distinct TLS sessions the stand-in has seen.
+ * The stand-in only offers TLS 1.2, so each distinct session is one full handshake and
+ * resumed sessions do not add a new one.
+ * Pass {@code close} as second argument to disable HTTP keep-alive, so that every request needs a new
+ * TLS connection and only session resumption can avoid full handshakes.
+ * This is not a unit test - run it via its main method. A self signed certificate is created with the
+ * {@code keytool} of the running JRE.
+ * </p>
+ */
+public class TLSConnectorBenchmark {
+
+    private static final int DEFAULT_NUM_REQUESTS = 1000;
+    private static final char[] PASSWORD = "benchmark".toCharArray();
+    private static final byte[] STATUS_RESPONSE = "type=m&si=120".getBytes();
+
+    public static void main(String[] args) throws Exception {
+        int numRequests = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NUM_REQUESTS;
+        if (args.length > 1 && args[1].equals("close")) {
+            System.setProperty("http.keepAlive", "false");
+        }
+        // otherwise Nagle's algorithm delays each response of the stand-in by the client's delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        KeyStore keyStore = createKeyStore();
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD);
+        serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+        final Set<BigInteger> sessionIDs = Collections.synchronizedSet(new HashSet<BigInteger>());
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(serverContext) {
+            @Override
+            public void configure(HttpsParameters parameters) {
+                // with TLS 1.2 a resumed session keeps its ID, so distinct IDs are full handshakes
+                SSLParameters sslParameters = getSSLContext().getDefaultSSLParameters();
+                sslParameters.setProtocols(new String[]{"TLSv1.2"});
+                parameters.setSSLParameters(sslParameters);
+            }
+        });
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                sessionIDs.add(new BigInteger(1, ((HttpsExchange) exchange).getSSLSession().getId()));
+                drain(exchange.getRequestBody());
+                exchange.sendResponseHeaders(200, STATUS_RESPONSE.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(STATUS_RESPONSE);
+                out.close();
+            }
+        });
+        server.start();
+
+        try {
+            HTTPClientConfiguration configuration = new HTTPClientConfiguration(
+                "https://localhost:" + server.getAddress().getPort() + "/mbeacon", 1, "benchmark",
+                createTrustManager(keyStore));
+            ConnectorProvider provider = new DefaultConnectorProvider(new DefaultLogger(false));
+
+            // warm up, so that class loading and JIT do not distort the measurement
+            run(provider, configuration, numRequests / 10);
+
+            clientPorts.clear();
+            sessionIDs.clear();
+            long start = System.nanoTime();
+            run(provider, configuration, numRequests);
+            long durationInNanos = System.nanoTime() - start;
+
+            System.out.printf("%d requests: %10.1f requests/s, %.3f ms/request, %d connections, %d TLS sessions%n",
+                numRequests, numRequests * 1e9 / durationInNanos, durationInNanos / 1e6 / numRequests,
+                clientPorts.size(), sessionIDs.size());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void run(ConnectorProvider provider, HTTPClientConfiguration configuration, int numRequests) {
+        for (int i = 0; i < numRequests; i++) {
+            if (provider.createConnector(configuration).sendStatusRequest() == null) {
+                throw new IllegalStateException("Status request failed");
+            }
+        }
+    }
+
+    private static KeyStore createKeyStore() throws IOException, InterruptedException, GeneralSecurityException {
+        File keyStoreFile = File.createTempFile("openkit-benchmark", ".jks");
+        if (!keyStoreFile.delete()) {
+            throw new IOException("Cannot prepare " + keyStoreFile);
+        }
+        keyStoreFile.deleteOnExit();
+
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "localhost", "-keyalg", "RSA",
+            "-keysize", "2048", "-validity", "1", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost",
+            "-storetype", "JKS", "-keystore", keyStoreFile.getPath(),
+            "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+            .redirectErrorStream(true).start();
+        drain(process.getInputStream());
+        if (process.waitFor() != 0) {
+            throw new IOException("keytool failed");
+        }
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = new FileInputStream(keyStoreFile);
+        try {
+            keyStore.load(in, PASSWORD);
+        } finally {
+            in.close();
+        }
+        return keyStore;
+    }
+
+    private static SSLTrustManager createTrustManager(KeyStore keyStore) throws GeneralSecurityException {
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init(keyStore);
+        X509TrustManager x509TrustManager = null;
+        for (TrustManager trustManager : factory.getTrustManagers()) {
+            if (trustManager instanceof X509TrustManager) {
+                x509TrustManager = (X509TrustManager) trustManager;
+            }
+        }
+
+        final X509TrustManager trustingKeyStore = x509TrustManager;
+        return new SSLTrustManager() {
+            @Override
+            public X509TrustManager getX509TrustManager() {
+                return trustingKeyStore;
+            }
+
+            @Override
+            public HostnameVerifier getHostnameVerifier() {
+                return null;
+            }
+        };
+    }
+}